@@ -0,0 +1,102 @@
+package com.martin.facturacion.servicio;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Bloques sobre {@link MemorySegment} reservados en un {@link Arena}
+ * compartido: se pueden leer desde cualquier hilo y se liberan todos juntos,
+ * en el momento, con {@link #close()}.
+ *
+ * <p>
+ * Solo se compila con el perfil {@code ffm} ({@code --release 21
+ * --enable-preview}). {@link MemoriaFueraDeHeap#crear()} la carga por
+ * reflexión y, si la JVM no la acepta, usa {@link MemoriaDirecta}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class MemoriaSegmentos implements MemoriaFueraDeHeap {
+
+    // Sin alineación: los registros son de 32 bytes pero los textos no
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED;
+
+    private final Arena arena = Arena.ofShared();
+
+    @Override
+    public BloqueFueraDeHeap reservar(int bytes) {
+        return new Bloque(arena.allocate(bytes, Long.BYTES));
+    }
+
+    @Override
+    public String nombre() {
+        return "MemorySegment (FFM)";
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private static final class Bloque implements BloqueFueraDeHeap {
+        private final MemorySegment seg;
+
+        Bloque(MemorySegment seg) {
+            this.seg = seg;
+        }
+
+        @Override
+        public byte getByte(int pos) {
+            return seg.get(ValueLayout.JAVA_BYTE, pos);
+        }
+
+        @Override
+        public void putByte(int pos, byte valor) {
+            seg.set(ValueLayout.JAVA_BYTE, pos, valor);
+        }
+
+        @Override
+        public int getInt(int pos) {
+            return seg.get(INT, pos);
+        }
+
+        @Override
+        public void putInt(int pos, int valor) {
+            seg.set(INT, pos, valor);
+        }
+
+        @Override
+        public long getLong(int pos) {
+            return seg.get(LONG, pos);
+        }
+
+        @Override
+        public void putLong(int pos, long valor) {
+            seg.set(LONG, pos, valor);
+        }
+
+        @Override
+        public double getDouble(int pos) {
+            return seg.get(DOUBLE, pos);
+        }
+
+        @Override
+        public void putDouble(int pos, double valor) {
+            seg.set(DOUBLE, pos, valor);
+        }
+
+        @Override
+        public void leer(int pos, byte[] destino, int desde, int largo) {
+            MemorySegment.copy(seg, ValueLayout.JAVA_BYTE, pos, destino, desde, largo);
+        }
+
+        @Override
+        public void escribir(int pos, byte[] origen, int desde, int largo) {
+            MemorySegment.copy(origen, desde, seg, ValueLayout.JAVA_BYTE, pos, largo);
+        }
+    }
+}
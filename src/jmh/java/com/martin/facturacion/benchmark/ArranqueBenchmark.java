@@ -0,0 +1,90 @@
+package com.martin.facturacion.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo hasta el primer reporte: lanza {@code java -jar} sobre un CSV de 10
+ * filas y mide hasta que el proceso termina con los reportes escritos.
+ *
+ * <p>
+ * Compara el arranque normal contra el arranque con el archivo AppCDS que
+ * genera {@code mvn package}. Requiere el jar ya empaquetado:
+ * </p>
+ *
+ * <pre>
+ * mvn package
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.clase=com.martin.facturacion.benchmark.ArranqueBenchmark
+ * </pre>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ArranqueBenchmark {
+
+    private static final String JAR = "target/proyecto_integrador-1.0-SNAPSHOT.jar";
+    private static final String ARCHIVO_CDS = "target/proyecto_integrador-1.0-SNAPSHOT.jsa";
+
+    @Param({ "sin-cds", "cds" })
+    public String modo;
+
+    private Path csv;
+    private Path salida;
+    private List<String> comando;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        if (!new File(JAR).isFile()) {
+            throw new IllegalStateException("No existe " + JAR + ": ejecutar antes 'mvn package'");
+        }
+
+        csv = Files.createTempFile("arranque", ".csv");
+        StringBuilder sb = new StringBuilder("idTest,nombreTest,estado,tiempoEjecucion\n");
+        for (int i = 1; i <= 10; i++) {
+            sb.append("T").append(i).append(",Caso ").append(i).append(',')
+                    .append(i % 4 == 0 ? "FAILED" : "PASSED").append(',').append(i).append(".5\n");
+        }
+        Files.writeString(csv, sb);
+        salida = Files.createTempDirectory("arranque-salida");
+
+        comando = new ArrayList<>();
+        comando.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (modo.equals("cds")) {
+            comando.add("-XX:SharedArchiveFile=" + ARCHIVO_CDS);
+        }
+        comando.addAll(List.of("-jar", JAR, csv.toString(), salida.toString(), "--ignorar-cabecera", "--sin-menu"));
+    }
+
+    @Benchmark
+    public int primerReporte() throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(comando)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int codigo = p.waitFor();
+        if (!Files.exists(salida.resolve("resumen.txt"))) {
+            throw new IllegalStateException("El proceso no generó resumen.txt");
+        }
+        return codigo;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ArranqueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
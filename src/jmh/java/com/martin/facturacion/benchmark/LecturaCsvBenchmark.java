@@ -0,0 +1,89 @@
+package com.martin.facturacion.benchmark;
+
+import com.martin.facturacion.io.LectorCsv;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+
+import jdk.jfr.Recording;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura y agregación de un CSV en memoria de 200.000 filas.
+ *
+ * <p>
+ * Con {@code jfr=inactivo} no hay grabación: mide el costo de los eventos
+ * de JFR cuando nadie los escucha, que debe ser despreciable. Con
+ * {@code jfr=activo} se graba con {@code facturacion.jfc}, para ver el costo
+ * real de tener la grabación prendida.
+ * </p>
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.clase=com.martin.facturacion.benchmark.LecturaCsvBenchmark
+ * </pre>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LecturaCsvBenchmark {
+
+    private static final int FILAS = 200_000;
+
+    @Param({ "inactivo", "activo" })
+    public String jfr;
+
+    private byte[] csv;
+    private Recording grabacion;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        StringBuilder sb = new StringBuilder(FILAS * 32);
+        String[] estados = { "PASSED", "FAILED", "SKIPPED" };
+        for (int i = 0; i < FILAS; i++) {
+            sb.append("T").append(i).append(",Caso ").append(i).append(',')
+                    .append(estados[i % 3]).append(',').append(i % 1000).append('.').append(i % 7).append('\n');
+        }
+        csv = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (jfr.equals("activo")) {
+            grabacion = new Recording(jdk.jfr.Configuration.create(
+                    java.nio.file.Path.of("src/main/jfr/facturacion.jfc")));
+            grabacion.setToDisk(false);
+            grabacion.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        if (grabacion != null) {
+            grabacion.close();
+        }
+    }
+
+    @Benchmark
+    public AcumuladorEstadisticas leer() throws IOException {
+        AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+        List<String> errores = new ArrayList<>();
+        LectorCsv.leer(new ByteArrayInputStream(csv), errores, false, acumulador::agregar);
+        return acumulador;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LecturaCsvBenchmark.class.getSimpleName()).build()).run();
+    }
+}
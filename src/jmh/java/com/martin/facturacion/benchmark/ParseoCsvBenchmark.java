@@ -0,0 +1,133 @@
+package com.martin.facturacion.benchmark;
+
+import com.martin.facturacion.io.LectorCsv;
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parseo de un CSV en memoria de 200.000 filas con el tokenizador de
+ * {@link LectorCsv}, contra una referencia con {@code BufferedReader} y
+ * {@code split(",")}.
+ *
+ * <p>
+ * Con {@code datos=sinComillas} todas las filas van por el camino rápido
+ * del tokenizador; es el caso que no debe empeorar. Con
+ * {@code datos=conComillas} uno de cada diez nombres tiene una coma y va
+ * entre comillas: la referencia los cuenta mal (cinco columnas), así que ahí
+ * solo sirve como orden de magnitud. Con {@code datos=anchas} cada fila
+ * tiene 40 columnas (las cuatro que se usan entre las primeras siete) y las
+ * columnas se ubican por la cabecera.
+ * </p>
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.clase=com.martin.facturacion.benchmark.ParseoCsvBenchmark
+ * </pre>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ParseoCsvBenchmark {
+
+    private static final int FILAS = 200_000;
+
+    private static final int COLUMNAS_ANCHAS = 40;
+
+    @Param({ "sinComillas", "conComillas", "anchas" })
+    public String datos;
+
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        boolean comillas = datos.equals("conComillas");
+        boolean anchas = datos.equals("anchas");
+        StringBuilder sb = new StringBuilder(FILAS * (anchas ? 200 : 36));
+        String[] estados = { "PASSED", "FAILED", "SKIPPED" };
+        if (anchas) {
+            sb.append("host,shard,timestamp,idTest,nombreTest,estado,tiempoEjecucion");
+            for (int c = 7; c < COLUMNAS_ANCHAS; c++) {
+                sb.append(",extra").append(c);
+            }
+        } else {
+            sb.append("idTest,nombreTest,estado,tiempoEjecucion");
+        }
+        sb.append("\r\n");
+        for (int i = 0; i < FILAS; i++) {
+            if (anchas) {
+                sb.append("ci-").append(i % 16).append(',').append(i % 8).append(",2026-01-01T10:00:00,");
+            }
+            sb.append("T").append(i).append(',');
+            if (comillas && i % 10 == 0) {
+                sb.append("\"Caso ").append(i).append(", variante \"\"b\"\"\"");
+            } else {
+                sb.append("Caso ").append(i);
+            }
+            sb.append(',').append(estados[i % 3]).append(',').append(i % 1000).append('.').append(i % 7);
+            if (anchas) {
+                for (int c = 7; c < COLUMNAS_ANCHAS; c++) {
+                    sb.append(',').append(c * 31 + i % 97);
+                }
+            }
+            sb.append("\r\n");
+        }
+        csv = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public AcumuladorEstadisticas tokenizador() throws IOException {
+        AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+        List<String> errores = new ArrayList<>();
+        LectorCsv.leer(new ByteArrayInputStream(csv), errores, true, acumulador::agregar);
+        return acumulador;
+    }
+
+    @Benchmark
+    public AcumuladorEstadisticas referenciaSplit() throws IOException {
+        AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+        List<String> errores = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8))) {
+            List<String> cabecera = List.of(br.readLine().split(","));
+            int id = cabecera.indexOf("idTest");
+            int nombre = cabecera.indexOf("nombreTest");
+            int estado = cabecera.indexOf("estado");
+            int tiempo = cabecera.indexOf("tiempoEjecucion");
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] p = linea.split(",");
+                if (p.length != cabecera.size()) {
+                    errores.add(linea);
+                    continue;
+                }
+                acumulador.agregar(new CasoPrueba(p[id].trim(), p[nombre].trim(),
+                        EstadoPrueba.valueOf(p[estado].trim().toUpperCase()), Double.parseDouble(p[tiempo].trim())));
+            }
+        }
+        return acumulador;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParseoCsvBenchmark.class.getSimpleName()).build()).run();
+    }
+}
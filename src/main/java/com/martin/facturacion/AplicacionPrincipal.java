@@ -1,9 +1,15 @@
 package com.martin.facturacion;
 
+import com.martin.facturacion.io.DatosReporte;
 import com.martin.facturacion.io.LectorCsv;
 import com.martin.facturacion.io.GeneradorReporte;
-import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.io.MuestreoCsv;
+import com.martin.facturacion.io.ReporteParcial;
+import com.martin.facturacion.io.ReporteTxt;
 import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.servicio.EstimacionEstadisticas;
+import com.martin.facturacion.servicio.ParcialEstadisticas;
+import com.martin.facturacion.servidor.ServidorAnalisis;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,7 +17,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -19,24 +26,57 @@ import java.util.List;
  */
 public class AplicacionPrincipal {
 
-    private static final Logger logger = LoggerFactory.getLogger(AplicacionPrincipal.class);
+    /** Salidas de {@code --combinar}: las que no necesitan los casos individuales. */
+    private static final List<String> SALIDAS_COMBINADAS = List.of("txt", "json", "log");
+
+    /**
+     * El logger se obtiene al usarse, no al cargar la clase: así los errores
+     * de uso se informan sin inicializar logback.
+     */
+    private static Logger logger() {
+        return LoggerFactory.getLogger(AplicacionPrincipal.class);
+    }
 
     public static void main(String[] args) {
 
+        // ---------------------------
+        // Modo servidor: --servidor [puerto]
+        // ---------------------------
+        if (args.length >= 1 && args[0].equals("--servidor")) {
+            iniciarServidor(args);
+            return;
+        }
+
+        // ---------------------------
+        // Combinación de resúmenes parciales: --combinar <out_dir> <parcial>...
+        // ---------------------------
+        if (args.length >= 1 && args[0].equals("--combinar")) {
+            combinar(args);
+            return;
+        }
+
         // ---------------------------
         // Validación de argumentos
         // ---------------------------
         if (args.length < 2) {
-            System.out.println("Uso: java -jar proyecto_integrador.jar <ruta_csv> <out_dir> [--ignorar-cabecera]");
+            System.out.println(OpcionesEjecucion.USO);
             return;
         }
 
-        File csv = new File(args[0]);
-        File out = new File(args[1]);
-        boolean ignorar = args.length >= 3 && "--ignorar-cabecera".equals(args[2]);
+        OpcionesEjecucion opciones;
+        try {
+            opciones = OpcionesEjecucion.parsear(args);
+            // Valida los nombres de salida antes de leer el archivo
+            GeneradorReporte.requiereCasos(opciones.getSalidas());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.out.println(OpcionesEjecucion.USO);
+            return;
+        }
 
-        List<String> errores = new ArrayList<>();
-        List<CasoPrueba> casos;
+        File csv = opciones.getCsv();
+        File out = opciones.getOutDir();
+        boolean conMenu = System.getProperty("testMode") == null && !opciones.isSinMenu();
 
         try {
             // 1) Validación adicional: el directorio de salida NO puede ser un archivo
@@ -44,43 +84,145 @@ public class AplicacionPrincipal {
                 throw new IOException("El directorio de salida no puede ser un archivo.");
             }
 
-            // 2) Leer CSV
-            casos = LectorCsv.leer(csv, errores, ignorar);
+            if (opciones.getMuestra() > 0) {
+                // Estimación rápida: solo resumen.txt, sin menú ni otras salidas
+                EstimacionEstadisticas estimacion = new MuestreoCsv(csv, opciones.isIgnorarCabecera(),
+                        opciones.getCodificacion()).estimar(opciones.getMuestra());
+                ReporteTxt.escribir(estimacion, out.toPath());
+                estimacion.lineas().forEach(System.out::println);
+                System.out.println("Reporte generado en: " + out.getAbsolutePath());
+                return;
+            }
 
-            // 3) Generar reportes
-            GeneradorReporte.generar(casos, errores, out.toPath());
+            // 2) Los casos solo se guardan si alguna salida o el menú los
+            // necesita; si no, se acumulan las estadísticas al vuelo.
+            CargaDatos carga = new CargaDatos(opciones,
+                    conMenu || GeneradorReporte.requiereCasos(opciones.getSalidas(), opciones.getOrden()));
+
+            if (!conMenu) {
+                // 3) Leer CSV y generar reportes de forma bloqueante
+                try {
+                    carga.ejecutar();
+                    informarFin(carga, out, opciones.isMetricas());
+                } finally {
+                    carga.close();
+                }
+                return;
+            }
 
-            System.out.println("Reporte generado en: " + out.getAbsolutePath());
-            logger.info("Proceso finalizado: {} casos válidos, {} errores", casos.size(), errores.size());
+            // 3) Con menú: se valida el archivo ahora, y la lectura y los
+            // reportes continúan en segundo plano mientras el menú ya responde
+            LectorCsv.validar(csv);
+            carga.iniciarEnSegundoPlano(
+                    () -> informarFin(carga, out, opciones.isMetricas()),
+                    e -> informarError(e, csv));
 
             // 4) Ejecutar menú solo en modo normal (NO en tests)
-            if (System.getProperty("testMode") == null) {
-                MenuConsola menu = new MenuConsola(casos, errores, out.toPath());
-                menu.iniciar();
+            MenuConsola menu = new MenuConsola(carga, out.toPath());
+            menu.iniciar();
+
+            CargaDatos.Etapa etapa = carga.getEtapa();
+            if (etapa == CargaDatos.Etapa.LEYENDO || etapa == CargaDatos.Etapa.GENERANDO_REPORTES) {
+                System.out.println("Esperando que termine la generación de reportes...");
             }
+            carga.esperar();
+            // Reportes y menú terminados: se liberan los casos fuera del heap
+            carga.close();
+        } catch (Exception e) {
+            informarError(e, csv);
         }
+    }
 
-        // ---------------------------
-        // Manejo de excepciones
-        // ---------------------------
-        catch (FileNotFoundException e) {
+    private static void iniciarServidor(String[] args) {
+        int puerto = ServidorAnalisis.PUERTO_POR_DEFECTO;
+        try {
+            if (args.length >= 2) {
+                puerto = Integer.parseInt(args[1]);
+            }
+            ServidorAnalisis servidor = new ServidorAnalisis(puerto, Runtime.getRuntime().availableProcessors());
+            Runtime.getRuntime().addShutdownHook(new Thread(servidor::detener, "detener-servidor"));
+            servidor.iniciar();
+            System.out.println("Servidor escuchando en http://localhost:" + servidor.getPuerto() + "/analizar");
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: Puerto inválido: " + args[1]);
+            System.out.println(OpcionesEjecucion.USO);
+        } catch (IOException e) {
+            System.err.println("ERROR: No se pudo iniciar el servidor: " + e.getMessage());
+            logger().error("Error al iniciar el servidor", e);
+        }
+    }
+
+    /**
+     * Combina los {@code resumen.parcial} indicados (archivos o carpetas de
+     * salida que los contienen) y genera los reportes agregados, incluido un
+     * nuevo {@code resumen.parcial} que se puede volver a combinar.
+     */
+    private static void combinar(String[] args) {
+        if (args.length < 3) {
+            System.out.println(OpcionesEjecucion.USO);
+            return;
+        }
+        Path out = Path.of(args[1]);
+        try {
+            ParcialEstadisticas total = null;
+            for (int i = 2; i < args.length; i++) {
+                Path archivo = Path.of(args[i]);
+                if (Files.isDirectory(archivo)) {
+                    archivo = archivo.resolve(ReporteParcial.ARCHIVO);
+                }
+                ParcialEstadisticas parcial = ReporteParcial.leer(archivo);
+                if (total == null) {
+                    total = parcial;
+                } else {
+                    total.combinar(parcial);
+                }
+            }
+            GeneradorReporte.generar(DatosReporte.para(total.estadisticas(), total.getMuestraErrores(), out)
+                    .erroresPorMotivo(total.getErroresPorMotivo()).ids(total.getIds()).armar(),
+                    SALIDAS_COMBINADAS, null);
+            // Se escribe aparte para conservar la cantidad de partes combinadas
+            ReporteParcial.escribir(total, out.resolve(ReporteParcial.ARCHIVO));
+            Files.readAllLines(out.resolve("resumen.txt")).forEach(System.out::println);
+            System.out.println("Se combinaron " + total.getPartes() + " ejecuciones. Reporte generado en: "
+                    + out.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("ERROR: No se pudieron combinar los resúmenes: " + e.getMessage());
+            logger().error("Error al combinar resúmenes parciales", e);
+        }
+    }
+
+    private static void informarFin(CargaDatos carga, File out, boolean mostrarMetricas) {
+        System.out.println("Reporte generado en: " + out.getAbsolutePath());
+        if (mostrarMetricas) {
+            carga.getMetricas().tabla().forEach(System.out::println);
+            System.out.println("(* estimado por muestreo, incluido en 'lectura')");
+        }
+        logger().info("Proceso finalizado: {} casos válidos, {} errores",
+                carga.getEstadisticas().getTotal(), carga.copiaErrores().size());
+    }
+
+    // ---------------------------
+    // Manejo de excepciones
+    // ---------------------------
+    private static void informarError(Exception e, File csv) {
+        if (e instanceof FileNotFoundException) {
             System.err.println("ERROR: El archivo CSV no existe: " + csv.getAbsolutePath());
-            logger.error("Archivo inexistente", e);
+            logger().error("Archivo inexistente", e);
         }
 
-        catch (ExcepcionFormatoCsv e) {
+        else if (e instanceof ExcepcionFormatoCsv) {
             System.err.println("ERROR: Formato de archivo inválido: " + e.getMessage());
-            logger.error("Extensión incorrecta", e);
+            logger().error("Extensión incorrecta", e);
         }
 
-        catch (IOException e) {
+        else if (e instanceof IOException) {
             System.err.println("ERROR: No se pudo leer el archivo CSV: " + e.getMessage());
-            logger.error("Error de lectura", e);
+            logger().error("Error de lectura", e);
         }
 
-        catch (Exception e) {
+        else {
             System.err.println("ERROR inesperado: " + e.getMessage());
-            logger.error("Error inesperado", e);
+            logger().error("Error inesperado", e);
         }
     }
 }
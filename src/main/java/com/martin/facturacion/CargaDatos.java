@@ -0,0 +1,461 @@
+package com.martin.facturacion;
+
+import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.io.ComparadorBaseline;
+import com.martin.facturacion.io.DatosReporte;
+import com.martin.facturacion.io.FiltroCasos;
+import com.martin.facturacion.io.GeneradorReporte;
+import com.martin.facturacion.io.HistorialEjecuciones;
+import com.martin.facturacion.io.LecturaEnEtapas;
+import com.martin.facturacion.io.LectorCsv;
+import com.martin.facturacion.io.OpcionesLectura;
+import com.martin.facturacion.io.OrdenamientoExterno;
+import com.martin.facturacion.metricas.MedicionEtapa;
+import com.martin.facturacion.metricas.MetricasEjecucion;
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.CasosFueraDeHeap;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.ComparacionHistorial;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.PresupuestoMemoria;
+import com.martin.facturacion.servicio.Regresion;
+import com.martin.facturacion.servicio.RegistroEjecucion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta la carga del CSV y la generación de reportes, ya sea en el hilo
+ * actual ({@link #ejecutar()}) o en segundo plano
+ * ({@link #iniciarEnSegundoPlano(Runnable, Consumer)}).
+ *
+ * <p>
+ * Mientras la carga avanza, otros hilos (el menú) pueden consultar:
+ * </p>
+ * <ul>
+ * <li>{@link #getEstadisticas()}: una instantánea inmutable que el hilo de
+ * carga publica cada {@link #CASOS_POR_INSTANTANEA} casos. Es parcial hasta
+ * que {@link #isLeida()} devuelve true; a partir de ahí es exactamente la
+ * misma que en una ejecución bloqueante.</li>
+ * <li>{@link #getProgreso()}: fracción del archivo ya leída.</li>
+ * <li>{@link #copiaErrores()}: los errores detectados hasta el momento.</li>
+ * </ul>
+ *
+ * <p>
+ * Los casos individuales ({@link #getCasos()}) solo se pueden usar una vez
+ * terminada la carga. Con un filtro de lectura proyectada
+ * ({@link OpcionesEjecucion#getFiltro()}) son solo los que lo cumplen; las
+ * estadísticas siempre cubren todo el archivo. Con
+ * {@link OpcionesEjecucion#isFueraDeHeap()} se guardan en un
+ * {@link CasosFueraDeHeap}, que se libera con {@link #close()}.
+ * </p>
+ *
+ * <p>
+ * Con un {@link OpcionesEjecucion#getPresupuesto() presupuesto de memoria},
+ * la lectura en etapas, la baseline y el ordenamiento reciben su parte y
+ * se adaptan a ella, y los casos se guardan en un {@link CasosFueraDeHeap}
+ * que pasa a un archivo temporal cuando el presupuesto se agota. Lo que
+ * cada etapa guardó en disco queda en las métricas.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class CargaDatos implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CargaDatos.class);
+
+    /** Cada cuántos casos se publica una nueva instantánea de estadísticas. */
+    public static final int CASOS_POR_INSTANTANEA = 50_000;
+
+    /**
+     * Solo uno de cada tantos casos se cronometra al agregarlo; el tiempo de
+     * agregación se extrapola para no pagar dos lecturas de reloj por fila.
+     */
+    static final int MUESTREO_AGREGACION = 64;
+
+    /** Fracción del heap máximo que puede ocupar la tabla de la baseline antes de particionar en disco. */
+    static final int FRACCION_HEAP_BASELINE = 4;
+
+    /** Etapas de la carga. */
+    public enum Etapa {
+        LEYENDO, GENERANDO_REPORTES, TERMINADA, FALLIDA
+    }
+
+    private final OpcionesEjecucion opciones;
+    private final boolean guardarCasos;
+
+    private final List<CasoPrueba> casos;
+    private final List<String> errores = Collections.synchronizedList(new ArrayList<>());
+    private final AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+    private final AtomicLong bytesLeidos = new AtomicLong();
+    private final long tamanioArchivo;
+    private final MetricasEjecucion metricas = new MetricasEjecucion();
+    private final PresupuestoMemoria presupuesto;
+    private ComparadorBaseline baseline;
+    private OrdenamientoExterno ordenados;
+    private List<Regresion> regresiones;
+    private ConteoIds ids;
+    private ArbolSuites suites;
+
+    // Solo los usa el hilo de carga
+    private long agregados;
+    private long muestrasAgregacion;
+    private long nanosAgregacionMuestreados;
+    private long proximaInstantanea = CASOS_POR_INSTANTANEA;
+
+    private volatile EstadisticasPruebas instantanea;
+    private volatile Etapa etapa = Etapa.LEYENDO;
+    private volatile Exception fallo;
+    private Thread hilo;
+    private boolean casosLiberados;
+
+    /**
+     * @param opciones     opciones de la ejecución
+     * @param guardarCasos si es true se conservan los casos individuales
+     */
+    public CargaDatos(OpcionesEjecucion opciones, boolean guardarCasos) {
+        this.opciones = opciones;
+        this.guardarCasos = guardarCasos;
+        this.presupuesto = opciones == null ? null : opciones.getPresupuesto();
+        if (guardarCasos && presupuesto != null) {
+            // Los objetos en una lista no se pueden medir ni pasar a disco
+            this.casos = new CasosFueraDeHeap(presupuesto);
+        } else if (guardarCasos && opciones != null && opciones.isFueraDeHeap()) {
+            this.casos = new CasosFueraDeHeap();
+        } else {
+            this.casos = new ArrayList<>();
+        }
+        metricas.setPresupuesto(presupuesto);
+        this.tamanioArchivo = opciones == null ? 0 : opciones.getCsv().length();
+        this.instantanea = acumulador.resultado();
+    }
+
+    /**
+     * Crea una carga ya terminada a partir de casos en memoria.
+     *
+     * @param casos   casos válidos
+     * @param errores errores detectados
+     * @return carga en etapa {@link Etapa#TERMINADA}
+     */
+    public static CargaDatos completada(List<CasoPrueba> casos, List<String> errores) {
+        CargaDatos carga = new CargaDatos(null, true);
+        carga.casos.addAll(casos);
+        carga.errores.addAll(errores);
+        carga.instantanea = new EstadisticasPruebas(casos);
+        carga.etapa = Etapa.TERMINADA;
+        return carga;
+    }
+
+    /**
+     * Lee el CSV y genera los reportes en el hilo actual.
+     *
+     * @throws IOException         si no se puede leer el CSV o escribir reportes
+     * @throws ExcepcionFormatoCsv si el archivo no tiene extensión .csv
+     */
+    public void ejecutar() throws IOException, ExcepcionFormatoCsv {
+        try {
+            File csv = opciones.getCsv();
+            MetricasEjecucion.Cronometro total = metricas.iniciar("total");
+
+            MetricasEjecucion.Cronometro c = metricas.iniciar("validacion");
+            LectorCsv.validar(csv);
+            c.terminar(0, 0);
+
+            if (opciones.getBaseline() != null) {
+                c = metricas.iniciar("baseline");
+                baseline = ComparadorBaseline.cargar(opciones.getBaseline(), opciones.isIgnorarCabecera(),
+                        asignar("baseline", Runtime.getRuntime().maxMemory() / FRACCION_HEAP_BASELINE),
+                        opciones.getCodificacion());
+                c.terminar(baseline.getCasosBaseline(), opciones.getBaseline().length());
+            }
+
+            if (GeneradorReporte.ordenaCasos(opciones.getSalidas(), opciones.getOrden())) {
+                ordenados = new OrdenamientoExterno(opciones.getOrden().getComparador(),
+                        asignar("orden", opciones.getMemoriaOrden()), Runtime.getRuntime().availableProcessors());
+            }
+
+            // La lectura incluye la agregación, que se informa aparte como estimación
+            c = metricas.iniciar("lectura");
+            FiltroCasos filtro = opciones.getFiltro();
+            ids = ConteoIds.paraArchivo(tamanioArchivo,
+                    asignar("ids", ConteoIds.memoriaParaArchivo(tamanioArchivo)));
+            suites = opciones.getSuites();
+            OpcionesLectura lectura = new OpcionesLectura(errores).ignorarCabecera(opciones.isIgnorarCabecera())
+                    .bytesLeidos(bytesLeidos).ids(ids).suites(suites).codificacion(opciones.getCodificacion());
+            if (filtro == null && opciones.getHilosLectura() > 0) {
+                int cola = (int) Math.max(1, asignar("lectura",
+                        (long) opciones.getColaLectura() * LecturaEnEtapas.BYTES_TROZO) / LecturaEnEtapas.BYTES_TROZO);
+                new LecturaEnEtapas(opciones.getHilosLectura(), cola).leer(csv, lectura, this::agregar);
+            } else if (filtro == null && !guardarCasos && baseline == null && ordenados == null) {
+                // Ninguna salida necesita los casos: se agrega desde los campos, sin crearlos
+                LectorCsv.acumular(csv, lectura, acumulador);
+            } else if (filtro == null) {
+                LectorCsv.leer(csv, lectura, this::agregar);
+            } else {
+                if (opciones.getHilosLectura() > 0) {
+                    logger.info("La lectura proyectada no se hace en etapas: se ignora --hilos-lectura");
+                }
+                logger.info("Lectura proyectada: solo se materializan los casos con {}", filtro);
+                LectorCsv.leer(csv, lectura, filtro, this::agregar, acumulador);
+            }
+            instantanea = acumulador.resultado();
+            c.terminar(acumulador.getTotal() + errores.size(), bytesLeidos.get());
+            if (casos instanceof CasosFueraDeHeap fuera) {
+                logger.info("{} casos fuera del heap ({}): {} MB", fuera.size(), fuera.getMemoria(),
+                        fuera.getBytesReservados() >> 20);
+            }
+            logger.info("Ids distintos: ~{}, filas posiblemente duplicadas: {} ({} KB)", ids.getIdsDistintos(),
+                    ids.getDuplicadas(), ids.getBytes() >> 10);
+            if (suites != null) {
+                logger.info("Suites: {} prefijos distintos en {} niveles", suites.getNodos() - 1,
+                        suites.getNiveles());
+            }
+            metricas.agregar(new MedicionEtapa("agregacion", nanosAgregacionEstimados(), agregados, 0, -1, true));
+            etapa = Etapa.GENERANDO_REPORTES;
+
+            Path outDir = opciones.getOutDir().toPath();
+            HistorialEjecuciones historial = null;
+            ComparacionHistorial comparacion = null;
+            RegistroEjecucion registro = RegistroEjecucion.de(instantanea, Instant.now());
+            if (opciones.getHistorial() > 0 && Files.isDirectory(outDir)) {
+                try {
+                    historial = new HistorialEjecuciones(outDir);
+                    comparacion = new ComparacionHistorial(registro, historial.ultimas(opciones.getHistorial()));
+                } catch (IOException e) {
+                    logger.warn("No se pudo leer el historial, se omite la comparación: {}", e.toString());
+                }
+            }
+
+            GeneradorReporte.generar(DatosReporte.para(instantanea, errores, outDir).casos(casos)
+                    .comparacion(comparacion).orden(opciones.getOrden(), ordenados).ids(ids).suites(suites)
+                    .maxFallidosPdf(opciones.getMaxFallidosPdf()).armar(),
+                    opciones.getSalidas(), metricas);
+
+            if (baseline != null) {
+                c = metricas.iniciar("regresiones");
+                regresiones = baseline.terminar();
+                ComparadorBaseline.escribir(regresiones, outDir.resolve(ComparadorBaseline.ARCHIVO));
+                c.terminar(baseline.getComparados(), 0);
+            }
+
+            if (presupuesto != null) {
+                if (baseline != null) {
+                    presupuesto.derramar("baseline", baseline.getBytesEnDisco());
+                }
+                if (ordenados != null) {
+                    presupuesto.derramar("orden", ordenados.getBytesEnDisco());
+                }
+                logger.info("Memoria: {} de {} MB usados, {} MB guardados en disco", presupuesto.getUsado() >> 20,
+                        presupuesto.getLimite() >> 20, presupuesto.getDerramado() >> 20);
+            }
+
+            if (opciones.getHistorial() > 0) {
+                // El historial es un extra: si falla, los reportes de esta ejecución siguen valiendo
+                try {
+                    (historial != null ? historial : new HistorialEjecuciones(outDir)).agregar(registro);
+                } catch (IOException e) {
+                    logger.warn("No se pudo agregar la ejecución al historial: {}", e.toString());
+                }
+            }
+
+            total.terminar(acumulador.getTotal() + errores.size(), bytesLeidos.get());
+            metricas.escribirJson(outDir.resolve(MetricasEjecucion.ARCHIVO));
+            etapa = Etapa.TERMINADA;
+
+        } catch (IOException | ExcepcionFormatoCsv | RuntimeException e) {
+            cerrar(baseline, e);
+            cerrar(ordenados, e);
+            close();
+            fallo = e;
+            etapa = Etapa.FALLIDA;
+            throw e;
+        }
+    }
+
+    /**
+     * Libera los casos fuera del heap: la memoria nativa y el archivo
+     * temporal del derrame. Se llama cuando ya terminaron los reportes y el
+     * menú; después {@link #getCasos()} no se puede usar. Con los casos en el
+     * heap, o si ya se liberaron, no hace nada.
+     */
+    @Override
+    public synchronized void close() {
+        if (!casosLiberados && casos instanceof CasosFueraDeHeap fuera) {
+            fuera.close();
+        }
+        casosLiberados = true;
+    }
+
+    /**
+     * @return la parte de {@code pedido} que le toca a la etapa dentro del
+     *         presupuesto, o {@code pedido} si no hay presupuesto
+     */
+    private long asignar(String etapa, long pedido) {
+        return presupuesto == null ? pedido : presupuesto.asignar(etapa, pedido);
+    }
+
+    /** Libera archivos temporales tras un fallo, sin tapar la excepción original. */
+    private static void cerrar(Closeable recurso, Exception fallo) {
+        if (recurso == null) {
+            return;
+        }
+        try {
+            recurso.close();
+        } catch (IOException e) {
+            fallo.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Ejecuta {@link #ejecutar()} en un hilo aparte y vuelve enseguida.
+     *
+     * @param alTerminar se invoca en el hilo de carga si todo salió bien
+     * @param alFallar   se invoca en el hilo de carga con la excepción si falló
+     */
+    public void iniciarEnSegundoPlano(Runnable alTerminar, Consumer<Exception> alFallar) {
+        hilo = new Thread(() -> {
+            try {
+                ejecutar();
+                alTerminar.run();
+            } catch (Exception e) {
+                alFallar.accept(e);
+            }
+        }, "carga-csv");
+        hilo.start();
+    }
+
+    /**
+     * Espera a que termine la carga en segundo plano (si se inició).
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public void esperar() throws InterruptedException {
+        if (hilo != null) {
+            hilo.join();
+        }
+    }
+
+    private void agregar(CasoPrueba c) {
+        if (agregados++ % MUESTREO_AGREGACION == 0) {
+            long t0 = System.nanoTime();
+            agregarCaso(c);
+            nanosAgregacionMuestreados += System.nanoTime() - t0;
+            muestrasAgregacion++;
+        } else {
+            agregarCaso(c);
+        }
+    }
+
+    private long nanosAgregacionEstimados() {
+        return muestrasAgregacion == 0 ? 0 : nanosAgregacionMuestreados * agregados / muestrasAgregacion;
+    }
+
+    private void agregarCaso(CasoPrueba c) {
+        if (guardarCasos) {
+            casos.add(c);
+        }
+        acumulador.agregar(c);
+        if (baseline != null) {
+            baseline.comparar(c);
+        }
+        if (ordenados != null) {
+            ordenados.agregar(c);
+        }
+
+        // En la lectura proyectada el acumulador también avanza sin pasar por acá
+        if (acumulador.getTotal() >= proximaInstantanea) {
+            instantanea = acumulador.resultado();
+            proximaInstantanea = acumulador.getTotal() + CASOS_POR_INSTANTANEA;
+        }
+    }
+
+    // =======================================
+    // CONSULTAS (seguras desde otros hilos)
+    // =======================================
+
+    public Etapa getEtapa() {
+        return etapa;
+    }
+
+    /** @return true si el CSV ya se leyó por completo (estadísticas finales) */
+    public boolean isLeida() {
+        Etapa e = etapa;
+        return e == Etapa.GENERANDO_REPORTES || e == Etapa.TERMINADA;
+    }
+
+    /** @return tiempos por etapa; completos una vez terminada la carga */
+    public MetricasEjecucion getMetricas() {
+        return metricas;
+    }
+
+    /** @return regresiones contra la baseline, o null si no se pidió {@code --baseline} */
+    public List<Regresion> getRegresiones() {
+        return regresiones;
+    }
+
+    public Exception getFallo() {
+        return fallo;
+    }
+
+    /** @return estadísticas finales, o una instantánea parcial si la carga sigue */
+    public EstadisticasPruebas getEstadisticas() {
+        return instantanea;
+    }
+
+    /** @return fracción del archivo leída, entre 0 y 1 */
+    public double getProgreso() {
+        if (isLeida()) {
+            return 1.0;
+        }
+        return tamanioArchivo == 0 ? 0.0 : Math.min(1.0, (double) bytesLeidos.get() / tamanioArchivo);
+    }
+
+    /**
+     * Estadísticas por suite, disponibles una vez leído todo el archivo.
+     *
+     * @return el árbol, o null si no se pidió {@code --por-suite} o la carga
+     *         todavía no terminó de leer
+     */
+    public ArbolSuites getSuites() {
+        return isLeida() ? suites : null;
+    }
+
+    /** @return copia de los errores detectados hasta el momento */
+    public List<String> copiaErrores() {
+        synchronized (errores) {
+            return new ArrayList<>(errores);
+        }
+    }
+
+    /**
+     * Casos individuales. Solo debe llamarse con la carga leída por completo.
+     *
+     * @return lista de casos válidos
+     * @throws IllegalStateException si la carga todavía no terminó de leer o
+     *                               los casos ya se liberaron con {@link #close()}
+     */
+    public synchronized List<CasoPrueba> getCasos() {
+        if (!isLeida()) {
+            throw new IllegalStateException("La carga todavía no terminó");
+        }
+        if (casosLiberados) {
+            throw new IllegalStateException("Los casos ya se liberaron");
+        }
+        return casos;
+    }
+}
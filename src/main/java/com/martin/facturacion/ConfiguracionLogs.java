@@ -0,0 +1,64 @@
+package com.martin.facturacion;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.Configurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.spi.ContextAwareBase;
+
+import org.slf4j.Logger;
+
+/**
+ * Configuración de logback hecha en código, registrada en
+ * {@code META-INF/services/ch.qos.logback.classic.spi.Configurator}.
+ *
+ * <p>
+ * Equivale al antiguo {@code logback.xml} (consola, nivel INFO), pero evita
+ * cargar el parser XML de logback (Joran) y Xerces en cada arranque, que en
+ * archivos chicos era una parte visible del tiempo total.
+ * </p>
+ *
+ * <p>
+ * Si se indica {@code -Dlogback.configurationFile=...} o hay un
+ * {@code logback.xml} / {@code logback-test.xml} en el classpath, esta
+ * clase no hace nada y logback sigue con su configuración habitual.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ConfiguracionLogs extends ContextAwareBase implements Configurator {
+
+    static final String PATRON = "%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n";
+
+    @Override
+    public ExecutionStatus configure(LoggerContext contexto) {
+        if (System.getProperty("logback.configurationFile") != null
+                || recurso("logback-test.xml") || recurso("logback.xml")) {
+            return ExecutionStatus.INVOKE_NEXT_IF_ANY;
+        }
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(contexto);
+        encoder.setPattern(PATRON);
+        encoder.start();
+
+        ConsoleAppender<ILoggingEvent> consola = new ConsoleAppender<>();
+        consola.setContext(contexto);
+        consola.setName("STDOUT");
+        consola.setEncoder(encoder);
+        consola.start();
+
+        ch.qos.logback.classic.Logger raiz = contexto.getLogger(Logger.ROOT_LOGGER_NAME);
+        raiz.setLevel(Level.INFO);
+        raiz.addAppender(consola);
+
+        return ExecutionStatus.DO_NOT_INVOKE_NEXT_IF_ANY;
+    }
+
+    private static boolean recurso(String nombre) {
+        return ConfiguracionLogs.class.getClassLoader().getResource(nombre) != null;
+    }
+}
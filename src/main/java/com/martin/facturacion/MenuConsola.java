@@ -1,7 +1,10 @@
 package com.martin.facturacion;
 
 import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
 import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.IndiceCasos;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,18 +23,44 @@ import java.util.Scanner;
  * 3) Tiempo total de ejecución
  * 4) Mostrar errores detectados en el CSV
  * 5) Abrir carpeta de reportes
+ * 6) Consultar casos por estado y rango de tiempo
+ * 7) Buscar casos por prefijo de id
+ * 8) Explorar estadísticas por suite (con --por-suite)
  * 0) Salir
+ *
+ * Las consultas 6 y 7 usan un {@link IndiceCasos} que se construye la primera
+ * vez que se necesita y muestran los resultados paginados.
+ *
+ * El menú puede iniciarse mientras la carga del CSV sigue en segundo plano
+ * (ver {@link CargaDatos}). En ese caso las opciones 1 a 4 responden con una
+ * instantánea parcial, marcada como [PARCIAL xx%], y las consultas 6 y 7
+ * quedan disponibles al terminar la lectura, igual que la exploración por
+ * suite (opción 8).
  */
 public class MenuConsola {
 
-    private final List<CasoPrueba> casos;
-    private final List<String> errores;
+    private final CargaDatos carga;
     private final Path outDir;
     private final Scanner scanner;
 
+    /** Cantidad de casos que se muestran por página en las consultas. */
+    private static final int TAMANIO_PAGINA = 20;
+
+    /** Índices para consultas; se construyen al usarlos por primera vez. */
+    private IndiceCasos indice;
+
     public MenuConsola(List<CasoPrueba> casos, List<String> errores, Path outDir) {
-        this.casos = casos;
-        this.errores = errores;
+        this(CargaDatos.completada(casos, errores), outDir);
+    }
+
+    /**
+     * Crea un menú sobre una carga que puede seguir en curso.
+     *
+     * @param carga  carga del CSV (terminada o en segundo plano)
+     * @param outDir carpeta de reportes
+     */
+    public MenuConsola(CargaDatos carga, Path outDir) {
+        this.carga = carga;
         this.outDir = outDir;
         this.scanner = new Scanner(System.in);
     }
@@ -52,6 +81,9 @@ public class MenuConsola {
                 case 3 -> mostrarTiempoTotal();
                 case 4 -> mostrarErrores();
                 case 5 -> abrirCarpetaReportes();
+                case 6 -> consultarPorEstadoYTiempo();
+                case 7 -> buscarPorPrefijo();
+                case 8 -> explorarSuites();
                 case 0 -> System.out.println("Saliendo del menú...");
                 default -> System.out.println("Opción inválida, intente nuevamente.");
             }
@@ -64,12 +96,16 @@ public class MenuConsola {
     private void mostrarMenu() {
         System.out.println("========================================");
         System.out.println("        MENÚ DE ESTADÍSTICAS");
+        System.out.println(estadoCarga());
         System.out.println("========================================");
         System.out.println("1) Mostrar cantidad total de casos");
         System.out.println("2) Mostrar cantidad por estado");
         System.out.println("3) Mostrar tiempo total de ejecución");
         System.out.println("4) Mostrar errores detectados");
         System.out.println("5) Abrir carpeta de reportes");
+        System.out.println("6) Consultar por estado y rango de tiempo");
+        System.out.println("7) Buscar por prefijo de id");
+        System.out.println("8) Explorar por suite");
         System.out.println("0) Salir");
         System.out.println("========================================");
     }
@@ -84,36 +120,61 @@ public class MenuConsola {
         return scanner.nextInt();
     }
 
+    private String leerTexto(String mensaje) {
+        System.out.print(mensaje);
+        return scanner.next().trim();
+    }
+
+    /** Lee un número decimal; "-" significa "sin límite" y devuelve el valor indicado. */
+    private double leerDecimal(String mensaje, double sinLimite) {
+        while (true) {
+            String texto = leerTexto(mensaje);
+            if (texto.equals("-")) {
+                return sinLimite;
+            }
+            try {
+                return Double.parseDouble(texto);
+            } catch (NumberFormatException e) {
+                System.out.println("Debe ingresar un número válido o '-'.");
+            }
+        }
+    }
+
     // =======================================
     // OPCIONES DEL MENÚ
     // =======================================
 
     private void mostrarCantidadTotal() {
-        System.out.println("Cantidad total de casos: " + casos.size());
+        System.out.println(etiquetaParcial() + "Cantidad total de casos: " + carga.getEstadisticas().getTotal());
     }
 
     private void mostrarCantidadPorEstado() {
-        var estadisticas = new EstadisticasPruebas(casos);
+        EstadisticasPruebas estadisticas = carga.getEstadisticas();
 
+        String etiqueta = etiquetaParcial();
+        if (!etiqueta.isEmpty()) {
+            System.out.println(etiqueta);
+        }
         System.out.println("PASSED : " + estadisticas.contarPassed());
         System.out.println("FAILED : " + estadisticas.contarFailed());
         System.out.println("SKIPPED: " + estadisticas.contarSkipped());
     }
 
     private void mostrarTiempoTotal() {
-        var estadisticas = new EstadisticasPruebas(casos);
-        double total = estadisticas.tiempoTotal();
+        double total = carga.getEstadisticas().tiempoTotal();
 
-        System.out.printf("Tiempo total de ejecución: %.2f segundos\n", total);
+        System.out.printf("%sTiempo total de ejecución: %.2f segundos\n", etiquetaParcial(), total);
     }
 
     private void mostrarErrores() {
+        List<String> errores = carga.copiaErrores();
+
         if (errores.isEmpty()) {
-            System.out.println("No se detectaron errores en el CSV.");
+            System.out.println(etiquetaParcial() + "No se detectaron errores en el CSV.");
             return;
         }
 
-        System.out.println("Errores detectados:");
+        System.out.println(etiquetaParcial() + "Errores detectados:");
         errores.forEach(e -> System.out.println(" - " + e));
     }
 
@@ -134,4 +195,161 @@ public class MenuConsola {
             System.out.println("No se pudo abrir la carpeta automáticamente.");
         }
     }
+
+    private void consultarPorEstadoYTiempo() {
+        if (!consultasDisponibles()) {
+            return;
+        }
+
+        String textoEstado = leerTexto("Estado (PASSED/FAILED/SKIPPED, '*' para todos): ");
+        EstadoPrueba estado = null;
+        if (!textoEstado.equals("*")) {
+            estado = EstadoPrueba.fromString(textoEstado);
+            if (estado == null) {
+                System.out.println("Estado inválido.");
+                return;
+            }
+        }
+
+        double desde = leerDecimal("Tiempo mínimo en segundos ('-' sin mínimo): ", Double.NEGATIVE_INFINITY);
+        double hasta = leerDecimal("Tiempo máximo en segundos ('-' sin máximo): ", Double.POSITIVE_INFINITY);
+
+        long inicio = System.nanoTime();
+        List<CasoPrueba> resultado = obtenerIndice().porTiempo(estado, desde, hasta);
+        mostrarPaginado(resultado, inicio);
+    }
+
+    private void buscarPorPrefijo() {
+        if (!consultasDisponibles()) {
+            return;
+        }
+
+        String prefijo = leerTexto("Prefijo de idTest: ");
+
+        long inicio = System.nanoTime();
+        List<CasoPrueba> resultado = obtenerIndice().porPrefijoId(prefijo);
+        mostrarPaginado(resultado, inicio);
+    }
+
+    /**
+     * Recorre el árbol de suites desde la raíz: muestra el nivel actual y
+     * sus hijos, y se baja escribiendo el nombre de un hijo.
+     */
+    private void explorarSuites() {
+        if (!consultasDisponibles()) {
+            return;
+        }
+        ArbolSuites suites = carga.getSuites();
+        if (suites == null) {
+            System.out.println("Ejecute con --por-suite para agrupar los casos por suite.");
+            return;
+        }
+
+        ArbolSuites.Suite actual = suites.getRaiz();
+        while (true) {
+            System.out.println(actual.getNivel() == 0 ? "Todas las suites" : "Suite " + actual.getRuta());
+            System.out.println(" " + resumenSuite(actual));
+            for (ArbolSuites.Suite hijo : actual.getHijos()) {
+                System.out.println(" - " + hijo.getNombre() + ": " + resumenSuite(hijo));
+            }
+            long sinSubgrupo = actual.getSinSubgrupo();
+            if (sinSubgrupo > 0 && !actual.getHijos().isEmpty()) {
+                System.out.println(" - (sin " + (actual.getNivel() == 0 ? "suite" : "subgrupo") + "): "
+                        + sinSubgrupo + " casos");
+            }
+
+            String resp = leerTexto("Nombre para bajar, '..' para subir, 'q' para terminar: ");
+            if (resp.equalsIgnoreCase("q")) {
+                return;
+            }
+            if (resp.equals("..")) {
+                if (actual.getPadre() != null) {
+                    actual = actual.getPadre();
+                }
+                continue;
+            }
+            ArbolSuites.Suite hijo = actual.getHijo(resp);
+            if (hijo == null) {
+                System.out.println("No existe " + resp + " en este nivel.");
+            } else {
+                actual = hijo;
+            }
+        }
+    }
+
+    private static String resumenSuite(ArbolSuites.Suite s) {
+        StringBuilder sb = new StringBuilder().append(s.getTotal()).append(" casos");
+        for (EstadoPrueba e : EstadoPrueba.values()) {
+            sb.append(", ").append(e).append(' ').append(s.getConteo(e));
+        }
+        return sb.append(String.format(", tiempo %.3f (prom. %.3f, máx. %.3f)", s.getTiempoTotal(),
+                s.getTiempoPromedio(), s.getTiempoMaximo())).toString();
+    }
+
+    private IndiceCasos obtenerIndice() {
+        if (indice == null) {
+            System.out.println("Construyendo índices (solo la primera vez)...");
+            indice = new IndiceCasos(carga.getCasos());
+        }
+        return indice;
+    }
+
+    /** Muestra los resultados de a {@link #TAMANIO_PAGINA} casos. */
+    private void mostrarPaginado(List<CasoPrueba> resultado, long inicioNanos) {
+        double ms = (System.nanoTime() - inicioNanos) / 1_000_000.0;
+        System.out.printf("%d casos encontrados (%.1f ms)%n", resultado.size(), ms);
+
+        for (int desde = 0; desde < resultado.size(); desde += TAMANIO_PAGINA) {
+            int hasta = Math.min(desde + TAMANIO_PAGINA, resultado.size());
+            for (int i = desde; i < hasta; i++) {
+                System.out.println(" - " + resultado.get(i));
+            }
+
+            if (hasta < resultado.size()) {
+                String resp = leerTexto(String.format("[%d-%d de %d] 's' siguiente, 'q' terminar: ",
+                        desde + 1, hasta, resultado.size()));
+                if (!resp.equalsIgnoreCase("s")) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // =======================================
+    // ESTADO DE LA CARGA
+    // =======================================
+
+    /** Texto vacío si la carga terminó; "[PARCIAL xx%] " si sigue en curso. */
+    private String etiquetaParcial() {
+        return carga.isLeida() ? "" : String.format("[PARCIAL %.0f%%] ", carga.getProgreso() * 100);
+    }
+
+    private String estadoCarga() {
+        return switch (carga.getEtapa()) {
+            case LEYENDO -> String.format("Carga: %s %.0f%% (%d casos leídos)",
+                    barraProgreso(carga.getProgreso()), carga.getProgreso() * 100,
+                    carga.getEstadisticas().getTotal());
+            case GENERANDO_REPORTES -> "Carga: lectura completa, generando reportes...";
+            case TERMINADA -> "Carga: completa";
+            case FALLIDA -> "Carga: FALLIDA (" + carga.getFallo().getMessage() + ")";
+        };
+    }
+
+    private static String barraProgreso(double fraccion) {
+        int llenos = (int) Math.round(fraccion * 20);
+        return "[" + "#".repeat(llenos) + ".".repeat(20 - llenos) + "]";
+    }
+
+    /** Las consultas indexadas necesitan todos los casos cargados. */
+    private boolean consultasDisponibles() {
+        if (carga.isLeida()) {
+            return true;
+        }
+        if (carga.getEtapa() == CargaDatos.Etapa.FALLIDA) {
+            System.out.println("La carga falló; no hay casos para consultar.");
+        } else {
+            System.out.printf("Disponible cuando termine la carga (%.0f%% leído).%n", carga.getProgreso() * 100);
+        }
+        return false;
+    }
 }
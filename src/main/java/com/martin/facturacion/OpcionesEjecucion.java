@@ -0,0 +1,367 @@
+package com.martin.facturacion;
+
+import com.martin.facturacion.io.FiltroCasos;
+import com.martin.facturacion.io.GeneradorReporte;
+import com.martin.facturacion.io.LectorCsv;
+import com.martin.facturacion.io.LecturaEnEtapas;
+import com.martin.facturacion.io.OrdenResumen;
+import com.martin.facturacion.io.OrdenamientoExterno;
+import com.martin.facturacion.io.ReportePdf;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.PresupuestoMemoria;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Opciones de línea de comandos de {@link AplicacionPrincipal}.
+ *
+ * <pre>
+ * &lt;ruta_csv&gt; &lt;out_dir&gt; [--ignorar-cabecera]
+ *                       [--salidas txt,csv,log,json,xlsx,pdf,ndjson,parcial,suites] [--xlsx] [--pdf]
+ *                       [--sin-menu] [--metricas] [--historial N]
+ *                       [--baseline ruta_csv] [--orden entrada|tiempo|id] [--memoria-orden MB]
+ *                       [--solo-estados FAILED,...] [--prefijo-id P] [--tiempo-min S] [--fuera-de-heap]
+ *                       [--muestra ERROR] [--parcial] [--hilos-lectura N] [--cola-lectura N]
+ *                       [--por-suite] [--separador-suite CARACTERES] [--niveles-suite N] [--suite-por-nombre]
+ *                       [--memoria-maxima MB] [--codificacion utf-8|latin1|...] [--max-fallidos-pdf N]
+ * --servidor [puerto]
+ * --combinar &lt;out_dir&gt; &lt;parcial&gt;...
+ * </pre>
+ *
+ * <p>
+ * {@code --salidas} reemplaza las salidas por defecto; {@code --xlsx} y
+ * {@code --pdf} las agregan a las ya seleccionadas, igual que
+ * {@code --parcial} con {@code resumen.parcial} y {@code --por-suite} con
+ * {@code por_suite.csv}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class OpcionesEjecucion {
+
+    /** Solo hace falta ante opciones desconocidas; se pide recién entonces. */
+    private static Logger logger() {
+        return LoggerFactory.getLogger(OpcionesEjecucion.class);
+    }
+
+    /** Texto de ayuda que se muestra ante argumentos inválidos. */
+    public static final String USO = "Uso: java -jar proyecto_integrador.jar <ruta_csv> <out_dir>"
+            + " [--ignorar-cabecera] [--salidas txt,csv,log,json,xlsx,pdf,ndjson,parcial,suites]"
+            + " [--xlsx] [--pdf] [--sin-menu] [--metricas] [--historial N] [--baseline ruta_csv] [--orden entrada|tiempo|id] [--memoria-orden MB]"
+            + " [--solo-estados FAILED,...] [--prefijo-id P] [--tiempo-min S] [--fuera-de-heap] [--muestra ERROR]"
+            + " [--parcial] [--hilos-lectura N] [--cola-lectura N] [--por-suite] [--separador-suite CARACTERES]"
+            + " [--niveles-suite N] [--suite-por-nombre] [--memoria-maxima MB] [--codificacion utf-8|latin1|...]"
+            + " [--max-fallidos-pdf N]"
+            + System.lineSeparator()
+            + "     java -jar proyecto_integrador.jar --servidor [puerto]"
+            + System.lineSeparator()
+            + "     java -jar proyecto_integrador.jar --combinar <out_dir> <parcial>...";
+
+    /** Ejecuciones anteriores contra las que se compara por defecto. */
+    public static final int HISTORIAL_POR_DEFECTO = 5;
+
+    private File csv;
+    private File outDir;
+    private boolean ignorarCabecera;
+    private boolean sinMenu;
+    private boolean metricas;
+    private int historial = HISTORIAL_POR_DEFECTO;
+    private File baseline;
+    private OrdenResumen orden = OrdenResumen.ENTRADA;
+    private long memoriaOrden = OrdenamientoExterno.presupuestoPorDefecto();
+    private PresupuestoMemoria presupuesto;
+    private Charset codificacion = StandardCharsets.UTF_8;
+    private int maxFallidosPdf = ReportePdf.MAX_FALLIDOS;
+    private final Set<EstadoPrueba> soloEstados = EnumSet.noneOf(EstadoPrueba.class);
+    private String prefijoId;
+    private double tiempoMinimo;
+    private boolean fueraDeHeap;
+    private double muestra;
+    private int hilosLectura;
+    private int colaLectura;
+    private String separadorSuite = ArbolSuites.SEPARADOR_POR_DEFECTO;
+    private int nivelesSuite = ArbolSuites.NIVELES_POR_DEFECTO;
+    private boolean suitePorNombre;
+    private final Set<String> salidas = new LinkedHashSet<>(GeneradorReporte.SALIDAS_POR_DEFECTO);
+
+    private OpcionesEjecucion() {
+    }
+
+    /**
+     * Interpreta los argumentos recibidos por {@code main}.
+     *
+     * @param args argumentos de la línea de comandos (al menos dos)
+     * @return opciones interpretadas
+     * @throws IllegalArgumentException si falta el valor de una opción
+     */
+    public static OpcionesEjecucion parsear(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Faltan argumentos obligatorios.");
+        }
+
+        OpcionesEjecucion o = new OpcionesEjecucion();
+        o.csv = new File(args[0]);
+        o.outDir = new File(args[1]);
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ignorar-cabecera" -> o.ignorarCabecera = true;
+                case "--sin-menu" -> o.sinMenu = true;
+                case "--metricas" -> o.metricas = true;
+                case "--historial" -> o.historial = entero(valor(args, ++i, "--historial"), "--historial");
+                case "--baseline" -> o.baseline = new File(valor(args, ++i, "--baseline"));
+                case "--orden" -> o.orden = OrdenResumen.desde(valor(args, ++i, "--orden"));
+                case "--memoria-orden" ->
+                    o.memoriaOrden = entero(valor(args, ++i, "--memoria-orden"), "--memoria-orden") * 1024L * 1024L;
+                case "--memoria-maxima" -> {
+                    long memoriaMaxima = entero(valor(args, ++i, "--memoria-maxima"), "--memoria-maxima") * 1024L * 1024L;
+                    if (memoriaMaxima == 0) {
+                        throw new IllegalArgumentException("La opción --memoria-maxima requiere al menos 1 MB.");
+                    }
+                    o.presupuesto = new PresupuestoMemoria(memoriaMaxima);
+                }
+                case "--codificacion" -> o.codificacion = codificacion(valor(args, ++i, "--codificacion"));
+                case "--max-fallidos-pdf" ->
+                    o.maxFallidosPdf = entero(valor(args, ++i, "--max-fallidos-pdf"), "--max-fallidos-pdf");
+                case "--solo-estados" -> {
+                    for (String e : valor(args, ++i, "--solo-estados").split(",")) {
+                        EstadoPrueba estado = EstadoPrueba.fromString(e);
+                        if (estado == null) {
+                            throw new IllegalArgumentException("Estado desconocido en --solo-estados: " + e);
+                        }
+                        o.soloEstados.add(estado);
+                    }
+                }
+                case "--prefijo-id" -> o.prefijoId = valor(args, ++i, "--prefijo-id");
+                case "--tiempo-min" -> o.tiempoMinimo = decimal(valor(args, ++i, "--tiempo-min"), "--tiempo-min");
+                case "--fuera-de-heap" -> o.fueraDeHeap = true;
+                case "--muestra" -> {
+                    o.muestra = decimal(valor(args, ++i, "--muestra"), "--muestra");
+                    if (o.muestra <= 0) {
+                        throw new IllegalArgumentException("La opción --muestra requiere un error mayor que 0.");
+                    }
+                }
+                case "--hilos-lectura" -> {
+                    o.hilosLectura = entero(valor(args, ++i, "--hilos-lectura"), "--hilos-lectura");
+                    if (o.hilosLectura == 0) {
+                        throw new IllegalArgumentException("La opción --hilos-lectura requiere al menos 1 hilo.");
+                    }
+                }
+                case "--cola-lectura" -> {
+                    o.colaLectura = entero(valor(args, ++i, "--cola-lectura"), "--cola-lectura");
+                    if (o.colaLectura == 0) {
+                        throw new IllegalArgumentException("La opción --cola-lectura requiere al menos 1 trozo.");
+                    }
+                }
+                case "--xlsx" -> o.salidas.add("xlsx");
+                case "--pdf" -> o.salidas.add("pdf");
+                case "--parcial" -> o.salidas.add("parcial");
+                case "--por-suite" -> o.salidas.add("suites");
+                case "--separador-suite" -> {
+                    o.separadorSuite = valor(args, ++i, "--separador-suite");
+                    if (o.separadorSuite.isEmpty() || !o.separadorSuite.chars().allMatch(ch -> ch < 128)) {
+                        throw new IllegalArgumentException(
+                                "La opción --separador-suite requiere uno o más caracteres ASCII.");
+                    }
+                }
+                case "--niveles-suite" -> {
+                    o.nivelesSuite = entero(valor(args, ++i, "--niveles-suite"), "--niveles-suite");
+                    if (o.nivelesSuite == 0) {
+                        throw new IllegalArgumentException("La opción --niveles-suite requiere al menos 1 nivel.");
+                    }
+                }
+                case "--suite-por-nombre" -> o.suitePorNombre = true;
+                case "--salidas" -> {
+                    String valor = valor(args, ++i, "--salidas");
+                    o.salidas.clear();
+                    Arrays.stream(valor.split(","))
+                            .map(String::trim)
+                            .filter(s -> !s.isEmpty())
+                            .forEach(o.salidas::add);
+                }
+                default -> logger().warn("Opción desconocida ignorada: {}", args[i]);
+            }
+        }
+
+        return o;
+    }
+
+    private static String valor(String[] args, int i, String opcion) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("La opción " + opcion + " requiere un valor.");
+        }
+        return args[i];
+    }
+
+    private static int entero(String valor, String opcion) {
+        try {
+            int n = Integer.parseInt(valor);
+            if (n < 0) {
+                throw new NumberFormatException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La opción " + opcion + " requiere un entero no negativo: " + valor);
+        }
+    }
+
+    private static double decimal(String valor, String opcion) {
+        try {
+            double d = Double.parseDouble(valor);
+            if (!(d >= 0) || Double.isInfinite(d)) {
+                throw new NumberFormatException();
+            }
+            return d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La opción " + opcion + " requiere un número no negativo: " + valor);
+        }
+    }
+
+    /** Acepta los nombres y alias de Java ({@code latin1}, {@code cp1252}...). */
+    private static Charset codificacion(String valor) {
+        Charset c;
+        try {
+            c = Charset.forName(valor);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("Codificación desconocida en --codificacion: " + valor);
+        }
+        if (!LectorCsv.admiteCodificacion(c)) {
+            throw new IllegalArgumentException("La codificación " + c.name()
+                    + " no es compatible con ASCII; use UTF-8, ISO-8859-1 u otra que escriba ASCII en un byte.");
+        }
+        return c;
+    }
+
+    public File getCsv() {
+        return csv;
+    }
+
+    public File getOutDir() {
+        return outDir;
+    }
+
+    public boolean isIgnorarCabecera() {
+        return ignorarCabecera;
+    }
+
+    public boolean isSinMenu() {
+        return sinMenu;
+    }
+
+    /** @return true si al terminar se muestran los tiempos por etapa */
+    public boolean isMetricas() {
+        return metricas;
+    }
+
+    /** @return ejecuciones anteriores a comparar; 0 desactiva el historial */
+    public int getHistorial() {
+        return historial;
+    }
+
+    /** @return CSV de referencia contra el que se buscan regresiones, o null */
+    public File getBaseline() {
+        return baseline;
+    }
+
+    /** @return orden de las filas de resumen.csv */
+    public OrdenResumen getOrden() {
+        return orden;
+    }
+
+    /** @return memoria en bytes que puede usar el ordenamiento de resumen.csv */
+    public long getMemoriaOrden() {
+        return memoriaOrden;
+    }
+
+    /**
+     * @return el presupuesto de {@code --memoria-maxima}, o null si la
+     *         ejecución no tiene límite
+     */
+    public PresupuestoMemoria getPresupuesto() {
+        return presupuesto;
+    }
+
+    /** @return codificación del CSV y de la baseline: {@code --codificacion}, o UTF-8 */
+    public Charset getCodificacion() {
+        return codificacion;
+    }
+
+    /**
+     * @return casos FAILED que se detallan en {@code resumen.pdf}:
+     *         {@code --max-fallidos-pdf}, o {@link ReportePdf#MAX_FALLIDOS};
+     *         0 es sin límite
+     */
+    public int getMaxFallidosPdf() {
+        return maxFallidosPdf;
+    }
+
+    /**
+     * @return filtro de la lectura proyectada, o null si no se pidió ninguno
+     *         de {@code --solo-estados}, {@code --prefijo-id} o
+     *         {@code --tiempo-min}
+     */
+    public FiltroCasos getFiltro() {
+        if (soloEstados.isEmpty() && prefijoId == null && tiempoMinimo == 0) {
+            return null;
+        }
+        return new FiltroCasos(soloEstados, prefijoId, tiempoMinimo);
+    }
+
+    /** @return true si los casos individuales se guardan fuera del heap */
+    public boolean isFueraDeHeap() {
+        return fueraDeHeap;
+    }
+
+    /**
+     * @return error máximo pedido para la estimación por muestreo, en puntos
+     *         porcentuales, o 0 si se lee el archivo completo
+     */
+    public double getMuestra() {
+        return muestra;
+    }
+
+    /**
+     * @return hilos de parseo de la lectura en etapas, o 0 si se lee en un
+     *         solo hilo
+     */
+    public int getHilosLectura() {
+        return hilosLectura;
+    }
+
+    /**
+     * @return trozos de {@link LecturaEnEtapas#BYTES_TROZO} que la lectura en
+     *         etapas puede tener en vuelo: {@code --cola-lectura}, o
+     *         {@link LecturaEnEtapas#TROZOS_POR_HILO} por hilo de parseo
+     */
+    public int getColaLectura() {
+        return colaLectura > 0 ? colaLectura : LecturaEnEtapas.TROZOS_POR_HILO * hilosLectura;
+    }
+
+    /**
+     * @return un árbol vacío para agrupar por suite durante la lectura, o
+     *         null si no se pidió la salida {@code suites}
+     */
+    public ArbolSuites getSuites() {
+        if (!salidas.contains("suites")) {
+            return null;
+        }
+        return new ArbolSuites(separadorSuite, nivelesSuite, suitePorNombre);
+    }
+
+    public Set<String> getSalidas() {
+        return salidas;
+    }
+}
@@ -0,0 +1,110 @@
+package com.martin.facturacion.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cola acotada sin locks para varios productores y varios consumidores,
+ * sobre un arreglo circular (el algoritmo de D. Vyukov).
+ *
+ * <p>
+ * Cada casillero tiene un número de secuencia que dice de quién es el
+ * turno: vale {@code p} cuando está libre para el productor de la posición
+ * {@code p}, y {@code p + 1} cuando ya tiene el elemento para el consumidor
+ * de esa posición. Productores y consumidores solo compiten por un CAS
+ * sobre su índice ({@code cola} o {@code cabeza}); nunca se bloquean entre
+ * sí.
+ * </p>
+ *
+ * <p>
+ * {@link #ofrecer(Object)} y {@link #tomar()} no esperan: si la cola está
+ * llena o vacía devuelven false o null, y quien llama decide cómo esperar.
+ * </p>
+ *
+ * @param <E> tipo de los elementos
+ * @author Martin
+ * @version 1.0
+ */
+final class AnilloAcotado<E> {
+
+    private final AtomicReferenceArray<E> elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    /** Próxima posición a escribir. */
+    private final AtomicLong cola = new AtomicLong();
+    /** Próxima posición a leer. */
+    private final AtomicLong cabeza = new AtomicLong();
+
+    /**
+     * @param capacidad elementos que entran como mínimo; se redondea a la
+     *                  potencia de dos siguiente, y a 2 como mínimo (con un
+     *                  solo casillero, lleno para un consumidor se confunde
+     *                  con libre para el productor siguiente)
+     */
+    AnilloAcotado(int capacidad) {
+        if (capacidad < 1 || capacidad > 1 << 30) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacidad);
+        }
+        int n = Integer.highestOneBit(capacidad - 1) << 1;
+        n = Math.max(n, 2);
+        elementos = new AtomicReferenceArray<>(n);
+        secuencias = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            secuencias.set(i, i);
+        }
+        mascara = n - 1;
+    }
+
+    /** @return elementos que entran */
+    int capacidad() {
+        return mascara + 1;
+    }
+
+    /**
+     * @param e elemento, no nulo
+     * @return false si la cola está llena
+     */
+    boolean ofrecer(E e) {
+        long pos = cola.get();
+        while (true) {
+            int i = (int) pos & mascara;
+            long diferencia = secuencias.get(i) - pos;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(pos, pos + 1)) {
+                    elementos.set(i, e);
+                    secuencias.set(i, pos + 1);
+                    return true;
+                }
+                pos = cola.get();
+            } else if (diferencia < 0) {
+                // El casillero todavía tiene el elemento de una vuelta anterior
+                return false;
+            } else {
+                pos = cola.get();
+            }
+        }
+    }
+
+    /** @return el elemento más antiguo, o null si la cola está vacía */
+    E tomar() {
+        long pos = cabeza.get();
+        while (true) {
+            int i = (int) pos & mascara;
+            long diferencia = secuencias.get(i) - (pos + 1);
+            if (diferencia == 0) {
+                if (cabeza.compareAndSet(pos, pos + 1)) {
+                    E e = elementos.get(i);
+                    elementos.set(i, null);
+                    secuencias.set(i, pos + mascara + 1);
+                    return e;
+                }
+                pos = cabeza.get();
+            } else if (diferencia < 0) {
+                return null;
+            } else {
+                pos = cabeza.get();
+            }
+        }
+    }
+}
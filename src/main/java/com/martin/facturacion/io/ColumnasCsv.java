@@ -0,0 +1,123 @@
+package com.martin.facturacion.io;
+
+import java.nio.charset.CharacterCodingException;
+import java.util.Arrays;
+
+/**
+ * Ubicación de las cuatro columnas que usa {@link LectorCsv} dentro de cada
+ * registro, más la columna opcional {@code run}.
+ *
+ * <ul>
+ * <li>{@linkplain #posicional() Posicional}: el formato original, exactamente
+ * {@code idTest,nombreTest,estado,tiempoEjecucion} en ese orden.</li>
+ * <li>{@linkplain #desdeCabecera(TokenizadorCsv) Por cabecera}: las columnas
+ * se buscan por nombre en la primera línea y pueden estar en cualquier orden,
+ * entre otras que no interesan (host, shard, timestamp...). Si hay una
+ * columna {@code run}, se usa junto con {@code idTest} para detectar filas
+ * duplicadas.</li>
+ * </ul>
+ *
+ * <p>
+ * En ambos casos el tokenizador se {@linkplain TokenizadorCsv#limitarCampos(int)
+ * limita} a los campos necesarios: las columnas que están después de la
+ * última que se usa no se separan ni se copian, solo se recorren buscando el
+ * fin del registro.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class ColumnasCsv {
+
+    /** Nombres de las columnas en la cabecera, en el orden del formato original. */
+    static final String[] NOMBRES = { "idTest", "nombreTest", "estado", "tiempoEjecucion" };
+
+    /** Nombre de la columna opcional que identifica la corrida de cada fila. */
+    static final String NOMBRE_RUN = "run";
+
+    private static final ColumnasCsv POSICIONAL = new ColumnasCsv(new int[] { 0, 1, 2, 3 }, -1, true);
+
+    final int id;
+    final int nombre;
+    final int estado;
+    final int tiempo;
+    /** Columna {@code run}, o -1 si no hay. */
+    final int run;
+
+    /** Campos que debe tener un registro válido. */
+    private final int requeridos;
+    /** Campos que se separan de cada registro. */
+    private final int limite;
+
+    private ColumnasCsv(int[] indices, int run, boolean exacto) {
+        this.id = indices[0];
+        this.nombre = indices[1];
+        this.estado = indices[2];
+        this.tiempo = indices[3];
+        this.run = run;
+        this.requeridos = Math.max(Arrays.stream(indices).max().getAsInt(), run) + 1;
+        // Uno de más alcanza para detectar registros con columnas sobrantes
+        this.limite = exacto ? requeridos + 1 : requeridos;
+    }
+
+    /** @return el formato original: cuatro columnas fijas, ni una más */
+    static ColumnasCsv posicional() {
+        return POSICIONAL;
+    }
+
+    /**
+     * Busca las columnas por nombre en el registro actual (sin distinguir
+     * mayúsculas y recortando espacios). Si un nombre se repite, vale el
+     * primero.
+     *
+     * @param cabecera tokenizador posicionado en la línea de cabecera
+     * @return las columnas encontradas, o null si falta alguna
+     */
+    static ColumnasCsv desdeCabecera(TokenizadorCsv cabecera) throws CharacterCodingException {
+        int[] indices = new int[NOMBRES.length];
+        Arrays.fill(indices, -1);
+        int run = -1;
+        byte[] b = cabecera.datos();
+        for (int c = 0; c < cabecera.campos(); c++) {
+            int ini = TokenizadorCsv.recortarInicio(b, cabecera.inicio(c), cabecera.fin(c));
+            String nombre = cabecera.textoEstricto(ini, TokenizadorCsv.recortarFin(b, ini, cabecera.fin(c)));
+            if (c == 0 && nombre.startsWith("\uFEFF")) {
+                // Marca de orden de bytes que agregan algunas planillas
+                nombre = nombre.substring(1).trim();
+            }
+            for (int n = 0; n < NOMBRES.length; n++) {
+                if (indices[n] < 0 && NOMBRES[n].equalsIgnoreCase(nombre)) {
+                    indices[n] = c;
+                }
+            }
+            if (run < 0 && NOMBRE_RUN.equalsIgnoreCase(nombre)) {
+                run = c;
+            }
+        }
+        for (int i : indices) {
+            if (i < 0) {
+                return null;
+            }
+        }
+        return Arrays.equals(indices, new int[] { 0, 1, 2, 3 }) && cabecera.campos() == 4 ? POSICIONAL
+                : new ColumnasCsv(indices, run, false);
+    }
+
+    /** @return campos que hay que separar de cada registro */
+    int limite() {
+        return limite;
+    }
+
+    /**
+     * @param campos campos separados del registro (a lo sumo {@link #limite()})
+     * @return true si el registro tiene las columnas esperadas
+     */
+    boolean admite(int campos) {
+        return campos == requeridos;
+    }
+
+    /** @return true si las columnas son las del formato original */
+    boolean isPosicional() {
+        return this == POSICIONAL;
+    }
+}
@@ -0,0 +1,380 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.Regresion;
+import com.martin.facturacion.servicio.TablaIds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compara la ejecución actual contra un CSV de referencia (baseline) con un
+ * hash join sobre {@code idTest}: la baseline se carga en una
+ * {@link TablaIds} y cada caso actual la consulta a medida que se lee.
+ *
+ * <p>
+ * Si se estima que la baseline no entra en el presupuesto de memoria, se
+ * hace un <em>grace hash join</em>: ambos lados se reparten por hash del id
+ * en particiones temporales en disco, y al terminar se une cada partición
+ * por separado, así solo una parte de la baseline está en memoria a la vez.
+ * </p>
+ *
+ * <p>
+ * Uso: {@link #cargar}, un {@link #comparar(CasoPrueba)} por caso actual,
+ * {@link #terminar()} y {@link #escribir(List, Path)}. Se cierra para borrar
+ * las particiones si se abandona a mitad de camino.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ComparadorBaseline implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ComparadorBaseline.class);
+
+    /** Nombre del archivo que se escribe en la carpeta de salida. */
+    public static final String ARCHIVO = "regresiones.csv";
+
+    /** Bytes de memoria estimados por byte de CSV de referencia. */
+    private static final double MEMORIA_POR_BYTE_CSV = 1.5;
+
+    private static final int BUFFER_PARTICION = 64 * 1024;
+
+    private final TablaIds tabla;
+    private final List<Regresion> regresiones = new ArrayList<>();
+    private final List<String> erroresBaseline = new ArrayList<>();
+    private long casosBaseline;
+    private long comparados;
+    private long sinBaseline;
+    private long bytesEnDisco;
+
+    // Solo en modo particionado
+    private final int particiones;
+    private Path directorio;
+    private DataOutputStream[] salidasBaseline;
+    private DataOutputStream[] salidasActual;
+    private long[] registrosBaseline;
+    private long[] registrosActual;
+
+    private ComparadorBaseline(int particiones, int capacidad) {
+        this.particiones = particiones;
+        this.tabla = particiones == 1 ? new TablaIds(capacidad) : null;
+    }
+
+    /**
+     * Lee la baseline y prepara la comparación. Las líneas inválidas de la
+     * baseline se descartan (ver {@link #getErroresBaseline()}).
+     *
+     * @param baseline         CSV de referencia
+     * @param ignorarCabecera  si es true, ignora la primera línea de la baseline
+     * @param presupuestoBytes memoria que puede ocupar la tabla de la baseline
+     * @return comparador listo para recibir los casos actuales
+     */
+    public static ComparadorBaseline cargar(File baseline, boolean ignorarCabecera, long presupuestoBytes)
+            throws IOException, ExcepcionFormatoCsv {
+        return cargar(baseline, ignorarCabecera, presupuestoBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Igual que {@link #cargar(File, boolean, long)} con una baseline en otra
+     * codificación.
+     *
+     * @param codificacion codificación de la baseline, compatible con ASCII
+     */
+    public static ComparadorBaseline cargar(File baseline, boolean ignorarCabecera, long presupuestoBytes,
+            Charset codificacion) throws IOException, ExcepcionFormatoCsv {
+        LectorCsv.validar(baseline);
+        long estimado = (long) (baseline.length() * MEMORIA_POR_BYTE_CSV);
+        int particiones = estimado <= presupuestoBytes ? 1
+                : (int) Math.min(4096, (estimado + presupuestoBytes - 1) / Math.max(1, presupuestoBytes) + 1);
+        return cargar(baseline, ignorarCabecera, particiones, codificacion);
+    }
+
+    /**
+     * Igual que {@link #cargar(File, boolean, long)} pero con una cantidad de
+     * particiones fija; 1 hace el join completamente en memoria.
+     */
+    static ComparadorBaseline cargar(File baseline, boolean ignorarCabecera, int particiones)
+            throws IOException, ExcepcionFormatoCsv {
+        return cargar(baseline, ignorarCabecera, particiones, StandardCharsets.UTF_8);
+    }
+
+    private static ComparadorBaseline cargar(File baseline, boolean ignorarCabecera, int particiones,
+            Charset codificacion) throws IOException, ExcepcionFormatoCsv {
+        // ~40 bytes por línea de CSV es una buena primera estimación del tamaño
+        int capacidad = (int) Math.min(Integer.MAX_VALUE / 2, baseline.length() / 40 + 16);
+        ComparadorBaseline comparador = new ComparadorBaseline(particiones, capacidad);
+        try {
+            if (particiones > 1) {
+                comparador.abrirParticiones();
+                logger.info("Baseline repartida en {} particiones en {}", particiones, comparador.directorio);
+            }
+            LectorCsv.leer(baseline, new OpcionesLectura(comparador.erroresBaseline).ignorarCabecera(ignorarCabecera)
+                    .codificacion(codificacion), comparador::agregarBaseline);
+        } catch (IOException | ExcepcionFormatoCsv | RuntimeException e) {
+            comparador.close();
+            throw e;
+        }
+        if (!comparador.erroresBaseline.isEmpty()) {
+            logger.warn("La baseline tiene {} líneas inválidas que no se comparan",
+                    comparador.erroresBaseline.size());
+        }
+        return comparador;
+    }
+
+    private void agregarBaseline(CasoPrueba c) {
+        casosBaseline++;
+        if (tabla != null) {
+            tabla.poner(c.getIdTest(), c.getEstado(), c.getTiempoEjecucion());
+            return;
+        }
+        try {
+            int p = particion(c.getIdTest());
+            registrosBaseline[p]++;
+            DataOutputStream out = salidasBaseline[p];
+            TextoBinario.escribir(out, c.getIdTest());
+            out.writeByte(c.getEstado().ordinal());
+            out.writeDouble(c.getTiempoEjecucion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compara un caso de la ejecución actual contra la baseline (o lo deja en
+     * su partición, si la baseline no entró en memoria).
+     *
+     * @param actual caso leído de la ejecución actual
+     * @throws UncheckedIOException si no se puede escribir la partición
+     */
+    public void comparar(CasoPrueba actual) {
+        if (tabla != null) {
+            probar(tabla, actual);
+            return;
+        }
+        try {
+            int p = particion(actual.getIdTest());
+            registrosActual[p]++;
+            DataOutputStream out = salidasActual[p];
+            TextoBinario.escribir(out, actual.getIdTest());
+            TextoBinario.escribir(out, actual.getNombreTest());
+            out.writeByte(actual.getEstado().ordinal());
+            out.writeDouble(actual.getTiempoEjecucion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Completa el join (une las particiones pendientes, si las hay) y
+     * devuelve las regresiones ordenadas con {@link Regresion#ORDEN}.
+     *
+     * @return regresiones encontradas
+     */
+    public List<Regresion> terminar() throws IOException {
+        if (tabla == null) {
+            try {
+                unirParticiones();
+            } finally {
+                close();
+            }
+        }
+        regresiones.sort(Regresion.ORDEN);
+        logger.info("Baseline: {} casos, {} comparados, {} sin referencia, {} regresiones",
+                casosBaseline, comparados, sinBaseline, regresiones.size());
+        return regresiones;
+    }
+
+    private void probar(TablaIds tabla, CasoPrueba actual) {
+        int e = tabla.buscar(actual.getIdTest());
+        if (e < 0) {
+            sinBaseline++;
+            return;
+        }
+        comparados++;
+        Regresion r = Regresion.de(actual, tabla.estado(e), tabla.tiempo(e));
+        if (r != null) {
+            regresiones.add(r);
+        }
+    }
+
+    // =======================================
+    // PARTICIONES EN DISCO
+    // =======================================
+
+    private int particion(String id) {
+        // Mezcla distinta a la de TablaIds para que cada partición se reparta bien en su tabla
+        return Integer.remainderUnsigned(Integer.reverse(id.hashCode() * 0x9E3779B9), particiones);
+    }
+
+    private void abrirParticiones() throws IOException {
+        directorio = Files.createTempDirectory("baseline");
+        salidasBaseline = new DataOutputStream[particiones];
+        salidasActual = new DataOutputStream[particiones];
+        registrosBaseline = new long[particiones];
+        registrosActual = new long[particiones];
+        for (int p = 0; p < particiones; p++) {
+            salidasBaseline[p] = abrir(archivo(p, "b"));
+            salidasActual[p] = abrir(archivo(p, "a"));
+        }
+    }
+
+    private static DataOutputStream abrir(Path archivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archivo), BUFFER_PARTICION));
+    }
+
+    private Path archivo(int p, String lado) {
+        return directorio.resolve(lado + p + ".bin");
+    }
+
+    private void unirParticiones() throws IOException {
+        for (int p = 0; p < particiones; p++) {
+            salidasBaseline[p].close();
+            salidasActual[p].close();
+        }
+
+        EstadoPrueba[] estados = EstadoPrueba.values();
+        for (int p = 0; p < particiones; p++) {
+            Path base = archivo(p, "b");
+            TablaIds parcial = new TablaIds((int) registrosBaseline[p]);
+            try (DataInputStream in = abrirLectura(base)) {
+                for (long i = 0; i < registrosBaseline[p]; i++) {
+                    parcial.poner(TextoBinario.leer(in), estados[in.readByte()], in.readDouble());
+                }
+            }
+            bytesEnDisco += Files.size(base);
+            Files.delete(base);
+
+            Path actual = archivo(p, "a");
+            try (DataInputStream in = abrirLectura(actual)) {
+                for (long i = 0; i < registrosActual[p]; i++) {
+                    probar(parcial, new CasoPrueba(TextoBinario.leer(in), TextoBinario.leer(in),
+                            estados[in.readByte()], in.readDouble()));
+                }
+            }
+            bytesEnDisco += Files.size(actual);
+            Files.delete(actual);
+        }
+    }
+
+    private static DataInputStream abrirLectura(Path archivo) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), BUFFER_PARTICION));
+    }
+
+    /** Borra las particiones que queden en disco. */
+    @Override
+    public void close() throws IOException {
+        if (directorio == null) {
+            return;
+        }
+        for (int p = 0; p < particiones; p++) {
+            cerrarSilencioso(salidasBaseline[p]);
+            cerrarSilencioso(salidasActual[p]);
+            Files.deleteIfExists(archivo(p, "b"));
+            Files.deleteIfExists(archivo(p, "a"));
+        }
+        Files.deleteIfExists(directorio);
+        directorio = null;
+    }
+
+    private static void cerrarSilencioso(Closeable c) {
+        try {
+            if (c != null) {
+                c.close();
+            }
+        } catch (IOException e) {
+            logger.debug("No se pudo cerrar una partición", e);
+        }
+    }
+
+    // =======================================
+    // CONSULTAS Y SALIDA
+    // =======================================
+
+    /** @return true si la baseline se repartió en disco */
+    public boolean isParticionado() {
+        return particiones > 1;
+    }
+
+    /** @return casos válidos leídos de la baseline */
+    public long getCasosBaseline() {
+        return casosBaseline;
+    }
+
+    /** @return casos actuales que tenían referencia en la baseline */
+    public long getComparados() {
+        return comparados;
+    }
+
+    /** @return bytes que ocuparon las particiones en disco (0 si el join fue en memoria) */
+    public long getBytesEnDisco() {
+        return bytesEnDisco;
+    }
+
+    /** @return casos actuales cuyo id no está en la baseline */
+    public long getSinBaseline() {
+        return sinBaseline;
+    }
+
+    public List<String> getErroresBaseline() {
+        return erroresBaseline;
+    }
+
+    /**
+     * Escribe {@code regresiones.csv}.
+     *
+     * @param regresiones regresiones ya ordenadas
+     * @param archivo     destino
+     */
+    public static void escribir(List<Regresion> regresiones, Path archivo) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(archivo)) {
+            bw.write("idTest,nombreTest,estadoBase,estadoActual,tiempoBase,tiempoActual,deltaTiempo,variacion");
+            bw.newLine();
+            // String.format domina el tiempo con millones de filas; se arma cada línea a mano
+            StringBuilder sb = new StringBuilder(128);
+            for (Regresion r : regresiones) {
+                sb.setLength(0);
+                sb.append(ReporteCsv.campo(r.getIdTest())).append(',')
+                        .append(ReporteCsv.campo(r.getNombreTest())).append(',')
+                        .append(r.getEstadoBase()).append(',').append(r.getEstadoActual()).append(',');
+                decimal(sb, r.getTiempoBase(), 1000).append(',');
+                decimal(sb, r.getTiempoActual(), 1000).append(',');
+                decimal(sb, r.getDeltaTiempo(), 1000).append(',');
+                if (!Double.isNaN(r.getVariacion())) {
+                    decimal(sb, r.getVariacion(), 100);
+                }
+                bw.append(sb);
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Agrega {@code v} redondeado a tantos decimales como ceros tenga
+     * {@code escala}, igual que {@code %.Nf} con {@link Locale#ROOT} salvo que
+     * no escribe "-0.000".
+     */
+    static StringBuilder decimal(StringBuilder sb, double v, int escala) {
+        if (Double.isInfinite(v) || Math.abs(v) >= Long.MAX_VALUE / escala) {
+            return sb.append(String.format(Locale.ROOT, "%." + (String.valueOf(escala).length() - 1) + "f", v));
+        }
+        long n = Math.round(Math.abs(v) * escala);
+        if (v < 0 && n != 0) {
+            sb.append('-');
+        }
+        sb.append(n / escala).append('.');
+        String fraccion = Long.toString(n % escala + escala);
+        return sb.append(fraccion, 1, fraccion.length());
+    }
+}
@@ -0,0 +1,239 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ComparacionHistorial;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupa la información que reciben las implementaciones de
+ * {@link SalidaReporte}.
+ *
+ * <p>
+ * Se arma con {@link #para(EstadisticasPruebas, List, Path)}. Cuando
+ * ninguna salida seleccionada requiere casos, {@link #getCasos()} devuelve
+ * una lista vacía y solo {@link #getEstadisticas()} tiene datos.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class DatosReporte {
+
+    private final List<CasoPrueba> casos;
+    private final EstadisticasPruebas estadisticas;
+    private final List<String> errores;
+    private final Path outDir;
+    private final ComparacionHistorial comparacion;
+    private final OrdenResumen orden;
+    private final OrdenamientoExterno ordenados;
+    private final ConteoIds ids;
+    private final ArbolSuites suites;
+    private final Map<String, Long> erroresPorMotivo;
+    private final int maxFallidosPdf;
+    /** Archivos que pidió la salida en curso con {@link #archivo(String)}. */
+    private final List<Path> escritos = new ArrayList<>();
+
+    private DatosReporte(Armador a) {
+        this.casos = a.casos;
+        this.estadisticas = a.estadisticas;
+        this.errores = a.errores;
+        this.outDir = a.outDir;
+        this.comparacion = a.comparacion;
+        this.orden = a.orden;
+        this.ordenados = a.ordenados;
+        this.ids = a.ids;
+        this.suites = a.suites;
+        this.erroresPorMotivo = a.erroresPorMotivo;
+        this.maxFallidosPdf = a.maxFallidosPdf;
+    }
+
+    /**
+     * Empieza a armar los datos con lo único obligatorio; lo demás se indica
+     * con los métodos del {@link Armador}.
+     *
+     * @param estadisticas estadísticas de la ejecución completa
+     * @param errores      mensajes de líneas inválidas
+     * @param outDir       carpeta de salida (ya creada)
+     */
+    public static Armador para(EstadisticasPruebas estadisticas, List<String> errores, Path outDir) {
+        return new Armador(estadisticas, errores, outDir);
+    }
+
+    /**
+     * Arma un {@link DatosReporte}. Sin indicar nada más, no hay casos
+     * individuales, ni comparación, ni ids ni suites, y {@code resumen.csv}
+     * sale en el orden de entrada.
+     */
+    public static final class Armador {
+        private final EstadisticasPruebas estadisticas;
+        private final List<String> errores;
+        private final Path outDir;
+        private List<CasoPrueba> casos = List.of();
+        private ComparacionHistorial comparacion;
+        private OrdenResumen orden = OrdenResumen.ENTRADA;
+        private OrdenamientoExterno ordenados;
+        private ConteoIds ids;
+        private ArbolSuites suites;
+        private Map<String, Long> erroresPorMotivo;
+        private int maxFallidosPdf = ReportePdf.MAX_FALLIDOS;
+
+        private Armador(EstadisticasPruebas estadisticas, List<String> errores, Path outDir) {
+            this.estadisticas = estadisticas;
+            this.errores = errores;
+            this.outDir = outDir;
+        }
+
+        /** @param casos casos válidos (vacía si no se materializaron) */
+        public Armador casos(List<CasoPrueba> casos) {
+            this.casos = casos;
+            return this;
+        }
+
+        /** @param comparacion comparación contra ejecuciones anteriores, o null */
+        public Armador comparacion(ComparacionHistorial comparacion) {
+            this.comparacion = comparacion;
+            return this;
+        }
+
+        /**
+         * @param orden     orden pedido para los casos de {@code resumen.csv}
+         * @param ordenados casos ya cargados en un ordenamiento externo, o null
+         *                  para ordenar los casos al escribir
+         */
+        public Armador orden(OrdenResumen orden, OrdenamientoExterno ordenados) {
+            this.orden = orden;
+            this.ordenados = ordenados;
+            return this;
+        }
+
+        /**
+         * @param ids ids distintos y filas duplicadas contados en la lectura,
+         *            o null si no se contaron
+         */
+        public Armador ids(ConteoIds ids) {
+            this.ids = ids;
+            return this;
+        }
+
+        /**
+         * @param suites estadísticas por suite armadas en la lectura, o null
+         *               si no se agruparon
+         */
+        public Armador suites(ArbolSuites suites) {
+            this.suites = suites;
+            return this;
+        }
+
+        /**
+         * Indica que los errores son solo una muestra, por ejemplo al combinar
+         * resúmenes parciales.
+         *
+         * @param porMotivo cantidad de líneas inválidas por motivo, de todas
+         *                  (no solo de la muestra)
+         */
+        public Armador erroresPorMotivo(Map<String, Long> porMotivo) {
+            this.erroresPorMotivo = porMotivo;
+            return this;
+        }
+
+        /** @param max casos FAILED que se detallan en {@code resumen.pdf}; 0 es sin límite */
+        public Armador maxFallidosPdf(int max) {
+            this.maxFallidosPdf = max;
+            return this;
+        }
+
+        public DatosReporte armar() {
+            return new DatosReporte(this);
+        }
+    }
+
+    public List<CasoPrueba> getCasos() {
+        return casos;
+    }
+
+    public EstadisticasPruebas getEstadisticas() {
+        return estadisticas;
+    }
+
+    /** @return mensajes de líneas inválidas; puede ser solo una muestra */
+    public List<String> getErrores() {
+        return errores;
+    }
+
+    /** @return cantidad de líneas inválidas, aunque {@link #getErrores()} sea una muestra */
+    public long getCantidadErrores() {
+        return erroresPorMotivo == null ? errores.size()
+                : erroresPorMotivo.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /** @return cantidad de líneas inválidas por motivo, ordenadas por motivo */
+    public Map<String, Long> getErroresPorMotivo() {
+        return erroresPorMotivo == null ? ReporteJson.contarPorMotivo(errores) : erroresPorMotivo;
+    }
+
+    public Path getOutDir() {
+        return outDir;
+    }
+
+    /**
+     * Ubica un archivo de la salida en {@link #getOutDir()} y lo anota como
+     * escrito por ella: {@link GeneradorReporte} mide después su tamaño para
+     * las métricas y el evento de JFR.
+     *
+     * @param nombre nombre del archivo, por ejemplo {@code "resumen.txt"}
+     * @return la ruta donde escribirlo
+     */
+    public Path archivo(String nombre) {
+        Path p = outDir.resolve(nombre);
+        escritos.add(p);
+        return p;
+    }
+
+    /** @return los archivos anotados desde la llamada anterior, que se olvidan */
+    List<Path> tomarEscritos() {
+        List<Path> lista = new ArrayList<>(escritos);
+        escritos.clear();
+        return lista;
+    }
+
+    /** @return casos FAILED que se detallan en {@code resumen.pdf}; 0 es sin límite */
+    public int getMaxFallidosPdf() {
+        return maxFallidosPdf;
+    }
+
+    /** @return comparación con el historial, o null si no se pidió o no hay historial */
+    public ComparacionHistorial getComparacion() {
+        return comparacion;
+    }
+
+    public OrdenResumen getOrden() {
+        return orden;
+    }
+
+    /**
+     * Casos cargados durante la lectura en un ordenamiento externo. Se puede
+     * recorrer una sola vez.
+     *
+     * @return el ordenamiento, o null si los casos están en {@link #getCasos()}
+     */
+    public OrdenamientoExterno getOrdenados() {
+        return ordenados;
+    }
+
+    /** @return ids distintos y filas duplicadas, o null si no se contaron */
+    public ConteoIds getIds() {
+        return ids;
+    }
+
+    /** @return estadísticas por suite, o null si no se agruparon en la lectura */
+    public ArbolSuites getSuites() {
+        return suites;
+    }
+}
@@ -0,0 +1,209 @@
+package com.martin.facturacion.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escritor JSON mínimo que emite el texto directamente sobre un
+ * {@link Writer}, sin construir un árbol de objetos en memoria.
+ *
+ * <p>
+ * Lleva la cuenta del anidamiento para colocar las comas y valida que
+ * objetos y arreglos se cierren en orden. Los valores {@code NaN} e infinitos
+ * se escriben como {@code null}, ya que JSON no los admite.
+ * </p>
+ *
+ * <pre>{@code
+ * EscritorJson json = new EscritorJson(writer);
+ * json.inicioObjeto().campo("total").valor(10).finObjeto();
+ * }</pre>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class EscritorJson implements Closeable, Flushable {
+
+    private static final int MAX_PROFUNDIDAD = 32;
+
+    private final Writer out;
+
+    /** Por nivel: true si ya se escribió algún elemento (hace falta coma). */
+    private final boolean[] conElementos = new boolean[MAX_PROFUNDIDAD];
+
+    /** Por nivel: true si es un objeto, false si es un arreglo. */
+    private final boolean[] esObjeto = new boolean[MAX_PROFUNDIDAD];
+
+    private int profundidad;
+    private boolean despuesDeCampo;
+
+    public EscritorJson(Writer out) {
+        this.out = out;
+    }
+
+    public EscritorJson inicioObjeto() throws IOException {
+        return abrir('{', true);
+    }
+
+    public EscritorJson finObjeto() throws IOException {
+        return cerrar('}', true);
+    }
+
+    public EscritorJson inicioArreglo() throws IOException {
+        return abrir('[', false);
+    }
+
+    public EscritorJson finArreglo() throws IOException {
+        return cerrar(']', false);
+    }
+
+    /**
+     * Escribe el nombre de un campo; debe seguirle un valor.
+     *
+     * @param nombre nombre del campo
+     * @return este escritor
+     */
+    public EscritorJson campo(String nombre) throws IOException {
+        if (profundidad == 0 || !esObjeto[profundidad - 1] || despuesDeCampo) {
+            throw new IllegalStateException("Campo fuera de un objeto: " + nombre);
+        }
+        separar();
+        cadena(nombre);
+        out.write(':');
+        despuesDeCampo = true;
+        return this;
+    }
+
+    public EscritorJson valor(String v) throws IOException {
+        prepararValor();
+        if (v == null) {
+            out.write("null");
+        } else {
+            cadena(v);
+        }
+        return this;
+    }
+
+    public EscritorJson valor(long v) throws IOException {
+        prepararValor();
+        out.write(Long.toString(v));
+        return this;
+    }
+
+    public EscritorJson valor(double v) throws IOException {
+        prepararValor();
+        out.write(Double.isFinite(v) ? Double.toString(v) : "null");
+        return this;
+    }
+
+    public EscritorJson valor(boolean v) throws IOException {
+        prepararValor();
+        out.write(v ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Termina un valor de nivel superior con un salto de línea. Se usa para
+     * escribir NDJSON (un objeto por línea).
+     *
+     * @return este escritor
+     */
+    public EscritorJson finLinea() throws IOException {
+        if (profundidad != 0) {
+            throw new IllegalStateException("Hay objetos o arreglos sin cerrar");
+        }
+        out.write('\n');
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // =======================================
+    // AUXILIARES
+    // =======================================
+
+    private EscritorJson abrir(char c, boolean objeto) throws IOException {
+        if (profundidad == MAX_PROFUNDIDAD) {
+            throw new IllegalStateException("Anidamiento JSON demasiado profundo");
+        }
+        prepararValor();
+        out.write(c);
+        esObjeto[profundidad] = objeto;
+        conElementos[profundidad] = false;
+        profundidad++;
+        return this;
+    }
+
+    private EscritorJson cerrar(char c, boolean objeto) throws IOException {
+        if (profundidad == 0 || esObjeto[profundidad - 1] != objeto || despuesDeCampo) {
+            throw new IllegalStateException("Cierre inesperado: " + c);
+        }
+        profundidad--;
+        out.write(c);
+        return this;
+    }
+
+    /** Escribe la coma si corresponde antes de un valor. */
+    private void prepararValor() throws IOException {
+        if (despuesDeCampo) {
+            despuesDeCampo = false;
+            return;
+        }
+        if (profundidad > 0 && esObjeto[profundidad - 1]) {
+            throw new IllegalStateException("Falta el nombre del campo");
+        }
+        separar();
+    }
+
+    private void separar() throws IOException {
+        if (profundidad == 0) {
+            return;
+        }
+        if (conElementos[profundidad - 1]) {
+            out.write(',');
+        }
+        conElementos[profundidad - 1] = true;
+    }
+
+    private void cadena(String s) throws IOException {
+        out.write('"');
+        int desde = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = escape(c);
+            if (escape != null) {
+                out.write(s, desde, i - desde);
+                out.write(escape);
+                desde = i + 1;
+            }
+        }
+        out.write(s, desde, s.length() - desde);
+        out.write('"');
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                return c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+        }
+    }
+}
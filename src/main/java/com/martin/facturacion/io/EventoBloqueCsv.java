@@ -0,0 +1,80 @@
+package com.martin.facturacion.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR por cada bloque de {@link #LINEAS_POR_BLOQUE} líneas que
+ * procesa {@link LectorCsv}. Sirve para ubicar en qué región del archivo se
+ * frenó una lectura lenta.
+ *
+ * <p>
+ * El rango de bytes es el que el lector había consumido del archivo al
+ * empezar y al terminar el bloque; como la lectura usa un búfer, es exacto
+ * solo a nivel de búfer (unos pocos KB).
+ * </p>
+ *
+ * <p>
+ * Sin una grabación activa, {@link #shouldCommit()} es false y el costo es
+ * crear un objeto por bloque.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@Name("com.martin.facturacion.BloqueCsv")
+@Label("Bloque CSV")
+@Category({ "Facturación", "Lectura" })
+@Description("Lectura y validación de un bloque de líneas del CSV")
+class EventoBloqueCsv extends Event {
+
+    /** Líneas por bloque: suficientes para que el evento no pese por fila. */
+    static final int LINEAS_POR_BLOQUE = 16_384;
+
+    @Label("Desde byte")
+    @DataAmount
+    long desdeByte;
+
+    @Label("Hasta byte")
+    @DataAmount
+    long hastaByte;
+
+    @Label("Primera línea")
+    long primeraLinea;
+
+    @Label("Última línea")
+    long ultimaLinea;
+
+    @Label("Filas válidas")
+    long filas;
+
+    @Label("Errores")
+    long errores;
+
+    /** Cantidad de errores registrados antes del bloque (no se graba). */
+    private transient long erroresPrevios;
+
+    static EventoBloqueCsv abrir(long desdeByte, long primeraLinea, long erroresPrevios) {
+        EventoBloqueCsv e = new EventoBloqueCsv();
+        e.desdeByte = desdeByte;
+        e.primeraLinea = primeraLinea;
+        e.erroresPrevios = erroresPrevios;
+        e.begin();
+        return e;
+    }
+
+    void cerrar(long hastaByte, long ultimaLinea, long filas, long erroresTotales) {
+        end();
+        if (shouldCommit()) {
+            this.hastaByte = hastaByte;
+            this.ultimaLinea = ultimaLinea;
+            this.filas = filas;
+            this.errores = erroresTotales - erroresPrevios;
+            commit();
+        }
+    }
+}
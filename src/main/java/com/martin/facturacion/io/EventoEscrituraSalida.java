@@ -0,0 +1,34 @@
+package com.martin.facturacion.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR por cada {@link SalidaReporte} que escribe
+ * {@link GeneradorReporte}: qué archivos tocó, cuántos bytes y cuánto tardó
+ * hasta cerrarlos.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@Name("com.martin.facturacion.EscrituraSalida")
+@Label("Escritura de salida")
+@Category({ "Facturación", "Reportes" })
+@Description("Escritura completa (hasta el cierre) de una salida de reporte")
+class EventoEscrituraSalida extends Event {
+
+    @Label("Salida")
+    String salida;
+
+    @Label("Archivos")
+    @Description("Archivos que escribió la salida, separados por coma")
+    String archivos;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,113 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Condición que debe cumplir un caso para materializarse como
+ * {@link CasoPrueba} en la lectura proyectada de {@link LectorCsv}: estado
+ * dentro de un conjunto, {@code idTest} con cierto prefijo y tiempo mayor o
+ * igual a un mínimo. Las tres condiciones se combinan con Y; las que no se
+ * configuran aceptan todo.
+ *
+ * <p>
+ * El prefijo se compara directamente sobre los bytes del campo, sin crear
+ * el String del id. Se escribe en UTF-8; para archivos en otra codificación
+ * se usa la copia de {@link #codificado(Charset)}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class FiltroCasos {
+
+    private final Set<EstadoPrueba> estados;
+    private final String prefijoId;
+    /** Prefijo en la codificación del archivo, o null si no se puede escribir en ella. */
+    private final byte[] prefijoBytes;
+    private final double tiempoMinimo;
+
+    /**
+     * @param estados      estados aceptados; vacío o null acepta todos
+     * @param prefijoId    prefijo del id, o null para no filtrar por id
+     * @param tiempoMinimo tiempo mínimo (inclusive); {@code 0} no filtra
+     */
+    public FiltroCasos(Set<EstadoPrueba> estados, String prefijoId, double tiempoMinimo) {
+        this.estados = estados == null || estados.isEmpty() ? EnumSet.allOf(EstadoPrueba.class)
+                : EnumSet.copyOf(estados);
+        this.prefijoId = prefijoId == null || prefijoId.isEmpty() ? null : prefijoId;
+        this.prefijoBytes = this.prefijoId == null ? null : this.prefijoId.getBytes(StandardCharsets.UTF_8);
+        this.tiempoMinimo = tiempoMinimo;
+    }
+
+    private FiltroCasos(FiltroCasos otro, byte[] prefijoBytes) {
+        this.estados = otro.estados;
+        this.prefijoId = otro.prefijoId;
+        this.prefijoBytes = prefijoBytes;
+        this.tiempoMinimo = otro.tiempoMinimo;
+    }
+
+    /**
+     * @param codificacion codificación de los bytes que recibirá
+     *                     {@link #admiteId(byte[], int, int)}
+     * @return un filtro con las mismas condiciones que compara el prefijo en
+     *         esa codificación; si el prefijo no se puede escribir en ella,
+     *         ningún id lo cumple
+     */
+    public FiltroCasos codificado(Charset codificacion) {
+        if (prefijoId == null || codificacion.equals(StandardCharsets.UTF_8)) {
+            return this;
+        }
+        return new FiltroCasos(this, codificacion.newEncoder().canEncode(prefijoId)
+                ? prefijoId.getBytes(codificacion) : null);
+    }
+
+    public boolean admite(EstadoPrueba estado) {
+        return estados.contains(estado);
+    }
+
+    public boolean admite(double tiempo) {
+        return tiempo >= tiempoMinimo;
+    }
+
+    /**
+     * @param buf    bytes de la línea
+     * @param inicio primer byte del id (ya sin espacios)
+     * @param fin    fin del id (exclusivo)
+     * @return true si el id empieza con el prefijo configurado
+     */
+    public boolean admiteId(byte[] buf, int inicio, int fin) {
+        if (prefijoId == null) {
+            return true;
+        }
+        if (prefijoBytes == null) {
+            return false;
+        }
+        if (fin - inicio < prefijoBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < prefijoBytes.length; i++) {
+            if (buf[inicio + i] != prefijoBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return true si el caso cumple todas las condiciones */
+    public boolean admite(CasoPrueba c) {
+        return admite(c.getEstado()) && admite(c.getTiempoEjecucion())
+                && (prefijoId == null || c.getIdTest().startsWith(prefijoId));
+    }
+
+    @Override
+    public String toString() {
+        return "estados=" + estados + (prefijoId == null ? "" : ", prefijo=" + prefijoId)
+                + (tiempoMinimo > 0 ? ", tiempo>=" + tiempoMinimo : "");
+    }
+}
@@ -1,7 +1,8 @@
 package com.martin.facturacion.io;
 
+import com.martin.facturacion.metricas.MetricasEjecucion;
 import com.martin.facturacion.modelo.CasoPrueba;
-import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ComparacionHistorial;
 import com.martin.facturacion.servicio.EstadisticasPruebas;
 
 import org.slf4j.Logger;
@@ -10,18 +11,38 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Clase encargada de generar los reportes de salida del sistema de facturación.
- * Genera:
- * - resumen.txt
- * - resumen.csv
- * - errores.log
+ *
+ * <p>
+ * Cada reporte es una {@link SalidaReporte} descubierta con
+ * {@link ServiceLoader}. Por defecto se generan:
+ * </p>
+ * <ul>
+ * <li>resumen.txt ({@code txt})</li>
+ * <li>resumen.csv ({@code csv})</li>
+ * <li>errores.log ({@code log})</li>
+ * <li>resumen.json ({@code json})</li>
+ * </ul>
+ * <p>
+ * y opcionalmente resumen.xlsx ({@code xlsx}), resumen.pdf ({@code pdf}) y
+ * casos.ndjson ({@code ndjson}).
+ * </p>
+ * <p>
+ * Cada salida escrita se emite como evento de JFR
+ * ({@link EventoEscrituraSalida}).
+ * </p>
  */
 public class GeneradorReporte {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneradorReporte.class);
 
+    /** Salidas que se generan si no se indica otra cosa. */
+    public static final Set<String> SALIDAS_POR_DEFECTO = Collections
+            .unmodifiableSet(new LinkedHashSet<>(Arrays.asList("txt", "csv", "log", "json")));
+
     /**
      * Genera los reportes de salida.
      *
@@ -30,12 +51,54 @@ public class GeneradorReporte {
      * @param outDir  carpeta donde escribir los reportes
      */
     public static void generar(List<CasoPrueba> casos, List<String> errores, Path outDir) throws IOException {
+        generar(casos, new EstadisticasPruebas(casos), errores, outDir, SALIDAS_POR_DEFECTO);
+    }
 
-        // 🔵 AGREGADO — Validación de tipo de archivo
-        if (!outDir.toString().toLowerCase().endsWith("") && !Files.exists(outDir)) {
-            // No hacemos nada: solo queremos asegurarnos de que NO termine en extensiones
-            // inválidas.
-        }
+    /**
+     * Genera solo las salidas indicadas.
+     *
+     * @param casos   lista de casos válidos; puede estar vacía si ninguna de las
+     *                salidas seleccionadas {@link SalidaReporte#requiereCasos()}
+     * @param stats   estadísticas de la ejecución
+     * @param errores lista de mensajes de error
+     * @param outDir  carpeta donde escribir los reportes
+     * @param salidas nombres de las salidas a generar (ej. "txt", "csv")
+     * @throws IllegalArgumentException si alguna salida no existe
+     */
+    public static void generar(List<CasoPrueba> casos, EstadisticasPruebas stats, List<String> errores,
+            Path outDir, Collection<String> salidas) throws IOException {
+        generar(casos, stats, errores, outDir, salidas, null, null);
+    }
+
+    /**
+     * Igual que {@link #generar(List, EstadisticasPruebas, List, Path, Collection)},
+     * agregando la comparación con el historial a los reportes que la
+     * muestran y registrando cada salida como una etapa {@code salida:<nombre>}.
+     *
+     * @param comparacion comparación con ejecuciones anteriores, o null
+     * @param metricas    donde registrar los tiempos, o null para no medir
+     */
+    public static void generar(List<CasoPrueba> casos, EstadisticasPruebas stats, List<String> errores,
+            Path outDir, Collection<String> salidas, ComparacionHistorial comparacion,
+            MetricasEjecucion metricas) throws IOException {
+        generar(DatosReporte.para(stats, errores, outDir).casos(casos).comparacion(comparacion).armar(), salidas,
+                metricas);
+    }
+
+    /**
+     * Genera las salidas indicadas a partir de datos ya armados (por ejemplo,
+     * con un orden para {@code resumen.csv}).
+     *
+     * @param datos    casos, estadísticas, carpeta de salida y opciones
+     * @param salidas  nombres de las salidas a generar
+     * @param metricas donde registrar los tiempos, o null para no medir
+     */
+    public static void generar(DatosReporte datos, Collection<String> salidas, MetricasEjecucion metricas)
+            throws IOException {
+
+        List<SalidaReporte> seleccionadas = resolver(salidas);
+        Path outDir = datos.getOutDir();
+        EstadisticasPruebas stats = datos.getEstadisticas();
 
         // 🔵 AGREGADO — Si la ruta NO es un directorio de salida válido
         if (Files.exists(outDir) && !Files.isDirectory(outDir)) {
@@ -47,73 +110,100 @@ public class GeneradorReporte {
             Files.createDirectories(outDir);
         }
 
-        // Calcular estadísticas
-        EstadisticasPruebas stats = new EstadisticasPruebas(casos);
-
-        // ============================================================
-        // 1) Generación de resumen.txt
-        // ============================================================
-        Path resumenTxt = outDir.resolve("resumen.txt");
-        try (BufferedWriter bw = Files.newBufferedWriter(resumenTxt)) {
-
-            bw.write("Total tests: " + stats.getTotal());
-            bw.newLine();
-
-            for (EstadoPrueba s : EstadoPrueba.values()) {
-                bw.write(String.format(
-                        "%s: %d (%.2f%%)",
-                        s,
-                        stats.getConteos().getOrDefault(s, 0L),
-                        stats.getPorcentajes().get(s)));
-                bw.newLine();
+        datos.tomarEscritos();
+        for (SalidaReporte salida : seleccionadas) {
+            EventoEscrituraSalida evento = new EventoEscrituraSalida();
+            MetricasEjecucion.Cronometro c = metricas == null ? null : metricas.iniciar("salida:" + salida.nombre());
+            evento.begin();
+            salida.escribir(datos);
+            evento.end();
+
+            // Solo cuentan los archivos que la salida pidió con DatosReporte.archivo()
+            List<Path> escritos = datos.tomarEscritos();
+            if (metricas != null || evento.isEnabled()) {
+                long bytes = 0;
+                for (Path a : escritos) {
+                    if (Files.isRegularFile(a)) {
+                        bytes += Files.size(a);
+                    }
+                }
+                if (c != null) {
+                    c.terminar(stats.getTotal(), bytes);
+                }
+                if (evento.shouldCommit()) {
+                    evento.salida = salida.nombre();
+                    evento.archivos = escritos.stream().map(a -> a.getFileName().toString())
+                            .sorted().collect(Collectors.joining(","));
+                    evento.bytes = bytes;
+                    evento.commit();
+                }
             }
+            logger.info("Salida '{}' guardada en {}", salida.nombre(), outDir.toAbsolutePath());
+        }
+    }
 
-            bw.write(String.format("Tiempo promedio: %.3f", stats.getTiempoPromedio()));
-            bw.newLine();
+    /**
+     * Indica si alguna de las salidas necesita los casos individuales. Si
+     * devuelve false, no hace falta guardar los casos en memoria.
+     *
+     * @param salidas nombres de las salidas seleccionadas
+     * @return true si al menos una salida requiere casos
+     * @throws IllegalArgumentException si alguna salida no existe
+     */
+    public static boolean requiereCasos(Collection<String> salidas) {
+        return requiereCasos(salidas, OrdenResumen.ENTRADA);
+    }
 
-            stats.getMasLento().ifPresent(c -> escribirLinea(bw, "Mas lento: " + c.toString()));
-        }
-        logger.info("Resumen guardado en {}", resumenTxt.toAbsolutePath());
-
-        // ============================================================
-        // 2) Generación de resumen.csv
-        // ============================================================
-        Path resumenCsv = outDir.resolve("resumen.csv");
-        try (BufferedWriter bw = Files.newBufferedWriter(resumenCsv)) {
-
-            bw.write("idTest,nombreTest,estado,tiempoEjecucion");
-            bw.newLine();
-
-            for (CasoPrueba c : casos) {
-                bw.write(String.format(
-                        "%s,%s,%s,%.3f",
-                        c.getIdTest(),
-                        c.getNombreTest(),
-                        c.getEstado(),
-                        c.getTiempoEjecucion()));
-                bw.newLine();
-            }
-        }
-        logger.info("Resumen CSV guardado en {}", resumenCsv.toAbsolutePath());
-
-        // ============================================================
-        // 3) errores.log
-        // ============================================================
-        Path errorLog = outDir.resolve("errores.log");
-        try (BufferedWriter bw = Files.newBufferedWriter(errorLog)) {
-            for (String e : errores) {
-                bw.write(e + System.lineSeparator());
-            }
+    /**
+     * Igual que {@link #requiereCasos(Collection)}, pero sin contar las
+     * salidas que con ese orden escriben desde un ordenamiento externo.
+     *
+     * @param salidas nombres de las salidas seleccionadas
+     * @param orden   orden pedido para los casos
+     * @return true si al menos una salida necesita la lista de casos en memoria
+     */
+    public static boolean requiereCasos(Collection<String> salidas, OrdenResumen orden) {
+        boolean externo = orden != OrdenResumen.ENTRADA;
+        return resolver(salidas).stream().anyMatch(s -> s.requiereCasos() && !(externo && s.admiteOrdenExterno()));
+    }
+
+    /**
+     * @param salidas nombres de las salidas seleccionadas
+     * @param orden   orden pedido para los casos
+     * @return true si hay que cargar los casos en un {@link OrdenamientoExterno}
+     */
+    public static boolean ordenaCasos(Collection<String> salidas, OrdenResumen orden) {
+        return orden != OrdenResumen.ENTRADA
+                && resolver(salidas).stream().anyMatch(SalidaReporte::admiteOrdenExterno);
+    }
+
+    /**
+     * Devuelve las salidas disponibles indexadas por nombre, en el orden en
+     * que las declara el {@link ServiceLoader}.
+     *
+     * @return mapa nombre → salida
+     */
+    public static Map<String, SalidaReporte> disponibles() {
+        Map<String, SalidaReporte> mapa = new LinkedHashMap<>();
+        for (SalidaReporte s : ServiceLoader.load(SalidaReporte.class)) {
+            mapa.putIfAbsent(s.nombre(), s);
         }
-        logger.info("Log de errores guardado en {}", errorLog.toAbsolutePath());
+        return mapa;
     }
 
-    /** Método auxiliar para evitar repetición */
-    private static void escribirLinea(BufferedWriter bw, String txt) {
-        try {
-            bw.write(txt);
-            bw.newLine();
-        } catch (IOException ignored) {
+    /** Traduce nombres de salida a implementaciones, validando que existan. */
+    private static List<SalidaReporte> resolver(Collection<String> salidas) {
+        Map<String, SalidaReporte> disponibles = disponibles();
+        List<SalidaReporte> resultado = new ArrayList<>();
+
+        for (String nombre : salidas) {
+            SalidaReporte s = disponibles.get(nombre);
+            if (s == null) {
+                throw new IllegalArgumentException(
+                        "Salida desconocida: " + nombre + ". Disponibles: " + disponibles.keySet());
+            }
+            resultado.add(s);
         }
+        return resultado;
     }
 }
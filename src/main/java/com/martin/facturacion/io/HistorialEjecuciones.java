@@ -0,0 +1,363 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.HistogramaTiempos;
+import com.martin.facturacion.servicio.RegistroEjecucion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historial local de ejecuciones, de solo agregado, en la carpeta de salida.
+ *
+ * <ul>
+ * <li>{@code historial.dat}: un registro por ejecución, precedido por su
+ * largo en bytes. Cada registro ocupa unos cientos de bytes (conteos,
+ * histograma con solo las cubetas no vacías y el top de lentos).</li>
+ * <li>{@code historial.idx}: índice de 16 bytes por ejecución (fecha en
+ * milisegundos y posición en {@code historial.dat}). Como las fechas
+ * crecen, buscar por fecha es una búsqueda binaria, y leer las últimas N
+ * ejecuciones solo lee N registros, sin importar cuántas haya.</li>
+ * </ul>
+ *
+ * <p>
+ * Por test solo se guardan los del top de lentos: un resumen de cada
+ * {@code idTest} crecería con el archivo y dejaría de ser compacto.
+ * </p>
+ *
+ * <p>
+ * Primero se agrega el registro y después la entrada del índice. Si una
+ * ejecución se corta entre ambos pasos, al abrir el historial se detecta
+ * que el índice no coincide con los datos y se reconstruye recorriendo
+ * {@code historial.dat}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class HistorialEjecuciones {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistorialEjecuciones.class);
+
+    public static final String ARCHIVO_DATOS = "historial.dat";
+    public static final String ARCHIVO_INDICE = "historial.idx";
+
+    private static final byte VERSION = 1;
+    private static final int ENTRADA_INDICE = 16;
+
+    private final Path datos;
+    private final Path indice;
+
+    /**
+     * Abre (o prepara para crear) el historial de una carpeta.
+     *
+     * @param dir carpeta donde viven los archivos del historial
+     * @throws IOException si el índice no se puede verificar o reconstruir
+     */
+    public HistorialEjecuciones(Path dir) throws IOException {
+        this.datos = dir.resolve(ARCHIVO_DATOS);
+        this.indice = dir.resolve(ARCHIVO_INDICE);
+        if (Files.exists(datos) && !indiceConsistente()) {
+            logger.warn("Índice de historial inconsistente, se reconstruye: {}", indice);
+            reconstruirIndice();
+        }
+    }
+
+    /** @return cantidad de ejecuciones registradas */
+    public long cantidad() throws IOException {
+        return Files.exists(indice) ? Files.size(indice) / ENTRADA_INDICE : 0;
+    }
+
+    /**
+     * Agrega una ejecución al final del historial.
+     *
+     * @param registro resumen de la ejecución
+     */
+    public void agregar(RegistroEjecucion registro) throws IOException {
+        byte[] cuerpo = serializar(registro);
+        long posicion;
+
+        try (FileChannel ch = FileChannel.open(datos, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            posicion = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(4 + cuerpo.length);
+            buf.putInt(cuerpo.length).put(cuerpo).flip();
+            escribirCompleto(ch, buf, posicion);
+        }
+
+        // Las fechas del índice nunca retroceden, para que la búsqueda binaria sea válida
+        long fecha = Math.max(registro.getFecha().toEpochMilli(), ultimaFecha());
+        try (FileChannel ch = FileChannel.open(indice, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(ENTRADA_INDICE);
+            buf.putLong(fecha).putLong(posicion).flip();
+            escribirCompleto(ch, buf, ch.size());
+        }
+    }
+
+    /**
+     * Devuelve las últimas ejecuciones registradas.
+     *
+     * @param n cantidad máxima
+     * @return ejecuciones de la más vieja a la más reciente
+     */
+    public List<RegistroEjecucion> ultimas(int n) throws IOException {
+        long cantidad = cantidad();
+        return leer(Math.max(0, cantidad - n), cantidad);
+    }
+
+    /**
+     * Devuelve las ejecuciones con fecha dentro de {@code [desde, hasta)}.
+     *
+     * @return ejecuciones de la más vieja a la más reciente
+     */
+    public List<RegistroEjecucion> entre(Instant desde, Instant hasta) throws IOException {
+        return leer(primeraDesde(desde.toEpochMilli()), primeraDesde(hasta.toEpochMilli()));
+    }
+
+    // =======================================
+    // ÍNDICE
+    // =======================================
+
+    /** Lee las entradas {@code [desde, hasta)} del índice y sus registros. */
+    private List<RegistroEjecucion> leer(long desde, long hasta) throws IOException {
+        List<RegistroEjecucion> resultado = new ArrayList<>();
+        if (desde >= hasta) {
+            return resultado;
+        }
+
+        try (FileChannel idx = FileChannel.open(indice, StandardOpenOption.READ);
+                FileChannel dat = FileChannel.open(datos, StandardOpenOption.READ)) {
+
+            ByteBuffer entradas = ByteBuffer.allocate((int) ((hasta - desde) * ENTRADA_INDICE));
+            leerCompleto(idx, entradas, desde * ENTRADA_INDICE);
+            entradas.flip();
+
+            ByteBuffer largo = ByteBuffer.allocate(4);
+            while (entradas.hasRemaining()) {
+                entradas.getLong(); // fecha
+                long posicion = entradas.getLong();
+
+                largo.clear();
+                leerCompleto(dat, largo, posicion);
+                ByteBuffer cuerpo = ByteBuffer.allocate(largo.flip().getInt());
+                leerCompleto(dat, cuerpo, posicion + 4);
+                resultado.add(deserializar(cuerpo.array()));
+            }
+        }
+        return resultado;
+    }
+
+    /** Primera entrada del índice con fecha mayor o igual a {@code fecha}. */
+    private long primeraDesde(long fecha) throws IOException {
+        long lo = 0;
+        long hi = cantidad();
+        if (hi == 0) {
+            return 0;
+        }
+        try (FileChannel idx = FileChannel.open(indice, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                buf.clear();
+                leerCompleto(idx, buf, mid * ENTRADA_INDICE);
+                if (buf.flip().getLong() < fecha) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+        }
+        return lo;
+    }
+
+    private long ultimaFecha() throws IOException {
+        long n = cantidad();
+        if (n == 0) {
+            return Long.MIN_VALUE;
+        }
+        try (FileChannel idx = FileChannel.open(indice, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            leerCompleto(idx, buf, (n - 1) * ENTRADA_INDICE);
+            return buf.flip().getLong();
+        }
+    }
+
+    /** El índice es válido si su última entrada apunta al último registro de los datos. */
+    private boolean indiceConsistente() throws IOException {
+        if (!Files.exists(indice) || Files.size(indice) % ENTRADA_INDICE != 0) {
+            return false;
+        }
+        long n = cantidad();
+        long tamanioDatos = Files.size(datos);
+        if (n == 0) {
+            return tamanioDatos == 0;
+        }
+        try (FileChannel idx = FileChannel.open(indice, StandardOpenOption.READ);
+                FileChannel dat = FileChannel.open(datos, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            leerCompleto(idx, buf, (n - 1) * ENTRADA_INDICE + 8);
+            long posicion = buf.flip().getLong();
+            if (posicion + 4 > tamanioDatos) {
+                return false;
+            }
+            ByteBuffer largo = ByteBuffer.allocate(4);
+            leerCompleto(dat, largo, posicion);
+            return posicion + 4 + largo.flip().getInt() == tamanioDatos;
+        }
+    }
+
+    /**
+     * Recorre los datos y vuelve a escribir el índice. Un registro final
+     * incompleto (corte durante la escritura) se descarta.
+     */
+    private void reconstruirIndice() throws IOException {
+        ByteArrayOutputStream nuevo = new ByteArrayOutputStream();
+        DataOutputStream idx = new DataOutputStream(nuevo);
+        long posicion = 0;
+        long valido = 0;
+        long ultima = Long.MIN_VALUE;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(datos)))) {
+            long tamanio = Files.size(datos);
+            while (posicion + 4 <= tamanio) {
+                int largo = in.readInt();
+                if (largo <= 0 || posicion + 4 + largo > tamanio) {
+                    break;
+                }
+                byte[] cuerpo = in.readNBytes(largo);
+                long fecha = Math.max(deserializar(cuerpo).getFecha().toEpochMilli(), ultima);
+                idx.writeLong(fecha);
+                idx.writeLong(posicion);
+                ultima = fecha;
+                posicion += 4 + largo;
+                valido = posicion;
+            }
+        }
+
+        if (valido < Files.size(datos)) {
+            try (FileChannel ch = FileChannel.open(datos, StandardOpenOption.WRITE)) {
+                ch.truncate(valido);
+            }
+        }
+        Files.write(indice, nuevo.toByteArray());
+    }
+
+    // =======================================
+    // FORMATO DE REGISTRO
+    // =======================================
+
+    static byte[] serializar(RegistroEjecucion r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(VERSION);
+        out.writeLong(r.getFecha().toEpochMilli());
+        out.writeLong(r.getTotal());
+
+        long[] conteos = r.getConteos();
+        out.writeByte(conteos.length);
+        for (long c : conteos) {
+            out.writeLong(c);
+        }
+        out.writeDouble(r.getTiempoTotal());
+
+        // Histograma disperso: solo las cubetas con casos
+        long[] cuentas = r.getHistograma().getCuentas();
+        int noVacias = 0;
+        for (long c : cuentas) {
+            if (c != 0) {
+                noVacias++;
+            }
+        }
+        out.writeShort(noVacias);
+        for (int i = 0; i < cuentas.length; i++) {
+            if (cuentas[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(cuentas[i]);
+            }
+        }
+
+        out.writeByte(r.getMasLentos().size());
+        for (CasoPrueba c : r.getMasLentos()) {
+            TextoBinario.escribir(out, c.getIdTest());
+            TextoBinario.escribir(out, c.getNombreTest());
+            out.writeByte(c.getEstado().ordinal());
+            out.writeDouble(c.getTiempoEjecucion());
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static RegistroEjecucion deserializar(byte[] cuerpo) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(cuerpo));
+
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Versión de historial no soportada: " + version);
+        }
+        Instant fecha = Instant.ofEpochMilli(in.readLong());
+        long total = in.readLong();
+
+        long[] conteos = new long[EstadoPrueba.values().length];
+        int estados = in.readUnsignedByte();
+        for (int i = 0; i < estados; i++) {
+            long c = in.readLong();
+            if (i < conteos.length) {
+                conteos[i] = c;
+            }
+        }
+        double tiempoTotal = in.readDouble();
+
+        long[] cuentas = new long[HistogramaTiempos.CUBETAS];
+        int noVacias = in.readUnsignedShort();
+        for (int i = 0; i < noVacias; i++) {
+            int cubeta = in.readUnsignedShort();
+            if (cubeta >= cuentas.length) {
+                throw new IOException("Cubeta de histograma inválida en historial: " + cubeta);
+            }
+            cuentas[cubeta] = in.readLong();
+        }
+
+        int lentos = in.readUnsignedByte();
+        List<CasoPrueba> masLentos = new ArrayList<>(lentos);
+        for (int i = 0; i < lentos; i++) {
+            String id = TextoBinario.leer(in);
+            String nombre = TextoBinario.leer(in);
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= EstadoPrueba.values().length) {
+                throw new IOException("Estado inválido en historial: " + ordinal);
+            }
+            EstadoPrueba estado = EstadoPrueba.values()[ordinal];
+            masLentos.add(new CasoPrueba(id, nombre, estado, in.readDouble()));
+        }
+
+        return new RegistroEjecucion(fecha, total, conteos, tiempoTotal, new HistogramaTiempos(cuentas), masLentos);
+    }
+
+    private static void escribirCompleto(FileChannel ch, ByteBuffer buf, long posicion) throws IOException {
+        while (buf.hasRemaining()) {
+            posicion += ch.write(buf, posicion);
+        }
+    }
+
+    private static void leerCompleto(FileChannel ch, ByteBuffer buf, long posicion) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, posicion);
+            if (n < 0) {
+                throw new EOFException("Historial truncado");
+            }
+            posicion += n;
+        }
+    }
+}
@@ -3,10 +3,18 @@ package com.martin.facturacion.io;
 import com.martin.facturacion.modelo.CasoPrueba;
 import com.martin.facturacion.modelo.EstadoPrueba;
 import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ConteoIds;
 
 import java.io.*;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +42,9 @@ public class LectorCsv {
     /** Logger utilizado para registrar información y advertencias. */
     private static final Logger logger = LoggerFactory.getLogger(LectorCsv.class);
 
+    /** Filas posiblemente duplicadas que se informan una por una en el log. */
+    static final int AVISOS_DUPLICADAS = 10;
+
     /**
      * Lee un archivo CSV, valida su contenido y devuelve una lista de casos de
      * prueba válidos.
@@ -41,7 +52,9 @@ public class LectorCsv {
      * @param file            archivo CSV a procesar.
      * @param errores         lista donde se agregan mensajes sobre líneas
      *                        inválidas.
-     * @param ignorarCabecera si es true, ignora la primera línea del archivo.
+     * @param ignorarCabecera si es true, la primera línea es la cabecera: no
+     *                        se lee como caso y, si nombra las columnas,
+     *                        estas se ubican por nombre.
      * @return lista de {@link CasoPrueba}.
      *
      * @throws IOException         si el archivo no existe, no es un archivo regular
@@ -52,6 +65,219 @@ public class LectorCsv {
             throws IOException, ExcepcionFormatoCsv {
 
         List<CasoPrueba> resultado = new ArrayList<>();
+        leer(file, new OpcionesLectura(errores).ignorarCabecera(ignorarCabecera), resultado::add);
+        return resultado;
+    }
+
+    /**
+     * Lee un archivo CSV y entrega cada caso válido a {@code destino} a medida
+     * que se lee, sin guardarlos en una lista. Permite calcular estadísticas
+     * sobre archivos grandes sin mantener todos los casos en memoria.
+     *
+     * <p>
+     * Según las {@code opciones}, además informa en
+     * {@link OpcionesLectura#bytesLeidos(AtomicLong)} cuántos bytes del
+     * archivo se consumieron hasta el momento, para mostrar el progreso de la
+     * carga desde otro hilo, cuenta los ids distintos y las filas duplicadas
+     * y agrupa las filas por suite.
+     * </p>
+     *
+     * @param file     archivo CSV a procesar.
+     * @param opciones errores, cabecera, codificación y lo que se cuenta al
+     *                 leer.
+     * @param destino  receptor de cada {@link CasoPrueba} válido.
+     *
+     * @throws IOException         si el archivo no existe, no es un archivo regular,
+     *                             no puede leerse o tiene texto inválido en
+     *                             la codificación indicada.
+     * @throws ExcepcionFormatoCsv si la extensión del archivo NO es ".csv".
+     */
+    public static void leer(File file, OpcionesLectura opciones, Consumer<CasoPrueba> destino)
+            throws IOException, ExcepcionFormatoCsv {
+
+        validar(file);
+
+        // El contador también da la posición de cada bloque para JFR
+        AtomicLong contador = opciones.getBytesLeidos();
+        try (InputStream in = new ContadorBytes(Files.newInputStream(file.toPath()), contador)) {
+            leer(in, opciones.getCodificacion(), opciones.isIgnorarCabecera(), null, null, destino, null,
+                    receptor(opciones), contador);
+        }
+    }
+
+    /**
+     * Lectura proyectada: solo se crean objetos {@link CasoPrueba} para las
+     * filas que cumplen {@code filtro}, que se entregan a {@code coincidentes}
+     * (responsable de sumarlas a sus estadísticas). Las demás se interpretan
+     * directamente sobre los bytes y solo se suman a {@code resto} (conteo,
+     * tiempo e histograma); se materializan únicamente si podrían entrar al
+     * top de lentos.
+     *
+     * <p>
+     * Valida las líneas igual que la lectura completa y produce los mismos
+     * errores, pero no verifica que los bytes de las filas descartadas sean
+     * texto válido en la codificación indicada. Los ids y las suites de las
+     * {@code opciones} cuentan todas las filas.
+     * </p>
+     *
+     * @param file         archivo CSV a procesar.
+     * @param opciones     errores, cabecera, codificación y lo que se cuenta
+     *                     al leer.
+     * @param filtro       condición para materializar una fila.
+     * @param coincidentes receptor de las filas que cumplen el filtro.
+     * @param resto        acumulador de las filas que no lo cumplen.
+     *
+     * @throws IOException         si el archivo no existe, no es un archivo regular
+     *                             o no puede leerse.
+     * @throws ExcepcionFormatoCsv si la extensión del archivo NO es ".csv".
+     */
+    public static void leer(File file, OpcionesLectura opciones, FiltroCasos filtro,
+            Consumer<CasoPrueba> coincidentes, AcumuladorEstadisticas resto) throws IOException, ExcepcionFormatoCsv {
+
+        validar(file);
+
+        AtomicLong contador = opciones.getBytesLeidos();
+        try (InputStream in = new ContadorBytes(Files.newInputStream(file.toPath()), contador)) {
+            leer(in, opciones.getCodificacion(), opciones.isIgnorarCabecera(), null,
+                    filtro.codificado(opciones.getCodificacion()), coincidentes, resto, receptor(opciones), contador);
+        }
+    }
+
+    /**
+     * Lectura solo para estadísticas, cuando ninguna salida necesita los
+     * casos: cada fila se suma a {@code acumulador} directamente desde los
+     * campos del tokenizador, sin crear un {@link CasoPrueba}. Como en la
+     * lectura proyectada, solo se materializan las filas que podrían entrar
+     * al top de lentos (y las que {@link CasoPrueba} tiene que rechazar).
+     *
+     * @param file       archivo CSV a procesar.
+     * @param opciones   errores, cabecera, codificación y lo que se cuenta
+     *                   al leer.
+     * @param acumulador estadísticas de todas las filas válidas.
+     *
+     * @throws IOException         si el archivo no existe, no es un archivo regular
+     *                             o no puede leerse.
+     * @throws ExcepcionFormatoCsv si la extensión del archivo NO es ".csv".
+     */
+    public static void acumular(File file, OpcionesLectura opciones, AcumuladorEstadisticas acumulador)
+            throws IOException, ExcepcionFormatoCsv {
+
+        validar(file);
+
+        AtomicLong contador = opciones.getBytesLeidos();
+        try (InputStream in = new ContadorBytes(Files.newInputStream(file.toPath()), contador)) {
+            leer(in, opciones.getCodificacion(), opciones.isIgnorarCabecera(), null, null, null, acumulador,
+                    receptor(opciones), contador);
+        }
+    }
+
+    private static ReceptorSecuencial receptor(OpcionesLectura opciones) {
+        return new ReceptorSecuencial(opciones.getErrores(), opciones.getIds(), opciones.getSuites());
+    }
+
+    static void error(List<String> errores, String msg) {
+        errores.add(msg);
+        logger.warn(msg);
+    }
+
+    /**
+     * @param codificacion codificación de un archivo a leer
+     * @return true si se puede leer: los caracteres ASCII se escriben con un
+     *         solo byte de su mismo valor (UTF-8, ISO-8859-1, windows-1252...)
+     */
+    public static boolean admiteCodificacion(Charset codificacion) {
+        return TokenizadorCsv.admite(codificacion);
+    }
+
+    /**
+     * Lee casos CSV desde un flujo ya abierto (por ejemplo, el cuerpo de una
+     * petición HTTP). No valida nombre ni extensión, y no cierra el flujo.
+     *
+     * @param in              flujo con contenido CSV en UTF-8.
+     * @param errores         lista donde se agregan mensajes sobre líneas
+     *                        inválidas.
+     * @param ignorarCabecera si es true, la primera línea es la cabecera: no
+     *                        se lee como caso y, si nombra las columnas,
+     *                        estas se ubican por nombre.
+     * @param destino         receptor de cada {@link CasoPrueba} válido.
+     *
+     * @throws IOException si falla la lectura o el contenido no es UTF-8.
+     */
+    public static void leer(InputStream in, List<String> errores, boolean ignorarCabecera,
+            Consumer<CasoPrueba> destino) throws IOException {
+        AtomicLong contador = new AtomicLong();
+        leer(new ContadorBytes(in, contador), StandardCharsets.UTF_8, ignorarCabecera, null, null, destino, null,
+                new ReceptorSecuencial(errores, null, null), contador);
+    }
+
+    /**
+     * Lee registros sin cabecera con columnas ya ubicadas, por ejemplo un
+     * bloque del medio del archivo en {@link MuestreoCsv}.
+     *
+     * @param in           registros completos, empezando en un inicio de línea
+     * @param codificacion codificación de los registros
+     * @param columnas     ubicación de las columnas
+     * @param errores      lista donde se agregan mensajes sobre líneas inválidas
+     * @param destino      receptor de cada {@link CasoPrueba} válido
+     */
+    static void leer(InputStream in, Charset codificacion, ColumnasCsv columnas, List<String> errores,
+            Consumer<CasoPrueba> destino) throws IOException {
+        leer(in, codificacion, false, columnas, null, destino, null, new ReceptorSecuencial(errores, null, null),
+                new AtomicLong());
+    }
+
+    /**
+     * Lee un trozo del archivo que empieza en un inicio de registro, ya sin
+     * cabecera, para {@link LecturaEnEtapas}.
+     *
+     * @param in           bytes del trozo
+     * @param codificacion codificación del archivo
+     * @param columnas     ubicación de las columnas
+     * @param destino      receptor de cada {@link CasoPrueba} válido
+     * @param filas        receptor de los errores y de los hashes de cada fila
+     * @param inicio       posición del trozo en el archivo, para los eventos de JFR
+     * @return líneas físicas consumidas; si {@code filas} corta la lectura,
+     *         las anteriores al registro cortado
+     */
+    static long leer(InputStream in, Charset codificacion, ColumnasCsv columnas, Consumer<CasoPrueba> destino,
+            ReceptorFilas filas, long inicio) throws IOException {
+        AtomicLong contador = new AtomicLong(inicio);
+        return leer(new ContadorBytes(in, contador), codificacion, false, columnas, null, destino, null, filas,
+                contador);
+    }
+
+    /**
+     * Interpreta la cabecera en la que está posicionado {@code tok} y deja
+     * constancia en el log.
+     *
+     * @return las columnas por nombre, o las del formato original si la
+     *         cabecera no las nombra
+     */
+    static ColumnasCsv cabecera(TokenizadorCsv tok) throws CharacterCodingException {
+        ColumnasCsv col = tok.isMalFormado() ? null : ColumnasCsv.desdeCabecera(tok);
+        if (col == null) {
+            logger.info("Cabecera detectada e ignorada: {}", tok.linea());
+            return ColumnasCsv.posicional();
+        }
+        logger.info("Cabecera detectada: {}", tok.linea());
+        if (!col.isPosicional()) {
+            logger.info("Columnas por nombre: idTest={}, nombreTest={}, estado={}, tiempoEjecucion={}"
+                    + (col.run < 0 ? "" : ", run=" + (col.run + 1)),
+                    col.id + 1, col.nombre + 1, col.estado + 1, col.tiempo + 1);
+        }
+        return col;
+    }
+
+    /**
+     * Verifica que el archivo exista, sea un archivo regular legible y tenga
+     * extensión .csv, sin leer su contenido.
+     *
+     * @param file archivo CSV a validar.
+     * @throws IOException         si el archivo no existe, no es un archivo regular
+     *                             o no puede leerse.
+     * @throws ExcepcionFormatoCsv si la extensión del archivo NO es ".csv".
+     */
+    public static void validar(File file) throws IOException, ExcepcionFormatoCsv {
 
         // ============================================================
         // Validaciones previas (Etapa 3)
@@ -76,65 +302,238 @@ public class LectorCsv {
         if (!file.canRead()) {
             throw new IOException("No se puede leer el archivo: " + file.getAbsolutePath());
         }
+    }
 
-        // ============================================================
-        // Lectura y validación de contenido CSV
-        // ============================================================
+    /**
+     * Lee registros CSV con {@link TokenizadorCsv}. Sin filtro, todos los
+     * casos válidos se materializan y van a {@code coincidentes}; con filtro,
+     * los que no lo cumplen solo se suman a {@code resto}. Sin
+     * {@code coincidentes}, todas las filas van a {@code resto}.
+     *
+     * @param codificacion codificación del flujo
+     * @param columnas ubicación de las columnas, o null para deducirla de la
+     *                 cabecera (si se ignora) o usar el formato original
+     * @param filtro   condición para materializar, o null para materializar todo
+     * @param resto    acumulador de los no materializados (solo con filtro)
+     * @param filas    receptor de los errores y de los hashes de cada fila
+     * @param posicion bytes consumidos del origen, para ubicar cada bloque
+     * @return líneas físicas consumidas
+     */
+    private static long leer(InputStream in, Charset codificacion, boolean ignorarCabecera, ColumnasCsv columnas,
+            FiltroCasos filtro, Consumer<CasoPrueba> coincidentes, AcumuladorEstadisticas resto, ReceptorFilas filas,
+            AtomicLong posicion) throws IOException {
+        TokenizadorCsv tok = new TokenizadorCsv(in, codificacion);
+        // El árbol guarda las claves en UTF-8: en otra codificación, las que no son ASCII se convierten
+        boolean clavesUtf8 = tok.isUtf8();
+        boolean primerLineaLeida = false;
+        ColumnasCsv col = columnas != null ? columnas : ColumnasCsv.posicional();
+        if (!ignorarCabecera) {
+            tok.limitarCampos(col.limite());
+        }
 
-        try (BufferedReader br = Files.newBufferedReader(file.toPath())) {
+        ArbolSuites suites = filas.suites();
+        EventoBloqueCsv bloque = EventoBloqueCsv.abrir(posicion.get(), 1, filas.errores());
+        long validosBloque = 0;
 
-            String linea;
-            int numero = 0;
-            boolean primerLineaLeida = false;
+        while (tok.siguiente()) {
+            long numero = tok.numeroLinea();
 
-            while ((linea = br.readLine()) != null) {
-                numero++;
+            if (numero - bloque.primeraLinea >= EventoBloqueCsv.LINEAS_POR_BLOQUE) {
+                bloque.cerrar(posicion.get(), numero - 1, validosBloque, filas.errores());
+                bloque = EventoBloqueCsv.abrir(posicion.get(), numero, filas.errores());
+                validosBloque = 0;
+            }
 
-                if (linea.trim().isEmpty())
-                    continue;
+            if (tok.isVacio())
+                continue;
 
-                if (ignorarCabecera && !primerLineaLeida) {
-                    primerLineaLeida = true;
-                    logger.info("Cabecera detectada e ignorada: {}", linea);
-                    continue;
-                }
+            if (tok.isMalFormado() && filas.cortar(tok)) {
+                bloque.cerrar(posicion.get(), numero - 1, validosBloque, filas.errores());
+                return numero - 1;
+            }
 
-                String[] partes = linea.split(",", -1);
+            if (ignorarCabecera && !primerLineaLeida) {
+                primerLineaLeida = true;
+                col = cabecera(tok);
+                tok.limitarCampos(col.limite());
+                continue;
+            }
 
-                if (partes.length != 4) {
-                    String msg = numero + ": cantidad de columnas incorrecta -> " + linea;
-                    errores.add(msg);
-                    logger.warn(msg);
-                    continue;
+            if (tok.isMalFormado()) {
+                filas.error(numero, "comillas sin cerrar -> " + tok.linea());
+                continue;
+            }
+
+            if (!col.admite(tok.campos())) {
+                filas.error(numero, "cantidad de columnas incorrecta -> " + tok.linea());
+                continue;
+            }
+
+            byte[] b = tok.datos();
+            int estIni = TokenizadorCsv.recortarInicio(b, tok.inicio(col.estado), tok.fin(col.estado));
+            EstadoPrueba estado = TokenizadorCsv.estado(b, estIni,
+                    TokenizadorCsv.recortarFin(b, estIni, tok.fin(col.estado)));
+            if (estado == null) {
+                filas.error(numero, "estado inválido -> " + tok.linea());
+                continue;
+            }
+
+            double tiempo;
+            try {
+                int tIni = TokenizadorCsv.recortarInicio(b, tok.inicio(col.tiempo), tok.fin(col.tiempo));
+                tiempo = TokenizadorCsv.decimal(b, tIni,
+                        TokenizadorCsv.recortarFin(b, tIni, tok.fin(col.tiempo)));
+            } catch (NumberFormatException e) {
+                filas.error(numero, "tiempo inválido -> " + tok.linea());
+                continue;
+            }
+
+            int idIni = TokenizadorCsv.recortarInicio(b, tok.inicio(col.id), tok.fin(col.id));
+            int idFin = TokenizadorCsv.recortarFin(b, idIni, tok.fin(col.id));
+            int nomIni = TokenizadorCsv.recortarInicio(b, tok.inicio(col.nombre), tok.fin(col.nombre));
+            int nomFin = TokenizadorCsv.recortarFin(b, nomIni, tok.fin(col.nombre));
+
+            boolean coincide = coincidentes != null && (filtro == null
+                    || filtro.admite(estado) && filtro.admite(tiempo) && filtro.admiteId(b, idIni, idFin));
+            // Ids o nombres vacíos y tiempos negativos se materializan para que
+            // CasoPrueba los rechace igual que en la lectura completa
+            if (coincide || resto.requiereCaso(tiempo) || idIni == idFin || nomIni == nomFin || tiempo < 0) {
+                CasoPrueba caso = new CasoPrueba(tok.textoEstricto(idIni, idFin), tok.textoEstricto(nomIni, nomFin),
+                        estado, tiempo);
+                if (coincide) {
+                    coincidentes.accept(caso);
+                } else {
+                    resto.agregar(caso);
                 }
+            } else {
+                resto.agregar(estado, tiempo);
+            }
 
-                String id = partes[0].trim();
-                String nombre = partes[1].trim();
-                String estadoS = partes[2].trim();
-                String tiempoS = partes[3].trim();
-
-                EstadoPrueba estado = EstadoPrueba.fromString(estadoS);
-                if (estado == null) {
-                    String msg = numero + ": estado inválido -> " + linea;
-                    errores.add(msg);
-                    logger.warn(msg);
-                    continue;
+            if (suites != null) {
+                int claveIni = suites.isPorNombre() ? nomIni : idIni;
+                int claveFin = suites.isPorNombre() ? nomFin : idFin;
+                if (clavesUtf8 || TokenizadorCsv.primerNoAscii(b, claveIni, claveFin) == claveFin) {
+                    suites.agregar(b, claveIni, claveFin, estado, tiempo);
+                } else {
+                    suites.agregar(tok.texto(claveIni, claveFin), estado, tiempo);
                 }
+            }
 
-                double tiempo;
-                try {
-                    tiempo = Double.parseDouble(tiempoS);
-                } catch (NumberFormatException e) {
-                    String msg = numero + ": tiempo inválido -> " + linea;
-                    errores.add(msg);
-                    logger.warn(msg);
-                    continue;
+            if (filas.contarIds()) {
+                long hashId = ConteoIds.hash(b, idIni, idFin);
+                long hashClave = hashId;
+                if (col.run >= 0) {
+                    int runIni = TokenizadorCsv.recortarInicio(b, tok.inicio(col.run), tok.fin(col.run));
+                    hashClave = ConteoIds.hash(hashId, b, runIni, TokenizadorCsv.recortarFin(b, runIni,
+                            tok.fin(col.run)));
                 }
+                filas.valida(numero, hashId, hashClave, tok);
+            }
+            validosBloque++;
+        }
 
-                resultado.add(new CasoPrueba(id, nombre, estado, tiempo));
+        bloque.cerrar(posicion.get(), tok.numeroLinea(), validosBloque, filas.errores());
+        return tok.lineasLeidas();
+    }
+
+    /**
+     * Recibe lo que encuentra la lectura además de los casos: las líneas
+     * inválidas y los hashes del id de cada fila válida.
+     */
+    interface ReceptorFilas {
+
+        /** Una línea inválida; {@code detalle} va después del número de línea. */
+        void error(long linea, String detalle);
+
+        /** @return errores recibidos hasta ahora */
+        int errores();
+
+        /** @return true si hay que calcular los hashes para {@link #valida} */
+        boolean contarIds();
+
+        /** Una fila válida, después de entregar su caso. */
+        void valida(long linea, long hashId, long hashClave, TokenizadorCsv tok);
+
+        /** @return árbol donde agrupar cada fila válida por suite, o null */
+        default ArbolSuites suites() {
+            return null;
+        }
+
+        /**
+         * @param tok tokenizador en un registro mal formado
+         * @return true para terminar la lectura antes de ese registro
+         */
+        default boolean cortar(TokenizadorCsv tok) {
+            return false;
+        }
+    }
+
+    /** Anota los errores en la lista y cuenta los ids en el orden del archivo. */
+    private static final class ReceptorSecuencial implements ReceptorFilas {
+        private final List<String> errores;
+        private final ConteoIds ids;
+        private final ArbolSuites suites;
+
+        ReceptorSecuencial(List<String> errores, ConteoIds ids, ArbolSuites suites) {
+            this.errores = errores;
+            this.ids = ids;
+            this.suites = suites;
+        }
+
+        @Override
+        public void error(long linea, String detalle) {
+            LectorCsv.error(errores, linea + ": " + detalle);
+        }
+
+        @Override
+        public int errores() {
+            return errores.size();
+        }
+
+        @Override
+        public boolean contarIds() {
+            return ids != null;
+        }
+
+        @Override
+        public ArbolSuites suites() {
+            return suites;
+        }
+
+        @Override
+        public void valida(long linea, long hashId, long hashClave, TokenizadorCsv tok) {
+            if (ids.agregar(hashId, hashClave) && ids.getDuplicadas() <= AVISOS_DUPLICADAS) {
+                logger.warn("{}: posible fila duplicada{} -> {}", linea,
+                        ids.getDuplicadas() == AVISOS_DUPLICADAS ? " (no se informan más)" : "", tok.linea());
             }
         }
+    }
 
-        return resultado;
+    /** Cuenta los bytes leídos del archivo para informar el progreso. */
+    private static final class ContadorBytes extends FilterInputStream {
+        private final AtomicLong contador;
+
+        ContadorBytes(InputStream in, AtomicLong contador) {
+            super(in);
+            this.contador = contador;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                contador.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                contador.addAndGet(n);
+            }
+            return n;
+        }
     }
 }
@@ -0,0 +1,605 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ConteoIds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Lectura de un CSV en tres etapas que trabajan a la vez, para que el disco
+ * no espere al parseo ni el parseo al disco:
+ *
+ * <ol>
+ * <li>Un hilo de E/S lee el archivo con {@link FileChannel} en búferes
+ * directos de un pool y corta cada trozo después de su último fin de línea
+ * (lo que sobra pasa al trozo siguiente). Mientras haya búferes libres sigue
+ * leyendo por adelantado.</li>
+ * <li>Los hilos de parseo toman los trozos de un {@link AnilloAcotado} y los
+ * interpretan con {@link LectorCsv}, cada uno por su cuenta: casos ya
+ * validados, errores con el número de línea dentro del trozo, hashes de
+ * los ids y, si se pidió, un {@link ArbolSuites} propio del trozo.</li>
+ * <li>El hilo que llama a {@link #leer} agrega los lotes en el orden del
+ * archivo: entrega los casos a {@code destino}, numera las líneas de los
+ * errores, cuenta los ids, combina las suites y recién entonces devuelve el
+ * búfer al pool.</li>
+ * </ol>
+ *
+ * <p>
+ * La contrapresión es la cantidad de búferes del pool
+ * ({@code trozosEnVuelo}): cada trozo retiene el suyo desde que se lee hasta
+ * que se agrega, así que el hilo de E/S nunca se adelanta más que esa
+ * cantidad de trozos y la memoria queda acotada aunque la agregación sea la
+ * etapa más lenta. Los casos llegan a {@code destino} en el mismo orden y
+ * con los mismos errores que en
+ * {@link LectorCsv#leer(File, OpcionesLectura, Consumer)}.
+ * </p>
+ *
+ * <p>
+ * Un trozo puede cortar un campo entre comillas que tiene saltos de línea.
+ * El parseo de ese trozo lo detecta porque el campo llega al final sin
+ * cerrarse ({@link TokenizadorCsv#isCortado()}) y se detiene ahí; al
+ * agregarlo, el resto del trozo se vuelve a leer unido al trozo siguiente,
+ * cuyo parseo anticipado se descarta. Con archivos sin comillas esto no
+ * pasa nunca.
+ * </p>
+ *
+ * <p>
+ * No aplica el filtro de la lectura proyectada. En los eventos de JFR
+ * ({@link EventoBloqueCsv}) las líneas se cuentan desde el principio de
+ * cada trozo.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class LecturaEnEtapas {
+
+    private static final Logger logger = LoggerFactory.getLogger(LecturaEnEtapas.class);
+
+    /** Tamaño de cada búfer del pool. */
+    public static final int BYTES_TROZO = 1 << 20;
+
+    /** Trozos en vuelo por cada hilo de parseo, si no se indica otra cosa. */
+    public static final int TROZOS_POR_HILO = 4;
+
+    private final int hilos;
+    private final int trozosEnVuelo;
+    private final int bytesTrozo;
+
+    /**
+     * @param hilos         hilos de parseo
+     * @param trozosEnVuelo búferes del pool: trozos leídos por adelantado o
+     *                      esperando ser agregados
+     */
+    public LecturaEnEtapas(int hilos, int trozosEnVuelo) {
+        this(hilos, trozosEnVuelo, BYTES_TROZO);
+    }
+
+    LecturaEnEtapas(int hilos, int trozosEnVuelo, int bytesTrozo) {
+        if (hilos < 1 || trozosEnVuelo < 1 || bytesTrozo < 1) {
+            throw new IllegalArgumentException("Hilos, trozos y bytes por trozo deben ser mayores que 0");
+        }
+        this.hilos = hilos;
+        this.trozosEnVuelo = trozosEnVuelo;
+        this.bytesTrozo = bytesTrozo;
+    }
+
+    /**
+     * Igual que {@link LectorCsv#leer(File, OpcionesLectura, Consumer)}, en
+     * etapas. {@code destino} y los ids se usan solo desde el hilo que llama;
+     * con suites, cada hilo de parseo arma un árbol por trozo y el hilo que
+     * llama los combina. {@link OpcionesLectura#bytesLeidos(AtomicLong)}
+     * cuenta los bytes ya agregados.
+     *
+     * @param file     archivo CSV a procesar.
+     * @param opciones errores, cabecera, codificación y lo que se cuenta al
+     *                 leer.
+     * @param destino  receptor de cada {@link CasoPrueba} válido.
+     *
+     * @throws IOException         si el archivo no se puede leer o tiene texto
+     *                             inválido en la codificación indicada.
+     * @throws ExcepcionFormatoCsv si el archivo no tiene extensión .csv.
+     */
+    public void leer(File file, OpcionesLectura opciones, Consumer<CasoPrueba> destino)
+            throws IOException, ExcepcionFormatoCsv {
+        LectorCsv.validar(file);
+        ConteoIds ids = opciones.getIds();
+        try (FileChannel canal = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new Ejecucion(canal, opciones.getCodificacion(), opciones.isIgnorarCabecera(), ids != null,
+                    opciones.getSuites()).agregar(opciones.getErrores(), destino, opciones.getBytesLeidos(), ids);
+        }
+    }
+
+    /** Los anillos y los hilos de una lectura. */
+    private final class Ejecucion {
+        private final FileChannel canal;
+        private final Charset codificacion;
+        private final boolean ignorarCabecera;
+        private final boolean contarIds;
+        /** Destino de los árboles de cada lote; los hilos de parseo solo copian su configuración. */
+        private final ArbolSuites suites;
+        private final AnilloAcotado<ByteBuffer> libres = new AnilloAcotado<>(trozosEnVuelo);
+        private final AnilloAcotado<Trozo> trozos = new AnilloAcotado<>(trozosEnVuelo);
+        private final AnilloAcotado<Lote> lotes = new AnilloAcotado<>(trozosEnVuelo);
+        private final List<Thread> etapas = new ArrayList<>();
+        private volatile boolean cancelada;
+        private volatile Throwable fallo;
+
+        Ejecucion(FileChannel canal, Charset codificacion, boolean ignorarCabecera, boolean contarIds,
+                ArbolSuites suites) {
+            this.canal = canal;
+            this.codificacion = codificacion;
+            this.ignorarCabecera = ignorarCabecera;
+            this.contarIds = contarIds;
+            this.suites = suites;
+            for (int i = 0; i < trozosEnVuelo; i++) {
+                libres.ofrecer(ByteBuffer.allocateDirect(bytesTrozo));
+            }
+        }
+
+        void agregar(List<String> errores, Consumer<CasoPrueba> destino, AtomicLong bytesLeidos, ConteoIds ids)
+                throws IOException {
+            iniciar("lectura-io", this::leerArchivo);
+            for (int i = 0; i < hilos; i++) {
+                iniciar("lectura-parseo-" + (i + 1), this::parsear);
+            }
+            logger.info("Lectura en etapas: {} hilos de parseo, {} trozos de {} KB en vuelo", hilos, trozosEnVuelo,
+                    bytesTrozo >> 10);
+
+            Lote[] pendientes = new Lote[trozosEnVuelo];
+            try {
+                long numero = 0;
+                Lote lote = esperar(pendientes, numero);
+                long linea = lote.trozo.lineaInicial;
+                long agregados = 0;
+                while (true) {
+                    linea = aplicar(lote, linea, errores, destino, ids);
+                    if (lote.corte >= 0) {
+                        // El registro cortado sigue en el trozo siguiente: se lee de nuevo desde ahí.
+                        // El búfer se libera antes de esperar, por si es el único del pool.
+                        byte[] cortado = new byte[lote.datos.limit() - lote.corte];
+                        lote.datos.get(lote.corte, cortado);
+                        liberar(lote.trozo);
+                        Lote siguiente = esperar(pendientes, ++numero);
+                        lote = Lote.parsear(siguiente.trozo, unir(cortado, siguiente.trozo.datos),
+                                lote.inicio + lote.corte, codificacion, contarIds, suites);
+                        continue;
+                    }
+                    bytesLeidos.addAndGet(lote.trozo.fin - agregados);
+                    agregados = lote.trozo.fin;
+                    liberar(lote.trozo);
+                    if (lote.trozo.ultimo) {
+                        return;
+                    }
+                    lote = esperar(pendientes, ++numero);
+                }
+            } finally {
+                cancelada = true;
+                for (Thread t : etapas) {
+                    try {
+                        t.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private void iniciar(String nombre, Runnable etapa) {
+            Thread t = new Thread(() -> {
+                try {
+                    etapa.run();
+                } catch (Cancelada e) {
+                    // El hilo que agrega ya terminó
+                } catch (Throwable e) {
+                    fallo = e;
+                }
+            }, nombre);
+            t.setDaemon(true);
+            etapas.add(t);
+            t.start();
+        }
+
+        /** @return la línea del archivo en la que sigue el próximo lote */
+        private long aplicar(Lote lote, long linea, List<String> errores, Consumer<CasoPrueba> destino,
+                ConteoIds ids) throws IOException {
+            for (int i = 0; i < lote.errores; i++) {
+                LectorCsv.error(errores, (linea + lote.lineasError[i]) + ": " + lote.detalles.get(i));
+            }
+            for (int i = 0; i < lote.casos; i++) {
+                destino.accept(lote.caso[i]);
+                if (ids != null && ids.agregar(lote.hashId[i], lote.hashClave[i])
+                        && ids.getDuplicadas() <= LectorCsv.AVISOS_DUPLICADAS) {
+                    logger.warn("{}: posible fila duplicada{} -> {}", linea + lote.lineasCaso[i],
+                            ids.getDuplicadas() == LectorCsv.AVISOS_DUPLICADAS ? " (no se informan más)" : "",
+                            lote.caso[i].getIdTest());
+                }
+            }
+            if (lote.suites != null) {
+                suites.combinar(lote.suites);
+            }
+            if (lote.fallo != null) {
+                throw relanzar(lote.fallo);
+            }
+            return linea + lote.lineas;
+        }
+
+        /** Espera el lote {@code numero}, guardando los que llegan antes de tiempo. */
+        private Lote esperar(Lote[] pendientes, long numero) throws IOException {
+            int i = (int) (numero % pendientes.length);
+            int intentos = 0;
+            while (pendientes[i] == null) {
+                Lote l = lotes.tomar();
+                if (l != null) {
+                    pendientes[(int) (l.trozo.numero % pendientes.length)] = l;
+                    intentos = 0;
+                } else if (fallo != null) {
+                    throw relanzar(fallo);
+                } else {
+                    pausar(intentos++);
+                }
+            }
+            Lote lote = pendientes[i];
+            pendientes[i] = null;
+            return lote;
+        }
+
+        private void liberar(Trozo trozo) {
+            // Siempre hay lugar: el anillo tiene un casillero por búfer
+            libres.ofrecer(trozo.bufer);
+        }
+
+        // =======================================
+        // ETAPA DE E/S
+        // =======================================
+
+        private void leerArchivo() {
+            try {
+                byte[] resto = new byte[0];
+                int largoResto = 0;
+                long inicio = 0;
+                ColumnasCsv columnas = null;
+                for (long numero = 0;; numero++) {
+                    ByteBuffer bufer = sacar(libres);
+                    if (bufer.capacity() <= largoResto) {
+                        // Lo que sobró de un búfer agrandado no entra en uno del pool
+                        bufer = ByteBuffer.allocateDirect(largoResto * 2);
+                    }
+                    bufer.clear();
+                    bufer.put(resto, 0, largoResto);
+                    boolean fin = llenar(bufer);
+                    int corte;
+                    while ((corte = fin ? bufer.position() : corte(bufer)) < 0) {
+                        // Ni un fin de línea en todo el búfer: un registro muy largo
+                        ByteBuffer mayor = ByteBuffer.allocateDirect(bufer.capacity() * 2);
+                        mayor.put(bufer.flip());
+                        bufer = mayor;
+                        fin = llenar(bufer);
+                    }
+
+                    int desde = 0;
+                    long lineaInicial = 0;
+                    if (columnas == null) {
+                        columnas = ColumnasCsv.posicional();
+                        if (ignorarCabecera) {
+                            TokenizadorCsv tok = new TokenizadorCsv(new EntradaBuffer(bufer.slice(0, corte)),
+                                    codificacion);
+                            while (tok.siguiente()) {
+                                if (!tok.isVacio()) {
+                                    columnas = LectorCsv.cabecera(tok);
+                                    desde = finDeLinea(bufer, (int) tok.finRegistro(), corte);
+                                    lineaInicial = tok.lineasLeidas();
+                                    break;
+                                }
+                            }
+                        }
+                    }
+
+                    ponerEnTrozos(new Trozo(numero, bufer, bufer.slice(desde, corte - desde).asReadOnlyBuffer(),
+                            inicio + desde, inicio + corte, lineaInicial, columnas, fin));
+                    largoResto = bufer.position() - corte;
+                    if (resto.length < largoResto) {
+                        resto = new byte[largoResto];
+                    }
+                    bufer.get(corte, resto, 0, largoResto);
+                    inicio += corte;
+                    if (fin) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                fallo = e;
+            } finally {
+                if (!cancelada) {
+                    for (int i = 0; i < hilos; i++) {
+                        ponerEnTrozos(Trozo.FIN);
+                    }
+                }
+            }
+        }
+
+        /** @return true si se llegó al fin del archivo */
+        private boolean llenar(ByteBuffer bufer) throws IOException {
+            while (bufer.hasRemaining()) {
+                if (canal.read(bufer) < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void ponerEnTrozos(Trozo trozo) {
+            int intentos = 0;
+            while (!trozos.ofrecer(trozo)) {
+                pausar(intentos++);
+            }
+        }
+
+        // =======================================
+        // ETAPA DE PARSEO
+        // =======================================
+
+        private void parsear() {
+            while (true) {
+                Trozo trozo = sacar(trozos);
+                if (trozo == Trozo.FIN) {
+                    return;
+                }
+                Lote lote = Lote.parsear(trozo, trozo.datos, trozo.inicio, codificacion, contarIds, suites);
+                int intentos = 0;
+                while (!lotes.ofrecer(lote)) {
+                    pausar(intentos++);
+                }
+            }
+        }
+
+        private <E> E sacar(AnilloAcotado<E> anillo) {
+            int intentos = 0;
+            E e;
+            while ((e = anillo.tomar()) == null) {
+                pausar(intentos++);
+            }
+            return e;
+        }
+
+        /**
+         * Espera activa corta y después con pausas crecientes, para no gastar
+         * un núcleo cuando la otra etapa tarda (por ejemplo, un disco lento).
+         */
+        private void pausar(int intentos) {
+            if (cancelada) {
+                throw new Cancelada();
+            }
+            if (intentos < 100) {
+                Thread.onSpinWait();
+            } else if (intentos < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(intentos - 200, 10)));
+            }
+        }
+    }
+
+    /**
+     * @return posición de corte: después del último fin de línea del búfer, o
+     *         -1 si no hay. Un {@code \r} al final no sirve, porque el
+     *         {@code \n} que puede seguirle es parte del mismo fin de línea.
+     */
+    static int corte(ByteBuffer bufer) {
+        int largo = bufer.position();
+        for (int i = largo - 1; i >= 0; i--) {
+            byte b = bufer.get(i);
+            if (b == '\n' || b == '\r' && i + 1 < largo) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /** @return posición después del fin de línea en {@code fin} (con {@code \r\n} como uno solo) */
+    private static int finDeLinea(ByteBuffer bufer, int fin, int limite) {
+        if (fin < limite && bufer.get(fin++) == '\r' && fin < limite && bufer.get(fin) == '\n') {
+            fin++;
+        }
+        return fin;
+    }
+
+    private static ByteBuffer unir(byte[] a, ByteBuffer b) {
+        byte[] unidos = Arrays.copyOf(a, a.length + b.limit());
+        b.get(0, unidos, a.length, b.limit());
+        return ByteBuffer.wrap(unidos);
+    }
+
+    private static IOException relanzar(Throwable e) {
+        if (e instanceof IOException io) {
+            return io;
+        }
+        if (e instanceof RuntimeException r) {
+            throw r;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IOException(e);
+    }
+
+    /** Bytes de un trozo del archivo, ya cortados en un fin de línea. */
+    private static final class Trozo {
+        static final Trozo FIN = new Trozo(-1, null, null, 0, 0, 0, null, true);
+
+        final long numero;
+        /** Búfer del pool que contiene los datos. */
+        final ByteBuffer bufer;
+        final ByteBuffer datos;
+        /** Posición en el archivo del primer byte de {@code datos}. */
+        final long inicio;
+        /** Posición en el archivo del byte siguiente al último de {@code datos}. */
+        final long fin;
+        /** Líneas del archivo antes de {@code datos} (la cabecera, en el primero). */
+        final long lineaInicial;
+        final ColumnasCsv columnas;
+        final boolean ultimo;
+
+        Trozo(long numero, ByteBuffer bufer, ByteBuffer datos, long inicio, long fin, long lineaInicial,
+                ColumnasCsv columnas, boolean ultimo) {
+            this.numero = numero;
+            this.bufer = bufer;
+            this.datos = datos;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.lineaInicial = lineaInicial;
+            this.columnas = columnas;
+            this.ultimo = ultimo;
+        }
+    }
+
+    /** Resultado de parsear un trozo: casos, errores y hashes, en orden. */
+    private static final class Lote implements Consumer<CasoPrueba>, LectorCsv.ReceptorFilas {
+        final Trozo trozo;
+        final ByteBuffer datos;
+        final long inicio;
+        private final boolean contarIds;
+        /** Suites de las filas de este lote, o null si no se agrupan. */
+        final ArbolSuites suites;
+
+        CasoPrueba[] caso = new CasoPrueba[256];
+        long[] lineasCaso = new long[256];
+        long[] hashId = new long[256];
+        long[] hashClave = new long[256];
+        int casos;
+
+        long[] lineasError = new long[8];
+        final List<String> detalles = new ArrayList<>();
+        int errores;
+
+        /** Líneas consumidas, contadas desde el principio de {@code datos}. */
+        long lineas;
+        /** Posición en {@code datos} del registro que quedó cortado, o -1. */
+        int corte = -1;
+        Throwable fallo;
+
+        private Lote(Trozo trozo, ByteBuffer datos, long inicio, boolean contarIds, ArbolSuites suites) {
+            this.trozo = trozo;
+            this.datos = datos;
+            this.inicio = inicio;
+            this.contarIds = contarIds;
+            this.suites = suites;
+        }
+
+        /** @param plantilla árbol del que se copia la configuración, o null */
+        static Lote parsear(Trozo trozo, ByteBuffer datos, long inicio, Charset codificacion, boolean contarIds,
+                ArbolSuites plantilla) {
+            Lote lote = new Lote(trozo, datos, inicio, contarIds, plantilla == null ? null : plantilla.vacio());
+            try {
+                lote.lineas = LectorCsv.leer(new EntradaBuffer(datos.duplicate()), codificacion, trozo.columnas, lote,
+                        lote, inicio);
+            } catch (IOException | RuntimeException e) {
+                lote.fallo = e;
+            }
+            return lote;
+        }
+
+        @Override
+        public void accept(CasoPrueba c) {
+            if (casos == caso.length) {
+                int n = casos * 2;
+                caso = Arrays.copyOf(caso, n);
+                lineasCaso = Arrays.copyOf(lineasCaso, n);
+                hashId = Arrays.copyOf(hashId, n);
+                hashClave = Arrays.copyOf(hashClave, n);
+            }
+            caso[casos++] = c;
+        }
+
+        @Override
+        public void error(long linea, String detalle) {
+            if (errores == lineasError.length) {
+                lineasError = Arrays.copyOf(lineasError, errores * 2);
+            }
+            lineasError[errores++] = linea;
+            detalles.add(detalle);
+        }
+
+        @Override
+        public int errores() {
+            return errores;
+        }
+
+        @Override
+        public boolean contarIds() {
+            return contarIds;
+        }
+
+        @Override
+        public ArbolSuites suites() {
+            return suites;
+        }
+
+        @Override
+        public void valida(long linea, long id, long clave, TokenizadorCsv tok) {
+            int i = casos - 1;
+            lineasCaso[i] = linea;
+            hashId[i] = id;
+            hashClave[i] = clave;
+        }
+
+        @Override
+        public boolean cortar(TokenizadorCsv tok) {
+            if (trozo.ultimo || !tok.isCortado()) {
+                return false;
+            }
+            corte = (int) tok.inicioRegistro();
+            return true;
+        }
+    }
+
+    /** Lee un {@link ByteBuffer} (directo o no) como flujo. */
+    private static final class EntradaBuffer extends InputStream {
+        private final ByteBuffer datos;
+
+        EntradaBuffer(ByteBuffer datos) {
+            this.datos = datos;
+        }
+
+        @Override
+        public int read() {
+            return datos.hasRemaining() ? datos.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!datos.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, datos.remaining());
+            datos.get(b, off, n);
+            return n;
+        }
+    }
+
+    /** Corta la espera de una etapa cuando el hilo que agrega ya terminó. */
+    private static final class Cancelada extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Cancelada() {
+            super(null, null, false, false);
+        }
+    }
+}
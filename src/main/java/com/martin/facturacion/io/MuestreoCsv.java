@@ -0,0 +1,272 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.AcumuladorMuestra;
+import com.martin.facturacion.servicio.EstimacionEstadisticas;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Estima las estadísticas de un CSV sin leerlo entero: lee bloques de
+ * {@link #BYTES_BLOQUE} elegidos al azar con lecturas posicionales de
+ * {@link FileChannel} hasta que los intervalos de confianza son más angostos
+ * que la cota pedida o se agota el tiempo.
+ *
+ * <p>
+ * El archivo se divide en bloques consecutivos y cada fila pertenece al
+ * bloque donde empieza: de un bloque se descarta la línea que viene del
+ * anterior y se completa la última, aunque siga en el siguiente. Así cada
+ * fila está en exactamente un bloque y la muestra no tiene sesgo
+ * (ver {@link AcumuladorMuestra}). Supone filas terminadas en {@code \n} y
+ * sin saltos de línea dentro de comillas.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class MuestreoCsv {
+
+    private static final Logger logger = LoggerFactory.getLogger(MuestreoCsv.class);
+
+    static final int BYTES_BLOQUE = 64 * 1024;
+
+    /** Bloques mínimos antes de confiar en la aproximación normal. */
+    static final int BLOQUES_MINIMOS = 30;
+
+    /** Cada cuántos bloques se recalcula la estimación para ver si alcanza. */
+    private static final int BLOQUES_POR_CONTROL = 16;
+
+    /** Tiempo de lectura tras el cual se responde con la precisión alcanzada. */
+    public static final long TIEMPO_MAXIMO_NANOS = 800_000_000L;
+
+    /** Lo que se lee de más, por vez, para completar la última fila de un bloque. */
+    private static final int EXTENSION = 4 * 1024;
+
+    private static final int ESTADOS = EstadoPrueba.values().length;
+
+    private final File archivo;
+    private final boolean ignorarCabecera;
+    private final Charset codificacion;
+    private final Random azar;
+
+    /**
+     * @param archivo         CSV a muestrear
+     * @param ignorarCabecera si la primera línea es la cabecera
+     */
+    public MuestreoCsv(File archivo, boolean ignorarCabecera) {
+        this(archivo, ignorarCabecera, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param archivo         CSV a muestrear
+     * @param ignorarCabecera si la primera línea es la cabecera
+     * @param codificacion    codificación del archivo, compatible con ASCII
+     */
+    public MuestreoCsv(File archivo, boolean ignorarCabecera, Charset codificacion) {
+        this(archivo, ignorarCabecera, codificacion, new Random());
+    }
+
+    MuestreoCsv(File archivo, boolean ignorarCabecera, Random azar) {
+        this(archivo, ignorarCabecera, StandardCharsets.UTF_8, azar);
+    }
+
+    MuestreoCsv(File archivo, boolean ignorarCabecera, Charset codificacion, Random azar) {
+        this.archivo = archivo;
+        this.ignorarCabecera = ignorarCabecera;
+        this.codificacion = codificacion;
+        this.azar = azar;
+    }
+
+    /**
+     * Lee bloques al azar hasta que {@link EstimacionEstadisticas#getError()}
+     * no supera {@code errorMaximo}, pasa {@link #TIEMPO_MAXIMO_NANOS} o se
+     * leyó todo el archivo.
+     *
+     * @param errorMaximo cota del error, en puntos porcentuales
+     * @return la estimación con los bloques leídos
+     * @throws ExcepcionFormatoCsv si el archivo no tiene extensión .csv
+     */
+    public EstimacionEstadisticas estimar(double errorMaximo) throws IOException, ExcepcionFormatoCsv {
+        return estimar(errorMaximo, TIEMPO_MAXIMO_NANOS);
+    }
+
+    EstimacionEstadisticas estimar(double errorMaximo, long tiempoMaxNanos)
+            throws IOException, ExcepcionFormatoCsv {
+        LectorCsv.validar(archivo);
+        long inicio = System.nanoTime();
+
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            long totalBloques = Math.max(1, (tamanio + BYTES_BLOQUE - 1) / BYTES_BLOQUE);
+            ColumnasCsv columnas = ignorarCabecera ? cabecera(canal) : ColumnasCsv.posicional();
+            AcumuladorMuestra muestra = new AcumuladorMuestra(totalBloques);
+            Bloque bloque = new Bloque(columnas);
+
+            Permutacion orden = new Permutacion(totalBloques, azar);
+            EstimacionEstadisticas estimacion;
+            for (long leidos = 1; leidos <= totalBloques; leidos++) {
+                bloque.leer(canal, orden.siguiente(), tamanio, muestra);
+                if (leidos >= BLOQUES_MINIMOS && leidos % BLOQUES_POR_CONTROL == 0) {
+                    estimacion = muestra.estimar();
+                    if (estimacion.getError() <= errorMaximo) {
+                        break;
+                    }
+                    if (System.nanoTime() - inicio > tiempoMaxNanos) {
+                        logger.warn("Tiempo de muestreo agotado con error ±{} (pedido ±{})",
+                                String.format("%.2f", estimacion.getError()), errorMaximo);
+                        break;
+                    }
+                }
+            }
+            estimacion = muestra.estimar();
+            logger.info("Muestreo: {} de {} bloques en {} ms, error ±{}", estimacion.getBloques(), totalBloques,
+                    (System.nanoTime() - inicio) / 1_000_000, String.format("%.2f", estimacion.getError()));
+            return estimacion;
+        }
+    }
+
+    /** Ubica las columnas con la cabecera, al principio del archivo. */
+    private ColumnasCsv cabecera(FileChannel canal) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(canal.size(), BYTES_BLOQUE));
+        leerCompleto(canal, buf, 0);
+        TokenizadorCsv tok = new TokenizadorCsv(new ByteArrayInputStream(buf.array(), 0, buf.position()),
+                codificacion);
+        while (tok.siguiente()) {
+            if (!tok.isVacio()) {
+                ColumnasCsv columnas = tok.isMalFormado() ? null : ColumnasCsv.desdeCabecera(tok);
+                return columnas != null ? columnas : ColumnasCsv.posicional();
+            }
+        }
+        return ColumnasCsv.posicional();
+    }
+
+    private static void leerCompleto(FileChannel canal, ByteBuffer buf, long posicion) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = canal.read(buf, posicion + buf.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /** Lectura de un bloque, con buffers que se reutilizan de uno a otro. */
+    private final class Bloque {
+        private final ColumnasCsv columnas;
+        private byte[] datos = new byte[BYTES_BLOQUE + EXTENSION + 1];
+        private final long[] conteos = new long[ESTADOS];
+        private final List<String> errores = new ArrayList<>();
+        private double sumaTiempos;
+
+        Bloque(ColumnasCsv columnas) {
+            this.columnas = columnas;
+        }
+
+        void leer(FileChannel canal, long numero, long tamanio, AcumuladorMuestra muestra) throws IOException {
+            // Se lee desde un byte antes para saber si el bloque empieza justo en una fila
+            long desde = numero * BYTES_BLOQUE;
+            long lectura = Math.max(0, desde - 1);
+            int largo = (int) (Math.min(tamanio, desde + BYTES_BLOQUE) - lectura);
+            leer(canal, lectura, largo, 0);
+
+            int inicio = numero == 0 && !ignorarCabecera ? 0 : despuesDeLinea(0, largo);
+            if (inicio < 0) {
+                // Una sola fila atraviesa todo el bloque: empieza en uno anterior
+                inicio = largo;
+            }
+
+            // La última fila que empieza en el bloque se completa con lo que sigue
+            int fin = largo;
+            if (inicio < largo && datos[largo - 1] != '\n') {
+                long siguiente = lectura + largo;
+                while (siguiente < tamanio) {
+                    int extra = (int) Math.min(EXTENSION, tamanio - siguiente);
+                    if (fin + extra > datos.length) {
+                        datos = Arrays.copyOf(datos, Math.max(datos.length * 2, fin + extra));
+                    }
+                    leer(canal, siguiente, extra, fin);
+                    siguiente += extra;
+                    int salto = despuesDeLinea(fin, fin + extra);
+                    if (salto >= 0) {
+                        fin = salto;
+                        break;
+                    }
+                    fin += extra;
+                }
+            }
+
+            Arrays.fill(conteos, 0);
+            sumaTiempos = 0;
+            errores.clear();
+            if (inicio < fin) {
+                LectorCsv.leer(new ByteArrayInputStream(datos, inicio, fin - inicio), codificacion, columnas, errores,
+                        this::contar);
+            }
+            muestra.agregarBloque(conteos, sumaTiempos, errores.size(), fin);
+        }
+
+        private void contar(CasoPrueba c) {
+            conteos[c.getEstado().ordinal()]++;
+            sumaTiempos += c.getTiempoEjecucion();
+        }
+
+        private void leer(FileChannel canal, long posicion, int largo, int destino) throws IOException {
+            leerCompleto(canal, ByteBuffer.wrap(datos, destino, largo).slice(), posicion);
+        }
+
+        /** @return posición siguiente al primer {@code \n} en [desde, hasta), o -1 si no hay */
+        private int despuesDeLinea(int desde, int hasta) {
+            for (int i = desde; i < hasta; i++) {
+                if (datos[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Los números de 0 a {@code n - 1} en orden aleatorio, sin repetir
+     * (Fisher-Yates). En lugar de un arreglo de {@code n} posiciones solo se
+     * guardan las que ya cambiaron de lugar, que son a lo sumo dos por número
+     * entregado.
+     */
+    static final class Permutacion {
+        private final long n;
+        private final Random azar;
+        private final Map<Long, Long> cambiados = new HashMap<>();
+        private long entregados;
+
+        Permutacion(long n, Random azar) {
+            this.n = n;
+            this.azar = azar;
+        }
+
+        long siguiente() {
+            long i = entregados++;
+            long j = i + (long) (azar.nextDouble() * (n - i));
+            long valorJ = cambiados.getOrDefault(j, j);
+            cambiados.put(j, cambiados.getOrDefault(i, i));
+            cambiados.remove(i);
+            return valorJ;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ConteoIds;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opciones de una lectura de archivo con {@link LectorCsv} o
+ * {@link LecturaEnEtapas}. Solo la lista de errores es obligatoria; lo demás
+ * se indica con los métodos encadenables:
+ *
+ * <pre>
+ * new OpcionesLectura(errores).ignorarCabecera(true).bytesLeidos(progreso).ids(ids)
+ * </pre>
+ *
+ * <p>
+ * Por defecto la primera línea se lee como caso, el archivo está en UTF-8 y
+ * no se cuentan bytes, ids ni suites.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class OpcionesLectura {
+
+    private final List<String> errores;
+    private boolean ignorarCabecera;
+    private AtomicLong bytesLeidos;
+    private ConteoIds ids;
+    private ArbolSuites suites;
+    private Charset codificacion = StandardCharsets.UTF_8;
+
+    /**
+     * @param errores lista donde se agregan mensajes sobre líneas inválidas
+     */
+    public OpcionesLectura(List<String> errores) {
+        this.errores = Objects.requireNonNull(errores, "errores");
+    }
+
+    /**
+     * @param ignorar si es true, la primera línea es la cabecera: no se lee
+     *                como caso y, si nombra las columnas, estas se ubican por
+     *                nombre
+     */
+    public OpcionesLectura ignorarCabecera(boolean ignorar) {
+        this.ignorarCabecera = ignorar;
+        return this;
+    }
+
+    /**
+     * @param contador contador de progreso, o null si no interesa; se puede
+     *                 consultar desde otro hilo mientras dura la lectura
+     */
+    public OpcionesLectura bytesLeidos(AtomicLong contador) {
+        this.bytesLeidos = contador;
+        return this;
+    }
+
+    /**
+     * @param ids conteo de ids distintos y filas duplicadas, o null si no
+     *            interesa
+     */
+    public OpcionesLectura ids(ConteoIds ids) {
+        this.ids = ids;
+        return this;
+    }
+
+    /**
+     * @param suites árbol donde se agrupa cada fila por suite, o null si no
+     *               interesa
+     */
+    public OpcionesLectura suites(ArbolSuites suites) {
+        this.suites = suites;
+        return this;
+    }
+
+    /**
+     * @param codificacion codificación del archivo, compatible con ASCII
+     *                     ({@link LectorCsv#admiteCodificacion(Charset)})
+     */
+    public OpcionesLectura codificacion(Charset codificacion) {
+        this.codificacion = Objects.requireNonNull(codificacion, "codificacion");
+        return this;
+    }
+
+    List<String> getErrores() {
+        return errores;
+    }
+
+    boolean isIgnorarCabecera() {
+        return ignorarCabecera;
+    }
+
+    /** @return el contador indicado, o uno nuevo para la posición de los bloques */
+    AtomicLong getBytesLeidos() {
+        return bytesLeidos != null ? bytesLeidos : new AtomicLong();
+    }
+
+    ConteoIds getIds() {
+        return ids;
+    }
+
+    ArbolSuites getSuites() {
+        return suites;
+    }
+
+    Charset getCodificacion() {
+        return codificacion;
+    }
+}
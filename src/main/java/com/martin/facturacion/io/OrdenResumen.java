@@ -0,0 +1,57 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orden de las filas de {@code resumen.csv}.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public enum OrdenResumen {
+
+    /** Como aparecen en el CSV de entrada (sin ordenar). */
+    ENTRADA("entrada", null),
+
+    /** Del más lento al más rápido; ante empates, en orden de entrada. */
+    TIEMPO("tiempo", Comparator.comparingDouble(CasoPrueba::getTiempoEjecucion).reversed()),
+
+    /** Por {@code idTest}; ante ids repetidos, en orden de entrada. */
+    ID("id", Comparator.comparing(CasoPrueba::getIdTest));
+
+    private final String nombre;
+    private final Comparator<CasoPrueba> comparador;
+
+    OrdenResumen(String nombre, Comparator<CasoPrueba> comparador) {
+        this.nombre = nombre;
+        this.comparador = comparador;
+    }
+
+    /** @return nombre con el que se elige desde la línea de comandos */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /** @return comparador de casos, o null para {@link #ENTRADA} */
+    public Comparator<CasoPrueba> getComparador() {
+        return comparador;
+    }
+
+    /**
+     * @param nombre nombre de la línea de comandos ({@code entrada}, {@code tiempo}, {@code id})
+     * @return el orden correspondiente
+     * @throws IllegalArgumentException si el nombre no existe
+     */
+    public static OrdenResumen desde(String nombre) {
+        for (OrdenResumen o : values()) {
+            if (o.nombre.equalsIgnoreCase(nombre.trim())) {
+                return o;
+            }
+        }
+        throw new IllegalArgumentException("Orden desconocido: " + nombre + ". Disponibles: "
+                + Arrays.stream(values()).map(OrdenResumen::getNombre).toList());
+    }
+}
@@ -0,0 +1,372 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordenamiento externo de casos (merge sort en disco) para ordenar más casos
+ * de los que entran en memoria.
+ *
+ * <ol>
+ * <li>Los casos se juntan en tandas del tamaño que permite el presupuesto.
+ * Cada tanda llena se ordena y se escribe en un archivo temporal binario
+ * (una <em>corrida</em>) en un hilo aparte, mientras la lectura sigue
+ * llenando la siguiente.</li>
+ * <li>Al recorrer, las corridas se mezclan de a {@link #MAX_CORRIDAS_MEZCLA}
+ * con un heap (mezcla de k vías). Si hay más, primero se mezclan las más
+ * viejas en una corrida intermedia.</li>
+ * </ol>
+ *
+ * <p>
+ * Si todos los casos entran en una sola tanda no se escribe nada en disco.
+ * El orden es estable: ante casos iguales según el comparador, sale primero
+ * el que se agregó antes.
+ * </p>
+ *
+ * <p>
+ * Se usa una sola vez: {@link #agregar(CasoPrueba)} los casos,
+ * {@link #recorrer(Receptor)} y {@link #close()}. No es seguro para uso
+ * concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class OrdenamientoExterno implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrdenamientoExterno.class);
+
+    /**
+     * Memoria estimada de un caso en el heap: el objeto, dos Strings cortos y
+     * su referencia en la tanda.
+     */
+    static final int BYTES_POR_CASO = 160;
+
+    /** Corridas que se mezclan a la vez; cada una tiene su buffer de lectura. */
+    static final int MAX_CORRIDAS_MEZCLA = 64;
+
+    private static final int BUFFER_CORRIDA = 64 * 1024;
+    private static final int TANDA_MINIMA = 1024;
+    private static final EstadoPrueba[] ESTADOS = EstadoPrueba.values();
+
+    /** Recibe los casos ordenados; a diferencia de Consumer, puede lanzar IOException. */
+    @FunctionalInterface
+    public interface Receptor {
+        void aceptar(CasoPrueba caso) throws IOException;
+    }
+
+    private final Comparator<CasoPrueba> comparador;
+    private final int tamanioTanda;
+    private final int hilos;
+
+    private CasoPrueba[] tanda;
+    private int enTanda;
+    private long total;
+
+    private Path directorio;
+    private final List<Path> corridas = new ArrayList<>();
+    private final List<Future<?>> pendientes = new ArrayList<>();
+    private ExecutorService ejecutor;
+    private Semaphore tandasLibres;
+    private int siguienteCorrida;
+    /** Lo escriben también los hilos de las corridas. */
+    private final AtomicLong bytesEnDisco = new AtomicLong();
+
+    /**
+     * @param comparador       orden deseado
+     * @param presupuestoBytes memoria que pueden ocupar las tandas en total
+     * @param hilos            hilos para ordenar y escribir corridas en paralelo
+     */
+    public OrdenamientoExterno(Comparator<CasoPrueba> comparador, long presupuestoBytes, int hilos) {
+        this.comparador = comparador;
+        this.hilos = Math.max(1, hilos);
+        // La tanda que se llena más las que se están ordenando en paralelo
+        long porTanda = presupuestoBytes / (this.hilos + 1) / BYTES_POR_CASO;
+        this.tamanioTanda = (int) Math.max(TANDA_MINIMA, Math.min(Integer.MAX_VALUE - 8, porTanda));
+        this.tanda = new CasoPrueba[Math.min(tamanioTanda, 1 << 16)];
+    }
+
+    /** Constructor para pruebas: tandas de un tamaño exacto, un hilo. */
+    OrdenamientoExterno(Comparator<CasoPrueba> comparador, int tamanioTanda) {
+        this.comparador = comparador;
+        this.hilos = 1;
+        this.tamanioTanda = tamanioTanda;
+        this.tanda = new CasoPrueba[tamanioTanda];
+    }
+
+    /**
+     * Agrega un caso. Si la tanda se llena, se ordena y se escribe en disco en
+     * segundo plano (esperando si ya hay {@code hilos} tandas en curso).
+     *
+     * @throws UncheckedIOException si falla la escritura de una corrida
+     */
+    public void agregar(CasoPrueba caso) {
+        if (enTanda == tanda.length) {
+            if (enTanda < tamanioTanda) {
+                tanda = Arrays.copyOf(tanda, (int) Math.min(tamanioTanda, 2L * enTanda));
+            } else {
+                try {
+                    volcarTanda();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        tanda[enTanda++] = caso;
+        total++;
+    }
+
+    /** @return una cuarta parte del heap máximo, el presupuesto si no se configura otro */
+    public static long presupuestoPorDefecto() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /** @return casos agregados */
+    public long getTotal() {
+        return total;
+    }
+
+    /** @return corridas escritas en disco hasta ahora (0 si todo entró en memoria) */
+    public int getCorridas() {
+        return siguienteCorrida;
+    }
+
+    /** @return bytes escritos en corridas, incluidas las intermedias de la mezcla */
+    public long getBytesEnDisco() {
+        return bytesEnDisco.get();
+    }
+
+    /**
+     * Entrega todos los casos en orden y borra los archivos temporales.
+     *
+     * @param receptor destino de cada caso
+     */
+    public void recorrer(Receptor receptor) throws IOException {
+        try {
+            if (directorio == null) {
+                // Todo entró en una tanda: se ordena en memoria (TimSort, estable)
+                Arrays.sort(tanda, 0, enTanda, comparador);
+                for (int i = 0; i < enTanda; i++) {
+                    receptor.aceptar(tanda[i]);
+                }
+                return;
+            }
+
+            if (enTanda > 0) {
+                volcarTanda();
+            }
+            esperarPendientes();
+            tanda = null;
+
+            while (corridas.size() > MAX_CORRIDAS_MEZCLA) {
+                // Se mezclan las más viejas y la nueva ocupa su lugar, para mantener la estabilidad
+                List<Path> viejas = new ArrayList<>(corridas.subList(0, MAX_CORRIDAS_MEZCLA));
+                Path intermedia = nuevaCorrida();
+                try (DataOutputStream out = abrirEscritura(intermedia)) {
+                    mezclar(viejas, c -> escribir(out, c));
+                }
+                bytesEnDisco.addAndGet(Files.size(intermedia));
+                corridas.subList(0, MAX_CORRIDAS_MEZCLA).clear();
+                corridas.add(0, intermedia);
+            }
+            mezclar(new ArrayList<>(corridas), receptor);
+        } finally {
+            close();
+        }
+    }
+
+    // =======================================
+    // CORRIDAS
+    // =======================================
+
+    private void volcarTanda() throws IOException {
+        if (directorio == null) {
+            directorio = Files.createTempDirectory("orden");
+            ejecutor = Executors.newFixedThreadPool(hilos, r -> {
+                Thread t = new Thread(r, "orden-corridas");
+                t.setDaemon(true);
+                return t;
+            });
+            tandasLibres = new Semaphore(hilos);
+        }
+
+        CasoPrueba[] llena = tanda;
+        int n = enTanda;
+        Path corrida = nuevaCorrida();
+        corridas.add(corrida);
+
+        try {
+            tandasLibres.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando una corrida");
+        }
+        pendientes.add(ejecutor.submit(() -> {
+            try {
+                Arrays.sort(llena, 0, n, comparador);
+                try (DataOutputStream out = abrirEscritura(corrida)) {
+                    for (int i = 0; i < n; i++) {
+                        escribir(out, llena[i]);
+                    }
+                }
+                bytesEnDisco.addAndGet(Files.size(corrida));
+                return null;
+            } finally {
+                tandasLibres.release();
+            }
+        }));
+
+        tanda = new CasoPrueba[tamanioTanda];
+        enTanda = 0;
+    }
+
+    private void esperarPendientes() throws IOException {
+        try {
+            for (Future<?> f : pendientes) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando las corridas");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof IOException io ? io : new IOException("Falló una corrida", causa);
+        }
+        pendientes.clear();
+    }
+
+    private Path nuevaCorrida() {
+        return directorio.resolve("corrida" + siguienteCorrida++ + ".bin");
+    }
+
+    private static DataOutputStream abrirEscritura(Path archivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archivo), BUFFER_CORRIDA));
+    }
+
+    private static void escribir(DataOutputStream out, CasoPrueba c) throws IOException {
+        TextoBinario.escribir(out, c.getIdTest());
+        TextoBinario.escribir(out, c.getNombreTest());
+        out.writeByte(c.getEstado().ordinal());
+        out.writeDouble(c.getTiempoEjecucion());
+    }
+
+    // =======================================
+    // MEZCLA DE K VÍAS
+    // =======================================
+
+    /** Corrida abierta para mezclar, con su caso actual. */
+    static final class Fuente {
+        final Path archivo;
+        final DataInputStream in;
+        final int orden;
+        CasoPrueba actual;
+
+        Fuente(Path archivo, int orden) throws IOException {
+            this.archivo = archivo;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), BUFFER_CORRIDA));
+            this.orden = orden;
+        }
+
+        /**
+         * @return false si la corrida se terminó
+         * @throws IOException si la corrida se corta a mitad de un caso
+         */
+        boolean avanzar() throws IOException {
+            // Solo es fin normal si no queda ni un byte del caso siguiente
+            in.mark(1);
+            if (in.read() < 0) {
+                actual = null;
+                return false;
+            }
+            in.reset();
+            try {
+                String id = TextoBinario.leer(in);
+                String nombre = TextoBinario.leer(in);
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= ESTADOS.length) {
+                    throw new IOException("Estado inválido " + ordinal + " en " + archivo);
+                }
+                actual = new CasoPrueba(id, nombre, ESTADOS[ordinal], in.readDouble());
+                return true;
+            } catch (EOFException e) {
+                throw new IOException("Corrida truncada: " + archivo, e);
+            }
+        }
+    }
+
+    private void mezclar(List<Path> archivos, Receptor receptor) throws IOException {
+        // Ante casos iguales gana la corrida más vieja: así la mezcla es estable
+        PriorityQueue<Fuente> heap = new PriorityQueue<>(Math.max(1, archivos.size()),
+                Comparator.<Fuente, CasoPrueba>comparing(f -> f.actual, comparador)
+                        .thenComparingInt(f -> f.orden));
+        List<Fuente> abiertas = new ArrayList<>();
+        try {
+            for (int i = 0; i < archivos.size(); i++) {
+                Fuente f = new Fuente(archivos.get(i), i);
+                abiertas.add(f);
+                if (f.avanzar()) {
+                    heap.add(f);
+                }
+            }
+            while (!heap.isEmpty()) {
+                Fuente f = heap.poll();
+                receptor.aceptar(f.actual);
+                if (f.avanzar()) {
+                    heap.add(f);
+                }
+            }
+        } finally {
+            for (Fuente f : abiertas) {
+                f.in.close();
+            }
+        }
+        for (Path a : archivos) {
+            Files.deleteIfExists(a);
+        }
+        logger.debug("Mezcladas {} corridas", archivos.size());
+    }
+
+    /** Detiene los hilos y borra los archivos temporales que queden. */
+    @Override
+    public void close() throws IOException {
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            try {
+                // Una corrida a medio escribir impediría borrar la carpeta
+                ejecutor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ejecutor = null;
+        }
+        if (directorio == null) {
+            return;
+        }
+        try (var archivos = Files.list(directorio)) {
+            for (Path a : (Iterable<Path>) archivos::iterator) {
+                Files.deleteIfExists(a);
+            }
+        }
+        Files.deleteIfExists(directorio);
+        directorio = null;
+    }
+}
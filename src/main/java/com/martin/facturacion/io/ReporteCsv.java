@@ -0,0 +1,90 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Salida {@code csv}: escribe {@code resumen.csv} con una fila por caso
+ * válido. Requiere los casos individuales.
+ *
+ * <p>
+ * Con un orden distinto de {@link OrdenResumen#ENTRADA} escribe los casos
+ * desde un {@link OrdenamientoExterno}: el que se llenó durante la lectura
+ * o, si no hay, uno armado con los casos en memoria.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteCsv implements SalidaReporte {
+
+    @Override
+    public String nombre() {
+        return "csv";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return true;
+    }
+
+    @Override
+    public boolean admiteOrdenExterno() {
+        return true;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(datos.archivo("resumen.csv"))) {
+
+            bw.write("idTest,nombreTest,estado,tiempoEjecucion");
+            bw.newLine();
+
+            if (datos.getOrden() == OrdenResumen.ENTRADA) {
+                for (CasoPrueba c : datos.getCasos()) {
+                    escribirFila(bw, c);
+                }
+                return;
+            }
+
+            OrdenamientoExterno ordenados = datos.getOrdenados();
+            if (ordenados == null) {
+                ordenados = new OrdenamientoExterno(datos.getOrden().getComparador(),
+                        OrdenamientoExterno.presupuestoPorDefecto(), Runtime.getRuntime().availableProcessors());
+                datos.getCasos().forEach(ordenados::agregar);
+            }
+            ordenados.recorrer(c -> escribirFila(bw, c));
+        }
+    }
+
+    private static void escribirFila(BufferedWriter bw, CasoPrueba c) throws IOException {
+        bw.write(String.format(
+                "%s,%s,%s,%.3f",
+                campo(c.getIdTest()),
+                campo(c.getNombreTest()),
+                c.getEstado(),
+                c.getTiempoEjecucion()));
+        bw.newLine();
+    }
+
+    /**
+     * Escapa un campo según RFC 4180: si tiene comas, comillas o saltos de
+     * línea va entre comillas, con las comillas internas duplicadas. Así lo
+     * que lee {@link LectorCsv} vuelve a leerse igual.
+     *
+     * @param texto valor del campo
+     * @return el mismo texto si no hace falta escaparlo
+     */
+    static String campo(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char ch = texto.charAt(i);
+            if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+                return '"' + texto.replace("\"", "\"\"") + '"';
+            }
+        }
+        return texto;
+    }
+}
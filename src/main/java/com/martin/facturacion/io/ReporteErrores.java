@@ -0,0 +1,41 @@
+package com.martin.facturacion.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Salida {@code log}: escribe {@code errores.log} con un mensaje por línea
+ * inválida del CSV. No necesita los casos. Si los errores son solo una
+ * muestra (al combinar resúmenes parciales), una última línea dice cuántos
+ * faltan.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteErrores implements SalidaReporte {
+
+    @Override
+    public String nombre() {
+        return "log";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return false;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(datos.archivo("errores.log"))) {
+            for (String e : datos.getErrores()) {
+                bw.write(e + System.lineSeparator());
+            }
+            long faltan = datos.getCantidadErrores() - datos.getErrores().size();
+            if (faltan > 0) {
+                bw.write("... y " + faltan + " errores más que no se guardaron en los resúmenes parciales"
+                        + System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ComparacionHistorial;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Salida {@code json}: escribe {@code resumen.json} para consumo automático
+ * (dashboards, CI), evitando tener que interpretar resumen.txt.
+ *
+ * <pre>
+ * {
+ *   "total": 3,
+ *   "estados": {"PASSED": {"cantidad": 2, "porcentaje": 66.66}, ...},
+ *   "tiempoTotal": 4.0, "tiempoPromedio": 1.33,
+ *   "masLentos": [{"idTest": "T2", ...}, ...],
+ *   "errores": {"total": 1, "porMotivo": {"estado inválido": 1}},
+ *   "ids": {"distintos": 3, "filasDuplicadas": 0, "falsosEsperados": 0.0},
+ *   "comparacion": {"ejecuciones": 5, "metricas": {"tiempoPromedio": {"actual": ..., "variacion": 12.5}, ...}}
+ * }
+ * </pre>
+ *
+ * <p>
+ * Solo necesita datos agregados y se escribe en streaming con
+ * {@link EscritorJson}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteJson implements SalidaReporte {
+
+    @Override
+    public String nombre() {
+        return "json";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return false;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        try (EscritorJson json = new EscritorJson(
+                Files.newBufferedWriter(datos.archivo("resumen.json")))) {
+            escribirResumen(json, datos.getEstadisticas(), datos.getCantidadErrores(), datos.getErroresPorMotivo(),
+                    datos.getComparacion(), datos.getIds());
+            json.finLinea();
+        }
+    }
+
+    /**
+     * Escribe el objeto de resumen completo. También lo usa el modo servidor
+     * para responder sin pasar por un archivo.
+     *
+     * @param json        escritor de destino
+     * @param stats       estadísticas de la ejecución
+     * @param errores     mensajes de error de la lectura
+     * @param comparacion comparación con ejecuciones anteriores, o null
+     * @param ids         ids distintos y filas duplicadas, o null
+     */
+    public static void escribirResumen(EscritorJson json, EstadisticasPruebas stats, List<String> errores,
+            ComparacionHistorial comparacion, ConteoIds ids) throws IOException {
+        escribirResumen(json, stats, errores.size(), contarPorMotivo(errores), comparacion, ids);
+    }
+
+    private static void escribirResumen(EscritorJson json, EstadisticasPruebas stats, long cantidadErrores,
+            Map<String, Long> erroresPorMotivo, ComparacionHistorial comparacion, ConteoIds ids)
+            throws IOException {
+        json.inicioObjeto();
+        json.campo("total").valor(stats.getTotal());
+
+        json.campo("estados").inicioObjeto();
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            json.campo(s.name()).inicioObjeto()
+                    .campo("cantidad").valor(stats.getConteos().getOrDefault(s, 0L))
+                    .campo("porcentaje").valor(stats.getPorcentajes().get(s))
+                    .finObjeto();
+        }
+        json.finObjeto();
+
+        json.campo("tiempoTotal").valor(stats.tiempoTotal());
+        json.campo("tiempoPromedio").valor(stats.getTiempoPromedio());
+
+        json.campo("masLentos").inicioArreglo();
+        for (CasoPrueba c : stats.getMasLentos()) {
+            escribirCaso(json, c);
+        }
+        json.finArreglo();
+
+        json.campo("errores").inicioObjeto();
+        json.campo("total").valor(cantidadErrores);
+        json.campo("porMotivo").inicioObjeto();
+        for (Map.Entry<String, Long> e : erroresPorMotivo.entrySet()) {
+            json.campo(e.getKey()).valor(e.getValue());
+        }
+        json.finObjeto();
+        json.finObjeto();
+
+        if (ids != null) {
+            json.campo("ids").inicioObjeto()
+                    .campo("distintos").valor(ids.getIdsDistintos())
+                    .campo("filasDuplicadas").valor(ids.getDuplicadas())
+                    .campo("falsosEsperados").valor(ids.getFalsosEsperados())
+                    .finObjeto();
+        }
+
+        if (comparacion != null && !comparacion.isVacia()) {
+            json.campo("comparacion").inicioObjeto();
+            json.campo("ejecuciones").valor(comparacion.getEjecuciones());
+            json.campo("desde").valor(comparacion.getAnteriores().get(0).getFecha().toString());
+            json.campo("metricas").inicioObjeto();
+            for (ComparacionHistorial.Metrica m : comparacion.getMetricas()) {
+                json.campo(m.getClave()).inicioObjeto()
+                        .campo("actual").valor(m.getActual())
+                        .campo("anterior").valor(m.getAnterior())
+                        .campo("promedio").valor(m.getPromedio())
+                        .campo("variacion").valor(m.getVariacion())
+                        .finObjeto();
+            }
+            json.finObjeto();
+            json.finObjeto();
+        }
+
+        json.finObjeto();
+    }
+
+    /** Escribe un caso como objeto JSON. También lo usa {@link ReporteNdjson}. */
+    static void escribirCaso(EscritorJson json, CasoPrueba c) throws IOException {
+        json.inicioObjeto()
+                .campo("idTest").valor(c.getIdTest())
+                .campo("nombreTest").valor(c.getNombreTest())
+                .campo("estado").valor(c.getEstado().name())
+                .campo("tiempoEjecucion").valor(c.getTiempoEjecucion())
+                .finObjeto();
+    }
+
+    /**
+     * Agrupa los mensajes de error por motivo. Los mensajes de
+     * {@link LectorCsv} tienen la forma {@code "<línea>: <motivo> -> <contenido>"}.
+     */
+    static Map<String, Long> contarPorMotivo(List<String> errores) {
+        Map<String, Long> conteo = new TreeMap<>();
+        for (String e : errores) {
+            conteo.merge(motivo(e), 1L, Long::sum);
+        }
+        return conteo;
+    }
+
+    /** @return el motivo de un mensaje de error, o {@code "otro"} si no tiene la forma de {@link LectorCsv} */
+    static String motivo(String error) {
+        int desde = error.indexOf(": ");
+        int hasta = error.indexOf(" -> ");
+        return desde >= 0 && hasta > desde ? error.substring(desde + 2, hasta) : "otro";
+    }
+}
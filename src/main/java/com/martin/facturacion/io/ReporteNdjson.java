@@ -0,0 +1,38 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Salida {@code ndjson}: escribe {@code casos.ndjson} con un objeto JSON por
+ * línea para cada caso válido. Cada línea se escribe y se olvida, por lo que
+ * la memoria usada no depende de la cantidad de casos.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteNdjson implements SalidaReporte {
+
+    @Override
+    public String nombre() {
+        return "ndjson";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return true;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        try (EscritorJson json = new EscritorJson(
+                Files.newBufferedWriter(datos.archivo("casos.ndjson")))) {
+            for (CasoPrueba c : datos.getCasos()) {
+                ReporteJson.escribirCaso(json, c);
+                json.finLinea();
+            }
+        }
+    }
+}
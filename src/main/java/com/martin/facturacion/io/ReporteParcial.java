@@ -0,0 +1,220 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.HistogramaTiempos;
+import com.martin.facturacion.servicio.ParcialEstadisticas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Salida {@code parcial}: escribe {@code resumen.parcial}, el estado de la
+ * ejecución en un formato binario compacto que se puede combinar con el de
+ * otras ({@link ParcialEstadisticas}). Solo necesita datos agregados.
+ *
+ * <p>
+ * Formato (big-endian, con {@link DataOutputStream}):
+ * </p>
+ * <ul>
+ * <li>Encabezado: {@link #MAGICO}, versión (1 byte) y cantidad de partes
+ * combinadas.</li>
+ * <li>Total, conteos por estado y tiempo total.</li>
+ * <li>Histograma disperso: solo las cubetas con casos, igual que en el
+ * historial.</li>
+ * <li>Top de lentos.</li>
+ * <li>Ids (si se contaron): filas, duplicadas, falsos positivos esperados y
+ * los registros del HyperLogLog (16 KB).</li>
+ * <li>Cantidad de errores por motivo y una muestra de hasta
+ * {@link ParcialEstadisticas#MUESTRA_ERRORES} mensajes.</li>
+ * </ul>
+ *
+ * <p>
+ * Los textos van como {@code int} con el largo y los bytes UTF-8. Un
+ * archivo de otra versión se rechaza con un mensaje claro en lugar de
+ * leerse mal.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteParcial implements SalidaReporte {
+
+    public static final String ARCHIVO = "resumen.parcial";
+
+    /** "PARC" en ASCII. */
+    static final int MAGICO = 0x50415243;
+
+    private static final byte VERSION = 1;
+
+    /** Los mensajes de la muestra se recortan, para que el archivo quede chico. */
+    private static final int LARGO_MAXIMO_ERROR = 4096;
+
+    @Override
+    public String nombre() {
+        return "parcial";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return false;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        escribir(ParcialEstadisticas.de(datos.getEstadisticas(), datos.getIds(), datos.getErroresPorMotivo(),
+                datos.getErrores()), datos.archivo(ARCHIVO));
+    }
+
+    /**
+     * @param parcial estado a guardar
+     * @param archivo destino (se reemplaza si existe)
+     */
+    public static void escribir(ParcialEstadisticas parcial, Path archivo) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archivo)))) {
+            out.writeInt(MAGICO);
+            out.writeByte(VERSION);
+            out.writeInt(parcial.getPartes());
+
+            out.writeLong(parcial.getTotal());
+            long[] conteos = parcial.getConteos();
+            out.writeByte(conteos.length);
+            for (long c : conteos) {
+                out.writeLong(c);
+            }
+            out.writeDouble(parcial.getTiempoTotal());
+
+            long[] cuentas = parcial.getHistograma().getCuentas();
+            int noVacias = 0;
+            for (long c : cuentas) {
+                if (c != 0) {
+                    noVacias++;
+                }
+            }
+            out.writeShort(noVacias);
+            for (int i = 0; i < cuentas.length; i++) {
+                if (cuentas[i] != 0) {
+                    out.writeShort(i);
+                    out.writeLong(cuentas[i]);
+                }
+            }
+
+            out.writeByte(parcial.getMasLentos().size());
+            for (CasoPrueba c : parcial.getMasLentos()) {
+                TextoBinario.escribir(out, c.getIdTest());
+                TextoBinario.escribir(out, c.getNombreTest());
+                out.writeByte(c.getEstado().ordinal());
+                out.writeDouble(c.getTiempoEjecucion());
+            }
+
+            ConteoIds ids = parcial.getIds();
+            out.writeBoolean(ids != null);
+            if (ids != null) {
+                out.writeLong(ids.getFilas());
+                out.writeLong(ids.getDuplicadas());
+                out.writeDouble(ids.getFalsosEsperados());
+                byte[] registros = ids.getRegistros();
+                out.writeInt(registros.length);
+                out.write(registros);
+            }
+
+            Map<String, Long> porMotivo = parcial.getErroresPorMotivo();
+            out.writeInt(porMotivo.size());
+            for (Map.Entry<String, Long> e : porMotivo.entrySet()) {
+                TextoBinario.escribir(out, e.getKey());
+                out.writeLong(e.getValue());
+            }
+            out.writeInt(parcial.getMuestraErrores().size());
+            for (String e : parcial.getMuestraErrores()) {
+                TextoBinario.escribir(out, e.length() > LARGO_MAXIMO_ERROR ? e.substring(0, LARGO_MAXIMO_ERROR) : e);
+            }
+        }
+    }
+
+    /**
+     * @param archivo un {@code resumen.parcial}
+     * @return el estado guardado
+     * @throws IOException si no se puede leer, no es un resumen parcial o es
+     *                     de otra versión
+     */
+    public static ParcialEstadisticas leer(Path archivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("No es un resumen parcial: " + archivo);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Versión de resumen parcial no soportada: " + version + " en " + archivo);
+            }
+            int partes = in.readInt();
+
+            long total = in.readLong();
+            long[] conteos = new long[EstadoPrueba.values().length];
+            int estados = in.readUnsignedByte();
+            for (int i = 0; i < estados; i++) {
+                long c = in.readLong();
+                if (i < conteos.length) {
+                    conteos[i] = c;
+                }
+            }
+            double tiempoTotal = in.readDouble();
+
+            long[] cuentas = new long[HistogramaTiempos.CUBETAS];
+            int noVacias = in.readUnsignedShort();
+            for (int i = 0; i < noVacias; i++) {
+                int cubeta = in.readUnsignedShort();
+                if (cubeta >= cuentas.length) {
+                    throw new IOException("Cubeta de histograma inválida " + cubeta + " en " + archivo);
+                }
+                cuentas[cubeta] = in.readLong();
+            }
+
+            int lentos = in.readUnsignedByte();
+            List<CasoPrueba> masLentos = new ArrayList<>(lentos);
+            for (int i = 0; i < lentos; i++) {
+                String id = TextoBinario.leer(in);
+                String nombre = TextoBinario.leer(in);
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= EstadoPrueba.values().length) {
+                    throw new IOException("Estado inválido " + ordinal + " en " + archivo);
+                }
+                EstadoPrueba estado = EstadoPrueba.values()[ordinal];
+                masLentos.add(new CasoPrueba(id, nombre, estado, in.readDouble()));
+            }
+
+            ConteoIds ids = null;
+            if (in.readBoolean()) {
+                long filas = in.readLong();
+                long duplicadas = in.readLong();
+                double falsos = in.readDouble();
+                byte[] registros = new byte[in.readInt()];
+                in.readFully(registros);
+                ids = ConteoIds.desdeResumen(registros, filas, duplicadas, falsos);
+            }
+
+            Map<String, Long> porMotivo = new TreeMap<>();
+            List<String> muestra = new ArrayList<>();
+            int motivos = in.readInt();
+            for (int i = 0; i < motivos; i++) {
+                porMotivo.put(TextoBinario.leer(in), in.readLong());
+            }
+            int cantidad = in.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                muestra.add(TextoBinario.leer(in));
+            }
+
+            return new ParcialEstadisticas(partes, total, conteos, tiempoTotal, new HistogramaTiempos(cuentas),
+                    masLentos, ids, porMotivo, muestra);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.TopLentos;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Genera el reporte {@code resumen.pdf} con iText 5.
+ *
+ * <p>
+ * El documento incluye:
+ * </p>
+ * <ul>
+ * <li>El mismo resumen que se escribe en {@code resumen.txt}.</li>
+ * <li>Los {@link #TOP_LENTOS} casos más lentos, tomados de las estadísticas.</li>
+ * <li>El detalle de los casos FAILED.</li>
+ * </ul>
+ *
+ * <p>
+ * La tabla de casos fallidos puede ser muy grande, por eso se construye como
+ * un {@code LargeElement}: se marca con {@code setComplete(false)} y se agrega
+ * al documento cada {@link #FILAS_POR_BLOQUE} filas. iText escribe esas filas
+ * y las descarta, así la memoria queda acotada al tamaño de un bloque. Para
+ * que el PDF no sea el paso más lento del proceso se listan por defecto
+ * hasta {@link #MAX_FALLIDOS} casos ({@code --max-fallidos-pdf}, 0 para
+ * todos). Si hay más, el documento lo dice antes y después de la tabla; el
+ * resto está en resumen.csv.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReportePdf implements SalidaReporte {
+
+    /** Cantidad de casos más lentos que se muestran. */
+    public static final int TOP_LENTOS = TopLentos.K_POR_DEFECTO;
+
+    /** Filas que se acumulan antes de volcar la tabla al documento. */
+    public static final int FILAS_POR_BLOQUE = 500;
+
+    /** Máximo de casos fallidos que se detallan en el PDF si no se indica otro. */
+    public static final int MAX_FALLIDOS = 50_000;
+
+    /**
+     * Fuentes del documento. Están en una clase aparte para que iText se
+     * cargue recién al generar el PDF y no al descubrir la salida.
+     */
+    private static final class Fuentes {
+        static final Font TITULO = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
+        static final Font SUBTITULO = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+        static final Font NORMAL = new Font(Font.FontFamily.HELVETICA, 10);
+        static final Font CELDA = new Font(Font.FontFamily.HELVETICA, 8);
+        static final Font CABECERA = new Font(Font.FontFamily.HELVETICA, 8, Font.BOLD);
+    }
+
+    @Override
+    public String nombre() {
+        return "pdf";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return true;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        generar(datos.getCasos(), datos.getEstadisticas(), datos.archivo("resumen.pdf"),
+                datos.getMaxFallidosPdf());
+    }
+
+    /**
+     * Escribe el archivo PDF.
+     *
+     * @param casos       lista de casos válidos
+     * @param stats       estadísticas ya calculadas sobre {@code casos}
+     * @param destino     ruta del archivo .pdf a generar
+     * @param maxFallidos casos FAILED que se detallan; 0 es sin límite
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public static void generar(List<CasoPrueba> casos, EstadisticasPruebas stats, Path destino, int maxFallidos)
+            throws IOException {
+        Escritor.escribir(casos, stats, destino, maxFallidos == 0 ? Long.MAX_VALUE : maxFallidos);
+    }
+
+    /**
+     * Implementación con iText. Está en una clase aparte para que la librería
+     * se cargue recién al generar el archivo y no al descubrir la salida con
+     * {@link java.util.ServiceLoader}.
+     */
+    private static final class Escritor {
+
+        static void escribir(List<CasoPrueba> casos, EstadisticasPruebas stats, Path destino, long maxFallidos)
+                throws IOException {
+
+            Document doc = new Document();
+
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(destino))) {
+                PdfWriter writer = PdfWriter.getInstance(doc, os);
+                writer.setFullCompression();
+                doc.open();
+
+                // ============================================================
+                // 1) Resumen (mismo contenido que resumen.txt)
+                // ============================================================
+                doc.add(new Paragraph("Resumen de ejecución", Fuentes.TITULO));
+                for (String linea : ReporteTxt.lineasResumen(stats)) {
+                    doc.add(new Paragraph(linea, Fuentes.NORMAL));
+                }
+
+                // ============================================================
+                // 2) Casos más lentos
+                // ============================================================
+                doc.add(new Paragraph(" "));
+                doc.add(new Paragraph("Top " + TOP_LENTOS + " casos más lentos", Fuentes.SUBTITULO));
+
+                PdfPTable lentos = nuevaTabla();
+                for (CasoPrueba c : stats.getMasLentos()) {
+                    agregarFila(lentos, c);
+                }
+                doc.add(lentos);
+
+                // ============================================================
+                // 3) Casos fallidos (tabla incremental)
+                // ============================================================
+                long totalFallidos = stats.getConteos().getOrDefault(EstadoPrueba.FAILED, 0L);
+
+                doc.add(new Paragraph(" "));
+                doc.add(new Paragraph("Casos fallidos (" + totalFallidos + ")", Fuentes.SUBTITULO));
+                if (totalFallidos > maxFallidos) {
+                    doc.add(new Paragraph("Se detallan los primeros " + maxFallidos + " (límite de"
+                            + " --max-fallidos-pdf, 0 para todos); la lista completa está en resumen.csv.",
+                            Fuentes.NORMAL));
+                }
+
+                PdfPTable fallidos = nuevaTabla();
+                fallidos.setComplete(false);
+
+                long escritos = 0;
+                for (CasoPrueba c : casos) {
+                    if (c.getEstado() != EstadoPrueba.FAILED) {
+                        continue;
+                    }
+                    if (escritos == maxFallidos) {
+                        break;
+                    }
+
+                    agregarFila(fallidos, c);
+                    escritos++;
+
+                    if (escritos % FILAS_POR_BLOQUE == 0) {
+                        doc.add(fallidos);
+                    }
+                }
+
+                fallidos.setComplete(true);
+                doc.add(fallidos);
+
+                if (totalFallidos > escritos) {
+                    doc.add(new Paragraph("... y " + (totalFallidos - escritos)
+                            + " casos fallidos más (ver resumen.csv)", Fuentes.NORMAL));
+                }
+
+                doc.close();
+
+            } catch (DocumentException e) {
+                throw new IOException("No se pudo generar el PDF: " + e.getMessage(), e);
+            }
+        }
+
+        private static PdfPTable nuevaTabla() throws DocumentException {
+            PdfPTable tabla = new PdfPTable(4);
+            tabla.setWidthPercentage(100);
+            tabla.setWidths(new float[] { 2, 5, 2, 2 });
+            tabla.setHeaderRows(1);
+
+            for (String titulo : new String[] { "idTest", "nombreTest", "estado", "tiempoEjecucion" }) {
+                tabla.addCell(new PdfPCell(new Phrase(titulo, Fuentes.CABECERA)));
+            }
+            return tabla;
+        }
+
+        private static void agregarFila(PdfPTable tabla, CasoPrueba c) {
+            tabla.addCell(new Phrase(c.getIdTest(), Fuentes.CELDA));
+            tabla.addCell(new Phrase(c.getNombreTest(), Fuentes.CELDA));
+            tabla.addCell(new Phrase(c.getEstado().name(), Fuentes.CELDA));
+            tabla.addCell(new Phrase(String.format("%.3f", c.getTiempoEjecucion()), Fuentes.CELDA));
+        }
+    }
+}
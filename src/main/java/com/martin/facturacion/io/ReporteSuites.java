@@ -0,0 +1,78 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Salida {@code suites}: escribe {@code por_suite.csv} con una fila por
+ * prefijo de {@link ArbolSuites}, en profundidad y ordenadas por nombre (cada
+ * suite seguida de sus módulos). La primera fila, de nivel 0, es el total.
+ *
+ * <p>
+ * Usa el árbol armado durante la lectura, así que no necesita los casos. Si
+ * no hay uno (por ejemplo, con casos ya en memoria) lo arma con los casos
+ * disponibles y la configuración por defecto.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteSuites implements SalidaReporte {
+
+    public static final String ARCHIVO = "por_suite.csv";
+
+    @Override
+    public String nombre() {
+        return "suites";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return false;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        ArbolSuites suites = datos.getSuites();
+        if (suites == null) {
+            suites = new ArbolSuites(ArbolSuites.SEPARADOR_POR_DEFECTO, ArbolSuites.NIVELES_POR_DEFECTO, false);
+            for (CasoPrueba c : datos.getCasos()) {
+                suites.agregar(c.getIdTest(), c.getEstado(), c.getTiempoEjecucion());
+            }
+        }
+
+        try (BufferedWriter bw = Files.newBufferedWriter(datos.archivo(ARCHIVO))) {
+            bw.write("nivel,suite,total");
+            for (EstadoPrueba e : EstadoPrueba.values()) {
+                bw.write("," + e);
+            }
+            bw.write(",tiempoTotal,tiempoPromedio,tiempoMaximo");
+            bw.newLine();
+            escribir(bw, suites.getRaiz());
+        }
+    }
+
+    private static void escribir(BufferedWriter bw, ArbolSuites.Suite s) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(s.getNivel()).append(',')
+                .append(s.getNivel() == 0 ? "(total)" : ReporteCsv.campo(s.getRuta())).append(',')
+                .append(s.getTotal());
+        for (EstadoPrueba e : EstadoPrueba.values()) {
+            sb.append(',').append(s.getConteo(e));
+        }
+        sb.append(String.format(Locale.ROOT, ",%.3f,%.3f,%.3f", s.getTiempoTotal(), s.getTiempoPromedio(),
+                s.getTiempoMaximo()));
+        bw.write(sb.toString());
+        bw.newLine();
+
+        for (ArbolSuites.Suite hijo : s.getHijos()) {
+            escribir(bw, hijo);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ComparacionHistorial;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.EstimacionEstadisticas;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Salida {@code txt}: escribe {@code resumen.txt} con las estadísticas
+ * generales y, si hay historial, la comparación con las ejecuciones
+ * anteriores. Solo necesita datos agregados.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteTxt implements SalidaReporte {
+
+    @Override
+    public String nombre() {
+        return "txt";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return false;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(datos.archivo("resumen.txt"))) {
+            for (String linea : lineasResumen(datos.getEstadisticas())) {
+                bw.write(linea);
+                bw.newLine();
+            }
+            if (datos.getIds() != null) {
+                for (String linea : lineasIds(datos.getIds())) {
+                    bw.write(linea);
+                    bw.newLine();
+                }
+            }
+
+            ComparacionHistorial comparacion = datos.getComparacion();
+            if (comparacion != null && !comparacion.isVacia()) {
+                bw.newLine();
+                for (String linea : comparacion.lineas()) {
+                    bw.write(linea);
+                    bw.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe {@code resumen.txt} con una estimación por muestreo
+     * ({@code --muestra}) en lugar de las estadísticas exactas.
+     *
+     * @param estimacion estimación con sus intervalos
+     * @param outDir     carpeta de salida (se crea si no existe)
+     */
+    public static void escribir(EstimacionEstadisticas estimacion, Path outDir) throws IOException {
+        Files.createDirectories(outDir);
+        Files.write(outDir.resolve("resumen.txt"), estimacion.lineas());
+    }
+
+    /**
+     * Líneas del resumen general, tal como se escriben en resumen.txt.
+     * También las reutiliza {@link ReportePdf}.
+     */
+    static List<String> lineasResumen(EstadisticasPruebas stats) {
+        List<String> lineas = new ArrayList<>();
+
+        lineas.add("Total tests: " + stats.getTotal());
+
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            lineas.add(String.format(
+                    "%s: %d (%.2f%%)",
+                    s,
+                    stats.getConteos().getOrDefault(s, 0L),
+                    stats.getPorcentajes().get(s)));
+        }
+
+        lineas.add(String.format("Tiempo promedio: %.3f", stats.getTiempoPromedio()));
+
+        stats.getMasLento().ifPresent(c -> lineas.add("Mas lento: " + c.toString()));
+
+        return lineas;
+    }
+
+    /** Líneas con los ids distintos (aproximados) y las filas posiblemente duplicadas. */
+    static List<String> lineasIds(ConteoIds ids) {
+        return List.of(
+                "Ids distintos: ~" + ids.getIdsDistintos(),
+                String.format("Filas posiblemente duplicadas: %d (~%.0f esperables por falsos positivos)",
+                        ids.getDuplicadas(), ids.getFalsosEsperados()));
+    }
+}
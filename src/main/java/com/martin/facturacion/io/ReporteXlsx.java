@@ -0,0 +1,198 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Genera el reporte {@code resumen.xlsx} utilizando el modo streaming de
+ * Apache POI ({@link SXSSFWorkbook}).
+ *
+ * <p>
+ * A diferencia de {@code XSSFWorkbook}, que mantiene todo el documento en
+ * memoria, {@code SXSSFWorkbook} conserva solo una ventana acotada de filas
+ * ({@link #VENTANA_FILAS}) y vuelca el resto a un archivo temporal. De esta
+ * forma exportar un millón de casos usa la misma memoria que exportar diez.
+ * </p>
+ *
+ * <p>
+ * El libro contiene dos hojas:
+ * </p>
+ * <ul>
+ * <li><b>Resumen</b>: las cifras de {@link EstadisticasPruebas}.</li>
+ * <li><b>Casos</b>: una fila por cada caso de prueba válido. Si se supera el
+ * máximo de filas de Excel se continúa en "Casos 2", "Casos 3", etc.</li>
+ * </ul>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ReporteXlsx implements SalidaReporte {
+
+    /** Cantidad de filas que se mantienen en memoria antes de volcar a disco. */
+    public static final int VENTANA_FILAS = 100;
+
+    /** Máximo de filas por hoja admitido por el formato XLSX (2^20). */
+    private static final int MAX_FILAS_HOJA = 1_048_576;
+
+    @Override
+    public String nombre() {
+        return "xlsx";
+    }
+
+    @Override
+    public boolean requiereCasos() {
+        return true;
+    }
+
+    @Override
+    public void escribir(DatosReporte datos) throws IOException {
+        generar(datos.getCasos(), datos.getEstadisticas(), datos.archivo("resumen.xlsx"));
+    }
+
+    /**
+     * Escribe el archivo XLSX con la hoja de resumen y la hoja de casos.
+     *
+     * @param casos   lista de casos válidos
+     * @param stats   estadísticas ya calculadas sobre {@code casos}
+     * @param destino ruta del archivo .xlsx a generar
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public static void generar(List<CasoPrueba> casos, EstadisticasPruebas stats, Path destino)
+            throws IOException {
+        Escritor.escribir(casos, stats, destino);
+    }
+
+    /**
+     * Implementación con POI. Está en una clase aparte para que la librería
+     * se cargue recién al generar el archivo y no al descubrir la salida con
+     * {@link java.util.ServiceLoader}.
+     */
+    private static final class Escritor {
+
+        static void escribir(List<CasoPrueba> casos, EstadisticasPruebas stats, Path destino)
+                throws IOException {
+
+            SXSSFWorkbook wb = new SXSSFWorkbook(VENTANA_FILAS);
+            wb.setCompressTempFiles(true);
+
+            try {
+                CellStyle negrita = wb.createCellStyle();
+                Font fuente = wb.createFont();
+                fuente.setBold(true);
+                negrita.setFont(fuente);
+
+                CellStyle decimal = wb.createCellStyle();
+                decimal.setDataFormat(wb.createDataFormat().getFormat("0.000"));
+
+                CellStyle porcentaje = wb.createCellStyle();
+                porcentaje.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+
+                // ============================================================
+                // 1) Hoja "Resumen"
+                // ============================================================
+                Sheet resumen = wb.createSheet("Resumen");
+                int r = 0;
+
+                Row cab = resumen.createRow(r++);
+                celdaTexto(cab, 0, "Métrica", negrita);
+                celdaTexto(cab, 1, "Valor", negrita);
+                celdaTexto(cab, 2, "Porcentaje", negrita);
+
+                Row total = resumen.createRow(r++);
+                celdaTexto(total, 0, "Total tests", null);
+                total.createCell(1).setCellValue(stats.getTotal());
+
+                for (EstadoPrueba s : EstadoPrueba.values()) {
+                    Row fila = resumen.createRow(r++);
+                    celdaTexto(fila, 0, s.name(), null);
+                    fila.createCell(1).setCellValue(stats.getConteos().getOrDefault(s, 0L));
+                    celdaNumero(fila, 2, stats.getPorcentajes().get(s), porcentaje);
+                }
+
+                Row promedio = resumen.createRow(r++);
+                celdaTexto(promedio, 0, "Tiempo promedio", null);
+                celdaNumero(promedio, 1, stats.getTiempoPromedio(), decimal);
+
+                Row tiempoTotal = resumen.createRow(r++);
+                celdaTexto(tiempoTotal, 0, "Tiempo total", null);
+                celdaNumero(tiempoTotal, 1, stats.tiempoTotal(), decimal);
+
+                if (stats.getMasLento().isPresent()) {
+                    Row lento = resumen.createRow(r);
+                    celdaTexto(lento, 0, "Mas lento", null);
+                    celdaTexto(lento, 1, stats.getMasLento().get().toString(), null);
+                }
+
+                resumen.setColumnWidth(0, 20 * 256);
+                resumen.setColumnWidth(1, 40 * 256);
+
+                // ============================================================
+                // 2) Hoja(s) "Casos"
+                // ============================================================
+                int numeroHoja = 1;
+                Sheet hoja = crearHojaCasos(wb, numeroHoja, negrita);
+                int fila = 1;
+
+                for (CasoPrueba c : casos) {
+                    if (fila == MAX_FILAS_HOJA) {
+                        hoja = crearHojaCasos(wb, ++numeroHoja, negrita);
+                        fila = 1;
+                    }
+
+                    Row row = hoja.createRow(fila++);
+                    celdaTexto(row, 0, c.getIdTest(), null);
+                    celdaTexto(row, 1, c.getNombreTest(), null);
+                    celdaTexto(row, 2, c.getEstado().name(), null);
+                    celdaNumero(row, 3, c.getTiempoEjecucion(), decimal);
+                }
+
+                try (OutputStream os = Files.newOutputStream(destino)) {
+                    wb.write(os);
+                }
+            } finally {
+                // close() también elimina los archivos temporales de la ventana de filas
+                wb.close();
+            }
+        }
+
+        /** Crea una hoja de casos con su fila de cabecera. */
+        private static Sheet crearHojaCasos(SXSSFWorkbook wb, int numero, CellStyle negrita) {
+            Sheet hoja = wb.createSheet(numero == 1 ? "Casos" : "Casos " + numero);
+
+            Row cab = hoja.createRow(0);
+            celdaTexto(cab, 0, "idTest", negrita);
+            celdaTexto(cab, 1, "nombreTest", negrita);
+            celdaTexto(cab, 2, "estado", negrita);
+            celdaTexto(cab, 3, "tiempoEjecucion", negrita);
+
+            return hoja;
+        }
+
+        private static void celdaTexto(Row row, int col, String valor, CellStyle estilo) {
+            var celda = row.createCell(col);
+            celda.setCellValue(valor);
+            if (estilo != null) {
+                celda.setCellStyle(estilo);
+            }
+        }
+
+        private static void celdaNumero(Row row, int col, double valor, CellStyle estilo) {
+            var celda = row.createCell(col);
+            celda.setCellValue(valor);
+            celda.setCellStyle(estilo);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.martin.facturacion.io;
+
+import java.io.IOException;
+
+/**
+ * Punto de extensión para los reportes que genera {@link GeneradorReporte}.
+ *
+ * <p>
+ * Cada implementación produce un archivo de salida y se descubre mediante
+ * {@link java.util.ServiceLoader}: basta con declararla en
+ * {@code META-INF/services/com.martin.facturacion.io.SalidaReporte}. Las
+ * salidas incluidas son {@code txt}, {@code csv}, {@code log}, {@code json},
+ * {@code xlsx}, {@code pdf}, {@code ndjson}, {@code parcial} y
+ * {@code suites}.
+ * </p>
+ *
+ * <p>
+ * Las implementaciones deben tener un constructor público sin argumentos y
+ * no cargar dependencias pesadas hasta que se llame a
+ * {@link #escribir(DatosReporte)}.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public interface SalidaReporte {
+
+    /**
+     * Nombre corto con el que se selecciona la salida desde la línea de
+     * comandos (por ejemplo {@code "txt"}).
+     *
+     * @return nombre único de la salida
+     */
+    String nombre();
+
+    /**
+     * Indica si la salida necesita los casos individuales o si le alcanza con
+     * las estadísticas agregadas. Si ninguna salida seleccionada los necesita,
+     * la aplicación no guarda los casos en memoria.
+     *
+     * @return true si se requiere {@link DatosReporte#getCasos()}
+     */
+    boolean requiereCasos();
+
+    /**
+     * Indica si, cuando se pide un orden distinto de
+     * {@link OrdenResumen#ENTRADA}, la salida escribe sus casos desde
+     * {@link DatosReporte#getOrdenados()} en lugar de la lista en memoria. En
+     * ese caso no hace falta guardar los casos aunque
+     * {@link #requiereCasos()} devuelva true.
+     *
+     * @return true si la salida admite casos ordenados externamente
+     */
+    default boolean admiteOrdenExterno() {
+        return false;
+    }
+
+    /**
+     * Escribe el reporte en {@link DatosReporte#getOutDir()}. Los archivos se
+     * piden con {@link DatosReporte#archivo(String)} para que sus bytes se
+     * cuenten en las métricas de la salida.
+     *
+     * @param datos casos, estadísticas y errores de la ejecución
+     * @throws IOException si no se puede escribir el archivo
+     */
+    void escribir(DatosReporte datos) throws IOException;
+}
@@ -0,0 +1,46 @@
+package com.martin.facturacion.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Textos en los formatos binarios propios (historial, parciales, corridas
+ * del ordenamiento, particiones de la baseline): un {@code int} con el largo
+ * en bytes y los bytes UTF-8.
+ *
+ * <p>
+ * Reemplaza a {@link DataOutput#writeUTF(String)}, que no admite textos de
+ * más de 65535 bytes: un {@code nombreTest} así es válido en el CSV y no
+ * puede hacer fallar la escritura.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class TextoBinario {
+
+    private TextoBinario() {
+    }
+
+    static void escribir(DataOutput out, String texto) throws IOException {
+        byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * @throws IOException si el largo es negativo (datos corruptos) o los
+     *                     datos terminan antes
+     */
+    static String leer(DataInput in) throws IOException {
+        int largo = in.readInt();
+        if (largo < 0) {
+            throw new IOException("Largo de texto inválido: " + largo);
+        }
+        byte[] b = new byte[largo];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
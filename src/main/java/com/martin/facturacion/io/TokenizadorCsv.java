@@ -0,0 +1,669 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tokenizador CSV (RFC 4180) que trabaja directamente sobre bytes, sin
+ * decodificar a {@link String}. Entrega un registro por vez: los campos del
+ * registro actual están en {@link #datos()} entre {@link #inicio(int)} y
+ * {@link #fin(int)}, y solo son válidos hasta la siguiente llamada a
+ * {@link #siguiente()}.
+ *
+ * <ul>
+ * <li>Camino rápido: si la línea no tiene comillas, una sola pasada busca el
+ * fin de línea y anota las comas; los campos apuntan al buffer de lectura
+ * sin copiarse.</li>
+ * <li>Si aparece una comilla, el registro se vuelve a recorrer con una
+ * máquina de estados por tabla ({@link #TRANSICIONES}) que admite campos
+ * entre comillas con comas, saltos de línea y comillas escapadas
+ * ({@code ""}). Esos campos se copian ya sin escapar a un buffer aparte.</li>
+ * </ul>
+ *
+ * <p>
+ * Los registros terminan en {@code \n}, {@code \r} o {@code \r\n}, igual
+ * que {@link java.io.BufferedReader#readLine()}. Es tolerante con CSV no
+ * estricto: una comilla en medio de un campo sin comillas, o texto después
+ * de una comilla de cierre, se toman como texto. Si un campo entre comillas
+ * no se cierra antes del fin del archivo o de {@link #MAX_REGISTRO} bytes,
+ * el registro se marca como {@linkplain #isMalFormado() mal formado}, abarca
+ * solo su primera línea, y la lectura sigue en la línea siguiente.
+ * </p>
+ *
+ * <p>
+ * La codificación del archivo (UTF-8 si no se indica otra) solo importa al
+ * crear textos: los separadores son ASCII y cualquier codificación
+ * {@linkplain #admite(Charset) compatible con ASCII} se separa igual. Como
+ * casi todos los campos son ASCII, {@link #textoEstricto(int, int)} los
+ * revisa de a 8 bytes y solo decodifica desde el primer byte que no lo es.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class TokenizadorCsv {
+
+    /** Tamaño máximo de un registro con comillas antes de darlo por mal formado. */
+    static final int MAX_REGISTRO = 1 << 20;
+
+    private static final int TAMANIO_INICIAL = 64 * 1024;
+
+    // Clases de byte
+    private static final int OTRO = 0;
+    private static final int COMA = 1;
+    private static final int COMILLA = 2;
+    private static final int FIN_LINEA = 3;
+    private static final int ESPACIO = 4;
+
+    private static final byte[] CLASE = new byte[256];
+
+    static {
+        CLASE[','] = COMA;
+        CLASE['"'] = COMILLA;
+        CLASE['\r'] = FIN_LINEA;
+        CLASE['\n'] = FIN_LINEA;
+        CLASE[' '] = ESPACIO;
+        CLASE['\t'] = ESPACIO;
+    }
+
+    // Estados
+    private static final int INICIO_CAMPO = 0;
+    private static final int SIN_COMILLAS = 1;
+    private static final int CON_COMILLAS = 2;
+    /** Comilla dentro de un campo entre comillas: escape ("") o cierre. */
+    private static final int COMILLA_INTERNA = 3;
+    private static final int DESPUES_DE_CERRAR = 4;
+
+    // Acciones (bits altos de cada transición)
+    private static final int NADA = 0;
+    private static final int GUARDAR = 1 << 4;
+    private static final int FIN_CAMPO = 2 << 4;
+    private static final int FIN_REGISTRO = 3 << 4;
+
+    /**
+     * {@code TRANSICIONES[estado][clase] = accion | estadoSiguiente}. Los
+     * espacios al principio de un campo y después de una comilla de cierre
+     * se descartan (de todos modos se recortan al interpretar los campos).
+     */
+    private static final int[][] TRANSICIONES = {
+            // OTRO, COMA, COMILLA, FIN_LINEA, ESPACIO
+            /* INICIO_CAMPO */ { GUARDAR | SIN_COMILLAS, FIN_CAMPO | INICIO_CAMPO, NADA | CON_COMILLAS,
+                    FIN_REGISTRO, NADA | INICIO_CAMPO },
+            /* SIN_COMILLAS */ { GUARDAR | SIN_COMILLAS, FIN_CAMPO | INICIO_CAMPO, GUARDAR | SIN_COMILLAS,
+                    FIN_REGISTRO, GUARDAR | SIN_COMILLAS },
+            /* CON_COMILLAS */ { GUARDAR | CON_COMILLAS, GUARDAR | CON_COMILLAS, NADA | COMILLA_INTERNA,
+                    GUARDAR | CON_COMILLAS, GUARDAR | CON_COMILLAS },
+            /* COMILLA_INTERNA */ { GUARDAR | SIN_COMILLAS, FIN_CAMPO | INICIO_CAMPO, GUARDAR | CON_COMILLAS,
+                    FIN_REGISTRO, NADA | DESPUES_DE_CERRAR },
+            /* DESPUES_DE_CERRAR */ { GUARDAR | SIN_COMILLAS, FIN_CAMPO | INICIO_CAMPO, GUARDAR | SIN_COMILLAS,
+                    FIN_REGISTRO, NADA | DESPUES_DE_CERRAR },
+    };
+
+    /** Potencias de 10 exactas en double (hasta 10^22). */
+    private static final double[] POTENCIAS = new double[23];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) {
+            POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+        }
+    }
+
+    /** Vista de un byte[] como longs, para revisar 8 bytes por vez. */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    /** El bit alto de cada byte: si alguno está prendido, ese byte no es ASCII. */
+    private static final long NO_ASCII = 0x8080808080808080L;
+
+    /** values() crea un arreglo nuevo en cada llamada; se usa uno solo. */
+    private static final EstadoPrueba[] ESTADOS = EstadoPrueba.values();
+    private static final byte[][] NOMBRES_ESTADO = new byte[ESTADOS.length][];
+
+    static {
+        for (EstadoPrueba e : ESTADOS) {
+            NOMBRES_ESTADO[e.ordinal()] = e.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final InputStream in;
+    private byte[] buf = new byte[TAMANIO_INICIAL];
+    /** Datos válidos en buf: [pos, limite). */
+    private int pos;
+    private int limite;
+    /** Bytes del flujo que ya salieron de buf: posición en el flujo de buf[0]. */
+    private long descartados;
+    private boolean agotado;
+    /** El registro anterior terminó en \r: si lo que sigue es \n, se saltea. */
+    private boolean saltearLf;
+
+    /** Campos sin escapar de los registros con comillas. */
+    private byte[] salida = new byte[256];
+    private byte[] datos;
+    private int[] inicios = new int[8];
+    private int[] fines = new int[8];
+    private int campos;
+    /** Campos que se separan; el resto del registro solo se recorre. */
+    private int maxCampos = Integer.MAX_VALUE;
+
+    /** Texto crudo del registro en buf: [crudoInicio, crudoFin). */
+    private int crudoInicio;
+    private int crudoFin;
+    private boolean malFormado;
+    private boolean cortado;
+    private long lineaActual;
+    private long lineasLeidas;
+
+    private final Charset codificacion;
+    private final CharsetDecoder decodificador;
+    /** En Latin-1 cada byte es un carácter: no hay nada que validar. */
+    private final boolean latin1;
+
+    TokenizadorCsv(InputStream in) {
+        this(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param in           flujo a separar
+     * @param codificacion codificación del flujo, compatible con ASCII
+     */
+    TokenizadorCsv(InputStream in, Charset codificacion) {
+        this.in = in;
+        this.codificacion = codificacion;
+        this.decodificador = codificacion.newDecoder();
+        this.latin1 = codificacion.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Una codificación sirve si los 128 caracteres ASCII se escriben como un
+     * byte con su mismo valor (UTF-8, Latin-1, windows-1252...). UTF-16 o
+     * EBCDIC no: las comas y los fines de línea serían otros bytes.
+     *
+     * @param codificacion codificación a revisar
+     * @return true si el tokenizador puede leer archivos en esa codificación
+     */
+    static boolean admite(Charset codificacion) {
+        if (!codificacion.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(new String(ascii, StandardCharsets.ISO_8859_1).getBytes(codificacion), ascii);
+    }
+
+    /** @return true si el flujo es UTF-8, la codificación de los textos en memoria */
+    boolean isUtf8() {
+        return codificacion.equals(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Limita los campos que se separan de los próximos registros: después
+     * del campo {@code n} no se anotan comas ni se copian bytes, solo se
+     * busca el fin del registro. {@link #campos()} devuelve entonces a lo
+     * sumo {@code n}.
+     *
+     * @param n campos a separar
+     */
+    void limitarCampos(int n) {
+        maxCampos = n;
+    }
+
+    /**
+     * Avanza al próximo registro.
+     *
+     * @return false si no hay más registros
+     */
+    boolean siguiente() throws IOException {
+        if (saltearLf) {
+            if (pos >= limite && !rellenar()) {
+                return false;
+            }
+            if (buf[pos] == '\n') {
+                pos++;
+            }
+            saltearLf = false;
+        }
+        if (pos >= limite && !rellenar()) {
+            return false;
+        }
+
+        lineaActual = lineasLeidas + 1;
+        malFormado = false;
+        cortado = false;
+        campos = 0;
+
+        // Camino rápido: una pasada busca el fin de línea y anota las comas
+        int campoInicio = pos;
+        int i = pos;
+        while (true) {
+            while (i < limite) {
+                int clase = CLASE[buf[i] & 0xFF];
+                if (clase == OTRO || clase == ESPACIO) {
+                    i++;
+                } else if (clase == COMA) {
+                    if (campos < maxCampos) {
+                        agregarCampo(campoInicio, i);
+                        campoInicio = i + 1;
+                    }
+                    i++;
+                    if (campos == maxCampos) {
+                        // Columnas que no se usan: solo interesa dónde termina el registro
+                        byte b;
+                        while (i < limite && (b = buf[i]) != '\n' && b != '\r' && b != '"') {
+                            i++;
+                        }
+                    }
+                } else if (clase == FIN_LINEA) {
+                    if (campos < maxCampos) {
+                        agregarCampo(campoInicio, i);
+                    }
+                    terminarRegistro(buf, pos, i);
+                    return true;
+                } else {
+                    return registroConComillas();
+                }
+            }
+            int leidos = i - pos;
+            int desplazamiento = pos;
+            boolean hayMas = rellenar();
+            // rellenar() mueve lo pendiente al principio del buffer, aun si no hay más datos
+            desplazamiento -= pos;
+            for (int c = 0; c < campos; c++) {
+                inicios[c] -= desplazamiento;
+                fines[c] -= desplazamiento;
+            }
+            campoInicio -= desplazamiento;
+            if (!hayMas) {
+                if (campos < maxCampos) {
+                    agregarCampo(campoInicio, limite);
+                }
+                crudoInicio = pos;
+                crudoFin = limite;
+                pos = limite;
+                datos = buf;
+                lineasLeidas++;
+                return true;
+            }
+            i = pos + leidos;
+        }
+    }
+
+    private void terminarRegistro(byte[] datos, int inicioCrudo, int finCrudo) {
+        this.datos = datos;
+        crudoInicio = inicioCrudo;
+        crudoFin = finCrudo;
+        saltearLf = buf[finCrudo] == '\r';
+        pos = finCrudo + 1;
+        lineasLeidas++;
+    }
+
+    /**
+     * Recorre el registro que empieza en {@code pos} con la máquina de
+     * estados, copiando los campos a {@link #salida}.
+     */
+    private boolean registroConComillas() throws IOException {
+        campos = 0;
+        int escritos = 0;
+        int campoInicio = 0;
+        int estado = INICIO_CAMPO;
+        int lineas = 0;
+        int i = pos;
+
+        while (true) {
+            while (i < limite) {
+                byte b = buf[i];
+                int t = TRANSICIONES[estado][CLASE[b & 0xFF]];
+                estado = t & 0xF;
+                switch (t & ~0xF) {
+                    case GUARDAR -> {
+                        if (campos < maxCampos) {
+                            if (escritos == salida.length) {
+                                salida = Arrays.copyOf(salida, salida.length * 2);
+                            }
+                            salida[escritos++] = b;
+                        }
+                        if (b == '\n' || b == '\r') {
+                            // Salto de línea dentro de comillas (\r\n cuenta como uno)
+                            if (b == '\r' || i == pos || buf[i - 1] != '\r') {
+                                lineas++;
+                            }
+                        }
+                    }
+                    case FIN_CAMPO -> {
+                        if (campos < maxCampos) {
+                            agregarCampo(campoInicio, escritos);
+                            campoInicio = escritos;
+                        }
+                    }
+                    case FIN_REGISTRO -> {
+                        if (campos < maxCampos) {
+                            agregarCampo(campoInicio, escritos);
+                        }
+                        terminarRegistro(salida, pos, i);
+                        lineasLeidas += lineas;
+                        return true;
+                    }
+                    default -> {
+                    }
+                }
+                i++;
+                if (estado == CON_COMILLAS && i - pos > MAX_REGISTRO) {
+                    return registroMalFormado();
+                }
+            }
+
+            int leidos = i - pos;
+            if (!rellenar()) {
+                if (estado == CON_COMILLAS) {
+                    cortado = true;
+                    return registroMalFormado();
+                }
+                if (campos < maxCampos) {
+                    agregarCampo(campoInicio, escritos);
+                }
+                datos = salida;
+                crudoInicio = pos;
+                crudoFin = limite;
+                pos = limite;
+                lineasLeidas += lineas + 1;
+                return true;
+            }
+            i = pos + leidos;
+        }
+    }
+
+    /**
+     * Comillas sin cerrar: el registro es solo la primera línea física, sin
+     * separar en campos, y la lectura sigue en la siguiente.
+     */
+    private boolean registroMalFormado() {
+        int i = pos;
+        while (i < limite && buf[i] != '\n' && buf[i] != '\r') {
+            i++;
+        }
+        campos = 0;
+        agregarCampo(pos, i);
+        malFormado = true;
+        if (i < limite) {
+            terminarRegistro(buf, pos, i);
+        } else {
+            datos = buf;
+            crudoInicio = pos;
+            crudoFin = i;
+            pos = i;
+            lineasLeidas++;
+        }
+        return true;
+    }
+
+    private void agregarCampo(int inicio, int fin) {
+        if (campos == inicios.length) {
+            inicios = Arrays.copyOf(inicios, campos * 2);
+            fines = Arrays.copyOf(fines, campos * 2);
+        }
+        inicios[campos] = inicio;
+        fines[campos] = fin;
+        campos++;
+    }
+
+    /**
+     * Mueve lo pendiente al principio del buffer (agrandándolo si un registro
+     * no entra) y lee más bytes.
+     *
+     * @return false si el flujo terminó y no se agregó nada
+     */
+    private boolean rellenar() throws IOException {
+        if (agotado) {
+            return false;
+        }
+        int pendientes = limite - pos;
+        descartados += pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, pendientes);
+        } else if (pendientes == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        pos = 0;
+        limite = pendientes;
+        int n;
+        do {
+            n = in.read(buf, limite, buf.length - limite);
+        } while (n == 0);
+        if (n < 0) {
+            agotado = true;
+            return false;
+        }
+        limite += n;
+        return true;
+    }
+
+    // =======================================
+    // REGISTRO ACTUAL
+    // =======================================
+
+    /** @return cantidad de campos del registro actual */
+    int campos() {
+        return campos;
+    }
+
+    /** @return arreglo que contiene los campos del registro actual */
+    byte[] datos() {
+        return datos;
+    }
+
+    int inicio(int campo) {
+        return inicios[campo];
+    }
+
+    int fin(int campo) {
+        return fines[campo];
+    }
+
+    /** @return true si el registro tiene comillas sin cerrar (un solo campo con la línea) */
+    boolean isMalFormado() {
+        return malFormado;
+    }
+
+    /**
+     * @return true si el registro es {@linkplain #isMalFormado() mal formado}
+     *         porque el flujo terminó con las comillas abiertas (y no por
+     *         superar {@link #MAX_REGISTRO})
+     */
+    boolean isCortado() {
+        return cortado;
+    }
+
+    /** @return número de línea física en la que empieza el registro (desde 1) */
+    long numeroLinea() {
+        return lineaActual;
+    }
+
+    /** @return líneas físicas consumidas hasta el fin del registro actual */
+    long lineasLeidas() {
+        return lineasLeidas;
+    }
+
+    /** @return posición en el flujo del primer byte del registro actual */
+    long inicioRegistro() {
+        return descartados + crudoInicio;
+    }
+
+    /**
+     * @return posición en el flujo del fin de línea que termina el registro
+     *         actual, o del fin del flujo si no lo hay
+     */
+    long finRegistro() {
+        return descartados + crudoFin;
+    }
+
+    /** @return true si el registro no tiene más que espacios */
+    boolean isVacio() {
+        return recortarInicio(buf, crudoInicio, crudoFin) == crudoFin;
+    }
+
+    /** @return el registro tal como está en el archivo, para mensajes de error */
+    String linea() {
+        return new String(buf, crudoInicio, crudoFin - crudoInicio, codificacion);
+    }
+
+    /**
+     * Decodifica un campo sin validarlo: los bytes inválidos quedan como
+     * carácter de reemplazo.
+     */
+    String texto(int desde, int hasta) {
+        return new String(datos, desde, hasta - desde, codificacion);
+    }
+
+    /**
+     * Decodifica un campo en modo estricto, igual que la lectura con
+     * {@link java.io.BufferedReader}: los bytes inválidos son un error, no un
+     * carácter de reemplazo.
+     *
+     * @throws CharacterCodingException si el campo no es válido en la
+     *                                  codificación del flujo
+     */
+    String textoEstricto(int desde, int hasta) throws CharacterCodingException {
+        byte[] b = datos;
+        // Latin-1 es la decodificación más barata y, para ASCII, da el mismo texto
+        if (latin1) {
+            return new String(b, desde, hasta - desde, StandardCharsets.ISO_8859_1);
+        }
+        int i = primerNoAscii(b, desde, hasta);
+        if (i == hasta) {
+            return new String(b, desde, hasta - desde, StandardCharsets.ISO_8859_1);
+        }
+        // Lo anterior ya se sabe ASCII: solo se decodifica desde el primer byte que no lo es
+        String resto = decodificador.decode(ByteBuffer.wrap(b, i, hasta - i)).toString();
+        return i == desde ? resto : new String(b, desde, i - desde, StandardCharsets.ISO_8859_1).concat(resto);
+    }
+
+    // =======================================
+    // CAMPOS
+    // =======================================
+
+    static String texto(byte[] b, int desde, int hasta) {
+        return new String(b, desde, hasta - desde, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Busca el primer byte que no es ASCII revisando 8 bytes por vez: un
+     * long con el bit alto de algún byte prendido lo tiene.
+     *
+     * @return la posición del primer byte negativo, o {@code hasta} si todos
+     *         son ASCII
+     */
+    static int primerNoAscii(byte[] b, int desde, int hasta) {
+        int i = desde;
+        for (; i + Long.BYTES <= hasta; i += Long.BYTES) {
+            long altos = (long) LONGS.get(b, i) & NO_ASCII;
+            if (altos != 0) {
+                // En little endian el primer byte es el menos significativo
+                return i + (Long.numberOfTrailingZeros(altos) >>> 3);
+            }
+        }
+        while (i < hasta && b[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Primer byte que no es espacio (como {@link String#trim()}). */
+    static int recortarInicio(byte[] b, int desde, int hasta) {
+        while (desde < hasta && (b[desde] & 0xFF) <= ' ') {
+            desde++;
+        }
+        return desde;
+    }
+
+    /** Fin (exclusivo) sin los espacios finales. */
+    static int recortarFin(byte[] b, int desde, int hasta) {
+        while (hasta > desde && (b[hasta - 1] & 0xFF) <= ' ') {
+            hasta--;
+        }
+        return hasta;
+    }
+
+    /**
+     * Interpreta un estado ya recortado, sin distinguir mayúsculas, igual que
+     * {@link EstadoPrueba#fromString(String)}.
+     *
+     * @return el estado, o null si no es válido
+     */
+    static EstadoPrueba estado(byte[] b, int desde, int hasta) {
+        int n = hasta - desde;
+        for (EstadoPrueba e : ESTADOS) {
+            byte[] nombre = NOMBRES_ESTADO[e.ordinal()];
+            if (nombre.length != n) {
+                continue;
+            }
+            int i = 0;
+            // Las letras ASCII difieren en el bit 0x20 entre mayúscula y minúscula
+            while (i < n && (b[desde + i] & ~0x20) == nombre[i]) {
+                i++;
+            }
+            if (i == n) {
+                return e;
+            }
+        }
+        // Letras fuera de ASCII que toUpperCase() convierte (casos raros): se delega
+        return primerNoAscii(b, desde, hasta) < hasta ? EstadoPrueba.fromString(texto(b, desde, hasta)) : null;
+    }
+
+    /**
+     * Interpreta un número decimal ya recortado. Los casos simples
+     * ({@code [-+]digitos[.digitos]} con hasta 15 dígitos significativos) se
+     * calculan como un entero exacto dividido por una potencia de 10 exacta:
+     * una sola operación redondeada, que da el mismo resultado que
+     * {@link Double#parseDouble(String)}. El resto se delega en ella.
+     *
+     * @throws NumberFormatException si no es un número válido
+     */
+    static double decimal(byte[] b, int desde, int hasta) {
+        int i = desde;
+        boolean negativo = false;
+        if (i < hasta && (b[i] == '-' || b[i] == '+')) {
+            negativo = b[i] == '-';
+            i++;
+        }
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = 0;
+        boolean punto = false;
+        boolean alguno = false;
+        for (; i < hasta; i++) {
+            int c = b[i];
+            if (c >= '0' && c <= '9') {
+                alguno = true;
+                if (mantisa != 0 || c != '0') {
+                    digitos++;
+                }
+                mantisa = mantisa * 10 + (c - '0');
+                if (punto) {
+                    decimales++;
+                }
+            } else if (c == '.' && !punto) {
+                punto = true;
+            } else {
+                break;
+            }
+        }
+        if (i == hasta && alguno && digitos <= 15 && decimales < POTENCIAS.length) {
+            double v = decimales == 0 ? mantisa : mantisa / POTENCIAS[decimales];
+            return negativo ? -v : v;
+        }
+        return Double.parseDouble(texto(b, desde, hasta));
+    }
+}
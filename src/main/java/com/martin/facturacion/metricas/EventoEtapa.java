@@ -0,0 +1,42 @@
+package com.martin.facturacion.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR emitido al terminar cada etapa medida por
+ * {@link MetricasEjecucion}. Permite ver las etapas en la misma línea de
+ * tiempo que las pausas de GC (JDK Mission Control o {@code jfr print}).
+ *
+ * <p>
+ * Si no hay una grabación de JFR activa, {@link #commit()} no hace nada.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+@Name("com.martin.facturacion.Etapa")
+@Label("Etapa de procesamiento")
+@Category({ "Facturación", "Pipeline" })
+@Description("Duración, filas y bytes de una etapa de la carga o de un reporte")
+class EventoEtapa extends Event {
+
+    @Label("Etapa")
+    String etapa;
+
+    @Label("Filas")
+    long filas;
+
+    @Label("Bytes procesados")
+    @DataAmount
+    long bytes;
+
+    @Label("Bytes asignados")
+    @Description("Memoria asignada por el hilo durante la etapa, o -1 si no se pudo medir")
+    @DataAmount
+    long bytesAsignados;
+}
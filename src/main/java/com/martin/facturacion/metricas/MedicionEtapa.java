@@ -0,0 +1,74 @@
+package com.martin.facturacion.metricas;
+
+/**
+ * Resultado de una etapa medida: duración, filas, bytes procesados y
+ * memoria asignada por el hilo que la ejecutó.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class MedicionEtapa {
+
+    private final String nombre;
+    private final long nanos;
+    private final long filas;
+    private final long bytes;
+    private final long bytesAsignados;
+    private final boolean estimada;
+
+    /**
+     * @param nombre         nombre de la etapa (ej. "lectura", "salida:csv")
+     * @param nanos          duración en nanosegundos
+     * @param filas          filas procesadas
+     * @param bytes          bytes leídos o escritos
+     * @param bytesAsignados memoria asignada por el hilo, o -1 si no se midió
+     * @param estimada       true si la duración se estimó por muestreo
+     */
+    public MedicionEtapa(String nombre, long nanos, long filas, long bytes, long bytesAsignados,
+            boolean estimada) {
+        this.nombre = nombre;
+        this.nanos = nanos;
+        this.filas = filas;
+        this.bytes = bytes;
+        this.bytesAsignados = bytesAsignados;
+        this.estimada = estimada;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getFilas() {
+        return filas;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getBytesAsignados() {
+        return bytesAsignados;
+    }
+
+    public boolean isEstimada() {
+        return estimada;
+    }
+
+    public double getSegundos() {
+        return nanos / 1e9;
+    }
+
+    /** @return filas por segundo, o 0 si la etapa no duró nada medible */
+    public double getFilasPorSegundo() {
+        return nanos == 0 ? 0.0 : filas / getSegundos();
+    }
+
+    /** @return megabytes (10^6 bytes) por segundo, o 0 si no aplica */
+    public double getMbPorSegundo() {
+        return nanos == 0 ? 0.0 : bytes / 1e6 / getSegundos();
+    }
+}
@@ -0,0 +1,221 @@
+package com.martin.facturacion.metricas;
+
+import com.martin.facturacion.io.EscritorJson;
+import com.martin.facturacion.servicio.PresupuestoMemoria;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Registra cuánto tarda cada etapa de una ejecución (validación, lectura,
+ * agregación, cada salida) junto con filas/s, MB/s y, si la JVM lo permite,
+ * los bytes asignados por el hilo.
+ *
+ * <p>
+ * Uso:
+ * </p>
+ *
+ * <pre>
+ * MetricasEjecucion.Cronometro c = metricas.iniciar("lectura");
+ * ...
+ * c.terminar(filas, bytes);
+ * </pre>
+ *
+ * <p>
+ * Cada etapa terminada se emite además como evento de JFR
+ * ({@link EventoEtapa}). El resultado se guarda en {@code metricas.json}
+ * con {@link #escribirJson(Path)}.
+ * </p>
+ *
+ * <p>
+ * Con un {@link PresupuestoMemoria} se informa también cuánta memoria usó
+ * cada etapa y cuánto guardó en disco por no entrar.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class MetricasEjecucion {
+
+    /** Nombre del archivo que se escribe en la carpeta de salida. */
+    public static final String ARCHIVO = "metricas.json";
+
+    private static final com.sun.management.ThreadMXBean ASIGNACION = asignacion();
+
+    private final List<MedicionEtapa> etapas = Collections.synchronizedList(new ArrayList<>());
+    private volatile PresupuestoMemoria presupuesto;
+
+    /**
+     * Comienza a medir una etapa en el hilo actual.
+     *
+     * @param etapa nombre de la etapa
+     * @return cronómetro que se cierra con {@link Cronometro#terminar(long, long)}
+     */
+    public Cronometro iniciar(String etapa) {
+        return new Cronometro(etapa);
+    }
+
+    /**
+     * Agrega una medición calculada por fuera (por ejemplo, una estimada por
+     * muestreo). No emite evento de JFR.
+     *
+     * @param medicion medición a agregar
+     */
+    public void agregar(MedicionEtapa medicion) {
+        etapas.add(medicion);
+    }
+
+    /**
+     * @param presupuesto memoria de la ejecución, para informar su uso por
+     *                    etapa
+     */
+    public void setPresupuesto(PresupuestoMemoria presupuesto) {
+        this.presupuesto = presupuesto;
+    }
+
+    /** @return copia de las etapas medidas, en el orden en que terminaron */
+    public List<MedicionEtapa> getEtapas() {
+        synchronized (etapas) {
+            return new ArrayList<>(etapas);
+        }
+    }
+
+    /**
+     * Escribe las mediciones como JSON.
+     *
+     * @param archivo destino (normalmente {@code <out_dir>/metricas.json})
+     */
+    public void escribirJson(Path archivo) throws IOException {
+        try (EscritorJson json = new EscritorJson(Files.newBufferedWriter(archivo))) {
+            json.inicioObjeto();
+            json.campo("asignacionMedida").valor(ASIGNACION != null);
+            json.campo("etapas").inicioArreglo();
+            for (MedicionEtapa m : getEtapas()) {
+                json.inicioObjeto()
+                        .campo("etapa").valor(m.getNombre())
+                        .campo("milisegundos").valor(m.getNanos() / 1e6)
+                        .campo("filas").valor(m.getFilas())
+                        .campo("filasPorSegundo").valor(m.getFilasPorSegundo())
+                        .campo("bytes").valor(m.getBytes())
+                        .campo("mbPorSegundo").valor(m.getMbPorSegundo());
+                if (m.getBytesAsignados() >= 0) {
+                    json.campo("bytesAsignados").valor(m.getBytesAsignados());
+                }
+                json.campo("estimada").valor(m.isEstimada());
+                json.finObjeto();
+            }
+            json.finArreglo();
+            PresupuestoMemoria p = presupuesto;
+            if (p != null) {
+                json.campo("memoria").inicioObjeto()
+                        .campo("limite").valor(p.getLimite())
+                        .campo("usado").valor(p.getUsado())
+                        .campo("derramado").valor(p.getDerramado());
+                json.campo("etapas").inicioArreglo();
+                for (PresupuestoMemoria.Consumo c : p.getConsumos()) {
+                    json.inicioObjeto()
+                            .campo("etapa").valor(c.getNombre())
+                            .campo("reservado").valor(c.getReservado())
+                            .campo("derramado").valor(c.getDerramado())
+                            .finObjeto();
+                }
+                json.finArreglo();
+                json.finObjeto();
+            }
+            json.finObjeto();
+            json.finLinea();
+        }
+    }
+
+    /**
+     * @return una línea por etapa, alineada para mostrar en consola
+     */
+    public List<String> tabla() {
+        List<String> lineas = new ArrayList<>();
+        lineas.add(String.format(Locale.ROOT, "%-16s %10s %12s %14s %9s %12s",
+                "etapa", "ms", "filas", "filas/s", "MB/s", "asignado MB"));
+        for (MedicionEtapa m : getEtapas()) {
+            lineas.add(String.format(Locale.ROOT, "%-16s %10.1f %12d %14.0f %9.1f %12s",
+                    m.getNombre() + (m.isEstimada() ? "*" : ""),
+                    m.getNanos() / 1e6, m.getFilas(), m.getFilasPorSegundo(), m.getMbPorSegundo(),
+                    m.getBytesAsignados() < 0 ? "-"
+                            : String.format(Locale.ROOT, "%.1f", m.getBytesAsignados() / 1e6)));
+        }
+        PresupuestoMemoria p = presupuesto;
+        if (p != null) {
+            // En MiB, como --memoria-maxima
+            lineas.add(String.format(Locale.ROOT, "%-16s %10s %12s", "memoria", "MB", "en disco MB"));
+            for (PresupuestoMemoria.Consumo c : p.getConsumos()) {
+                lineas.add(String.format(Locale.ROOT, "%-16s %10.1f %12.1f", c.getNombre(),
+                        c.getReservado() / 1048576.0, c.getDerramado() / 1048576.0));
+            }
+            lineas.add(String.format(Locale.ROOT, "%-16s %10.1f %12.1f", "(límite " + (p.getLimite() >> 20) + ")",
+                    p.getUsado() / 1048576.0, p.getDerramado() / 1048576.0));
+        }
+        return lineas;
+    }
+
+    /** @return bytes asignados hasta ahora por el hilo actual, o -1 si no se puede medir */
+    static long bytesAsignadosHiloActual() {
+        return ASIGNACION == null ? -1 : ASIGNACION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean asignacion() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+            return sun;
+        }
+        return null;
+    }
+
+    /**
+     * Medición en curso de una etapa. Debe terminarse en el mismo hilo que la
+     * inició, para que los bytes asignados correspondan a la etapa.
+     */
+    public final class Cronometro {
+        private final String etapa;
+        private final long inicio;
+        private final long asignadoInicio;
+        private final EventoEtapa evento = new EventoEtapa();
+
+        private Cronometro(String etapa) {
+            this.etapa = etapa;
+            this.asignadoInicio = bytesAsignadosHiloActual();
+            evento.begin();
+            this.inicio = System.nanoTime();
+        }
+
+        /**
+         * Termina la medición y la registra.
+         *
+         * @param filas filas procesadas en la etapa
+         * @param bytes bytes leídos o escritos en la etapa
+         * @return la medición registrada
+         */
+        public MedicionEtapa terminar(long filas, long bytes) {
+            long nanos = System.nanoTime() - inicio;
+            evento.end();
+            long asignado = asignadoInicio < 0 ? -1 : bytesAsignadosHiloActual() - asignadoInicio;
+
+            if (evento.shouldCommit()) {
+                evento.etapa = etapa;
+                evento.filas = filas;
+                evento.bytes = bytes;
+                evento.bytesAsignados = asignado;
+                evento.commit();
+            }
+
+            MedicionEtapa m = new MedicionEtapa(etapa, nanos, filas, bytes, asignado, false);
+            etapas.add(m);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+/**
+ * Acumula las estadísticas de los casos de prueba a medida que se leen, sin
+ * necesidad de guardarlos en una lista.
+ *
+ * <p>
+ * Se usa cuando ninguna salida requiere los casos individuales: el lector
+ * entrega cada caso al acumulador y luego se descarta. Al terminar,
+ * {@link #resultado()} devuelve las mismas {@link EstadisticasPruebas} que se
+ * obtendrían a partir de la lista completa.
+ * </p>
+ *
+ * <p>
+ * Esta clase no es segura para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class AcumuladorEstadisticas {
+
+    private final long[] conteos = new long[EstadoPrueba.values().length];
+    private long total;
+    private double tiempoTotal;
+    private CasoPrueba masLento;
+    private final TopLentos masLentos = new TopLentos();
+    private final HistogramaTiempos histograma = new HistogramaTiempos();
+
+    /**
+     * Incorpora un caso a las estadísticas.
+     *
+     * @param caso caso de prueba válido
+     */
+    public void agregar(CasoPrueba caso) {
+        masLentos.ofrecer(caso, total);
+        total++;
+        conteos[caso.getEstado().ordinal()]++;
+        tiempoTotal += caso.getTiempoEjecucion();
+        histograma.agregar(caso.getTiempoEjecucion());
+
+        // Ante empate se conserva el primero, igual que Stream.max
+        if (masLento == null || caso.getTiempoEjecucion() > masLento.getTiempoEjecucion()) {
+            masLento = caso;
+        }
+    }
+
+    /**
+     * Indica si un caso con este tiempo podría entrar al top de lentos, en
+     * cuyo caso hay que agregarlo con {@link #agregar(CasoPrueba)}. Si no,
+     * alcanza con {@link #agregar(EstadoPrueba, double)}.
+     *
+     * @param tiempo tiempo de ejecución del caso
+     * @return true si hace falta el caso completo
+     */
+    public boolean requiereCaso(double tiempo) {
+        // Los empates no entran: el que ya está llegó antes
+        return masLento == null || tiempo > masLentos.umbral();
+    }
+
+    /**
+     * Incorpora un caso del que solo se conocen estado y tiempo (lectura
+     * proyectada). Solo debe usarse si {@link #requiereCaso(double)} es false.
+     *
+     * @param estado estado del caso
+     * @param tiempo tiempo de ejecución
+     */
+    public void agregar(EstadoPrueba estado, double tiempo) {
+        total++;
+        conteos[estado.ordinal()]++;
+        tiempoTotal += tiempo;
+        histograma.agregar(tiempo);
+    }
+
+    /** @return cantidad de casos acumulados hasta el momento */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Construye las estadísticas con lo acumulado hasta el momento.
+     *
+     * @return estadísticas de los casos agregados
+     */
+    public EstadisticasPruebas resultado() {
+        return new EstadisticasPruebas(total, conteos, tiempoTotal, masLento, masLentos.lista(), histograma);
+    }
+
+    /** Carga lo acumulado en unas estadísticas en construcción. */
+    void volcarEn(EstadisticasPruebas stats) {
+        stats.inicializar(total, conteos, tiempoTotal, masLento, masLentos.lista(), histograma);
+    }
+}
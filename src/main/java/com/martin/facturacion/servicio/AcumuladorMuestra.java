@@ -0,0 +1,167 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Acumula una muestra por conglomerados: bloques del archivo elegidos al
+ * azar, sin reposición, de los que se leen todas las filas. Con esos totales
+ * por bloque estima las estadísticas del archivo completo
+ * ({@link #estimar()}).
+ *
+ * <ul>
+ * <li>Porcentaje de cada estado y tiempo promedio: estimadores de razón
+ * ({@code Σy / Σm} sobre los bloques leídos), con varianza por
+ * linealización y corrección por población finita.</li>
+ * <li>Total de filas: promedio de filas por bloque por la cantidad de
+ * bloques del archivo.</li>
+ * </ul>
+ *
+ * <p>
+ * Los intervalos son del {@value #CONFIANZA}% (aproximación normal). Si se
+ * leyeron todos los bloques la estimación es exacta y los intervalos valen
+ * cero.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class AcumuladorMuestra {
+
+    /** Nivel de confianza de los intervalos, en porcentaje. */
+    public static final int CONFIANZA = 95;
+
+    /** Cuantil normal para {@link #CONFIANZA}. */
+    static final double Z = 1.959964;
+
+    private static final EstadoPrueba[] ESTADOS = EstadoPrueba.values();
+
+    private final long bloquesTotales;
+    private int bloques;
+    private long[] filas = new long[64];
+    private long[][] porEstado = new long[ESTADOS.length][64];
+    private double[] tiempos = new double[64];
+    private long errores;
+    private long bytesLeidos;
+
+    /**
+     * @param bloquesTotales bloques en que está dividido el archivo
+     */
+    public AcumuladorMuestra(long bloquesTotales) {
+        this.bloquesTotales = bloquesTotales;
+    }
+
+    /**
+     * Agrega los totales de un bloque leído.
+     *
+     * @param conteos     filas válidas por estado, indexadas por ordinal
+     * @param sumaTiempos suma de los tiempos de las filas válidas
+     * @param invalidas   filas inválidas del bloque
+     * @param bytes       bytes leídos para el bloque
+     */
+    public void agregarBloque(long[] conteos, double sumaTiempos, long invalidas, long bytes) {
+        if (bloques == filas.length) {
+            int n = bloques * 2;
+            filas = Arrays.copyOf(filas, n);
+            tiempos = Arrays.copyOf(tiempos, n);
+            for (int e = 0; e < porEstado.length; e++) {
+                porEstado[e] = Arrays.copyOf(porEstado[e], n);
+            }
+        }
+        long m = 0;
+        for (int e = 0; e < ESTADOS.length; e++) {
+            porEstado[e][bloques] = conteos[e];
+            m += conteos[e];
+        }
+        filas[bloques] = m;
+        tiempos[bloques] = sumaTiempos;
+        bloques++;
+        errores += invalidas;
+        bytesLeidos += bytes;
+    }
+
+    /** @return bloques leídos hasta ahora */
+    public int getBloques() {
+        return bloques;
+    }
+
+    /** @return estimación con los bloques leídos hasta ahora */
+    public EstimacionEstadisticas estimar() {
+        int n = bloques;
+        long muestra = 0;
+        for (int i = 0; i < n; i++) {
+            muestra += filas[i];
+        }
+        boolean completa = n >= bloquesTotales;
+        // Corrección por población finita
+        double fpc = completa ? 0 : 1 - (double) n / bloquesTotales;
+        double mediaFilas = n == 0 ? 0 : (double) muestra / n;
+
+        double total = mediaFilas * bloquesTotales;
+        double semiTotal = completa ? 0 : Z * bloquesTotales * Math.sqrt(fpc * varianza(filas, n) / n);
+
+        Map<EstadoPrueba, Double> porcentajes = new EnumMap<>(EstadoPrueba.class);
+        Map<EstadoPrueba, Double> semiPorcentajes = new EnumMap<>(EstadoPrueba.class);
+        for (EstadoPrueba e : ESTADOS) {
+            long[] y = porEstado[e.ordinal()];
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += y[i];
+            }
+            double r = muestra == 0 ? 0 : suma / muestra;
+            porcentajes.put(e, r * 100);
+            semiPorcentajes.put(e, 100 * semiRazon(i -> y[i], r, n, mediaFilas, fpc, completa));
+        }
+
+        double sumaTiempos = 0;
+        for (int i = 0; i < n; i++) {
+            sumaTiempos += tiempos[i];
+        }
+        double promedio = muestra == 0 ? 0 : sumaTiempos / muestra;
+        double semiPromedio = semiRazon(i -> tiempos[i], promedio, n, mediaFilas, fpc, completa);
+
+        return new EstimacionEstadisticas(n, bloquesTotales, muestra, errores, bytesLeidos, total, semiTotal,
+                porcentajes, semiPorcentajes, promedio, semiPromedio);
+    }
+
+    /**
+     * Semiamplitud del intervalo de una razón {@code Σy / Σm}:
+     * {@code Z · sqrt(fpc · s²(y - r·m) / (n · m̄²))}.
+     */
+    private double semiRazon(IntToDoubleFunction y, double r, int n, double mediaFilas,
+            double fpc, boolean completa) {
+        if (completa) {
+            return 0;
+        }
+        if (n < 2 || mediaFilas == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            double d = y.applyAsDouble(i) - r * filas[i];
+            suma += d * d;
+        }
+        return Z * Math.sqrt(fpc * suma / (n - 1) / n) / mediaFilas;
+    }
+
+    private static double varianza(long[] x, int n) {
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double media = 0;
+        for (int i = 0; i < n; i++) {
+            media += x[i];
+        }
+        media /= n;
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            double d = x[i] - media;
+            suma += d * d;
+        }
+        return suma / (n - 1);
+    }
+}
@@ -0,0 +1,362 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Estadísticas agrupadas por suite, armadas con los prefijos del
+ * {@code idTest} (o del {@code nombreTest}): en {@code AUTH-LOGIN-001}, con
+ * el separador {@code -} y dos niveles, la fila suma a la suite
+ * {@code AUTH} y al módulo {@code AUTH-LOGIN}.
+ *
+ * <p>
+ * Es un trie de prefijos sobre los bytes de la columna: cada nodo acumula
+ * conteo por estado, tiempo total y máximo de todas las filas que pasan por
+ * él, y la raíz tiene el total. Solo cuentan como prefijo los segmentos
+ * seguidos de un separador, así que el último (el test en sí) no crea nodos
+ * y la memoria depende de los prefijos distintos, no de las filas. Los
+ * separadores son ASCII, por lo que nunca parten un carácter UTF-8.
+ * </p>
+ *
+ * <p>
+ * Los tiempos se suman con compensación, así que el total de un
+ * nodo no depende del orden de las filas ni de cómo se repartieron entre
+ * árboles combinados.
+ * </p>
+ *
+ * <p>
+ * Cada parte de la entrada puede tener su árbol ({@link #vacio()}) y luego
+ * {@linkplain #combinar(ArbolSuites) combinarlos}. Esta clase no es segura
+ * para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ArbolSuites {
+
+    /** Separador por defecto entre los segmentos del id. */
+    public static final String SEPARADOR_POR_DEFECTO = "-";
+
+    /** Niveles por defecto: suite y módulo. */
+    public static final int NIVELES_POR_DEFECTO = 2;
+
+    private static final int ESTADOS = EstadoPrueba.values().length;
+
+    /** Si cada byte ASCII es separador. */
+    private final boolean[] separador = new boolean[128];
+    private final String separadores;
+    private final int niveles;
+    private final boolean porNombre;
+    private final Suite raiz = new Suite(null, new byte[0], 0, 0);
+    private int nodos = 1;
+
+    /**
+     * @param separadores caracteres ASCII que separan los segmentos
+     * @param niveles     niveles de prefijos a agrupar, al menos 1
+     * @param porNombre   si los prefijos salen del {@code nombreTest} en
+     *                    lugar del {@code idTest}
+     * @throws IllegalArgumentException si no hay separadores, alguno no es
+     *                                  ASCII o los niveles no son positivos
+     */
+    public ArbolSuites(String separadores, int niveles, boolean porNombre) {
+        if (separadores.isEmpty() || niveles < 1) {
+            throw new IllegalArgumentException("Se requiere al menos un separador y un nivel");
+        }
+        for (int i = 0; i < separadores.length(); i++) {
+            char ch = separadores.charAt(i);
+            if (ch >= 128) {
+                throw new IllegalArgumentException("El separador de suites debe ser ASCII: " + ch);
+            }
+            separador[ch] = true;
+        }
+        this.separadores = separadores;
+        this.niveles = niveles;
+        this.porNombre = porNombre;
+    }
+
+    /** @return un árbol vacío con la misma configuración, para combinarlo después */
+    public ArbolSuites vacio() {
+        return new ArbolSuites(separadores, niveles, porNombre);
+    }
+
+    /** @return true si los prefijos salen del {@code nombreTest} */
+    public boolean isPorNombre() {
+        return porNombre;
+    }
+
+    public int getNiveles() {
+        return niveles;
+    }
+
+    /** @return nodos del árbol, incluida la raíz */
+    public int getNodos() {
+        return nodos;
+    }
+
+    /** @return la raíz, con el total de las filas */
+    public Suite getRaiz() {
+        return raiz;
+    }
+
+    /**
+     * Suma una fila usando el texto de la columna agrupada.
+     *
+     * @param clave  {@code idTest} o {@code nombreTest}
+     * @param estado estado de la fila
+     * @param tiempo tiempo de ejecución
+     */
+    public void agregar(String clave, EstadoPrueba estado, double tiempo) {
+        byte[] b = clave.getBytes(StandardCharsets.UTF_8);
+        agregar(b, 0, b.length, estado, tiempo);
+    }
+
+    /**
+     * Suma una fila a la raíz y a cada prefijo de la clave en
+     * {@code b[desde, hasta)}, sin copiar los bytes salvo al crear un nodo.
+     *
+     * @param b      bytes de la línea
+     * @param desde  inicio de la clave
+     * @param hasta  fin de la clave (exclusivo)
+     * @param estado estado de la fila
+     * @param tiempo tiempo de ejecución
+     */
+    public void agregar(byte[] b, int desde, int hasta, EstadoPrueba estado, double tiempo) {
+        Suite nodo = raiz;
+        nodo.sumar(estado, tiempo);
+        int inicio = desde;
+        for (int nivel = 1; nivel <= niveles; nivel++) {
+            int fin = inicio;
+            while (fin < hasta && (b[fin] < 0 || !separador[b[fin]])) {
+                fin++;
+            }
+            if (fin == hasta) {
+                return;
+            }
+            nodo = hijo(nodo, b, desde, inicio, fin);
+            nodo.sumar(estado, tiempo);
+            inicio = fin + 1;
+        }
+    }
+
+    /** Busca o crea el hijo de {@code padre} con el segmento {@code b[inicio, fin)}. */
+    private Suite hijo(Suite padre, byte[] b, int desde, int inicio, int fin) {
+        // Las filas de una misma suite suelen venir seguidas
+        Suite ultimo = padre.ultimoHijo;
+        if (ultimo != null && ultimo.esSegmento(b, inicio, fin)) {
+            return ultimo;
+        }
+        int hash = hash(b, inicio, fin);
+        Suite[] hijos = padre.hijos;
+        if (hijos != null) {
+            for (int i = hash & (hijos.length - 1); hijos[i] != null; i = (i + 1) & (hijos.length - 1)) {
+                Suite s = hijos[i];
+                if (s.hash == hash && s.esSegmento(b, inicio, fin)) {
+                    padre.ultimoHijo = s;
+                    return s;
+                }
+            }
+        }
+        Suite nuevo = new Suite(padre, Arrays.copyOfRange(b, desde, fin), inicio - desde, hash);
+        padre.insertar(nuevo);
+        padre.ultimoHijo = nuevo;
+        nodos++;
+        return nuevo;
+    }
+
+    private static int hash(byte[] b, int desde, int hasta) {
+        int h = 1;
+        for (int i = desde; i < hasta; i++) {
+            h = 31 * h + b[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Suma otro árbol, nodo por nodo.
+     *
+     * @param otro árbol con la misma configuración
+     */
+    public void combinar(ArbolSuites otro) {
+        combinar(raiz, otro.raiz);
+    }
+
+    private void combinar(Suite destino, Suite origen) {
+        destino.sumar(origen);
+        if (origen.hijos == null) {
+            return;
+        }
+        for (Suite o : origen.hijos) {
+            if (o != null) {
+                byte[] r = o.ruta;
+                combinar(hijo(destino, r, 0, o.inicioSegmento, r.length), o);
+            }
+        }
+    }
+
+    /**
+     * Un prefijo del árbol y sus estadísticas.
+     */
+    public static final class Suite {
+        private final Suite padre;
+        /** Bytes del prefijo completo, desde el principio de la clave. */
+        private final byte[] ruta;
+        /** Dónde empieza el último segmento dentro de {@link #ruta}. */
+        private final int inicioSegmento;
+        private final int hash;
+        private final int nivel;
+        private final long[] conteos = new long[ESTADOS];
+        private long total;
+        private double tiempoTotal;
+        /** Lo que se perdió al redondear {@link #tiempoTotal}. */
+        private double compensacion;
+        private double tiempoMaximo;
+        /** Hijos por dirección abierta, o null si no tiene. */
+        private Suite[] hijos;
+        private int cantidadHijos;
+        /** El hijo encontrado la última vez. */
+        private Suite ultimoHijo;
+
+        private Suite(Suite padre, byte[] ruta, int inicioSegmento, int hash) {
+            this.padre = padre;
+            this.ruta = ruta;
+            this.inicioSegmento = inicioSegmento;
+            this.hash = hash;
+            this.nivel = padre == null ? 0 : padre.nivel + 1;
+        }
+
+        private void sumar(EstadoPrueba estado, double tiempo) {
+            conteos[estado.ordinal()]++;
+            total++;
+            sumarTiempo(tiempo);
+            tiempoMaximo = Math.max(tiempoMaximo, tiempo);
+        }
+
+        /** Suma exacta de dos doubles (TwoSum de Knuth), sin saltos que predecir. */
+        private void sumarTiempo(double t) {
+            double suma = tiempoTotal + t;
+            double parte = suma - tiempoTotal;
+            compensacion += (tiempoTotal - (suma - parte)) + (t - parte);
+            tiempoTotal = suma;
+        }
+
+        private boolean esSegmento(byte[] b, int inicio, int fin) {
+            return Arrays.equals(ruta, inicioSegmento, ruta.length, b, inicio, fin);
+        }
+
+        private void sumar(Suite otra) {
+            for (int i = 0; i < ESTADOS; i++) {
+                conteos[i] += otra.conteos[i];
+            }
+            total += otra.total;
+            sumarTiempo(otra.tiempoTotal);
+            sumarTiempo(otra.compensacion);
+            tiempoMaximo = Math.max(tiempoMaximo, otra.tiempoMaximo);
+        }
+
+        private void insertar(Suite hijo) {
+            if (hijos == null) {
+                hijos = new Suite[4];
+            } else if ((cantidadHijos + 1) * 3 > hijos.length * 2) {
+                Suite[] anteriores = hijos;
+                hijos = new Suite[anteriores.length * 2];
+                for (Suite s : anteriores) {
+                    if (s != null) {
+                        ubicar(s);
+                    }
+                }
+            }
+            ubicar(hijo);
+            cantidadHijos++;
+        }
+
+        private void ubicar(Suite s) {
+            int i = s.hash & (hijos.length - 1);
+            while (hijos[i] != null) {
+                i = (i + 1) & (hijos.length - 1);
+            }
+            hijos[i] = s;
+        }
+
+        /** @return 0 para la raíz, 1 para las suites, 2 para los módulos... */
+        public int getNivel() {
+            return nivel;
+        }
+
+        /** @return la suite que la contiene, o null en la raíz */
+        public Suite getPadre() {
+            return padre;
+        }
+
+        /** @return el prefijo completo, por ejemplo {@code AUTH-LOGIN}; vacío en la raíz */
+        public String getRuta() {
+            return new String(ruta, StandardCharsets.UTF_8);
+        }
+
+        /** @return el último segmento, por ejemplo {@code LOGIN} */
+        public String getNombre() {
+            return new String(ruta, inicioSegmento, ruta.length - inicioSegmento, StandardCharsets.UTF_8);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getConteo(EstadoPrueba estado) {
+            return conteos[estado.ordinal()];
+        }
+
+        public double getTiempoTotal() {
+            return tiempoTotal + compensacion;
+        }
+
+        public double getTiempoPromedio() {
+            return total == 0 ? 0 : getTiempoTotal() / total;
+        }
+
+        public double getTiempoMaximo() {
+            return tiempoMaximo;
+        }
+
+        /** @return filas que no tienen un prefijo más en este nivel */
+        public long getSinSubgrupo() {
+            long resto = total;
+            for (Suite s : getHijos()) {
+                resto -= s.total;
+            }
+            return resto;
+        }
+
+        /** @return los hijos, ordenados por nombre */
+        public List<Suite> getHijos() {
+            List<Suite> lista = new ArrayList<>(cantidadHijos);
+            if (hijos != null) {
+                for (Suite s : hijos) {
+                    if (s != null) {
+                        lista.add(s);
+                    }
+                }
+            }
+            lista.sort(Comparator.comparing(Suite::getNombre));
+            return lista;
+        }
+
+        /**
+         * @param nombre último segmento del hijo buscado
+         * @return el hijo, o null si no existe
+         */
+        public Suite getHijo(String nombre) {
+            for (Suite s : getHijos()) {
+                if (s.getNombre().equals(nombre)) {
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+}
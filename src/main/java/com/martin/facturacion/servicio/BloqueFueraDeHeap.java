@@ -0,0 +1,34 @@
+package com.martin.facturacion.servicio;
+
+/**
+ * Bloque de memoria nativa de tamaño fijo. Todos los accesos son absolutos
+ * (no hay posición actual), así que varios hilos pueden leer a la vez una
+ * vez terminadas las escrituras.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+interface BloqueFueraDeHeap {
+
+    byte getByte(int pos);
+
+    void putByte(int pos, byte valor);
+
+    int getInt(int pos);
+
+    void putInt(int pos, int valor);
+
+    long getLong(int pos);
+
+    void putLong(int pos, long valor);
+
+    double getDouble(int pos);
+
+    void putDouble(int pos, double valor);
+
+    /** Copia {@code largo} bytes del bloque, desde {@code pos}, a {@code destino}. */
+    void leer(int pos, byte[] destino, int desde, int largo);
+
+    /** Copia {@code largo} bytes de {@code origen} al bloque, desde {@code pos}. */
+    void escribir(int pos, byte[] origen, int desde, int largo);
+}
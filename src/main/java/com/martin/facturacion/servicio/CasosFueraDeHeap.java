@@ -0,0 +1,259 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Lista de casos guardada fuera del heap, para análisis en memoria de
+ * archivos que no entran (o que harían trabajar de más al recolector) como
+ * objetos {@link CasoPrueba}.
+ *
+ * <p>
+ * Cada caso ocupa un registro de {@value #BYTES_REGISTRO} bytes en bloques
+ * de memoria nativa:
+ * </p>
+ *
+ * <pre>
+ *  0  tiempo        double
+ *  8  texto         long   (bloque &lt;&lt; 32 | posición en el bloque)
+ * 16  largo id      int
+ * 20  largo nombre  int
+ * 24  estado        byte   (ordinal)
+ * </pre>
+ *
+ * <p>
+ * {@code idTest} y {@code nombreTest} van seguidos, en UTF-8, en bloques de
+ * texto aparte. En el heap solo quedan las referencias a los bloques, así
+ * que su uso no crece con el archivo.
+ * </p>
+ *
+ * <p>
+ * {@link #get(int)} arma un {@link CasoPrueba} nuevo en cada llamada: los
+ * reportes y el menú recorren la lista como cualquier otra y los objetos
+ * duran lo que dura la iteración. {@link #getEstado(int)} y
+ * {@link #getTiempo(int)} leen un campo sin crear nada.
+ * </p>
+ *
+ * <p>
+ * Con un {@link PresupuestoMemoria}, los bloques que ya no entran en el
+ * presupuesto se mapean sobre un archivo temporal ({@link MemoriaConDerrame}).
+ * </p>
+ *
+ * <p>
+ * Se llena desde un solo hilo con {@link #add(CasoPrueba)}; terminada la
+ * carga admite lecturas concurrentes. No se pueden quitar ni reemplazar
+ * casos.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class CasosFueraDeHeap extends AbstractList<CasoPrueba> implements RandomAccess, Closeable {
+
+    static final int BYTES_REGISTRO = 32;
+    static final int REGISTROS_POR_BLOQUE = 1 << 16;
+    static final int BYTES_BLOQUE_TEXTO = 4 << 20;
+
+    private static final int TIEMPO = 0;
+    private static final int TEXTO = 8;
+    private static final int LARGO_ID = 16;
+    private static final int LARGO_NOMBRE = 20;
+    private static final int ESTADO = 24;
+
+    private static final EstadoPrueba[] ESTADOS = EstadoPrueba.values();
+
+    private final MemoriaFueraDeHeap memoria;
+    private final List<BloqueFueraDeHeap> registros = new ArrayList<>();
+    private final List<BloqueFueraDeHeap> textos = new ArrayList<>();
+    private int tamanio;
+    private int usadoTexto = BYTES_BLOQUE_TEXTO;
+    private long bytesReservados;
+
+    /** Usa la memoria FFM si está disponible; si no, ByteBuffer directo. */
+    public CasosFueraDeHeap() {
+        this(MemoriaFueraDeHeap.crear());
+    }
+
+    /**
+     * Guarda los casos en memoria mientras entren en {@code presupuesto} y
+     * después en un archivo temporal.
+     *
+     * @param presupuesto memoria de la ejecución
+     */
+    public CasosFueraDeHeap(PresupuestoMemoria presupuesto) {
+        this(new MemoriaConDerrame(MemoriaFueraDeHeap.crear(), presupuesto));
+    }
+
+    CasosFueraDeHeap(MemoriaFueraDeHeap memoria) {
+        this.memoria = memoria;
+    }
+
+    /**
+     * Agrega un caso al final.
+     *
+     * @return siempre true
+     * @throws OutOfMemoryError si se agota la memoria directa
+     *                          ({@code -XX:MaxDirectMemorySize})
+     * @throws java.io.UncheckedIOException si falla el archivo temporal de un
+     *                                      presupuesto agotado
+     */
+    @Override
+    public boolean add(CasoPrueba c) {
+        if (tamanio == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Demasiados casos para una lista");
+        }
+        int enBloque = tamanio % REGISTROS_POR_BLOQUE;
+        if (enBloque == 0) {
+            registros.add(reservar(REGISTROS_POR_BLOQUE * BYTES_REGISTRO));
+        }
+
+        byte[] id = c.getIdTest().getBytes(StandardCharsets.UTF_8);
+        byte[] nombre = c.getNombreTest().getBytes(StandardCharsets.UTF_8);
+        int largo = id.length + nombre.length;
+        if (usadoTexto + largo > BYTES_BLOQUE_TEXTO || textos.isEmpty()) {
+            // Un texto más grande que un bloque (hasta 1 MB por registro) lleva uno propio
+            textos.add(reservar(Math.max(BYTES_BLOQUE_TEXTO, largo)));
+            usadoTexto = 0;
+        }
+        BloqueFueraDeHeap texto = textos.get(textos.size() - 1);
+        texto.escribir(usadoTexto, id, 0, id.length);
+        texto.escribir(usadoTexto + id.length, nombre, 0, nombre.length);
+
+        BloqueFueraDeHeap r = registros.get(registros.size() - 1);
+        int pos = enBloque * BYTES_REGISTRO;
+        r.putDouble(pos + TIEMPO, c.getTiempoEjecucion());
+        r.putLong(pos + TEXTO, (long) (textos.size() - 1) << 32 | usadoTexto);
+        r.putInt(pos + LARGO_ID, id.length);
+        r.putInt(pos + LARGO_NOMBRE, nombre.length);
+        r.putByte(pos + ESTADO, (byte) c.getEstado().ordinal());
+
+        usadoTexto += largo;
+        tamanio++;
+        return true;
+    }
+
+    private BloqueFueraDeHeap reservar(int bytes) {
+        BloqueFueraDeHeap b = memoria.reservar(bytes);
+        bytesReservados += bytes;
+        return b;
+    }
+
+    @Override
+    public CasoPrueba get(int i) {
+        BloqueFueraDeHeap r = registro(i);
+        int pos = posicion(i);
+        long texto = r.getLong(pos + TEXTO);
+        int largoId = r.getInt(pos + LARGO_ID);
+        int largoNombre = r.getInt(pos + LARGO_NOMBRE);
+
+        byte[] bytes = new byte[largoId + largoNombre];
+        textos.get((int) (texto >>> 32)).leer((int) texto, bytes, 0, bytes.length);
+        return new CasoPrueba(new String(bytes, 0, largoId, StandardCharsets.UTF_8),
+                new String(bytes, largoId, largoNombre, StandardCharsets.UTF_8),
+                ESTADOS[r.getByte(pos + ESTADO)], r.getDouble(pos + TIEMPO));
+    }
+
+    /** @return estado del caso {@code i}, sin armar el {@link CasoPrueba} */
+    public EstadoPrueba getEstado(int i) {
+        return ESTADOS[registro(i).getByte(posicion(i) + ESTADO)];
+    }
+
+    /** @return tiempo del caso {@code i}, sin armar el {@link CasoPrueba} */
+    public double getTiempo(int i) {
+        return registro(i).getDouble(posicion(i) + TIEMPO);
+    }
+
+    /**
+     * Compara el {@code idTest} de dos casos por sus bytes UTF-8 (el orden
+     * de los code points), leyendo los bloques de texto sin armar los
+     * {@link String}.
+     *
+     * @return negativo, cero o positivo, como {@link java.util.Comparator}
+     */
+    public int compararIds(int a, int b) {
+        BloqueFueraDeHeap ra = registro(a);
+        BloqueFueraDeHeap rb = registro(b);
+        int pa = posicion(a);
+        int pb = posicion(b);
+        long textoA = ra.getLong(pa + TEXTO);
+        long textoB = rb.getLong(pb + TEXTO);
+        int largoA = ra.getInt(pa + LARGO_ID);
+        int largoB = rb.getInt(pb + LARGO_ID);
+        BloqueFueraDeHeap ta = textos.get((int) (textoA >>> 32));
+        BloqueFueraDeHeap tb = textos.get((int) (textoB >>> 32));
+        int n = Math.min(largoA, largoB);
+        for (int k = 0; k < n; k++) {
+            int cmp = Byte.compareUnsigned(ta.getByte((int) textoA + k), tb.getByte((int) textoB + k));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(largoA, largoB);
+    }
+
+    /**
+     * Compara el {@code idTest} del caso {@code i} con un prefijo, en el mismo
+     * orden que {@link #compararIds(int, int)}.
+     *
+     * @param prefijo prefijo en UTF-8
+     * @return cero si el id empieza con el prefijo; si no, negativo o positivo
+     *         según el id vaya antes o después
+     */
+    public int compararPrefijoId(int i, byte[] prefijo) {
+        BloqueFueraDeHeap r = registro(i);
+        int pos = posicion(i);
+        long texto = r.getLong(pos + TEXTO);
+        int largo = r.getInt(pos + LARGO_ID);
+        BloqueFueraDeHeap bloque = textos.get((int) (texto >>> 32));
+        int n = Math.min(largo, prefijo.length);
+        for (int k = 0; k < n; k++) {
+            int cmp = Byte.compareUnsigned(bloque.getByte((int) texto + k), prefijo[k]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return largo >= prefijo.length ? 0 : -1;
+    }
+
+    private BloqueFueraDeHeap registro(int i) {
+        if (i < 0 || i >= tamanio) {
+            throw new IndexOutOfBoundsException("Índice " + i + ", tamaño " + tamanio);
+        }
+        return registros.get(i / REGISTROS_POR_BLOQUE);
+    }
+
+    private static int posicion(int i) {
+        return i % REGISTROS_POR_BLOQUE * BYTES_REGISTRO;
+    }
+
+    @Override
+    public int size() {
+        return tamanio;
+    }
+
+    /** @return bytes reservados para registros y textos, en memoria o en disco */
+    public long getBytesReservados() {
+        return bytesReservados;
+    }
+
+    /** @return implementación de la memoria, para los logs */
+    public String getMemoria() {
+        return memoria.nombre();
+    }
+
+    /** Libera la memoria nativa; la lista queda vacía. */
+    @Override
+    public void close() {
+        registros.clear();
+        textos.clear();
+        tamanio = 0;
+        memoria.close();
+    }
+}
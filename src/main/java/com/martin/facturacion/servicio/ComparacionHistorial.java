@@ -0,0 +1,169 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compara la ejecución actual contra las anteriores del historial: para cada
+ * métrica, el valor actual, el de la ejecución anterior, el promedio de las
+ * últimas N y la variación porcentual contra ese promedio. También marca los
+ * casos del top de lentos que empeoraron o que son nuevos en el top.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ComparacionHistorial {
+
+    /** Una métrica comparada. */
+    public static final class Metrica {
+        private final String clave;
+        private final String nombre;
+        private final double actual;
+        private final double anterior;
+        private final double promedio;
+
+        Metrica(String clave, String nombre, double actual, double anterior, double promedio) {
+            this.clave = clave;
+            this.nombre = nombre;
+            this.actual = actual;
+            this.anterior = anterior;
+            this.promedio = promedio;
+        }
+
+        /** @return identificador de la métrica para salidas como JSON */
+        public String getClave() {
+            return clave;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public double getActual() {
+            return actual;
+        }
+
+        /** @return valor en la ejecución inmediatamente anterior */
+        public double getAnterior() {
+            return anterior;
+        }
+
+        /** @return promedio de las ejecuciones anteriores comparadas */
+        public double getPromedio() {
+            return promedio;
+        }
+
+        /** @return variación porcentual contra el promedio, o NaN si el promedio es 0 */
+        public double getVariacion() {
+            return promedio == 0 ? Double.NaN : (actual - promedio) * 100.0 / promedio;
+        }
+    }
+
+    private final List<RegistroEjecucion> anteriores;
+    private final List<Metrica> metricas = new ArrayList<>();
+    private final List<String> lentos = new ArrayList<>();
+
+    /**
+     * @param actual     ejecución actual
+     * @param anteriores ejecuciones anteriores, de la más vieja a la más reciente
+     */
+    public ComparacionHistorial(RegistroEjecucion actual, List<RegistroEjecucion> anteriores) {
+        this.anteriores = Collections.unmodifiableList(new ArrayList<>(anteriores));
+        if (anteriores.isEmpty()) {
+            return;
+        }
+
+        agregar("total", "Total tests", actual, r -> r.getTotal());
+        agregar("porcentajePassed", "% PASSED", actual, r -> r.getPorcentaje(EstadoPrueba.PASSED));
+        agregar("porcentajeFailed", "% FAILED", actual, r -> r.getPorcentaje(EstadoPrueba.FAILED));
+        agregar("tiempoPromedio", "Tiempo promedio", actual, RegistroEjecucion::getTiempoPromedio);
+        agregar("tiempoP50", "Tiempo p50", actual, r -> r.getHistograma().percentil(50));
+        agregar("tiempoP95", "Tiempo p95", actual, r -> r.getHistograma().percentil(95));
+        agregar("tiempoTotal", "Tiempo total", actual, RegistroEjecucion::getTiempoTotal);
+
+        compararLentos(actual);
+    }
+
+    /** @return true si no hay ejecuciones anteriores contra las que comparar */
+    public boolean isVacia() {
+        return anteriores.isEmpty();
+    }
+
+    public int getEjecuciones() {
+        return anteriores.size();
+    }
+
+    /** @return ejecuciones comparadas, de la más vieja a la más reciente */
+    public List<RegistroEjecucion> getAnteriores() {
+        return anteriores;
+    }
+
+    public List<Metrica> getMetricas() {
+        return Collections.unmodifiableList(metricas);
+    }
+
+    /**
+     * Líneas de la sección de comparación tal como se escriben en
+     * resumen.txt. Vacía si no hay historial.
+     */
+    public List<String> lineas() {
+        List<String> lineas = new ArrayList<>();
+        if (isVacia()) {
+            return lineas;
+        }
+
+        lineas.add(String.format("Comparacion con las ultimas %d ejecuciones (desde %s):",
+                anteriores.size(), anteriores.get(0).getFecha()));
+        lineas.add(String.format("%-16s %14s %14s %14s %10s", "Metrica", "Actual", "Anterior",
+                "Promedio", "Var."));
+        for (Metrica m : metricas) {
+            lineas.add(String.format("%-16s %14.3f %14.3f %14.3f %10s", m.getNombre(), m.getActual(),
+                    m.getAnterior(), m.getPromedio(), variacion(m.getVariacion())));
+        }
+
+        if (!lentos.isEmpty()) {
+            lineas.add("Mas lentos respecto de la ejecucion anterior:");
+            lentos.forEach(l -> lineas.add("  " + l));
+        }
+        return lineas;
+    }
+
+    private void agregar(String clave, String nombre, RegistroEjecucion actual,
+            ToDoubleFunction<RegistroEjecucion> valor) {
+        double suma = 0;
+        for (RegistroEjecucion r : anteriores) {
+            suma += valor.applyAsDouble(r);
+        }
+        double anterior = valor.applyAsDouble(anteriores.get(anteriores.size() - 1));
+        metricas.add(new Metrica(clave, nombre, valor.applyAsDouble(actual), anterior, suma / anteriores.size()));
+    }
+
+    private void compararLentos(RegistroEjecucion actual) {
+        Map<String, Double> previos = new HashMap<>();
+        for (CasoPrueba c : anteriores.get(anteriores.size() - 1).getMasLentos()) {
+            previos.put(c.getIdTest(), c.getTiempoEjecucion());
+        }
+
+        for (CasoPrueba c : actual.getMasLentos()) {
+            Double previo = previos.get(c.getIdTest());
+            if (previo == null) {
+                lentos.add(String.format("%s %.3f (nuevo en el top)", c.getIdTest(), c.getTiempoEjecucion()));
+            } else if (c.getTiempoEjecucion() > previo) {
+                double v = previo == 0 ? Double.NaN : (c.getTiempoEjecucion() - previo) * 100.0 / previo;
+                lentos.add(String.format("%s %.3f (antes %.3f, %s)", c.getIdTest(), c.getTiempoEjecucion(),
+                        previo, variacion(v)));
+            }
+        }
+    }
+
+    private static String variacion(double v) {
+        return Double.isNaN(v) ? "-" : String.format("%+.2f%%", v);
+    }
+}
@@ -0,0 +1,242 @@
+package com.martin.facturacion.servicio;
+
+/**
+ * Cuenta los {@code idTest} distintos de una ejecución y las filas
+ * posiblemente duplicadas, en memoria fija: un {@link HyperLogLog} sobre el
+ * id y un {@link FiltroBloom} sobre la clave de cada fila ({@code idTest}, o
+ * {@code idTest} y {@code run} si el CSV tiene esa columna).
+ *
+ * <p>
+ * Una fila se cuenta como duplicada si el filtro dice que su clave ya se
+ * vio. No hay falsos negativos; los falsos positivos esperados se informan
+ * en {@link #getFalsosEsperados()} para poder descontarlos.
+ * </p>
+ *
+ * <p>
+ * Cada parte de la entrada (por ejemplo, cada bloque leído por un hilo)
+ * puede tener su conteo y luego {@linkplain #combinar(ConteoIds)
+ * combinarlos}. Para combinar ejecuciones de distintas máquinas se guarda un
+ * {@linkplain #resumen() resumen} sin el filtro: los ids distintos se
+ * siguen combinando exactamente, pero las claves repetidas entre ejecuciones
+ * ya no se pueden detectar. Esta clase no es segura para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ConteoIds {
+
+    /** Tamaño mínimo que se supone por fila para dimensionar el filtro a partir del archivo. */
+    static final int BYTES_POR_FILA = 24;
+
+    static final long CAPACIDAD_MINIMA = 1 << 16;
+
+    /** Con 16 bits por elemento son 32 MB; más allá crecen los falsos positivos. */
+    static final long CAPACIDAD_MAXIMA = 1 << 24;
+
+    private static final long SEMILLA = 0xcbf29ce484222325L;
+    private static final long PRIMO = 0x100000001b3L;
+
+    private final HyperLogLog distintos;
+    /** Null en un resumen. */
+    private FiltroBloom claves;
+    private final long capacidad;
+    private long filas;
+    private long duplicadas;
+    /** Falsos positivos esperados de un resumen, ya calculados. */
+    private double falsos;
+
+    /**
+     * @param capacidad claves distintas esperadas (todos los conteos que se
+     *                  vayan a combinar deben usar la misma)
+     */
+    public ConteoIds(long capacidad) {
+        this.distintos = new HyperLogLog();
+        this.capacidad = capacidad;
+        this.claves = new FiltroBloom(capacidad);
+    }
+
+    private ConteoIds(HyperLogLog distintos, long filas, long duplicadas, double falsos) {
+        this.distintos = distintos;
+        this.capacidad = 0;
+        this.filas = filas;
+        this.duplicadas = duplicadas;
+        this.falsos = falsos;
+    }
+
+    /**
+     * Reconstruye un {@linkplain #resumen() resumen}.
+     *
+     * @param registros  registros del {@link HyperLogLog} de ids
+     * @param filas      filas contadas
+     * @param duplicadas filas posiblemente duplicadas
+     * @param falsos     falsos positivos esperados entre las duplicadas
+     * @return conteo sin filtro
+     */
+    public static ConteoIds desdeResumen(byte[] registros, long filas, long duplicadas, double falsos) {
+        return new ConteoIds(new HyperLogLog(registros), filas, duplicadas, falsos);
+    }
+
+    /** @return una copia sin el filtro de claves, de tamaño fijo (~16 KB) */
+    public ConteoIds resumen() {
+        return new ConteoIds(new HyperLogLog(distintos.getRegistros()), filas, duplicadas, getFalsosEsperados());
+    }
+
+    /** @return false si es un {@linkplain #resumen() resumen} sin filtro */
+    public boolean tieneFiltro() {
+        return claves != null;
+    }
+
+    /** @return copia de los registros del {@link HyperLogLog} de ids */
+    public byte[] getRegistros() {
+        return distintos.getRegistros();
+    }
+
+    /**
+     * @param bytes tamaño del archivo a leer
+     * @return un conteo con capacidad para todas las filas que puede tener
+     */
+    public static ConteoIds paraArchivo(long bytes) {
+        return new ConteoIds(capacidadParaArchivo(bytes));
+    }
+
+    /**
+     * @param bytes tamaño del archivo a leer
+     * @return memoria que ocuparía {@link #paraArchivo(long)}, para pedirla a
+     *         un presupuesto antes de crear el conteo
+     */
+    public static long memoriaParaArchivo(long bytes) {
+        return FiltroBloom.bytesPara(capacidadParaArchivo(bytes)) + (1 << HyperLogLog.PRECISION);
+    }
+
+    /**
+     * Igual que {@link #paraArchivo(long)}, pero el filtro no pasa de lo que
+     * queda de {@code memoria} después del {@link HyperLogLog} (16 KB, que
+     * siempre se usa). Con menos capacidad que filas el filtro se llena antes
+     * y crecen los falsos positivos, que {@link #getFalsosEsperados()} sigue
+     * informando.
+     *
+     * @param bytes   tamaño del archivo a leer
+     * @param memoria bytes asignados al conteo
+     * @return un conteo que ocupa como mucho {@code memoria} (o un bloque del
+     *         filtro si no alcanza para uno)
+     */
+    public static ConteoIds paraArchivo(long bytes, long memoria) {
+        long disponible = FiltroBloom.capacidadPara(memoria - (1 << HyperLogLog.PRECISION));
+        return new ConteoIds(Math.max(1, Math.min(capacidadParaArchivo(bytes), disponible)));
+    }
+
+    private static long capacidadParaArchivo(long bytes) {
+        return Math.max(CAPACIDAD_MINIMA, Math.min(CAPACIDAD_MAXIMA, bytes / BYTES_POR_FILA));
+    }
+
+    /**
+     * Agrega una fila. No se puede usar en un {@linkplain #resumen() resumen}.
+     *
+     * @param hashId    {@link #hash(byte[], int, int)} del {@code idTest}
+     * @param hashClave hash de la clave de la fila; igual a {@code hashId}
+     *                  si no hay columna {@code run}
+     * @return true si la fila posiblemente repite una clave anterior
+     */
+    public boolean agregar(long hashId, long hashClave) {
+        filas++;
+        distintos.agregar(hashId);
+        if (claves.agregar(hashClave)) {
+            duplicadas++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Suma a este conteo las filas de otra parte de la entrada. Las claves
+     * que se repiten entre las dos partes no se ven fila por fila: se estiman
+     * comparando los elementos de cada filtro con los de su unión. Si alguno
+     * de los dos es un {@linkplain #resumen() resumen}, el resultado también
+     * lo es y las duplicadas solo se suman.
+     *
+     * @param otro conteo de la misma capacidad, o un resumen
+     * @throws IllegalArgumentException si las capacidades no coinciden
+     */
+    public void combinar(ConteoIds otro) {
+        if (claves == null || otro.claves == null) {
+            falsos = getFalsosEsperados() + otro.getFalsosEsperados();
+            claves = null;
+            distintos.combinar(otro.distintos);
+            filas += otro.filas;
+            duplicadas += otro.duplicadas;
+            return;
+        }
+        if (otro.capacidad != capacidad) {
+            throw new IllegalArgumentException("Conteos de distinta capacidad: " + capacidad + " y "
+                    + otro.capacidad);
+        }
+        double separados = claves.estimarElementos() + otro.claves.estimarElementos();
+        claves.combinar(otro.claves);
+        long comunes = Math.round(separados - claves.estimarElementos());
+        distintos.combinar(otro.distintos);
+        filas += otro.filas;
+        duplicadas += otro.duplicadas + Math.max(0, comunes);
+    }
+
+    /** @return filas agregadas */
+    public long getFilas() {
+        return filas;
+    }
+
+    /** @return {@code idTest} distintos, estimados */
+    public long getIdsDistintos() {
+        return distintos.estimar();
+    }
+
+    /** @return filas cuya clave posiblemente ya se había visto */
+    public long getDuplicadas() {
+        return duplicadas;
+    }
+
+    /** @return cuántas de {@link #getDuplicadas()} se esperan por falsos positivos del filtro */
+    public double getFalsosEsperados() {
+        return claves == null ? falsos : claves.falsosEsperados(filas - duplicadas);
+    }
+
+    /** @return memoria fija que ocupa el conteo */
+    public long getBytes() {
+        return (claves == null ? 0 : claves.getBytes()) + (1 << HyperLogLog.PRECISION);
+    }
+
+    /**
+     * Hash de 64 bits de un texto en bytes (FNV-1a con una mezcla final).
+     *
+     * @param b     bytes
+     * @param desde inicio, inclusive
+     * @param hasta fin, exclusive
+     * @return hash para {@link #agregar(long, long)}
+     */
+    public static long hash(byte[] b, int desde, int hasta) {
+        return hash(SEMILLA, b, desde, hasta);
+    }
+
+    /**
+     * Hash de una clave compuesta: continúa {@code anterior} (el hash de la
+     * primera parte) con los bytes de la siguiente.
+     *
+     * @param anterior hash de la parte anterior de la clave
+     * @param b        bytes de la siguiente parte
+     * @param desde    inicio, inclusive
+     * @param hasta    fin, exclusive
+     * @return hash de la clave completa
+     */
+    public static long hash(long anterior, byte[] b, int desde, int hasta) {
+        long h = anterior;
+        for (int i = desde; i < hasta; i++) {
+            h = (h ^ (b[i] & 0xff)) * PRIMO;
+        }
+        // Mezcla final de MurmurHash3: FNV deja los bits altos poco mezclados
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -4,7 +4,6 @@ import com.martin.facturacion.modelo.CasoPrueba;
 import com.martin.facturacion.modelo.EstadoPrueba;
 
 import java.util.*;
-import java.util.stream.*;
 
 /**
  * La clase {@code EstadisticasPruebas} se encarga de calcular métricas
@@ -18,28 +17,59 @@ public class EstadisticasPruebas {
     private double tiempoPromedio;
     private Optional<CasoPrueba> masLento;
 
+    private double tiempoTotal;
+    private List<CasoPrueba> masLentos;
+    private HistogramaTiempos histograma;
+
     public EstadisticasPruebas(List<CasoPrueba> casos) {
-        if (casos == null)
-            casos = Collections.emptyList();
-        this.total = casos.size();
+        // Un solo recorrido de la lista en lugar de un stream por métrica
+        AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+        if (casos != null) {
+            casos.forEach(acumulador::agregar);
+        }
+        acumulador.volcarEn(this);
+    }
+
+    /**
+     * Construye las estadísticas a partir de valores ya acumulados. Lo usa
+     * {@link AcumuladorEstadisticas}.
+     *
+     * @param total       cantidad de casos
+     * @param conteos     cantidad de casos por estado, indexada por ordinal
+     * @param tiempoTotal suma de los tiempos de ejecución
+     * @param masLento    caso con mayor tiempo, o null si no hay casos
+     * @param masLentos   los casos más lentos, de mayor a menor tiempo
+     * @param histograma  distribución de tiempos (se copia)
+     */
+    EstadisticasPruebas(long total, long[] conteos, double tiempoTotal, CasoPrueba masLento,
+            List<CasoPrueba> masLentos, HistogramaTiempos histograma) {
+        inicializar(total, conteos, tiempoTotal, masLento, masLentos, histograma);
+    }
+
+    void inicializar(long total, long[] conteos, double tiempoTotal, CasoPrueba masLento,
+            List<CasoPrueba> masLentos, HistogramaTiempos histograma) {
+        this.total = total;
+        this.tiempoTotal = tiempoTotal;
+        this.masLentos = Collections.unmodifiableList(masLentos);
+        this.histograma = histograma.copia();
 
-        this.conteos = casos.stream()
-                .collect(Collectors.groupingBy(CasoPrueba::getEstado, Collectors.counting()));
+        // Solo se incluyen los estados presentes, igual que groupingBy
+        this.conteos = new EnumMap<>(EstadoPrueba.class);
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            if (conteos[s.ordinal()] > 0) {
+                this.conteos.put(s, conteos[s.ordinal()]);
+            }
+        }
 
         this.porcentajes = new EnumMap<>(EstadoPrueba.class);
         for (EstadoPrueba s : EstadoPrueba.values()) {
-            long c = conteos.getOrDefault(s, 0L);
+            long c = this.conteos.getOrDefault(s, 0L);
             double pct = total == 0 ? 0.0 : (c * 100.0) / total;
             porcentajes.put(s, pct);
         }
 
-        this.tiempoPromedio = casos.stream()
-                .mapToDouble(CasoPrueba::getTiempoEjecucion)
-                .average()
-                .orElse(0.0);
-
-        this.masLento = casos.stream()
-                .max(Comparator.comparingDouble(CasoPrueba::getTiempoEjecucion));
+        this.tiempoPromedio = total == 0 ? 0.0 : tiempoTotal / total;
+        this.masLento = Optional.ofNullable(masLento);
     }
 
     public long getTotal() {
@@ -62,6 +92,23 @@ public class EstadisticasPruebas {
         return masLento;
     }
 
+    /**
+     * Devuelve los casos más lentos ({@link TopLentos#K_POR_DEFECTO} como
+     * máximo), ordenados de mayor a menor tiempo.
+     */
+    public List<CasoPrueba> getMasLentos() {
+        return masLentos;
+    }
+
+    /**
+     * Distribución de los tiempos de ejecución, para percentiles aproximados.
+     *
+     * @return copia del histograma
+     */
+    public HistogramaTiempos getHistograma() {
+        return histograma.copia();
+    }
+
     // -------------------------------------------------------------------------
     // MÉTODOS REQUERIDOS POR MenuConsola (los que te faltan)
     // -------------------------------------------------------------------------
@@ -83,15 +130,6 @@ public class EstadisticasPruebas {
 
     /** Tiempo total sumado de todos los casos */
     public double tiempoTotal() {
-        return porcentajeSeguro(conteos) == 0 ? 0.0
-                : conteos.keySet().stream()
-                        .mapToDouble(e -> 0.0) // inicial
-                        .sum()
-                        + getTiempoPromedio() * getTotal();
-    }
-
-    /** Método interno auxiliar para evitar NPE si el mapa está vacío */
-    private long porcentajeSeguro(Map<EstadoPrueba, Long> mapa) {
-        return mapa == null ? 0 : mapa.values().stream().mapToLong(Long::longValue).sum();
+        return tiempoTotal;
     }
 }
@@ -0,0 +1,140 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estadísticas estimadas a partir de una muestra de bloques del archivo
+ * ({@link AcumuladorMuestra}), cada una con la semiamplitud de su intervalo
+ * de confianza: el valor real está en {@code valor ± semiamplitud} con
+ * {@value AcumuladorMuestra#CONFIANZA}% de confianza.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class EstimacionEstadisticas {
+
+    private final int bloques;
+    private final long bloquesTotales;
+    private final long filasMuestra;
+    private final long erroresMuestra;
+    private final long bytesLeidos;
+    private final double total;
+    private final double semiTotal;
+    private final Map<EstadoPrueba, Double> porcentajes;
+    private final Map<EstadoPrueba, Double> semiPorcentajes;
+    private final double tiempoPromedio;
+    private final double semiTiempoPromedio;
+
+    EstimacionEstadisticas(int bloques, long bloquesTotales, long filasMuestra, long erroresMuestra,
+            long bytesLeidos, double total, double semiTotal, Map<EstadoPrueba, Double> porcentajes,
+            Map<EstadoPrueba, Double> semiPorcentajes, double tiempoPromedio, double semiTiempoPromedio) {
+        this.bloques = bloques;
+        this.bloquesTotales = bloquesTotales;
+        this.filasMuestra = filasMuestra;
+        this.erroresMuestra = erroresMuestra;
+        this.bytesLeidos = bytesLeidos;
+        this.total = total;
+        this.semiTotal = semiTotal;
+        this.porcentajes = Collections.unmodifiableMap(porcentajes);
+        this.semiPorcentajes = Collections.unmodifiableMap(semiPorcentajes);
+        this.tiempoPromedio = tiempoPromedio;
+        this.semiTiempoPromedio = semiTiempoPromedio;
+    }
+
+    /** @return true si se leyeron todos los bloques: los valores son exactos */
+    public boolean isCompleta() {
+        return bloques >= bloquesTotales;
+    }
+
+    public int getBloques() {
+        return bloques;
+    }
+
+    public long getBloquesTotales() {
+        return bloquesTotales;
+    }
+
+    /** @return filas válidas leídas */
+    public long getFilasMuestra() {
+        return filasMuestra;
+    }
+
+    /** @return filas inválidas encontradas en la muestra */
+    public long getErroresMuestra() {
+        return erroresMuestra;
+    }
+
+    public long getBytesLeidos() {
+        return bytesLeidos;
+    }
+
+    /** @return filas válidas estimadas en todo el archivo */
+    public double getTotal() {
+        return total;
+    }
+
+    public double getSemiTotal() {
+        return semiTotal;
+    }
+
+    /** @return porcentaje estimado de cada estado (0 a 100) */
+    public Map<EstadoPrueba, Double> getPorcentajes() {
+        return porcentajes;
+    }
+
+    /** @return semiamplitud de cada porcentaje, en puntos porcentuales */
+    public Map<EstadoPrueba, Double> getSemiPorcentajes() {
+        return semiPorcentajes;
+    }
+
+    public double getTiempoPromedio() {
+        return tiempoPromedio;
+    }
+
+    public double getSemiTiempoPromedio() {
+        return semiTiempoPromedio;
+    }
+
+    /**
+     * Error de la estimación, para compararlo con la cota pedida: la mayor
+     * semiamplitud entre los porcentajes (en puntos) y la del tiempo
+     * promedio relativa a su valor (en %).
+     *
+     * @return error en puntos porcentuales, infinito si todavía no hay
+     *         suficientes bloques
+     */
+    public double getError() {
+        double error = 0;
+        for (double s : semiPorcentajes.values()) {
+            error = Math.max(error, s);
+        }
+        if (semiTiempoPromedio > 0) {
+            error = Math.max(error, tiempoPromedio == 0 ? Double.POSITIVE_INFINITY
+                    : semiTiempoPromedio * 100 / tiempoPromedio);
+        }
+        return error;
+    }
+
+    /** @return líneas para resumen.txt, con el mismo formato que el resumen exacto más los intervalos */
+    public List<String> lineas() {
+        List<String> lineas = new ArrayList<>();
+        lineas.add(String.format("Estimación por muestreo (%d%% de confianza): %d de %d bloques, %d filas,"
+                + " %.1f MB leídos", AcumuladorMuestra.CONFIANZA, bloques, bloquesTotales, filasMuestra,
+                bytesLeidos / 1048576.0));
+        lineas.add(String.format("Total tests: ~%.0f ± %.0f", total, semiTotal));
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            double p = porcentajes.get(s);
+            lineas.add(String.format("%s: ~%.0f (%.2f%% ± %.2f%%)", s, total * p / 100, p, semiPorcentajes.get(s)));
+        }
+        lineas.add(String.format("Tiempo promedio: %.3f ± %.3f", tiempoPromedio, semiTiempoPromedio));
+        if (erroresMuestra > 0) {
+            lineas.add("Filas inválidas en la muestra: " + erroresMuestra);
+        }
+        return lineas;
+    }
+}
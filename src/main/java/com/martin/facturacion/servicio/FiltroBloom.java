@@ -0,0 +1,150 @@
+package com.martin.facturacion.servicio;
+
+/**
+ * Filtro de Bloom por bloques: responde si un elemento ya se vio, sin falsos
+ * negativos y con una probabilidad chica de falsos positivos, en memoria
+ * fija de {@link #BITS_POR_ELEMENTO} bits por elemento de capacidad.
+ *
+ * <p>
+ * Cada elemento marca {@link #PALABRAS_BLOQUE} bits, uno por palabra, dentro
+ * de un único bloque de 64 bytes elegido por su hash: una consulta toca una
+ * sola línea de caché en lugar de ocho posiciones al azar. Con la capacidad
+ * completa la probabilidad de falso positivo ronda el 0,1%; si se agregan
+ * más elementos sigue funcionando, pero crece.
+ * </p>
+ *
+ * <p>
+ * Dos filtros de la misma capacidad se {@linkplain #combinar(FiltroBloom)
+ * combinan} con un OR de los bits. Esta clase no es segura para uso
+ * concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class FiltroBloom {
+
+    static final int BITS_POR_ELEMENTO = 16;
+
+    /** Palabras de 64 bits por bloque, y bits que marca cada elemento. */
+    static final int PALABRAS_BLOQUE = 8;
+
+    /** Multiplicadores impares que eligen el bit de cada palabra a partir del mismo hash. */
+    private static final int[] SAL = { 0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31 };
+
+    private final long[] bits;
+    private final int bloques;
+    private long bitsEnUno;
+
+    /**
+     * @param capacidad cantidad de elementos distintos esperada
+     */
+    public FiltroBloom(long capacidad) {
+        bloques = bloques(capacidad);
+        bits = new long[bloques * PALABRAS_BLOQUE];
+    }
+
+    /** @return memoria que ocupa un filtro de esa capacidad, sin crearlo */
+    static long bytesPara(long capacidad) {
+        return (long) bloques(capacidad) * PALABRAS_BLOQUE * Long.BYTES;
+    }
+
+    /** @return elementos que entran en {@code bytes}, en bloques completos */
+    static long capacidadPara(long bytes) {
+        return bytes / (PALABRAS_BLOQUE * Long.BYTES) * PALABRAS_BLOQUE * Long.SIZE / BITS_POR_ELEMENTO;
+    }
+
+    private static int bloques(long capacidad) {
+        long palabras = Math.max(1, capacidad) * BITS_POR_ELEMENTO / Long.SIZE;
+        return (int) Math.min(Integer.MAX_VALUE / PALABRAS_BLOQUE,
+                Math.max(1, (palabras + PALABRAS_BLOQUE - 1) / PALABRAS_BLOQUE));
+    }
+
+    /**
+     * Agrega un elemento.
+     *
+     * @param hash hash de 64 bits del elemento, con bits bien mezclados
+     * @return true si el elemento posiblemente ya estaba; false si seguro es
+     *         nuevo
+     */
+    public boolean agregar(long hash) {
+        int base = (int) (((hash >>> 32) * bloques) >>> 32) * PALABRAS_BLOQUE;
+        int h = (int) hash;
+        boolean estaba = true;
+        for (int j = 0; j < PALABRAS_BLOQUE; j++) {
+            long mascara = 1L << ((h * SAL[j]) >>> 26);
+            long palabra = bits[base + j];
+            if ((palabra & mascara) == 0) {
+                bits[base + j] = palabra | mascara;
+                bitsEnUno++;
+                estaba = false;
+            }
+        }
+        return estaba;
+    }
+
+    /**
+     * Suma a este filtro los elementos de {@code otro}.
+     *
+     * @param otro filtro de otra parte de la entrada, de la misma capacidad
+     * @throws IllegalArgumentException si los tamaños no coinciden
+     */
+    public void combinar(FiltroBloom otro) {
+        if (otro.bits.length != bits.length) {
+            throw new IllegalArgumentException("Filtros de distinto tamaño: " + bits.length + " y "
+                    + otro.bits.length + " palabras");
+        }
+        bitsEnUno = 0;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= otro.bits[i];
+            bitsEnUno += Long.bitCount(bits[i]);
+        }
+    }
+
+    /** @return cantidad estimada de elementos distintos, según la fracción de bits en 1 */
+    public double estimarElementos() {
+        double m = (double) bits.length * Long.SIZE;
+        if (bitsEnUno >= m) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -m / PALABRAS_BLOQUE * Math.log1p(-bitsEnUno / m);
+    }
+
+    /**
+     * Falsos positivos esperados al agregar {@code distintos} elementos
+     * distintos, sumando la probabilidad de cada agregado con el filtro
+     * cargado hasta ese momento. Los elementos por bloque siguen una
+     * distribución de Poisson; con {@code L} elementos en su bloque, uno
+     * nuevo es falso positivo si sus 8 bits ya estaban en 1.
+     *
+     * @param distintos elementos distintos agregados
+     * @return cantidad esperada de veces que {@link #agregar(long)} devolvió
+     *         true para un elemento nuevo
+     */
+    public double falsosEsperados(long distintos) {
+        int pasos = (int) Math.min(distintos, 200);
+        double suma = 0;
+        for (int p = 0; p < pasos; p++) {
+            double media = (p + 0.5) * distintos / pasos / bloques;
+            double poisson = Math.exp(-media);
+            // Probabilidad de que un bit dado de una palabra siga en 0 con l elementos en el bloque
+            double enCero = 1;
+            int limite = (int) (media + 10 * Math.sqrt(media) + 10);
+            for (int l = 0; l <= limite; l++) {
+                double enUno = 1 - enCero;
+                double dos = enUno * enUno;
+                double cuatro = dos * dos;
+                suma += poisson * cuatro * cuatro; // los 8 bits, uno por palabra
+                poisson *= media / (l + 1);
+                enCero *= 1 - 1.0 / Long.SIZE;
+            }
+        }
+        return pasos == 0 ? 0 : suma * distintos / pasos;
+    }
+
+    /** @return memoria ocupada por los bits */
+    public long getBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,155 @@
+package com.martin.facturacion.servicio;
+
+import java.util.Arrays;
+
+/**
+ * Histograma de tiempos de ejecución con cubetas logarítmicas: cada potencia
+ * de 2 se divide en {@link #SUBDIVISIONES} cubetas, así el error relativo de
+ * un percentil es a lo sumo ~12% sin importar la escala de los tiempos.
+ *
+ * <p>
+ * La cubeta se obtiene del exponente y los bits altos de la mantisa del
+ * {@code double}, sin calcular logaritmos. La cubeta 0 reúne los tiempos
+ * menores o iguales a 2<sup>{@value #EXPONENTE_MIN}</sup> (incluido el 0) y
+ * la última los mayores a 2<sup>{@value #EXPONENTE_MAX}</sup>.
+ * </p>
+ *
+ * <p>
+ * Es chico (unas 180 cuentas) y se puede combinar, por lo que se guarda tal
+ * cual en el historial de ejecuciones. No es seguro para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class HistogramaTiempos {
+
+    /** Cubetas por cada potencia de 2. */
+    public static final int SUBDIVISIONES = 4;
+
+    static final int EXPONENTE_MIN = -20;
+    static final int EXPONENTE_MAX = 24;
+
+    /** Cantidad total de cubetas. */
+    public static final int CUBETAS = 2 + (EXPONENTE_MAX - EXPONENTE_MIN) * SUBDIVISIONES;
+
+    private static final int BITS_SUBDIVISION = Integer.numberOfTrailingZeros(SUBDIVISIONES);
+
+    private final long[] cuentas;
+    private long total;
+
+    public HistogramaTiempos() {
+        this.cuentas = new long[CUBETAS];
+    }
+
+    /**
+     * Reconstruye un histograma a partir de sus cuentas (por ejemplo, leídas
+     * del historial).
+     *
+     * @param cuentas cuenta por cubeta; debe tener {@link #CUBETAS} elementos
+     * @throws IllegalArgumentException si la cantidad de cubetas no coincide
+     */
+    public HistogramaTiempos(long[] cuentas) {
+        if (cuentas.length != CUBETAS) {
+            throw new IllegalArgumentException("Se esperaban " + CUBETAS + " cubetas y hay " + cuentas.length);
+        }
+        this.cuentas = cuentas.clone();
+        for (long c : cuentas) {
+            total += c;
+        }
+    }
+
+    /** @param tiempo tiempo de ejecución de un caso */
+    public void agregar(double tiempo) {
+        cuentas[cubeta(tiempo)]++;
+        total++;
+    }
+
+    /** Suma las cuentas de otro histograma a este. */
+    public void combinar(HistogramaTiempos otro) {
+        for (int i = 0; i < CUBETAS; i++) {
+            cuentas[i] += otro.cuentas[i];
+        }
+        total += otro.total;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /** @return copia de las cuentas por cubeta */
+    public long[] getCuentas() {
+        return cuentas.clone();
+    }
+
+    public HistogramaTiempos copia() {
+        return new HistogramaTiempos(cuentas);
+    }
+
+    /**
+     * Valor aproximado del percentil pedido: el punto medio de la cubeta en
+     * la que cae.
+     *
+     * @param p percentil entre 0 y 100
+     * @return tiempo aproximado, o 0 si el histograma está vacío
+     */
+    public double percentil(double p) {
+        if (total == 0) {
+            return 0.0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * p / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cuentas[i];
+            if (acumulado >= objetivo) {
+                return (limiteInferior(i) + limiteInferior(i + 1)) / 2;
+            }
+        }
+        return limiteInferior(CUBETAS - 1);
+    }
+
+    /**
+     * @param tiempo un tiempo de ejecución
+     * @return índice de la cubeta a la que pertenece
+     */
+    static int cubeta(double tiempo) {
+        if (!(tiempo > 0)) {
+            return 0;
+        }
+        int exponente = Math.getExponent(tiempo);
+        if (exponente < EXPONENTE_MIN) {
+            return 0;
+        }
+        if (exponente >= EXPONENTE_MAX) {
+            return CUBETAS - 1;
+        }
+        // Bits altos de la mantisa: en qué parte de la octava cae
+        long bits = Double.doubleToRawLongBits(tiempo);
+        int sub = (int) ((bits >>> (52 - BITS_SUBDIVISION)) & (SUBDIVISIONES - 1));
+        return 1 + (exponente - EXPONENTE_MIN) * SUBDIVISIONES + sub;
+    }
+
+    /** Límite inferior de la cubeta {@code i} (la 0 empieza en 0). */
+    static double limiteInferior(int i) {
+        if (i <= 0) {
+            return 0.0;
+        }
+        if (i >= CUBETAS - 1) {
+            return Math.scalb(1.0, EXPONENTE_MAX);
+        }
+        int k = i - 1;
+        int exponente = EXPONENTE_MIN + k / SUBDIVISIONES;
+        int sub = k % SUBDIVISIONES;
+        return Math.scalb(1.0 + (double) sub / SUBDIVISIONES, exponente);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HistogramaTiempos h && Arrays.equals(cuentas, h.cuentas);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cuentas);
+    }
+}
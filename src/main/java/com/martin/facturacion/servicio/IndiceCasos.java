@@ -0,0 +1,271 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Índices en memoria sobre una lista de casos ya cargada, para responder
+ * consultas interactivas sin recorrer todos los casos.
+ *
+ * <p>
+ * Se construyen una sola vez, en O(n log n):
+ * </p>
+ * <ul>
+ * <li>Un {@link BitSet} por {@link EstadoPrueba} con las posiciones de los
+ * casos en ese estado.</li>
+ * <li>Las posiciones ordenadas por tiempo de ejecución, para consultas por
+ * rango con búsqueda binaria.</li>
+ * <li>Las posiciones ordenadas por {@code idTest}, para búsquedas por
+ * prefijo con búsqueda binaria.</li>
+ * </ul>
+ *
+ * <p>
+ * Los resultados son vistas de solo lectura sobre la lista original: no se
+ * copian casos, solo posiciones ({@code int}). Con un
+ * {@link CasosFueraDeHeap} los ids se comparan sobre sus bytes UTF-8, sin
+ * armar los casos, y el orden por id es el de los code points.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class IndiceCasos {
+
+    private final List<CasoPrueba> casos;
+    private final BitSet[] porEstado;
+    private final double[] tiempos;
+
+    /** Posiciones de los casos ordenadas por tiempo ascendente. */
+    private final int[] ordenTiempo;
+
+    /** Posiciones de los casos ordenadas por idTest. */
+    private final int[] ordenId;
+
+    /**
+     * Construye los índices.
+     *
+     * @param casos lista de casos; no debe modificarse mientras se use el índice
+     */
+    public IndiceCasos(List<CasoPrueba> casos) {
+        this.casos = casos;
+        int n = casos.size();
+
+        this.porEstado = new BitSet[EstadoPrueba.values().length];
+        for (int e = 0; e < porEstado.length; e++) {
+            porEstado[e] = new BitSet(n);
+        }
+
+        this.tiempos = new double[n];
+        this.ordenTiempo = new int[n];
+        this.ordenId = new int[n];
+
+        CasosFueraDeHeap fuera = casos instanceof CasosFueraDeHeap f ? f : null;
+        for (int i = 0; i < n; i++) {
+            if (fuera != null) {
+                porEstado[fuera.getEstado(i).ordinal()].set(i);
+                tiempos[i] = fuera.getTiempo(i);
+            } else {
+                CasoPrueba c = casos.get(i);
+                porEstado[c.getEstado().ordinal()].set(i);
+                tiempos[i] = c.getTiempoEjecucion();
+            }
+            ordenTiempo[i] = i;
+            ordenId[i] = i;
+        }
+
+        ordenar(ordenTiempo, (a, b) -> Double.compare(tiempos[a], tiempos[b]));
+        if (fuera != null) {
+            ordenar(ordenId, fuera::compararIds);
+        } else {
+            ordenar(ordenId, (a, b) -> casos.get(a).getIdTest().compareTo(casos.get(b).getIdTest()));
+        }
+    }
+
+    /** @return cantidad de casos indexados */
+    public int tamanio() {
+        return casos.size();
+    }
+
+    /**
+     * Casos en un estado, en el orden del archivo.
+     *
+     * @param estado estado buscado
+     * @return vista con los casos en ese estado
+     */
+    public List<CasoPrueba> porEstado(EstadoPrueba estado) {
+        return vista(porEstado[estado.ordinal()].stream().toArray());
+    }
+
+    /**
+     * Casos con tiempo dentro de {@code [desde, hasta]}, opcionalmente
+     * filtrados por estado, del más lento al más rápido.
+     *
+     * @param estado estado requerido, o null para cualquiera
+     * @param desde  tiempo mínimo (inclusive)
+     * @param hasta  tiempo máximo (inclusive)
+     * @return vista con los casos que cumplen la condición
+     */
+    public List<CasoPrueba> porTiempo(EstadoPrueba estado, double desde, double hasta) {
+        int ini = primeraPosicionTiempo(desde, false);
+        int fin = primeraPosicionTiempo(hasta, true);
+
+        BitSet filtro = estado == null ? null : porEstado[estado.ordinal()];
+        int cantidad = 0;
+        int[] resultado = new int[Math.max(0, fin - ini)];
+
+        for (int k = fin - 1; k >= ini; k--) {
+            int pos = ordenTiempo[k];
+            if (filtro == null || filtro.get(pos)) {
+                resultado[cantidad++] = pos;
+            }
+        }
+        return vista(Arrays.copyOf(resultado, cantidad));
+    }
+
+    /**
+     * Casos cuyo {@code idTest} comienza con el prefijo, ordenados por id.
+     *
+     * @param prefijo prefijo buscado (distingue mayúsculas)
+     * @return vista con los casos encontrados
+     */
+    public List<CasoPrueba> porPrefijoId(String prefijo) {
+        ComparadorPrefijo cmp = comparadorPrefijo(prefijo);
+        int lo = 0;
+        int hi = ordenId.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cmp.comparar(ordenId[mid]) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        int fin = lo;
+        while (fin < ordenId.length && cmp.comparar(ordenId[fin]) == 0) {
+            fin++;
+        }
+        return vista(Arrays.copyOfRange(ordenId, lo, fin));
+    }
+
+    // =======================================
+    // AUXILIARES
+    // =======================================
+
+    /**
+     * Primera posición de {@link #ordenTiempo} cuyo tiempo es mayor o igual a
+     * {@code t} (o estrictamente mayor si {@code estricto}).
+     */
+    private int primeraPosicionTiempo(double t, boolean estricto) {
+        int lo = 0;
+        int hi = ordenTiempo.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Double.compare(tiempos[ordenTiempo[mid]], t);
+            if (cmp < 0 || (estricto && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compara el id de una posición con el prefijo en el orden de
+     * {@link #ordenId}: cero si empieza con él, negativo si va antes.
+     */
+    private ComparadorPrefijo comparadorPrefijo(String prefijo) {
+        if (casos instanceof CasosFueraDeHeap fuera) {
+            byte[] bytes = prefijo.getBytes(StandardCharsets.UTF_8);
+            return pos -> fuera.compararPrefijoId(pos, bytes);
+        }
+        return pos -> {
+            String id = casos.get(pos).getIdTest();
+            return id.startsWith(prefijo) ? 0 : id.compareTo(prefijo);
+        };
+    }
+
+    private List<CasoPrueba> vista(int[] posiciones) {
+        return new Vista(casos, posiciones);
+    }
+
+    /** Lista de solo lectura que resuelve cada posición contra la lista original. */
+    private static final class Vista extends AbstractList<CasoPrueba> implements RandomAccess {
+        private final List<CasoPrueba> casos;
+        private final int[] posiciones;
+
+        Vista(List<CasoPrueba> casos, int[] posiciones) {
+            this.casos = casos;
+            this.posiciones = posiciones;
+        }
+
+        @Override
+        public CasoPrueba get(int i) {
+            return casos.get(posiciones[i]);
+        }
+
+        @Override
+        public int size() {
+            return posiciones.length;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ComparadorPosiciones {
+        int comparar(int a, int b);
+    }
+
+    @FunctionalInterface
+    private interface ComparadorPrefijo {
+        int comparar(int pos);
+    }
+
+    /** Merge sort estable sobre posiciones, sin boxing de enteros. */
+    private static void ordenar(int[] a, ComparadorPosiciones cmp) {
+        if (a.length < 2) {
+            return;
+        }
+        int[] aux = a.clone();
+        mergeSort(aux, a, 0, a.length, cmp);
+    }
+
+    /** Ordena {@code destino[desde, hasta)} usando {@code origen} como copia de trabajo. */
+    private static void mergeSort(int[] origen, int[] destino, int desde, int hasta, ComparadorPosiciones cmp) {
+        int largo = hasta - desde;
+        if (largo < 16) {
+            // Inserción para tramos cortos
+            for (int i = desde + 1; i < hasta; i++) {
+                int v = destino[i];
+                int j = i - 1;
+                while (j >= desde && cmp.comparar(destino[j], v) > 0) {
+                    destino[j + 1] = destino[j];
+                    j--;
+                }
+                destino[j + 1] = v;
+            }
+            return;
+        }
+
+        int medio = (desde + hasta) >>> 1;
+        mergeSort(destino, origen, desde, medio, cmp);
+        mergeSort(destino, origen, medio, hasta, cmp);
+
+        int i = desde;
+        int j = medio;
+        for (int k = desde; k < hasta; k++) {
+            if (j >= hasta || (i < medio && cmp.comparar(origen[i], origen[j]) <= 0)) {
+                destino[k] = origen[i++];
+            } else {
+                destino[k] = origen[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.martin.facturacion.servicio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloques para {@link CasosFueraDeHeap} dentro de un
+ * {@link PresupuestoMemoria}: mientras entran se reservan en memoria
+ * nativa, y después se mapean sobre un archivo temporal.
+ *
+ * <p>
+ * Los bloques mapeados se usan igual que los otros, pero sus páginas son
+ * del archivo: el sistema operativo las escribe en disco y las descarta
+ * cuando necesita memoria, y las vuelve a leer al recorrer los casos. No
+ * cuentan para el heap ni para {@code -XX:MaxDirectMemorySize}. El archivo
+ * se borra al cerrar.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class MemoriaConDerrame implements MemoriaFueraDeHeap {
+
+    /** Nombre de los casos en el presupuesto. */
+    static final String CONSUMIDOR = "casos";
+
+    private final MemoriaFueraDeHeap memoria;
+    private final PresupuestoMemoria presupuesto;
+    private FileChannel archivo;
+    private long tamanioArchivo;
+
+    MemoriaConDerrame(MemoriaFueraDeHeap memoria, PresupuestoMemoria presupuesto) {
+        this.memoria = memoria;
+        this.presupuesto = presupuesto;
+    }
+
+    /**
+     * @throws UncheckedIOException si no se puede crear o agrandar el archivo
+     *                              temporal
+     */
+    @Override
+    public BloqueFueraDeHeap reservar(int bytes) {
+        if (presupuesto.reservar(CONSUMIDOR, bytes)) {
+            return memoria.reservar(bytes);
+        }
+        try {
+            if (archivo == null) {
+                archivo = FileChannel.open(Files.createTempFile("casos", ".bin"), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            // Mapear más allá del final agranda el archivo, con ceros
+            MappedByteBuffer bloque = archivo.map(FileChannel.MapMode.READ_WRITE, tamanioArchivo, bytes);
+            tamanioArchivo += bytes;
+            presupuesto.derramar(CONSUMIDOR, bytes);
+            return new MemoriaDirecta.Bloque(bloque.order(ByteOrder.nativeOrder()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return memoria.nombre() + " con derrame a disco";
+    }
+
+    @Override
+    public void close() {
+        memoria.close();
+        if (archivo != null) {
+            try {
+                archivo.close();
+            } catch (IOException e) {
+                // Los casos ya no se usan: no hay nada que perder
+            }
+            archivo = null;
+        }
+    }
+}
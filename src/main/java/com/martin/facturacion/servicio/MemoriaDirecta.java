@@ -0,0 +1,89 @@
+package com.martin.facturacion.servicio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bloques sobre {@link ByteBuffer#allocateDirect(int)}, en el orden de bytes
+ * nativo para que los accesos a {@code int}, {@code long} y {@code double}
+ * no tengan que invertirlo.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+final class MemoriaDirecta implements MemoriaFueraDeHeap {
+
+    @Override
+    public BloqueFueraDeHeap reservar(int bytes) {
+        return new Bloque(ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()));
+    }
+
+    @Override
+    public String nombre() {
+        return "ByteBuffer directo";
+    }
+
+    /** Los buffers se liberan cuando el recolector descarta la última referencia. */
+    @Override
+    public void close() {
+    }
+
+    /** También envuelve los bloques mapeados de {@link MemoriaConDerrame}. */
+    static final class Bloque implements BloqueFueraDeHeap {
+        private final ByteBuffer buf;
+
+        Bloque(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public byte getByte(int pos) {
+            return buf.get(pos);
+        }
+
+        @Override
+        public void putByte(int pos, byte valor) {
+            buf.put(pos, valor);
+        }
+
+        @Override
+        public int getInt(int pos) {
+            return buf.getInt(pos);
+        }
+
+        @Override
+        public void putInt(int pos, int valor) {
+            buf.putInt(pos, valor);
+        }
+
+        @Override
+        public long getLong(int pos) {
+            return buf.getLong(pos);
+        }
+
+        @Override
+        public void putLong(int pos, long valor) {
+            buf.putLong(pos, valor);
+        }
+
+        @Override
+        public double getDouble(int pos) {
+            return buf.getDouble(pos);
+        }
+
+        @Override
+        public void putDouble(int pos, double valor) {
+            buf.putDouble(pos, valor);
+        }
+
+        @Override
+        public void leer(int pos, byte[] destino, int desde, int largo) {
+            buf.get(pos, destino, desde, largo);
+        }
+
+        @Override
+        public void escribir(int pos, byte[] origen, int desde, int largo) {
+            buf.put(pos, origen, desde, largo);
+        }
+    }
+}
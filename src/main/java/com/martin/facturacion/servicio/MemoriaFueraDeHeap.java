@@ -0,0 +1,67 @@
+package com.martin.facturacion.servicio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+
+/**
+ * Origen de los bloques de {@link CasosFueraDeHeap}.
+ *
+ * <p>
+ * Hay dos implementaciones:
+ * </p>
+ * <ul>
+ * <li>{@code MemoriaSegmentos}: {@code MemorySegment} reservados en un
+ * {@code Arena} compartido de la API Foreign Function &amp; Memory, que se
+ * liberan todos juntos en {@link #close()}. Solo existe si se compiló con
+ * el perfil {@code ffm} y se ejecuta con {@code --enable-preview} en el
+ * JDK 21.</li>
+ * <li>{@link MemoriaDirecta}: {@code ByteBuffer.allocateDirect}, disponible
+ * siempre. La memoria se devuelve cuando el recolector descarta los
+ * buffers.</li>
+ * </ul>
+ *
+ * <p>
+ * En ambos casos la memoria reservada cuenta para
+ * {@code -XX:MaxDirectMemorySize} (que por defecto es igual a {@code -Xmx}),
+ * no para el heap.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+interface MemoriaFueraDeHeap extends Closeable {
+
+    /** Implementación con la API FFM, compilada aparte por el perfil {@code ffm}. */
+    String CLASE_SEGMENTOS = "com.martin.facturacion.servicio.MemoriaSegmentos";
+
+    /**
+     * @param bytes tamaño del bloque
+     * @return un bloque nuevo, en cero
+     * @throws OutOfMemoryError si se supera el límite de memoria directa
+     */
+    BloqueFueraDeHeap reservar(int bytes);
+
+    /** @return nombre de la implementación, para los logs */
+    String nombre();
+
+    /** Libera todos los bloques reservados; no deben usarse después. */
+    @Override
+    void close();
+
+    /**
+     * @return la implementación con FFM si está disponible, o
+     *         {@link MemoriaDirecta}
+     */
+    static MemoriaFueraDeHeap crear() {
+        try {
+            return (MemoriaFueraDeHeap) Class.forName(CLASE_SEGMENTOS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // No se compiló con -Pffm, o falta --enable-preview / el JDK no es el 21
+            Logger logger = LoggerFactory.getLogger(MemoriaFueraDeHeap.class);
+            logger.debug("API FFM no disponible ({}), se usa ByteBuffer directo", e.toString());
+            return new MemoriaDirecta();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Estado parcial de una ejecución que se puede combinar con el de otras:
+ * conteos y tiempo total, histograma de tiempos, top de lentos, ids
+ * distintos y errores por motivo. Sirve para analizar un conjunto de resultados
+ * repartido en varias máquinas y obtener las mismas
+ * {@link EstadisticasPruebas} que si se hubiera leído todo junto.
+ *
+ * <p>
+ * {@link #combinar(ParcialEstadisticas)} es asociativa y conmutativa (salvo
+ * el redondeo de la suma de tiempos), así que los parciales se pueden
+ * combinar en cualquier orden y por niveles. Para que el top de lentos no
+ * dependa del orden, los empates de tiempo se resuelven por
+ * {@code idTest} y {@code nombreTest}, no por posición en el archivo.
+ * </p>
+ *
+ * <p>
+ * De los mensajes de error solo se guardan los primeros
+ * {@value #MUESTRA_ERRORES}: un archivo con millones de líneas inválidas no
+ * puede hacer crecer el parcial con cada combinación. La cantidad y los
+ * conteos por motivo sí son los de todas las partes.
+ * </p>
+ *
+ * <p>
+ * Esta clase no es segura para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ParcialEstadisticas {
+
+    /** Mensajes de error que se conservan como muestra. */
+    public static final int MUESTRA_ERRORES = 100;
+
+    /** Más lento primero; los empates, por id, nombre y estado. */
+    private static final Comparator<CasoPrueba> MAS_LENTO_PRIMERO = Comparator
+            .comparingDouble(CasoPrueba::getTiempoEjecucion).reversed()
+            .thenComparing(CasoPrueba::getIdTest)
+            .thenComparing(CasoPrueba::getNombreTest)
+            .thenComparing(CasoPrueba::getEstado);
+
+    private int partes;
+    private long total;
+    private final long[] conteos;
+    private double tiempoTotal;
+    private final HistogramaTiempos histograma;
+    private List<CasoPrueba> masLentos;
+    private ConteoIds ids;
+    private long cantidadErrores;
+    private final Map<String, Long> erroresPorMotivo;
+    private final List<String> muestraErrores;
+
+    /**
+     * @param partes      ejecuciones que ya se combinaron en este parcial
+     * @param total       cantidad de casos válidos
+     * @param conteos     casos por estado, indexados por ordinal
+     * @param tiempoTotal suma de los tiempos
+     * @param histograma  distribución de tiempos (se copia)
+     * @param masLentos   casos más lentos
+     * @param ids         ids contados (se guarda su
+     *                    {@linkplain ConteoIds#resumen() resumen}), o null
+     *                    si no se contaron
+     * @param erroresPorMotivo cantidad de líneas inválidas por motivo
+     * @param muestraErrores   algunos mensajes de las líneas inválidas; se
+     *                         conservan los primeros {@value #MUESTRA_ERRORES}
+     */
+    public ParcialEstadisticas(int partes, long total, long[] conteos, double tiempoTotal,
+            HistogramaTiempos histograma, List<CasoPrueba> masLentos, ConteoIds ids,
+            Map<String, Long> erroresPorMotivo, List<String> muestraErrores) {
+        this.partes = partes;
+        this.total = total;
+        this.conteos = conteos.clone();
+        this.tiempoTotal = tiempoTotal;
+        this.histograma = histograma.copia();
+        this.masLentos = ordenar(new ArrayList<>(masLentos));
+        this.ids = ids == null ? null : ids.resumen();
+        this.erroresPorMotivo = new TreeMap<>(erroresPorMotivo);
+        this.cantidadErrores = erroresPorMotivo.values().stream().mapToLong(Long::longValue).sum();
+        this.muestraErrores = new ArrayList<>(
+                muestraErrores.subList(0, Math.min(muestraErrores.size(), MUESTRA_ERRORES)));
+    }
+
+    /**
+     * @param stats            estadísticas de una ejecución
+     * @param ids              ids contados en la lectura, o null
+     * @param erroresPorMotivo cantidad de líneas inválidas por motivo
+     * @param errores          mensajes de las líneas inválidas (se
+     *                         conserva una muestra)
+     * @return parcial de una sola parte
+     */
+    public static ParcialEstadisticas de(EstadisticasPruebas stats, ConteoIds ids,
+            Map<String, Long> erroresPorMotivo, List<String> errores) {
+        long[] conteos = new long[EstadoPrueba.values().length];
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            conteos[s.ordinal()] = stats.getConteos().getOrDefault(s, 0L);
+        }
+        return new ParcialEstadisticas(1, stats.getTotal(), conteos, stats.tiempoTotal(), stats.getHistograma(),
+                stats.getMasLentos(), ids, erroresPorMotivo, errores);
+    }
+
+    /**
+     * Suma a este parcial el de otra ejecución. Los ids solo se conservan si
+     * ambos los tienen.
+     *
+     * @param otro parcial a combinar (no se modifica)
+     */
+    public void combinar(ParcialEstadisticas otro) {
+        partes += otro.partes;
+        total += otro.total;
+        for (int i = 0; i < conteos.length; i++) {
+            conteos[i] += otro.conteos[i];
+        }
+        tiempoTotal += otro.tiempoTotal;
+        histograma.combinar(otro.histograma);
+
+        List<CasoPrueba> todos = new ArrayList<>(masLentos);
+        todos.addAll(otro.masLentos);
+        masLentos = ordenar(todos);
+
+        if (ids != null && otro.ids != null) {
+            ids.combinar(otro.ids.resumen());
+        } else {
+            ids = null;
+        }
+        cantidadErrores += otro.cantidadErrores;
+        otro.erroresPorMotivo.forEach((motivo, n) -> erroresPorMotivo.merge(motivo, n, Long::sum));
+        for (String e : otro.muestraErrores) {
+            if (muestraErrores.size() >= MUESTRA_ERRORES) {
+                break;
+            }
+            muestraErrores.add(e);
+        }
+    }
+
+    private static List<CasoPrueba> ordenar(List<CasoPrueba> casos) {
+        casos.sort(MAS_LENTO_PRIMERO);
+        return casos.size() > TopLentos.K_POR_DEFECTO ? new ArrayList<>(casos.subList(0, TopLentos.K_POR_DEFECTO))
+                : casos;
+    }
+
+    /** @return las estadísticas de todas las partes combinadas */
+    public EstadisticasPruebas estadisticas() {
+        return new EstadisticasPruebas(total, conteos, tiempoTotal, masLentos.isEmpty() ? null : masLentos.get(0),
+                masLentos, histograma);
+    }
+
+    /** @return ejecuciones combinadas en este parcial */
+    public int getPartes() {
+        return partes;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /** @return copia de los conteos indexados por ordinal */
+    public long[] getConteos() {
+        return conteos.clone();
+    }
+
+    public double getTiempoTotal() {
+        return tiempoTotal;
+    }
+
+    public HistogramaTiempos getHistograma() {
+        return histograma.copia();
+    }
+
+    /** @return los casos más lentos, del más lento al menos lento */
+    public List<CasoPrueba> getMasLentos() {
+        return Collections.unmodifiableList(masLentos);
+    }
+
+    /** @return resumen de ids, o null si alguna parte no los contó */
+    public ConteoIds getIds() {
+        return ids;
+    }
+
+    /** @return líneas inválidas de todas las partes */
+    public long getCantidadErrores() {
+        return cantidadErrores;
+    }
+
+    /** @return líneas inválidas de todas las partes, por motivo */
+    public Map<String, Long> getErroresPorMotivo() {
+        return Collections.unmodifiableMap(erroresPorMotivo);
+    }
+
+    /** @return hasta {@value #MUESTRA_ERRORES} mensajes de error */
+    public List<String> getMuestraErrores() {
+        return Collections.unmodifiableList(muestraErrores);
+    }
+}
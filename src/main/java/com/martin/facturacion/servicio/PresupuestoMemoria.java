@@ -0,0 +1,148 @@
+package com.martin.facturacion.servicio;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoria que puede usar una ejecución ({@code --memoria-maxima}), repartida
+ * entre las etapas que guardan datos: la lectura, la baseline, el
+ * ordenamiento de {@code resumen.csv} y los casos individuales.
+ *
+ * <p>
+ * Las etapas con un tamaño de trabajo ajustable piden su parte de una vez
+ * con {@link #asignar(String, long)} y se adaptan a lo que reciben (trozos
+ * en vuelo, particiones, tandas). Ninguna recibe más de
+ * 1/{@value #FRACCION_MAXIMA_ETAPA} del total, para que las que crecen con
+ * el archivo (los casos) tengan siempre lugar. Estas reservan de a bloques
+ * con {@link #reservar(String, long)} y, cuando ya no entra, los guardan en
+ * disco e informan lo derramado con {@link #derramar(String, long)}.
+ * </p>
+ *
+ * <p>
+ * Es seguro para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class PresupuestoMemoria {
+
+    /** Fracción máxima del presupuesto que recibe una etapa en {@link #asignar}. */
+    static final int FRACCION_MAXIMA_ETAPA = 4;
+
+    private final long limite;
+    private long usado;
+    private final Map<String, Consumo> consumos = new LinkedHashMap<>();
+
+    /**
+     * @param limite bytes que puede usar la ejecución
+     * @throws IllegalArgumentException si el límite no es positivo
+     */
+    public PresupuestoMemoria(long limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El presupuesto de memoria debe ser positivo: " + limite);
+        }
+        this.limite = limite;
+    }
+
+    /**
+     * Asigna memoria a una etapa de tamaño ajustable.
+     *
+     * @param consumidor nombre de la etapa, para las métricas
+     * @param pedido     bytes que usaría sin límite
+     * @return bytes asignados, entre 0 y {@code pedido}
+     */
+    public synchronized long asignar(String consumidor, long pedido) {
+        long asignado = Math.max(0, Math.min(pedido, Math.min(limite / FRACCION_MAXIMA_ETAPA, limite - usado)));
+        usado += asignado;
+        consumo(consumidor).reservado += asignado;
+        return asignado;
+    }
+
+    /**
+     * Reserva un bloque completo, si entra.
+     *
+     * @param consumidor nombre de la etapa, para las métricas
+     * @param bytes      tamaño del bloque
+     * @return false si no entra: la etapa debe guardarlo en disco
+     */
+    public synchronized boolean reservar(String consumidor, long bytes) {
+        if (bytes > limite - usado) {
+            return false;
+        }
+        usado += bytes;
+        consumo(consumidor).reservado += bytes;
+        return true;
+    }
+
+    /**
+     * Registra datos que una etapa guardó en disco por falta de memoria.
+     *
+     * @param consumidor nombre de la etapa
+     * @param bytes      bytes escritos en disco
+     */
+    public synchronized void derramar(String consumidor, long bytes) {
+        consumo(consumidor).derramado += bytes;
+    }
+
+    private Consumo consumo(String consumidor) {
+        return consumos.computeIfAbsent(consumidor, Consumo::new);
+    }
+
+    public long getLimite() {
+        return limite;
+    }
+
+    /** @return bytes asignados o reservados hasta ahora */
+    public synchronized long getUsado() {
+        return usado;
+    }
+
+    /** @return bytes que las etapas guardaron en disco */
+    public synchronized long getDerramado() {
+        long total = 0;
+        for (Consumo c : consumos.values()) {
+            total += c.derramado;
+        }
+        return total;
+    }
+
+    /** @return copia de lo usado por cada etapa, en el orden en que pidieron memoria */
+    public synchronized List<Consumo> getConsumos() {
+        List<Consumo> copia = new ArrayList<>();
+        for (Consumo c : consumos.values()) {
+            Consumo otro = new Consumo(c.nombre);
+            otro.reservado = c.reservado;
+            otro.derramado = c.derramado;
+            copia.add(otro);
+        }
+        return copia;
+    }
+
+    /** Memoria usada y datos derramados por una etapa. */
+    public static final class Consumo {
+        private final String nombre;
+        private long reservado;
+        private long derramado;
+
+        private Consumo(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        /** @return bytes de memoria que recibió */
+        public long getReservado() {
+            return reservado;
+        }
+
+        /** @return bytes que guardó en disco */
+        public long getDerramado() {
+            return derramado;
+        }
+    }
+}
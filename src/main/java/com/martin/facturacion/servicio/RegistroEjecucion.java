@@ -0,0 +1,97 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resumen compacto de una ejecución, tal como se guarda en el historial:
+ * conteos por estado, tiempo total, histograma de tiempos y los casos más
+ * lentos. No guarda los casos individuales.
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class RegistroEjecucion {
+
+    private final Instant fecha;
+    private final long total;
+    private final long[] conteos;
+    private final double tiempoTotal;
+    private final HistogramaTiempos histograma;
+    private final List<CasoPrueba> masLentos;
+
+    /**
+     * @param fecha       momento de la ejecución
+     * @param total       cantidad de casos válidos
+     * @param conteos     casos por estado, indexados por ordinal
+     * @param tiempoTotal suma de los tiempos
+     * @param histograma  distribución de tiempos
+     * @param masLentos   casos más lentos, de mayor a menor
+     */
+    public RegistroEjecucion(Instant fecha, long total, long[] conteos, double tiempoTotal,
+            HistogramaTiempos histograma, List<CasoPrueba> masLentos) {
+        this.fecha = fecha;
+        this.total = total;
+        this.conteos = conteos.clone();
+        this.tiempoTotal = tiempoTotal;
+        this.histograma = histograma;
+        this.masLentos = Collections.unmodifiableList(masLentos);
+    }
+
+    /**
+     * @param stats estadísticas de la ejecución actual
+     * @param fecha momento de la ejecución
+     * @return registro listo para agregar al historial
+     */
+    public static RegistroEjecucion de(EstadisticasPruebas stats, Instant fecha) {
+        long[] conteos = new long[EstadoPrueba.values().length];
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            conteos[s.ordinal()] = stats.getConteos().getOrDefault(s, 0L);
+        }
+        return new RegistroEjecucion(fecha, stats.getTotal(), conteos, stats.tiempoTotal(),
+                stats.getHistograma(), stats.getMasLentos());
+    }
+
+    public Instant getFecha() {
+        return fecha;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /** @return cantidad de casos en el estado indicado */
+    public long getConteo(EstadoPrueba estado) {
+        return estado.ordinal() < conteos.length ? conteos[estado.ordinal()] : 0;
+    }
+
+    /** @return copia de los conteos indexados por ordinal */
+    public long[] getConteos() {
+        return conteos.clone();
+    }
+
+    /** @return porcentaje de casos en el estado indicado */
+    public double getPorcentaje(EstadoPrueba estado) {
+        return total == 0 ? 0.0 : getConteo(estado) * 100.0 / total;
+    }
+
+    public double getTiempoTotal() {
+        return tiempoTotal;
+    }
+
+    public double getTiempoPromedio() {
+        return total == 0 ? 0.0 : tiempoTotal / total;
+    }
+
+    public HistogramaTiempos getHistograma() {
+        return histograma.copia();
+    }
+
+    public List<CasoPrueba> getMasLentos() {
+        return masLentos;
+    }
+}
@@ -0,0 +1,116 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.Comparator;
+
+/**
+ * Un caso que empeoró respecto de la ejecución de referencia (baseline):
+ * cambió a un estado peor o, con el mismo estado, tardó más.
+ *
+ * <p>
+ * {@link #ORDEN} las ordena como se escriben en {@code regresiones.csv}:
+ * primero los que pasaron a FAILED, después los demás cambios de estado y
+ * al final los que solo se volvieron más lentos; dentro de cada grupo, de
+ * mayor a menor aumento de tiempo.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class Regresion {
+
+    /** Orden de {@code regresiones.csv}: gravedad del cambio y después aumento de tiempo. */
+    public static final Comparator<Regresion> ORDEN = Comparator.comparingInt(Regresion::getGrupo)
+            .thenComparing(Comparator.comparingDouble(Regresion::getDeltaTiempo).reversed())
+            .thenComparing(Regresion::getIdTest);
+
+    private final String idTest;
+    private final String nombreTest;
+    private final EstadoPrueba estadoBase;
+    private final EstadoPrueba estadoActual;
+    private final double tiempoBase;
+    private final double tiempoActual;
+
+    private Regresion(CasoPrueba actual, EstadoPrueba estadoBase, double tiempoBase) {
+        this.idTest = actual.getIdTest();
+        this.nombreTest = actual.getNombreTest();
+        this.estadoBase = estadoBase;
+        this.estadoActual = actual.getEstado();
+        this.tiempoBase = tiempoBase;
+        this.tiempoActual = actual.getTiempoEjecucion();
+    }
+
+    /**
+     * Compara un caso contra su valor de referencia.
+     *
+     * @param actual     caso de la ejecución actual
+     * @param estadoBase estado en la baseline
+     * @param tiempoBase tiempo en la baseline
+     * @return la regresión, o null si el caso no empeoró
+     */
+    public static Regresion de(CasoPrueba actual, EstadoPrueba estadoBase, double tiempoBase) {
+        int antes = gravedad(estadoBase);
+        int ahora = gravedad(actual.getEstado());
+        if (ahora > antes || (ahora == antes && actual.getTiempoEjecucion() > tiempoBase)) {
+            return new Regresion(actual, estadoBase, tiempoBase);
+        }
+        return null;
+    }
+
+    /** PASSED &lt; SKIPPED &lt; FAILED. */
+    private static int gravedad(EstadoPrueba e) {
+        return switch (e) {
+            case PASSED -> 0;
+            case SKIPPED -> 1;
+            case FAILED -> 2;
+        };
+    }
+
+    /** @return 0 si pasó a FAILED, 1 si cambió a otro estado peor, 2 si solo es más lento */
+    public int getGrupo() {
+        if (estadoActual == estadoBase) {
+            return 2;
+        }
+        return estadoActual == EstadoPrueba.FAILED ? 0 : 1;
+    }
+
+    public boolean isCambioEstado() {
+        return estadoActual != estadoBase;
+    }
+
+    public String getIdTest() {
+        return idTest;
+    }
+
+    public String getNombreTest() {
+        return nombreTest;
+    }
+
+    public EstadoPrueba getEstadoBase() {
+        return estadoBase;
+    }
+
+    public EstadoPrueba getEstadoActual() {
+        return estadoActual;
+    }
+
+    public double getTiempoBase() {
+        return tiempoBase;
+    }
+
+    public double getTiempoActual() {
+        return tiempoActual;
+    }
+
+    /** @return tiempo actual menos tiempo de referencia (positivo = más lento) */
+    public double getDeltaTiempo() {
+        return tiempoActual - tiempoBase;
+    }
+
+    /** @return variación porcentual del tiempo, o NaN si el de referencia es 0 */
+    public double getVariacion() {
+        return tiempoBase == 0 ? Double.NaN : getDeltaTiempo() * 100.0 / tiempoBase;
+    }
+}
@@ -0,0 +1,234 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tabla hash de direccionamiento abierto (sondeo lineal) de {@code idTest}
+ * a estado y tiempo, pensada para millones de casos.
+ *
+ * <p>
+ * En lugar de un {@code HashMap<String, ...>} (un objeto String, una
+ * entrada y un valor por caso, unos 150 bytes), guarda todo en arreglos
+ * primitivos: el texto de los ids en páginas de bytes compartidas (1 byte
+ * por carácter si el id es Latin-1) y por cada entrada su hash, posición,
+ * largo, estado y tiempo. Son unos 35 bytes por caso más el id.
+ * </p>
+ *
+ * <p>
+ * Las búsquedas comparan el {@link String} recibido contra los bytes
+ * guardados sin crear objetos. Ante ids repetidos se conserva el primero.
+ * No es segura para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class TablaIds {
+
+    private static final int TAMANIO_PAGINA = 1 << 20;
+    private static final double CARGA_MAXIMA = 0.6;
+    private static final EstadoPrueba[] ESTADOS = EstadoPrueba.values();
+
+    /** Bytes aproximados por entrada, sin contar el texto del id. */
+    public static final int BYTES_POR_ENTRADA = 35;
+
+    /** Índice de entrada + 1 por ranura; 0 = vacía. */
+    private int[] ranuras;
+    private int[] hashes;
+    private long[] posiciones;
+    /** Largo del id en bytes; negativo si se guardó en UTF-16 (2 bytes por char). */
+    private int[] largos;
+    private byte[] estados;
+    private double[] tiempos;
+    private int tamanio;
+
+    private final List<byte[]> paginas = new ArrayList<>();
+    private byte[] pagina;
+    private int usadoPagina;
+
+    public TablaIds() {
+        this(1024);
+    }
+
+    /** @param capacidadEsperada cantidad aproximada de ids */
+    public TablaIds(int capacidadEsperada) {
+        int ranurasIniciales = Integer.highestOneBit(Math.max(16, (int) (capacidadEsperada / CARGA_MAXIMA)) * 2 - 1);
+        ranuras = new int[ranurasIniciales];
+        int entradas = Math.max(16, capacidadEsperada);
+        hashes = new int[entradas];
+        posiciones = new long[entradas];
+        largos = new int[entradas];
+        estados = new byte[entradas];
+        tiempos = new double[entradas];
+    }
+
+    /** @return cantidad de ids distintos guardados */
+    public int tamanio() {
+        return tamanio;
+    }
+
+    /** @return memoria aproximada que ocupa la tabla */
+    public long bytesUsados() {
+        return 4L * ranuras.length + (long) hashes.length * (4 + 8 + 4 + 1 + 8)
+                + (long) paginas.size() * TAMANIO_PAGINA;
+    }
+
+    /**
+     * Agrega un id si todavía no está.
+     *
+     * @return true si se agregó, false si ya existía (se conserva el primero)
+     */
+    public boolean poner(String id, EstadoPrueba estado, double tiempo) {
+        int h = dispersar(id.hashCode());
+        int mascara = ranuras.length - 1;
+        int r = h & mascara;
+        while (ranuras[r] != 0) {
+            int e = ranuras[r] - 1;
+            if (hashes[e] == h && iguales(e, id)) {
+                return false;
+            }
+            r = (r + 1) & mascara;
+        }
+
+        if (tamanio == hashes.length) {
+            crecerEntradas();
+        }
+        int e = tamanio++;
+        hashes[e] = h;
+        estados[e] = (byte) estado.ordinal();
+        tiempos[e] = tiempo;
+        guardarTexto(e, id);
+        ranuras[r] = e + 1;
+
+        if (tamanio > ranuras.length * CARGA_MAXIMA) {
+            redimensionar();
+        }
+        return true;
+    }
+
+    /**
+     * @param id id buscado
+     * @return índice de la entrada, o -1 si no está
+     */
+    public int buscar(String id) {
+        int h = dispersar(id.hashCode());
+        int mascara = ranuras.length - 1;
+        int r = h & mascara;
+        while (ranuras[r] != 0) {
+            int e = ranuras[r] - 1;
+            if (hashes[e] == h && iguales(e, id)) {
+                return e;
+            }
+            r = (r + 1) & mascara;
+        }
+        return -1;
+    }
+
+    public EstadoPrueba estado(int entrada) {
+        return ESTADOS[estados[entrada]];
+    }
+
+    public double tiempo(int entrada) {
+        return tiempos[entrada];
+    }
+
+    /** Mezcla los bits del hash de String para que el sondeo lineal no se agrupe. */
+    static int dispersar(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    // =======================================
+    // TEXTO DE LOS IDS
+    // =======================================
+
+    private void guardarTexto(int e, String id) {
+        int n = id.length();
+        boolean latin1 = true;
+        for (int i = 0; i < n && latin1; i++) {
+            latin1 = id.charAt(i) <= 0xFF;
+        }
+        int bytes = latin1 ? n : 2 * n;
+
+        if (pagina == null || usadoPagina + bytes > pagina.length) {
+            pagina = new byte[Math.max(TAMANIO_PAGINA, bytes)];
+            paginas.add(pagina);
+            usadoPagina = 0;
+        }
+
+        int base = usadoPagina;
+        if (latin1) {
+            for (int i = 0; i < n; i++) {
+                pagina[base + i] = (byte) id.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                char c = id.charAt(i);
+                pagina[base + 2 * i] = (byte) (c >>> 8);
+                pagina[base + 2 * i + 1] = (byte) c;
+            }
+        }
+
+        posiciones[e] = ((long) (paginas.size() - 1) << 32) | base;
+        largos[e] = latin1 ? n : -n;
+        usadoPagina += bytes;
+    }
+
+    private boolean iguales(int e, String id) {
+        int largo = largos[e];
+        boolean ancho = largo < 0;
+        int n = ancho ? -largo : largo;
+        if (n != id.length()) {
+            return false;
+        }
+        byte[] p = paginas.get((int) (posiciones[e] >>> 32));
+        int base = (int) posiciones[e];
+        if (!ancho) {
+            for (int i = 0; i < n; i++) {
+                if ((p[base + i] & 0xFF) != id.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                char c = (char) (((p[base + 2 * i] & 0xFF) << 8) | (p[base + 2 * i + 1] & 0xFF));
+                if (c != id.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // =======================================
+    // CRECIMIENTO
+    // =======================================
+
+    private void crecerEntradas() {
+        int nueva = hashes.length + (hashes.length >> 1) + 16;
+        hashes = Arrays.copyOf(hashes, nueva);
+        posiciones = Arrays.copyOf(posiciones, nueva);
+        largos = Arrays.copyOf(largos, nueva);
+        estados = Arrays.copyOf(estados, nueva);
+        tiempos = Arrays.copyOf(tiempos, nueva);
+    }
+
+    private void redimensionar() {
+        int[] nuevas = new int[ranuras.length * 2];
+        int mascara = nuevas.length - 1;
+        for (int e = 0; e < tamanio; e++) {
+            int r = hashes[e] & mascara;
+            while (nuevas[r] != 0) {
+                r = (r + 1) & mascara;
+            }
+            nuevas[r] = e + 1;
+        }
+        ranuras = nuevas;
+    }
+}
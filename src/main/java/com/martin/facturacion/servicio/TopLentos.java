@@ -0,0 +1,122 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Mantiene los {@code k} casos más lentos vistos hasta el momento usando un
+ * heap acotado, sin ordenar ni guardar el resto de los casos.
+ *
+ * <p>
+ * Cada caso se ofrece junto con su posición en el archivo
+ * ({@code secuencia}); ante tiempos iguales gana el que aparece primero, de
+ * modo que el resultado no depende del orden en que se combinen instancias
+ * parciales con {@link #combinar(TopLentos)}.
+ * </p>
+ *
+ * <p>
+ * Esta clase no es segura para uso concurrente.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class TopLentos {
+
+    /** Cantidad de casos más lentos que se conservan por defecto. */
+    public static final int K_POR_DEFECTO = 10;
+
+    /** Orden de "más lento primero"; ante empate, el de menor secuencia. */
+    private static final Comparator<Entrada> MAS_LENTO_PRIMERO = Comparator
+            .comparingDouble((Entrada e) -> e.caso.getTiempoEjecucion()).reversed()
+            .thenComparingLong(e -> e.secuencia);
+
+    private final int k;
+
+    /** Heap de mínimos: en la cima está el "menos lento" de los conservados. */
+    private final PriorityQueue<Entrada> heap;
+
+    public TopLentos() {
+        this(K_POR_DEFECTO);
+    }
+
+    public TopLentos(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(k + 1, MAS_LENTO_PRIMERO.reversed());
+    }
+
+    /**
+     * Ofrece un caso; se conserva solo si está entre los {@code k} más lentos.
+     *
+     * @param caso      caso de prueba
+     * @param secuencia posición del caso en la entrada (para desempatar)
+     */
+    public void ofrecer(CasoPrueba caso, long secuencia) {
+        if (k == 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(new Entrada(caso, secuencia));
+            return;
+        }
+
+        Entrada menor = heap.peek();
+        double t = caso.getTiempoEjecucion();
+        double tMenor = menor.caso.getTiempoEjecucion();
+
+        if (t > tMenor || (t == tMenor && secuencia < menor.secuencia)) {
+            heap.poll();
+            heap.add(new Entrada(caso, secuencia));
+        }
+    }
+
+    /**
+     * Tiempo mínimo que debe superar un caso para entrar al top, o
+     * {@link Double#NEGATIVE_INFINITY} si todavía no está completo.
+     *
+     * @return umbral de ingreso
+     */
+    public double umbral() {
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().caso.getTiempoEjecucion();
+    }
+
+    /**
+     * Incorpora los casos de otra instancia (por ejemplo de otro hilo o de
+     * otro fragmento del archivo).
+     *
+     * @param otro top parcial a combinar
+     */
+    public void combinar(TopLentos otro) {
+        for (Entrada e : otro.heap) {
+            ofrecer(e.caso, e.secuencia);
+        }
+    }
+
+    /**
+     * @return los casos conservados, del más lento al menos lento
+     */
+    public List<CasoPrueba> lista() {
+        List<Entrada> entradas = new ArrayList<>(heap);
+        entradas.sort(MAS_LENTO_PRIMERO);
+
+        List<CasoPrueba> resultado = new ArrayList<>(entradas.size());
+        for (Entrada e : entradas) {
+            resultado.add(e.caso);
+        }
+        return resultado;
+    }
+
+    private static final class Entrada {
+        final CasoPrueba caso;
+        final long secuencia;
+
+        Entrada(CasoPrueba caso, long secuencia) {
+            this.caso = caso;
+            this.secuencia = secuencia;
+        }
+    }
+}
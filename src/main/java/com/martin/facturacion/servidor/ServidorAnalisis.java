@@ -0,0 +1,256 @@
+package com.martin.facturacion.servidor;
+
+import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
+import com.martin.facturacion.io.EscritorJson;
+import com.martin.facturacion.io.LectorCsv;
+import com.martin.facturacion.io.OpcionesLectura;
+import com.martin.facturacion.io.ReporteJson;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo servidor: mantiene la JVM (y el JIT) en caliente y responde el
+ * resumen de un CSV como JSON, sin levantar un proceso por archivo.
+ *
+ * <p>
+ * Usa solo {@link HttpServer} del JDK. Endpoints:
+ * </p>
+ * <ul>
+ * <li>{@code POST /analizar} con el CSV como cuerpo.</li>
+ * <li>{@code GET /analizar?ruta=/ruta/al/archivo.csv} para un archivo
+ * local (también por POST, pero sin cuerpo).</li>
+ * <li>{@code GET /salud} → {@code ok}.</li>
+ * </ul>
+ * <p>
+ * En ambos casos de {@code /analizar} se acepta
+ * {@code ignorarCabecera=true}. La respuesta tiene el mismo formato que
+ * {@code resumen.json}. Los errores se responden como
+ * {@code {"error": "..."}} con 400, 404, 405 o 415.
+ * </p>
+ *
+ * <p>
+ * Las peticiones se atienden en un pool acotado de hilos: cuando la cola se
+ * llena, el hilo que acepta conexiones procesa la petición él mismo, lo que
+ * frena la entrada en lugar de descartar trabajo. El CSV se lee en
+ * streaming y solo se acumulan estadísticas; cada hilo reutiliza su propio
+ * búfer para armar la respuesta. Por defecto escucha solo en loopback,
+ * porque {@code ruta} permite leer archivos locales.
+ * </p>
+ *
+ * @author Martin
+ * @version 1.0
+ */
+public class ServidorAnalisis {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServidorAnalisis.class);
+
+    /** Puerto por defecto de {@code --servidor}. */
+    public static final int PUERTO_POR_DEFECTO = 8080;
+
+    /** Peticiones que pueden esperar en cola antes de frenar la entrada. */
+    private static final int CAPACIDAD_COLA = 256;
+
+    /** Búferes de respuesta reutilizados por cada hilo del pool. */
+    private static final int TAMANIO_BUFER = 16 * 1024;
+    private static final ThreadLocal<ByteArrayOutputStream> BUFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(TAMANIO_BUFER));
+
+    private final HttpServer servidor;
+    private final ThreadPoolExecutor ejecutor;
+
+    /**
+     * Crea el servidor escuchando en loopback.
+     *
+     * @param puerto puerto TCP, o 0 para elegir uno libre
+     * @param hilos  cantidad máxima de peticiones atendidas a la vez
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public ServidorAnalisis(int puerto, int hilos) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), hilos);
+    }
+
+    /**
+     * @param direccion dirección y puerto donde escuchar
+     * @param hilos     cantidad máxima de peticiones atendidas a la vez
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public ServidorAnalisis(InetSocketAddress direccion, int hilos) throws IOException {
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CAPACIDAD_COLA),
+                r -> new Thread(r, "analisis-" + numero.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.servidor = HttpServer.create(direccion, 0);
+        this.servidor.setExecutor(ejecutor);
+        this.servidor.createContext("/analizar", this::analizar);
+        this.servidor.createContext("/salud", this::salud);
+    }
+
+    /** Comienza a aceptar peticiones (no bloquea). */
+    public void iniciar() {
+        servidor.start();
+        logger.info("Servidor de análisis escuchando en {}", servidor.getAddress());
+    }
+
+    /** Deja de aceptar peticiones y espera hasta un segundo a las que están en curso. */
+    public void detener() {
+        servidor.stop(1);
+        ejecutor.shutdown();
+    }
+
+    /** @return puerto real en el que escucha (útil si se pidió el 0) */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    // =======================================
+    // ENDPOINTS
+    // =======================================
+
+    private void salud(HttpExchange ex) throws IOException {
+        byte[] cuerpo = "ok".getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(200, cuerpo.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(cuerpo);
+        }
+    }
+
+    private void analizar(HttpExchange ex) throws IOException {
+        long inicio = System.nanoTime();
+        try (ex) {
+            Map<String, String> parametros;
+            try {
+                parametros = parametros(ex.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                responderError(ex, 400, "Parámetros mal codificados: " + e.getMessage());
+                return;
+            }
+            boolean ignorarCabecera = Boolean.parseBoolean(parametros.get("ignorarCabecera"));
+            String ruta = parametros.get("ruta");
+            String metodo = ex.getRequestMethod();
+
+            AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+            List<String> errores = new ArrayList<>();
+
+            try {
+                if (ruta != null && metodo.equals("POST") && tieneCuerpo(ex)) {
+                    responderError(ex, 400, "Se indicó 'ruta' y también un cuerpo CSV: enviar solo uno de los dos.");
+                    return;
+                }
+                if (ruta != null && (metodo.equals("GET") || metodo.equals("POST"))) {
+                    LectorCsv.acumular(new File(ruta), new OpcionesLectura(errores).ignorarCabecera(ignorarCabecera),
+                            acumulador);
+                } else if (metodo.equals("POST")) {
+                    try (InputStream in = ex.getRequestBody()) {
+                        LectorCsv.leer(in, errores, ignorarCabecera, acumulador::agregar);
+                    }
+                } else if (metodo.equals("GET")) {
+                    responderError(ex, 400, "Falta el parámetro 'ruta' o un cuerpo CSV (POST).");
+                    return;
+                } else {
+                    responderError(ex, 405, "Método no permitido: " + metodo);
+                    return;
+                }
+            } catch (FileNotFoundException e) {
+                responderError(ex, 404, e.getMessage());
+                return;
+            } catch (ExcepcionFormatoCsv e) {
+                responderError(ex, 415, e.getMessage());
+                return;
+            } catch (CharacterCodingException e) {
+                responderError(ex, 400, "El contenido no es UTF-8 válido.");
+                return;
+            } catch (IOException e) {
+                responderError(ex, 400, e.getMessage());
+                return;
+            }
+
+            ByteArrayOutputStream bufer = BUFER.get();
+            bufer.reset();
+            EscritorJson json = new EscritorJson(new OutputStreamWriter(bufer, StandardCharsets.UTF_8));
+            ReporteJson.escribirResumen(json, acumulador.resultado(), errores, null, null);
+            json.flush();
+
+            responder(ex, 200, bufer);
+            logger.debug("{} {} -> {} casos en {} ms", metodo, ex.getRequestURI(), acumulador.getTotal(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+
+        } catch (IOException e) {
+            logger.error("Error atendiendo {}", ex.getRequestURI(), e);
+            throw e;
+        }
+    }
+
+    // =======================================
+    // AUXILIARES
+    // =======================================
+
+    private static void responderError(HttpExchange ex, int codigo, String mensaje) throws IOException {
+        ByteArrayOutputStream bufer = BUFER.get();
+        bufer.reset();
+        EscritorJson json = new EscritorJson(new OutputStreamWriter(bufer, StandardCharsets.UTF_8));
+        json.inicioObjeto().campo("error").valor(mensaje).finObjeto();
+        json.flush();
+        responder(ex, codigo, bufer);
+    }
+
+    private static void responder(HttpExchange ex, int codigo, ByteArrayOutputStream bufer) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(codigo, bufer.size());
+        try (OutputStream out = ex.getResponseBody()) {
+            bufer.writeTo(out);
+        }
+        if (bufer.size() > TAMANIO_BUFER * 4) {
+            // No retener búferes grandes de una respuesta excepcional
+            BUFER.remove();
+        }
+    }
+
+    private static boolean tieneCuerpo(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return in.read() >= 0;
+        }
+    }
+
+    /** @throws IllegalArgumentException si algún escape {@code %xx} es inválido */
+    private static Map<String, String> parametros(String query) {
+        Map<String, String> mapa = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return mapa;
+        }
+        for (String par : query.split("&")) {
+            int igual = par.indexOf('=');
+            String clave = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            mapa.put(URLDecoder.decode(clave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return mapa;
+    }
+}
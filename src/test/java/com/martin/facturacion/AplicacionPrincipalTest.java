@@ -96,6 +96,66 @@ public class AplicacionPrincipalTest {
         assertEquals(2, lineas); // 1 cabecera + 1 caso válido
     }
 
+    @Test
+    public void generaSoloSalidasSeleccionadas() throws Exception {
+        Path csv = Files.createTempFile("pruebas", ".csv");
+        Path outDir = Files.createTempDirectory("salida");
+
+        Files.writeString(csv, "T1,Login,PASSED,1.0\nT2,Pago,FAILED,2.0\n");
+
+        AplicacionPrincipal.main(new String[] {
+                csv.toString(),
+                outDir.toString(),
+                "--salidas", "txt"
+        });
+
+        assertTrue(Files.exists(outDir.resolve("resumen.txt")));
+        assertFalse(Files.exists(outDir.resolve("resumen.csv")));
+        assertTrue(Files.readString(outDir.resolve("resumen.txt")).startsWith("Total tests: 2"));
+    }
+
+    @Test
+    public void errorSiSalidaDesconocida() throws Exception {
+        Path csv = Files.createTempFile("pruebas", ".csv");
+        Path outDir = Files.createTempDirectory("salida");
+
+        AplicacionPrincipal.main(new String[] { csv.toString(), outDir.toString(), "--salidas", "docx" });
+
+        assertTrue(errContent.toString().contains("Salida desconocida: docx"));
+    }
+
+    @Test
+    public void escribeMetricasPorEtapa() throws Exception {
+        Path csv = Files.createTempFile("pruebas", ".csv");
+        Path outDir = Files.createTempDirectory("salida");
+        Files.writeString(csv, "T1,Login,PASSED,1.5\nT2,Pago,FAILED,2.0\n");
+
+        AplicacionPrincipal.main(new String[] { csv.toString(), outDir.toString(), "--metricas" });
+
+        String json = Files.readString(outDir.resolve("metricas.json"));
+        assertTrue(json.contains("\"etapa\":\"lectura\""), json);
+        assertTrue(json.contains("\"etapa\":\"salida:csv\""), json);
+        assertTrue(outContent.toString().contains("salida:txt"));
+    }
+
+    @Test
+    public void comparaContraEjecucionesAnteriores() throws Exception {
+        Path csv = Files.createTempFile("pruebas", ".csv");
+        Path outDir = Files.createTempDirectory("salida");
+        Files.writeString(csv, "T1,Login,PASSED,1.0\nT2,Pago,FAILED,2.0\n");
+
+        AplicacionPrincipal.main(new String[] { csv.toString(), outDir.toString() });
+        assertFalse(Files.readString(outDir.resolve("resumen.txt")).contains("Comparacion"));
+
+        Files.writeString(csv, "T1,Login,PASSED,1.0\nT2,Pago,FAILED,3.0\n");
+        AplicacionPrincipal.main(new String[] { csv.toString(), outDir.toString() });
+
+        String resumen = Files.readString(outDir.resolve("resumen.txt"));
+        assertTrue(resumen.contains("Comparacion con las ultimas 1 ejecuciones"), resumen);
+        assertTrue(resumen.contains("T2"), resumen);
+        assertTrue(Files.readString(outDir.resolve("resumen.json")).contains("\"comparacion\""));
+    }
+
     @Test
     public void errorSiOutEsArchivoEnLugarDeDirectorio() throws Exception {
         Path csv = Files.createTempFile("pruebas", ".csv");
@@ -0,0 +1,74 @@
+package com.martin.facturacion;
+
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CargaDatosTest {
+
+    private static Path csvGrande(int filas) throws Exception {
+        Path csv = Files.createTempFile("carga", ".csv");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < filas; i++) {
+            String estado = i % 7 == 0 ? "FAILED" : (i % 11 == 0 ? "SKIPPED" : "PASSED");
+            sb.append("T").append(i).append(",Caso").append(i).append(',').append(estado).append(',')
+                    .append((i % 1000) / 10.0).append('\n');
+        }
+        sb.append("roto,linea\n");
+        Files.writeString(csv, sb);
+        return csv;
+    }
+
+    @Test
+    public void cargaEnSegundoPlanoTerminaConLasMismasEstadisticas() throws Exception {
+        Path csv = csvGrande(120_000);
+
+        Path outBloqueante = Files.createTempDirectory("bloq");
+        CargaDatos bloqueante = new CargaDatos(
+                OpcionesEjecucion.parsear(new String[] { csv.toString(), outBloqueante.toString() }), true);
+        bloqueante.ejecutar();
+
+        Path outFondo = Files.createTempDirectory("fondo");
+        CargaDatos fondo = new CargaDatos(
+                OpcionesEjecucion.parsear(new String[] { csv.toString(), outFondo.toString() }), true);
+        CountDownLatch fin = new CountDownLatch(1);
+        fondo.iniciarEnSegundoPlano(fin::countDown, e -> fail(e));
+
+        // Mientras tanto, las consultas no bloquean y nunca superan el total final
+        assertTrue(fondo.getEstadisticas().getTotal() <= 120_000);
+        assertTrue(fondo.getProgreso() >= 0.0 && fondo.getProgreso() <= 1.0);
+
+        assertTrue(fin.await(30, TimeUnit.SECONDS));
+        fondo.esperar();
+
+        EstadisticasPruebas a = bloqueante.getEstadisticas();
+        EstadisticasPruebas b = fondo.getEstadisticas();
+
+        assertEquals(CargaDatos.Etapa.TERMINADA, fondo.getEtapa());
+        assertEquals(1.0, fondo.getProgreso());
+        assertEquals(a.getTotal(), b.getTotal());
+        assertEquals(a.getConteos(), b.getConteos());
+        assertEquals(a.tiempoTotal(), b.tiempoTotal());
+        assertEquals(a.getMasLento().get().getIdTest(), b.getMasLento().get().getIdTest());
+        assertEquals(1, fondo.copiaErrores().size());
+        assertEquals(Files.readString(outBloqueante.resolve("resumen.txt")),
+                Files.readString(outFondo.resolve("resumen.txt")));
+    }
+
+    @Test
+    public void casosNoDisponiblesAntesDeTerminar() throws Exception {
+        Path csv = csvGrande(10);
+        CargaDatos carga = new CargaDatos(
+                OpcionesEjecucion.parsear(new String[] { csv.toString(), Files.createTempDirectory("s").toString() }),
+                true);
+
+        assertThrows(IllegalStateException.class, carga::getCasos);
+        carga.ejecutar();
+        assertEquals(10, carga.getCasos().size());
+    }
+}
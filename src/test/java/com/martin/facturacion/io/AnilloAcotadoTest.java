@@ -0,0 +1,72 @@
+package com.martin.facturacion.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnilloAcotadoTest {
+
+    @Test
+    public void respetaLaCapacidadYElOrden() {
+        AnilloAcotado<Integer> anillo = new AnilloAcotado<>(3);
+        assertEquals(4, anillo.capacidad());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(anillo.ofrecer(i));
+        }
+        assertFalse(anillo.ofrecer(4));
+        assertEquals(0, anillo.tomar());
+        assertTrue(anillo.ofrecer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, anillo.tomar());
+        }
+        assertNull(anillo.tomar());
+    }
+
+    @Test
+    public void variosProductoresYConsumidoresNoPierdenNiRepitenElementos() throws Exception {
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(8);
+        int productores = 3;
+        int consumidores = 3;
+        long porProductor = 20_000;
+        AtomicLong suma = new AtomicLong();
+        AtomicLong tomados = new AtomicLong();
+        List<Thread> hilos = new ArrayList<>();
+
+        for (int p = 0; p < productores; p++) {
+            long base = p * porProductor;
+            hilos.add(new Thread(() -> {
+                for (long i = 1; i <= porProductor; i++) {
+                    while (!anillo.ofrecer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumidores; c++) {
+            hilos.add(new Thread(() -> {
+                while (tomados.get() < productores * porProductor) {
+                    Long e = anillo.tomar();
+                    if (e != null) {
+                        suma.addAndGet(e);
+                        tomados.incrementAndGet();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        hilos.forEach(Thread::start);
+        for (Thread t : hilos) {
+            t.join();
+        }
+
+        long n = productores * porProductor;
+        assertEquals(n, tomados.get());
+        assertEquals(n * (n + 1) / 2, suma.get());
+        assertNull(anillo.tomar());
+    }
+}
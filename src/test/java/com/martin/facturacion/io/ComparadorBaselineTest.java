@@ -0,0 +1,86 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.Regresion;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComparadorBaselineTest {
+
+    private static Path baseline() throws Exception {
+        Path csv = Files.createTempFile("baseline", ".csv");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("T").append(i).append(",Test").append(i).append(",PASSED,1.0\n");
+        }
+        sb.append("Ñandú,Unicode,SKIPPED,2.0\n");
+        Files.writeString(csv, sb.toString());
+        return csv;
+    }
+
+    private static List<CasoPrueba> actuales() {
+        List<CasoPrueba> casos = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            EstadoPrueba estado = i == 7 || i == 500 ? EstadoPrueba.FAILED : EstadoPrueba.PASSED;
+            double tiempo = i == 500 ? 3.0 : i == 42 ? 5.0 : i == 43 ? 2.0 : 1.0;
+            casos.add(new CasoPrueba("T" + i, "Test" + i, estado, tiempo));
+        }
+        // Un nombre de más de 64 KB también pasa por las particiones
+        casos.add(new CasoPrueba("Ñandú", "Unicode ".repeat(10_000), EstadoPrueba.FAILED, 1.0));
+        casos.add(new CasoPrueba("NUEVO", "Nuevo", EstadoPrueba.FAILED, 9.0));
+        return casos;
+    }
+
+    private static List<Regresion> unir(int particiones) throws Exception {
+        try (ComparadorBaseline c = ComparadorBaseline.cargar(baseline().toFile(), false, particiones)) {
+            actuales().forEach(c::comparar);
+            List<Regresion> regresiones = c.terminar();
+            assertEquals(1001, c.getCasosBaseline());
+            assertEquals(1001, c.getComparados());
+            assertEquals(1, c.getSinBaseline());
+            return regresiones;
+        }
+    }
+
+    @Test
+    public void ordenaPorCambioDeEstadoYDespuesPorTiempo() throws Exception {
+        List<String> ids = unir(1).stream().map(Regresion::getIdTest).toList();
+
+        // Pasaron a FAILED (el más lento primero), después solo más lentos
+        assertEquals(List.of("T500", "T7", "Ñandú", "T42", "T43"), ids);
+    }
+
+    @Test
+    public void particionadoDaElMismoResultado() throws Exception {
+        List<String> enMemoria = unir(1).stream().map(r -> r.getIdTest() + "," + r.getNombreTest()).toList();
+        List<String> particionado = unir(7).stream().map(r -> r.getIdTest() + "," + r.getNombreTest()).toList();
+
+        assertEquals(enMemoria, particionado);
+    }
+
+    @Test
+    public void escribeRegresionesCsv() throws Exception {
+        Path salida = Files.createTempFile("regresiones", ".csv");
+        ComparadorBaseline.escribir(unir(1), salida);
+
+        List<String> lineas = Files.readAllLines(salida);
+        assertEquals("idTest,nombreTest,estadoBase,estadoActual,tiempoBase,tiempoActual,deltaTiempo,variacion",
+                lineas.get(0));
+        assertEquals("T500,Test500,PASSED,FAILED,1.000,3.000,2.000,200.00", lineas.get(1));
+        assertEquals(6, lineas.size());
+    }
+
+    @Test
+    public void formateaDecimalesComoFormat() {
+        for (double v : new double[] { 0, 0.0004, 0.0005, 1.2345, -2.5, 123456.789, 1e-9 }) {
+            assertEquals(String.format(Locale.ROOT, "%.3f", v),
+                    ComparadorBaseline.decimal(new StringBuilder(), v, 1000).toString(), "valor " + v);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.martin.facturacion.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EscritorJsonTest {
+
+    @Test
+    public void escribeObjetosYArreglosAnidados() throws Exception {
+        StringWriter sw = new StringWriter();
+        EscritorJson json = new EscritorJson(sw);
+
+        json.inicioObjeto()
+                .campo("total").valor(2)
+                .campo("lista").inicioArreglo().valor(1.5).valor("a").valor(true).finArreglo()
+                .campo("vacio").inicioObjeto().finObjeto()
+                .finObjeto();
+
+        assertEquals("{\"total\":2,\"lista\":[1.5,\"a\",true],\"vacio\":{}}", sw.toString());
+    }
+
+    @Test
+    public void escapaCaracteresEspecialesYNoFinitos() throws Exception {
+        StringWriter sw = new StringWriter();
+        new EscritorJson(sw).inicioArreglo()
+                .valor("co\"mi\\lla\n\u0001")
+                .valor(Double.NaN)
+                .finArreglo();
+
+        assertEquals("[\"co\\\"mi\\\\lla\\n\\u0001\",null]", sw.toString());
+    }
+
+    @Test
+    public void ndjsonUnObjetoPorLinea() throws Exception {
+        StringWriter sw = new StringWriter();
+        EscritorJson json = new EscritorJson(sw);
+
+        json.inicioObjeto().campo("a").valor(1).finObjeto().finLinea();
+        json.inicioObjeto().campo("a").valor(2).finObjeto().finLinea();
+
+        assertEquals("{\"a\":1}\n{\"a\":2}\n", sw.toString());
+    }
+
+    @Test
+    public void valorSinCampoDentroDeObjetoFalla() throws Exception {
+        EscritorJson json = new EscritorJson(new StringWriter());
+        json.inicioObjeto();
+
+        assertThrows(IllegalStateException.class, () -> json.valor(1));
+    }
+}
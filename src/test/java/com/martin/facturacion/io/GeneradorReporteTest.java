@@ -1,7 +1,10 @@
 package com.martin.facturacion.io;
 
+import com.martin.facturacion.metricas.MedicionEtapa;
+import com.martin.facturacion.metricas.MetricasEjecucion;
 import com.martin.facturacion.modelo.CasoPrueba;
 import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
 
 import org.junit.jupiter.api.*;
 import java.nio.file.*;
@@ -35,6 +38,104 @@ public class GeneradorReporteTest {
         assertEquals(3, csv.size());
     }
 
+    @Test
+    public void generaSoloLasSalidasSeleccionadas() throws Exception {
+        Path tmp = Files.createTempDirectory("salida");
+
+        List<CasoPrueba> casos = List.of(new CasoPrueba("1", "Login", EstadoPrueba.PASSED, 1.2));
+
+        GeneradorReporte.generar(Collections.emptyList(), new EstadisticasPruebas(casos),
+                Collections.emptyList(), tmp, List.of("txt"));
+
+        assertTrue(Files.exists(tmp.resolve("resumen.txt")));
+        assertFalse(Files.exists(tmp.resolve("resumen.csv")));
+        assertFalse(Files.exists(tmp.resolve("errores.log")));
+        assertTrue(Files.readString(tmp.resolve("resumen.txt")).startsWith("Total tests: 1"));
+    }
+
+    @Test
+    public void generaResumenJsonYCasosNdjson() throws Exception {
+        Path tmp = Files.createTempDirectory("salida");
+
+        List<CasoPrueba> casos = Arrays.asList(
+                new CasoPrueba("1", "Login", EstadoPrueba.PASSED, 1.5),
+                new CasoPrueba("2", "Factura", EstadoPrueba.FAILED, 2.5));
+        List<String> errores = Arrays.asList(
+                "3: estado inválido -> 3,x,RARO,1",
+                "4: estado inválido -> 4,y,RARO,1",
+                "5: tiempo inválido -> 5,z,PASSED,abc");
+
+        GeneradorReporte.generar(casos, new EstadisticasPruebas(casos), errores, tmp, List.of("json", "ndjson"));
+
+        String json = Files.readString(tmp.resolve("resumen.json"));
+        assertTrue(json.startsWith("{\"total\":2,"));
+        assertTrue(json.contains("\"FAILED\":{\"cantidad\":1,\"porcentaje\":50.0}"));
+        assertTrue(json.contains("\"tiempoTotal\":4.0"));
+        assertTrue(json.contains("\"masLentos\":[{\"idTest\":\"2\""));
+        assertTrue(json.contains("\"porMotivo\":{\"estado inválido\":2,\"tiempo inválido\":1}"));
+
+        List<String> ndjson = Files.readAllLines(tmp.resolve("casos.ndjson"));
+        assertEquals(2, ndjson.size());
+        assertEquals("{\"idTest\":\"1\",\"nombreTest\":\"Login\",\"estado\":\"PASSED\",\"tiempoEjecucion\":1.5}",
+                ndjson.get(0));
+    }
+
+    @Test
+    public void salidasIncluidasSeDescubrenPorServiceLoader() {
+        Map<String, SalidaReporte> disponibles = GeneradorReporte.disponibles();
+
+        assertTrue(disponibles.keySet().containsAll(List.of("txt", "csv", "log", "json", "xlsx", "pdf", "ndjson")));
+        assertFalse(disponibles.get("txt").requiereCasos());
+        assertTrue(disponibles.get("csv").requiereCasos());
+        assertFalse(GeneradorReporte.requiereCasos(List.of("txt", "log")));
+    }
+
+    @Test
+    public void salidaDesconocidaLanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GeneradorReporte.requiereCasos(List.of("docx")));
+    }
+
+    @Test
+    public void generaXlsxConHojasDeResumenYCasos() throws Exception {
+        Path tmp = Files.createTempDirectory("salida");
+
+        List<CasoPrueba> casos = Arrays.asList(
+                new CasoPrueba("1", "Login", EstadoPrueba.PASSED, 1.2),
+                new CasoPrueba("2", "Factura", EstadoPrueba.FAILED, 2.5));
+
+        GeneradorReporte.generar(casos, new EstadisticasPruebas(casos), Collections.emptyList(), tmp, List.of("xlsx"));
+
+        Path xlsx = tmp.resolve("resumen.xlsx");
+        assertTrue(Files.exists(xlsx));
+
+        try (var wb = new org.apache.poi.xssf.usermodel.XSSFWorkbook(xlsx.toFile())) {
+            assertEquals("Resumen", wb.getSheetAt(0).getSheetName());
+            assertEquals(2.0, wb.getSheetAt(0).getRow(1).getCell(1).getNumericCellValue());
+
+            var hojaCasos = wb.getSheet("Casos");
+            assertEquals(2, hojaCasos.getLastRowNum());
+            assertEquals("Factura", hojaCasos.getRow(2).getCell(1).getStringCellValue());
+        }
+    }
+
+    @Test
+    public void generaPdfConResumenYFallidos() throws Exception {
+        Path tmp = Files.createTempDirectory("salida");
+
+        List<CasoPrueba> casos = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            casos.add(new CasoPrueba("T" + i, "Caso" + i,
+                    i % 3 == 0 ? EstadoPrueba.FAILED : EstadoPrueba.PASSED, i / 10.0));
+        }
+
+        GeneradorReporte.generar(casos, new EstadisticasPruebas(casos), Collections.emptyList(), tmp, List.of("pdf"));
+
+        Path pdf = tmp.resolve("resumen.pdf");
+        assertTrue(Files.exists(pdf));
+        assertTrue(Files.readString(pdf, java.nio.charset.StandardCharsets.ISO_8859_1).startsWith("%PDF"));
+    }
+
     @Test
     public void fallaSiOutDirEsArchivo() throws Exception {
         Path archivo = Files.createTempFile("noDir", ".txt");
@@ -45,4 +146,26 @@ public class GeneradorReporteTest {
         assertThrows(IOException.class,
                 () -> GeneradorReporte.generar(casos, errores, archivo));
     }
+
+    @Test
+    public void cuentaSoloLosBytesQueEscribeCadaSalida() throws Exception {
+        Path tmp = Files.createTempDirectory("salida");
+        // Otro archivo de la carpeta no se atribuye a ninguna salida
+        Files.writeString(tmp.resolve("ajeno.txt"), "x".repeat(1000));
+
+        List<CasoPrueba> casos = List.of(new CasoPrueba("1", "Login", EstadoPrueba.PASSED, 1.2));
+        MetricasEjecucion metricas = new MetricasEjecucion();
+        GeneradorReporte.generar(casos, new EstadisticasPruebas(casos), List.of(), tmp, List.of("txt", "csv"),
+                null, metricas);
+        // Reescribir en el mismo instante también se mide
+        GeneradorReporte.generar(casos, new EstadisticasPruebas(casos), List.of(), tmp, List.of("txt"),
+                null, metricas);
+
+        List<MedicionEtapa> etapas = metricas.getEtapas();
+        assertEquals(List.of("salida:txt", "salida:csv", "salida:txt"),
+                etapas.stream().map(MedicionEtapa::getNombre).toList());
+        assertEquals(Files.size(tmp.resolve("resumen.txt")), etapas.get(0).getBytes());
+        assertEquals(Files.size(tmp.resolve("resumen.csv")), etapas.get(1).getBytes());
+        assertEquals(Files.size(tmp.resolve("resumen.txt")), etapas.get(2).getBytes());
+    }
 }
@@ -0,0 +1,102 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.RegistroEjecucion;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistorialEjecucionesTest {
+
+    private static RegistroEjecucion registro(long segundo, double tiempo) {
+        List<CasoPrueba> casos = Arrays.asList(
+                new CasoPrueba("A", "Login", EstadoPrueba.PASSED, tiempo),
+                new CasoPrueba("B", "Pago", EstadoPrueba.FAILED, tiempo * 2));
+        return RegistroEjecucion.de(new EstadisticasPruebas(casos), Instant.ofEpochSecond(segundo));
+    }
+
+    @Test
+    public void guardaYLeeUltimasEjecuciones() throws Exception {
+        Path dir = Files.createTempDirectory("historial");
+        HistorialEjecuciones h = new HistorialEjecuciones(dir);
+        for (int i = 1; i <= 5; i++) {
+            h.agregar(registro(i * 100, i));
+        }
+
+        List<RegistroEjecucion> ultimas = new HistorialEjecuciones(dir).ultimas(2);
+
+        assertEquals(2, ultimas.size());
+        assertEquals(Instant.ofEpochSecond(400), ultimas.get(0).getFecha());
+        assertEquals(Instant.ofEpochSecond(500), ultimas.get(1).getFecha());
+        assertEquals(2, ultimas.get(1).getTotal());
+        assertEquals(15.0, ultimas.get(1).getTiempoTotal(), 1e-9);
+        assertEquals(1, ultimas.get(1).getConteo(EstadoPrueba.FAILED));
+        assertEquals("B", ultimas.get(1).getMasLentos().get(0).getIdTest());
+        assertEquals(registro(500, 5).getHistograma(), ultimas.get(1).getHistograma());
+    }
+
+    @Test
+    public void buscaPorRangoDeFechas() throws Exception {
+        Path dir = Files.createTempDirectory("historial");
+        HistorialEjecuciones h = new HistorialEjecuciones(dir);
+        for (int i = 1; i <= 10; i++) {
+            h.agregar(registro(i * 100, i));
+        }
+
+        List<RegistroEjecucion> rango = h.entre(Instant.ofEpochSecond(250), Instant.ofEpochSecond(600));
+
+        assertEquals(3, rango.size());
+        assertEquals(Instant.ofEpochSecond(300), rango.get(0).getFecha());
+        assertEquals(Instant.ofEpochSecond(500), rango.get(2).getFecha());
+    }
+
+    @Test
+    public void reconstruyeIndiceSiSeCortoLaEscritura() throws Exception {
+        Path dir = Files.createTempDirectory("historial");
+        HistorialEjecuciones h = new HistorialEjecuciones(dir);
+        for (int i = 1; i <= 3; i++) {
+            h.agregar(registro(i * 100, i));
+        }
+
+        // Simula un corte: el índice perdió su última entrada
+        Path idx = dir.resolve(HistorialEjecuciones.ARCHIVO_INDICE);
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.WRITE)) {
+            ch.truncate(Files.size(idx) - 16);
+        }
+
+        HistorialEjecuciones reabierto = new HistorialEjecuciones(dir);
+
+        assertEquals(3, reabierto.cantidad());
+        assertEquals(Instant.ofEpochSecond(300), reabierto.ultimas(1).get(0).getFecha());
+    }
+
+    @Test
+    public void guardaNombresDeMasDe64KB() throws Exception {
+        Path dir = Files.createTempDirectory("historial");
+        String largo = "ñ".repeat(70_000);
+        List<CasoPrueba> casos = List.of(new CasoPrueba("A", largo, EstadoPrueba.PASSED, 1));
+        new HistorialEjecuciones(dir).agregar(RegistroEjecucion.de(new EstadisticasPruebas(casos),
+                Instant.ofEpochSecond(1)));
+
+        List<RegistroEjecucion> ultimas = new HistorialEjecuciones(dir).ultimas(1);
+        assertEquals(largo, ultimas.get(0).getMasLentos().get(0).getNombreTest());
+    }
+
+    @Test
+    public void rechazaEstadoInvalido() throws Exception {
+        byte[] cuerpo = HistorialEjecuciones.serializar(registro(1, 1));
+        // El último caso termina con el ordinal del estado y el tiempo (double)
+        cuerpo[cuerpo.length - 9] = 0x7F;
+
+        assertThrows(IOException.class, () -> HistorialEjecuciones.deserializar(cuerpo));
+    }
+}
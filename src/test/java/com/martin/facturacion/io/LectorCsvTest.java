@@ -1,11 +1,18 @@
 package com.martin.facturacion.io;
 
 import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.AcumuladorEstadisticas;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
 import com.martin.facturacion.excepciones.ExcepcionFormatoCsv;
 
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 
@@ -114,4 +121,192 @@ public class LectorCsvTest {
 
         Files.deleteIfExists(tmp);
     }
+
+    @Test
+    public void lecturaProyectadaSoloMaterializaLosQueCumplenElFiltro() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        StringBuilder sb = new StringBuilder("idTest,nombre,estado,tiempo\r\n");
+        for (int i = 0; i < 5000; i++) {
+            String estado = i % 100 == 0 ? "FAILED" : i % 7 == 0 ? " skipped " : "PASSED";
+            sb.append("T").append(i).append(", Test ").append(i).append(",").append(estado).append(",")
+                    .append(i % 13 * 0.25).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        sb.append("\r\nmal,linea\nX,Y,ROTO,1\nZ,W,PASSED,abc\nÑ1,Ñandú,FAILED,1e-3");
+        Files.writeString(tmp, sb.toString());
+
+        List<String> erroresCompletos = new ArrayList<>();
+        AcumuladorEstadisticas completo = new AcumuladorEstadisticas();
+        LectorCsv.leer(tmp.toFile(), new OpcionesLectura(erroresCompletos).ignorarCabecera(true), completo::agregar);
+
+        List<String> errores = new ArrayList<>();
+        AcumuladorEstadisticas proyectado = new AcumuladorEstadisticas();
+        List<CasoPrueba> fallidos = new ArrayList<>();
+        FiltroCasos filtro = new FiltroCasos(EnumSet.of(EstadoPrueba.FAILED), null, 0);
+        LectorCsv.leer(tmp.toFile(), new OpcionesLectura(errores).ignorarCabecera(true), filtro, c -> {
+            fallidos.add(c);
+            proyectado.agregar(c);
+        }, proyectado);
+
+        assertEquals(51, fallidos.size());
+        assertTrue(fallidos.stream().allMatch(filtro::admite));
+        assertEquals("Ñ1", fallidos.get(50).getIdTest());
+        assertEquals(erroresCompletos, errores);
+        assertEquals(completo.resultado().getTotal(), proyectado.resultado().getTotal());
+        assertEquals(completo.resultado().getConteos(), proyectado.resultado().getConteos());
+        assertEquals(completo.resultado().getTiempoPromedio(), proyectado.resultado().getTiempoPromedio(), 1e-9);
+        assertEquals(completo.resultado().getHistograma(), proyectado.resultado().getHistograma());
+        assertEquals(completo.resultado().getMasLentos().stream().map(CasoPrueba::getIdTest).toList(),
+                proyectado.resultado().getMasLentos().stream().map(CasoPrueba::getIdTest).toList());
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void acumularSinCasosDaLasMismasEstadisticas() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        StringBuilder sb = new StringBuilder("idTest,nombre,estado,tiempo\n");
+        for (int i = 0; i < 3000; i++) {
+            sb.append("T").append(i).append(",Test ").append(i).append(",").append(i % 9 == 0 ? "FAILED" : "PASSED")
+                    .append(",").append(i * 37 % 1000 * 0.01).append("\n");
+        }
+        sb.append("mal,linea\nX,Y,ROTO,1\nZ,W,PASSED,abc\n");
+        Files.writeString(tmp, sb.toString());
+
+        List<String> erroresCompletos = new ArrayList<>();
+        AcumuladorEstadisticas completo = new AcumuladorEstadisticas();
+        LectorCsv.leer(tmp.toFile(), new OpcionesLectura(erroresCompletos).ignorarCabecera(true), completo::agregar);
+
+        List<String> errores = new ArrayList<>();
+        AcumuladorEstadisticas acumulado = new AcumuladorEstadisticas();
+        LectorCsv.acumular(tmp.toFile(), new OpcionesLectura(errores).ignorarCabecera(true), acumulado);
+
+        assertEquals(erroresCompletos, errores);
+        assertEquals(completo.resultado().getTotal(), acumulado.resultado().getTotal());
+        assertEquals(completo.resultado().getConteos(), acumulado.resultado().getConteos());
+        assertEquals(completo.resultado().getTiempoPromedio(), acumulado.resultado().getTiempoPromedio(), 1e-9);
+        assertEquals(completo.resultado().getHistograma(), acumulado.resultado().getHistograma());
+        assertEquals(completo.resultado().getMasLentos().stream().map(CasoPrueba::getIdTest).toList(),
+                acumulado.resultado().getMasLentos().stream().map(CasoPrueba::getIdTest).toList());
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void decimalDesdeBytesIgualAParseDouble() {
+        for (String s : new String[] { "0", "0.5", "-1.25", "+3", "1.", ".5", "0.1", "0.3", "123456789.123456",
+                "1234567890123456789", "1e-3", "NaN", "0.000000000000000000001" }) {
+            byte[] b = s.getBytes();
+            assertEquals(Double.parseDouble(s), TokenizadorCsv.decimal(b, 0, b.length), s);
+        }
+        assertThrows(NumberFormatException.class, () -> TokenizadorCsv.decimal("1.2.3".getBytes(), 0, 5));
+        assertThrows(NumberFormatException.class, () -> TokenizadorCsv.decimal(".".getBytes(), 0, 1));
+    }
+
+    @Test
+    public void resumenCsvSeVuelveALeerIgual() throws Exception {
+        Path dir = Files.createTempDirectory("idavuelta");
+        List<CasoPrueba> casos = List.of(
+                new CasoPrueba("A1", "Suma, con coma", EstadoPrueba.PASSED, 0.5),
+                new CasoPrueba("A2", "Dice \"hola\"", EstadoPrueba.FAILED, 1.25),
+                new CasoPrueba("A3", "Dos\nlíneas", EstadoPrueba.SKIPPED, 2.0));
+        GeneradorReporte.generar(DatosReporte.para(new EstadisticasPruebas(casos), List.of(), dir).casos(casos)
+                .armar(), List.of("csv"), null);
+
+        List<String> errores = new ArrayList<>();
+        List<CasoPrueba> leidos = LectorCsv.leer(dir.resolve("resumen.csv").toFile(), errores, true);
+
+        assertTrue(errores.isEmpty(), errores.toString());
+        assertEquals(casos.stream().map(CasoPrueba::getNombreTest).toList(),
+                leidos.stream().map(CasoPrueba::getNombreTest).toList());
+    }
+
+    @Test
+    public void ubicaLasColumnasPorNombreEnLaCabecera() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        Files.writeString(tmp, "\uFEFFhost,TIEMPOEJECUCION,shard,estado,idTest,nombreTest,timestamp,extra\n"
+                + "h1,0.5,3,PASSED,T1,\"Login, ok\",2026-01-01,\"a\nb\"\n"
+                + "h2,1.5,4,FAILED,T2,Logout,2026-01-02,x,y,z\n"
+                + "h3,2.0,5,SKIPPED,T3\n");
+
+        List<String> errores = new ArrayList<>();
+        List<CasoPrueba> casos = LectorCsv.leer(tmp.toFile(), errores, true);
+
+        assertEquals(List.of("T1", "T2"), casos.stream().map(CasoPrueba::getIdTest).toList());
+        assertEquals("Login, ok", casos.get(0).getNombreTest());
+        assertEquals(EstadoPrueba.FAILED, casos.get(1).getEstado());
+        assertEquals(1.5, casos.get(1).getTiempoEjecucion());
+        assertEquals(1, errores.size());
+        assertTrue(errores.get(0).startsWith("5: cantidad de columnas incorrecta"), errores.get(0));
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void sinNombresEnLaCabeceraSeMantieneElFormatoOriginal() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        Files.write(tmp, List.of("a,b,c,d", "1,Test A,PASSED,0.5", "2,Test B,FAILED,1.2,sobra"));
+
+        List<String> errores = new ArrayList<>();
+        List<CasoPrueba> casos = LectorCsv.leer(tmp.toFile(), errores, true);
+
+        assertEquals(1, casos.size());
+        assertEquals(1, errores.size());
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void cuentaIdsYDuplicadasPorIdYRun() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        Files.write(tmp, List.of("idTest,nombreTest,estado,tiempoEjecucion,run",
+                "T1,Uno,PASSED,0.5,r1",
+                "T2,Dos,PASSED,0.5,r1",
+                "T1,Uno,FAILED,0.7,r2",
+                " T1 ,Uno,PASSED,0.5,r1 ",
+                "T3,Tres,PASSED,0.5,r2"));
+
+        List<String> errores = new ArrayList<>();
+        ConteoIds ids = new ConteoIds(1000);
+        LectorCsv.leer(tmp.toFile(), new OpcionesLectura(errores).ignorarCabecera(true).ids(ids), c -> { });
+
+        // T1 en otra corrida no es duplicada; T1 en r1 otra vez (con espacios) sí
+        assertTrue(errores.isEmpty());
+        assertEquals(5, ids.getFilas());
+        assertEquals(3, ids.getIdsDistintos());
+        assertEquals(1, ids.getDuplicadas());
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void leeArchivosEnLatin1() throws Exception {
+        Path tmp = Files.createTempFile("tests", ".csv");
+        Files.write(tmp, List.of("AÑO-1,Año bisiesto,PASSED,0.5",
+                "AÑO-2,Señal,FAILED,1.5",
+                "ÉXITO-1,Acción,PASSED,0.25"), StandardCharsets.ISO_8859_1);
+
+        // Como UTF-8 los bytes de las eñes son inválidos: se rechaza el archivo
+        assertThrows(CharacterCodingException.class,
+                () -> LectorCsv.leer(tmp.toFile(), new ArrayList<>(), false));
+
+        List<String> errores = new ArrayList<>();
+        List<CasoPrueba> casos = new ArrayList<>();
+        ArbolSuites suites = new ArbolSuites("-", 1, false);
+        OpcionesLectura latin1 = new OpcionesLectura(errores).codificacion(StandardCharsets.ISO_8859_1);
+        LectorCsv.leer(tmp.toFile(), latin1.suites(suites), casos::add);
+        assertTrue(errores.isEmpty());
+        assertEquals(List.of("AÑO-1", "AÑO-2", "ÉXITO-1"), casos.stream().map(CasoPrueba::getIdTest).toList());
+        assertEquals("Señal", casos.get(1).getNombreTest());
+        assertEquals(2, suites.getRaiz().getHijo("AÑO").getTotal());
+        assertEquals(1, suites.getRaiz().getHijo("ÉXITO").getTotal());
+
+        // El prefijo del filtro se compara en la codificación del archivo
+        List<CasoPrueba> fallidos = new ArrayList<>();
+        AcumuladorEstadisticas resto = new AcumuladorEstadisticas();
+        LectorCsv.leer(tmp.toFile(), latin1.suites(null), new FiltroCasos(null, "AÑO", 0), fallidos::add, resto);
+        assertEquals(List.of("AÑO-1", "AÑO-2"), fallidos.stream().map(CasoPrueba::getIdTest).toList());
+        assertEquals(1, resto.getTotal());
+
+        Files.deleteIfExists(tmp);
+    }
 }
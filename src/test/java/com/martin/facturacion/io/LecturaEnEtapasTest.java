@@ -0,0 +1,118 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ArbolSuites;
+import com.martin.facturacion.servicio.ConteoIds;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LecturaEnEtapasTest {
+
+    @Test
+    public void daLoMismoQueLaLecturaSecuencialConTrozosQueCortanRegistros() throws Exception {
+        Path tmp = Files.createTempFile("etapas", ".csv");
+        StringBuilder sb = new StringBuilder("run,estado,idTest,nombreTest,tiempoEjecucion\r\n");
+        Random azar = new Random(7);
+        String[] estados = { "PASSED", "FAILED", "SKIPPED", "ROTO" };
+        for (int i = 0; i < 400; i++) {
+            String fin = i % 3 == 0 ? "\r\n" : i % 17 == 0 ? "\r" : "\n";
+            switch (i % 11) {
+                case 0 -> sb.append("r1,PASSED,T").append(i).append(",\"Nombre\r\ncon\nvarias\n\nlíneas y \"\"comillas\"\" ")
+                        .append("x".repeat(azar.nextInt(80))).append("\",1.5").append(fin);
+                case 1 -> sb.append(fin);
+                case 2 -> sb.append("r1,FAILED,T").append(i).append(",faltan columnas").append(fin);
+                case 3 -> sb.append("r1,PASSED,T").append(i - 3).append(",Repetido,0.25").append(fin);
+                default -> sb.append("r1,").append(estados[azar.nextInt(estados.length)]).append(",T").append(i)
+                        .append(",\"Caso, ").append(i).append("\",").append(azar.nextInt(1000) / 10.0).append(fin);
+            }
+        }
+        sb.append("r1,PASSED,T999,\"sin cerrar\n,0.1\nr1,PASSED,T1000,Último,0.2");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        File csv = tmp.toFile();
+
+        List<String> errores = new ArrayList<>();
+        List<String> casos = new ArrayList<>();
+        ConteoIds ids = ConteoIds.paraArchivo(csv.length());
+        // Los nombres con saltos de línea parten suites entre trozos
+        ArbolSuites suites = new ArbolSuites(" \n", 2, true);
+        LectorCsv.leer(csv, new OpcionesLectura(errores).ignorarCabecera(true).ids(ids).suites(suites),
+                c -> casos.add(texto(c)));
+        assertFalse(errores.isEmpty());
+        assertTrue(suites.getNodos() > 3);
+        assertTrue(ids.getDuplicadas() > 0);
+
+        for (int bytesTrozo : new int[] { 16, 37, 100, 1000, 1 << 20 }) {
+            for (int hilos = 1; hilos <= 3; hilos++) {
+                List<String> erroresEtapas = new ArrayList<>();
+                List<String> casosEtapas = new ArrayList<>();
+                ConteoIds idsEtapas = ConteoIds.paraArchivo(csv.length());
+                ArbolSuites suitesEtapas = suites.vacio();
+                AtomicLong bytes = new AtomicLong();
+                new LecturaEnEtapas(hilos, hilos, bytesTrozo).leer(csv, new OpcionesLectura(erroresEtapas)
+                        .ignorarCabecera(true).bytesLeidos(bytes).ids(idsEtapas).suites(suitesEtapas),
+                        c -> casosEtapas.add(texto(c)));
+
+                String caso = bytesTrozo + " bytes, " + hilos + " hilos";
+                assertEquals(casos, casosEtapas, caso);
+                assertEquals(errores, erroresEtapas, caso);
+                assertEquals(ids.getDuplicadas(), idsEtapas.getDuplicadas(), caso);
+                assertEquals(ids.getIdsDistintos(), idsEtapas.getIdsDistintos(), caso);
+                assertEquals(csv.length(), bytes.get(), caso);
+                assertEquals(filas(suites.getRaiz()), filas(suitesEtapas.getRaiz()), caso);
+            }
+        }
+
+        Files.deleteIfExists(tmp);
+    }
+
+    @Test
+    public void propagaElErrorDeCodificacionDespuesDeLasFilasAnteriores() throws Exception {
+        Path tmp = Files.createTempFile("etapas", ".csv");
+        byte[] malo = { 'T', '9', ',', (byte) 0xC3, ',', 'P', 'A', 'S', 'S', 'E', 'D', ',', '1', '\n' };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append("T").append(i).append(",Caso,PASSED,1\n");
+        }
+        byte[] inicio = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] todo = new byte[inicio.length + malo.length];
+        System.arraycopy(inicio, 0, todo, 0, inicio.length);
+        System.arraycopy(malo, 0, todo, inicio.length, malo.length);
+        Files.write(tmp, todo);
+
+        List<CasoPrueba> casos = new ArrayList<>();
+        assertThrows(java.nio.charset.CharacterCodingException.class,
+                () -> new LecturaEnEtapas(2, 2, 64).leer(tmp.toFile(), new OpcionesLectura(new ArrayList<>()),
+                        casos::add));
+        assertEquals(50, casos.size());
+
+        Files.deleteIfExists(tmp);
+    }
+
+    /** Una línea por suite; los tiempos redondeados porque se suman en otro orden. */
+    private static List<String> filas(ArbolSuites.Suite s) {
+        List<String> filas = new ArrayList<>();
+        filas.add(String.format(Locale.ROOT, "%s|%d|%d|%.6f|%.6f", s.getRuta(), s.getTotal(),
+                s.getConteo(EstadoPrueba.FAILED), s.getTiempoTotal(), s.getTiempoMaximo()));
+        for (ArbolSuites.Suite hijo : s.getHijos()) {
+            filas.addAll(filas(hijo));
+        }
+        return filas;
+    }
+
+    private static String texto(CasoPrueba c) {
+        return c.getIdTest() + "|" + c.getNombreTest() + "|" + c.getEstado() + "|" + c.getTiempoEjecucion();
+    }
+}
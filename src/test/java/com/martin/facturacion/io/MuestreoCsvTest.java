@@ -0,0 +1,94 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstimacionEstadisticas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MuestreoCsvTest {
+
+    private static final int FILAS = 200_000;
+
+    @TempDir
+    Path dir;
+
+    /** Escribe un CSV con cabecera y devuelve las filas por estado y la suma de tiempos. */
+    private double generar(Path csv, long[] conteos) throws Exception {
+        Random r = new Random(7);
+        EstadoPrueba[] estados = EstadoPrueba.values();
+        double suma = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("tiempoEjecucion,idTest,estado,nombreTest\n");
+            for (int i = 0; i < FILAS; i++) {
+                // Estados y tiempos agrupados en tramos, como en una corrida real
+                EstadoPrueba e = r.nextInt(10) < (i / 20_000 % 3 == 0 ? 4 : 1) ? estados[1 + r.nextInt(2)] : estados[0];
+                double t = (i / 50_000 % 2 + 2) * r.nextInt(1000) / 100.0;
+                conteos[e.ordinal()]++;
+                suma += t;
+                w.write(t + ",T" + i + "," + e + ",\"Caso, " + i + "\"\n");
+            }
+        }
+        return suma;
+    }
+
+    @Test
+    public void conTodosLosBloquesEsExacta() throws Exception {
+        Path csv = dir.resolve("datos.csv");
+        long[] conteos = new long[EstadoPrueba.values().length];
+        double suma = generar(csv, conteos);
+
+        // Un error 0 no se alcanza nunca: se leen todos los bloques
+        EstimacionEstadisticas e = new MuestreoCsv(csv.toFile(), true, new Random(1))
+                .estimar(0, Long.MAX_VALUE);
+
+        assertTrue(e.isCompleta());
+        assertEquals(FILAS, e.getFilasMuestra());
+        assertEquals(0, e.getErroresMuestra());
+        assertEquals(FILAS, e.getTotal(), 1e-6);
+        assertEquals(0, e.getError());
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            assertEquals(100.0 * conteos[s.ordinal()] / FILAS, e.getPorcentajes().get(s), 1e-9);
+        }
+        assertEquals(suma / FILAS, e.getTiempoPromedio(), 1e-9);
+    }
+
+    @Test
+    public void losIntervalosCubrenLosValoresReales() throws Exception {
+        Path csv = dir.resolve("datos.csv");
+        long[] conteos = new long[EstadoPrueba.values().length];
+        double suma = generar(csv, conteos);
+
+        EstimacionEstadisticas e = new MuestreoCsv(csv.toFile(), true, new Random(3))
+                .estimar(5, Long.MAX_VALUE);
+
+        assertFalse(e.isCompleta());
+        assertTrue(e.getError() <= 5);
+        assertEquals(FILAS, e.getTotal(), e.getSemiTotal());
+        for (EstadoPrueba s : EstadoPrueba.values()) {
+            assertEquals(100.0 * conteos[s.ordinal()] / FILAS, e.getPorcentajes().get(s),
+                    e.getSemiPorcentajes().get(s), s.name());
+        }
+        assertEquals(suma / FILAS, e.getTiempoPromedio(), e.getSemiTiempoPromedio());
+    }
+
+    @Test
+    public void laPermutacionEntregaCadaBloqueUnaVez() {
+        MuestreoCsv.Permutacion p = new MuestreoCsv.Permutacion(1000, new Random(5));
+        Set<Long> vistos = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long b = p.siguiente();
+            assertTrue(b >= 0 && b < 1000);
+            assertTrue(vistos.add(b));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+
+import org.junit.jupiter.api.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrdenamientoExternoTest {
+
+    private static List<CasoPrueba> casos(int n) {
+        Random r = new Random(7);
+        List<CasoPrueba> casos = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            // Pocos tiempos distintos para que haya muchos empates
+            casos.add(new CasoPrueba("T" + i, "Test" + i, EstadoPrueba.PASSED, r.nextInt(20) / 4.0));
+        }
+        return casos;
+    }
+
+    private static List<CasoPrueba> ordenar(OrdenamientoExterno orden, List<CasoPrueba> casos) throws Exception {
+        casos.forEach(orden::agregar);
+        List<CasoPrueba> resultado = new ArrayList<>();
+        orden.recorrer(resultado::add);
+        return resultado;
+    }
+
+    private static List<String> ids(List<CasoPrueba> casos) {
+        return casos.stream().map(CasoPrueba::getIdTest).toList();
+    }
+
+    @Test
+    public void ordenaEnMemoriaSiEntraEnUnaTanda() throws Exception {
+        List<CasoPrueba> casos = casos(500);
+        OrdenamientoExterno orden = new OrdenamientoExterno(OrdenResumen.TIEMPO.getComparador(), 1000);
+
+        List<CasoPrueba> resultado = ordenar(orden, casos);
+
+        List<CasoPrueba> esperado = new ArrayList<>(casos);
+        esperado.sort(OrdenResumen.TIEMPO.getComparador());
+        assertEquals(ids(esperado), ids(resultado));
+        assertEquals(0, orden.getCorridas());
+    }
+
+    @Test
+    public void mezclaCorridasEnDiscoDeFormaEstable() throws Exception {
+        // 100 tandas de 97: más corridas que MAX_CORRIDAS_MEZCLA, obliga a una mezcla intermedia
+        List<CasoPrueba> casos = casos(9700);
+        OrdenamientoExterno orden = new OrdenamientoExterno(OrdenResumen.TIEMPO.getComparador(), 97);
+
+        List<CasoPrueba> resultado = ordenar(orden, casos);
+
+        List<CasoPrueba> esperado = new ArrayList<>(casos);
+        esperado.sort(OrdenResumen.TIEMPO.getComparador()); // List.sort es estable
+        assertEquals(ids(esperado), ids(resultado));
+        assertTrue(orden.getCorridas() > OrdenamientoExterno.MAX_CORRIDAS_MEZCLA);
+    }
+
+    @Test
+    public void escribeResumenCsvOrdenadoPorId() throws Exception {
+        Path dir = Files.createTempDirectory("orden");
+        List<CasoPrueba> casos = List.of(
+                new CasoPrueba("C", "Tres", EstadoPrueba.PASSED, 1.0),
+                new CasoPrueba("A", "Uno", EstadoPrueba.FAILED, 2.0),
+                new CasoPrueba("B", "Dos", EstadoPrueba.SKIPPED, 3.0));
+        DatosReporte datos = DatosReporte.para(new EstadisticasPruebas(casos), List.of(), dir).casos(casos)
+                .orden(OrdenResumen.ID, null).armar();
+
+        GeneradorReporte.generar(datos, List.of("csv"), null);
+
+        List<String> lineas = Files.readAllLines(dir.resolve("resumen.csv"));
+        assertEquals(List.of("A", "B", "C"), lineas.subList(1, 4).stream().map(l -> l.split(",")[0]).toList());
+    }
+
+    @Test
+    public void guardaEnLasCorridasNombresDeMasDe64KB() throws Exception {
+        String largo = "x".repeat(70_000);
+        List<CasoPrueba> casos = List.of(
+                new CasoPrueba("A", largo, EstadoPrueba.PASSED, 3.0),
+                new CasoPrueba("B", "corto", EstadoPrueba.FAILED, 1.0),
+                new CasoPrueba("C", largo + "y", EstadoPrueba.PASSED, 2.0));
+        OrdenamientoExterno orden = new OrdenamientoExterno(OrdenResumen.TIEMPO.getComparador(), 1);
+
+        List<CasoPrueba> resultado = ordenar(orden, casos);
+
+        assertTrue(orden.getCorridas() > 1);
+        assertEquals(List.of("A", "C", "B"), ids(resultado));
+        assertEquals(largo + "y", resultado.get(1).getNombreTest());
+    }
+
+    @Test
+    public void corridaTruncadaEsUnError() throws Exception {
+        Path corrida = Files.createTempFile("corrida", ".bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(corrida))) {
+            TextoBinario.escribir(out, "A");
+            TextoBinario.escribir(out, "Uno");
+            out.writeByte(EstadoPrueba.PASSED.ordinal());
+            out.writeDouble(1.0);
+            TextoBinario.escribir(out, "B");
+            TextoBinario.escribir(out, "Dos"); // falta el estado y el tiempo
+        }
+
+        OrdenamientoExterno.Fuente fuente = new OrdenamientoExterno.Fuente(corrida, 0);
+
+        assertTrue(fuente.avanzar());
+        assertEquals("A", fuente.actual.getIdTest());
+        IOException e = assertThrows(IOException.class, fuente::avanzar);
+        assertTrue(e.getMessage().startsWith("Corrida truncada"), e.getMessage());
+        fuente.in.close();
+        Files.delete(corrida);
+    }
+}
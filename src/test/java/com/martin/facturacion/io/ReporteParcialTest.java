@@ -0,0 +1,151 @@
+package com.martin.facturacion.io;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import com.martin.facturacion.servicio.ConteoIds;
+import com.martin.facturacion.servicio.EstadisticasPruebas;
+import com.martin.facturacion.servicio.ParcialEstadisticas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReporteParcialTest {
+
+    @TempDir
+    Path dir;
+
+    /** Parcial de una parte, pasando por el archivo. */
+    private ParcialEstadisticas parcial(List<CasoPrueba> casos, String nombre) throws IOException {
+        Path archivo = dir.resolve(nombre);
+        ReporteParcial.escribir(ParcialEstadisticas.de(new EstadisticasPruebas(casos), contar(casos),
+                Map.of("estado inválido", 1L), List.of("1: estado inválido -> " + nombre)), archivo);
+        return ReporteParcial.leer(archivo);
+    }
+
+    private static ConteoIds contar(List<CasoPrueba> casos) {
+        ConteoIds ids = new ConteoIds(10_000);
+        for (CasoPrueba c : casos) {
+            byte[] b = c.getIdTest().getBytes(StandardCharsets.UTF_8);
+            long h = ConteoIds.hash(b, 0, b.length);
+            ids.agregar(h, h);
+        }
+        return ids;
+    }
+
+    @Test
+    public void combinarEnCualquierOrdenDaLoMismoQueLeerTodoJunto() throws IOException {
+        Random r = new Random(11);
+        EstadoPrueba[] estados = EstadoPrueba.values();
+        List<List<CasoPrueba>> partes = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        List<CasoPrueba> todos = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Tiempos con muchos empates, y ids que se repiten entre partes
+            CasoPrueba c = new CasoPrueba("T" + (i % 2500), "Caso " + i, estados[r.nextInt(estados.length)],
+                    r.nextInt(50) / 4.0);
+            partes.get(r.nextInt(3)).add(c);
+            todos.add(c);
+        }
+
+        ParcialEstadisticas izquierda = parcial(partes.get(0), "a.parcial");
+        izquierda.combinar(parcial(partes.get(1), "b.parcial"));
+        izquierda.combinar(parcial(partes.get(2), "c.parcial"));
+
+        ParcialEstadisticas derecha = parcial(partes.get(2), "c.parcial");
+        derecha.combinar(parcial(partes.get(1), "b.parcial"));
+        Path bc = dir.resolve("bc.parcial");
+        ReporteParcial.escribir(derecha, bc);
+        ParcialEstadisticas a = parcial(partes.get(0), "a.parcial");
+        a.combinar(ReporteParcial.leer(bc));
+
+        EstadisticasPruebas esperadas = new EstadisticasPruebas(todos);
+        for (ParcialEstadisticas p : List.of(izquierda, a)) {
+            EstadisticasPruebas e = p.estadisticas();
+            assertEquals(3, p.getPartes());
+            assertEquals(esperadas.getTotal(), e.getTotal());
+            assertEquals(esperadas.getConteos(), e.getConteos());
+            assertEquals(esperadas.tiempoTotal(), e.tiempoTotal(), 1e-9);
+            assertEquals(esperadas.getHistograma(), e.getHistograma());
+            assertEquals(esperadas.getMasLento().get().getTiempoEjecucion(),
+                    e.getMasLento().get().getTiempoEjecucion());
+            assertEquals(3, p.getCantidadErrores());
+            assertEquals(3, p.getMuestraErrores().size());
+            assertEquals(contar(todos).getIdsDistintos(), p.getIds().getIdsDistintos());
+        }
+        // Con empates, el top no depende del orden en que se combinó
+        assertEquals(izquierda.getMasLentos().stream().map(CasoPrueba::getNombreTest).toList(),
+                a.getMasLentos().stream().map(CasoPrueba::getNombreTest).toList());
+    }
+
+    @Test
+    public void rechazaArchivosQueNoSonParcialesODeOtraVersion() throws IOException {
+        Path texto = dir.resolve("resumen.txt");
+        Files.writeString(texto, "Total tests: 3");
+        IOException e = assertThrows(IOException.class, () -> ReporteParcial.leer(texto));
+        assertTrue(e.getMessage().startsWith("No es un resumen parcial"));
+
+        Path otra = dir.resolve("otra.parcial");
+        ReporteParcial.escribir(ParcialEstadisticas.de(new EstadisticasPruebas(List.of()), null, Map.of(),
+                List.of()), otra);
+        byte[] b = Files.readAllBytes(otra);
+        b[4] = 99;
+        Files.write(otra, b);
+        e = assertThrows(IOException.class, () -> ReporteParcial.leer(otra));
+        assertTrue(e.getMessage().startsWith("Versión de resumen parcial no soportada: 99"));
+    }
+
+    @Test
+    public void rechazaEstadosInvalidos() throws IOException {
+        Path archivo = dir.resolve("roto.parcial");
+        List<CasoPrueba> casos = List.of(new CasoPrueba("T1", "Nombre", EstadoPrueba.FAILED, 9.0));
+        ReporteParcial.escribir(ParcialEstadisticas.de(new EstadisticasPruebas(casos), null, Map.of(), List.of()),
+                archivo);
+        byte[] b = Files.readAllBytes(archivo);
+        // El ordinal del estado va justo después del nombre del caso lento
+        int nombre = new String(b, StandardCharsets.ISO_8859_1).indexOf("Nombre");
+        b[nombre + "Nombre".length()] = 42;
+        Files.write(archivo, b);
+
+        IOException e = assertThrows(IOException.class, () -> ReporteParcial.leer(archivo));
+        assertTrue(e.getMessage().startsWith("Estado inválido 42"), e.getMessage());
+    }
+
+    @Test
+    public void guardaLaCantidadDeErroresYSoloUnaMuestraDeLosMensajes() throws IOException {
+        List<String> errores = new ArrayList<>();
+        for (int i = 1; i <= 250; i++) {
+            errores.add(i + (i % 5 == 0 ? ": tiempo inválido -> " : ": estado inválido -> ") + "x");
+        }
+        String largo = "Nombre ".repeat(10_000);
+        List<CasoPrueba> casos = List.of(new CasoPrueba("T1", largo, EstadoPrueba.FAILED, 9.0));
+        DatosReporte datos = DatosReporte.para(new EstadisticasPruebas(casos), errores, dir).armar();
+        new ReporteParcial().escribir(datos);
+
+        ParcialEstadisticas total = ReporteParcial.leer(dir.resolve(ReporteParcial.ARCHIVO));
+        total.combinar(ReporteParcial.leer(dir.resolve(ReporteParcial.ARCHIVO)));
+
+        assertEquals(500, total.getCantidadErrores());
+        assertEquals(Map.of("estado inválido", 400L, "tiempo inválido", 100L), total.getErroresPorMotivo());
+        assertEquals(errores.subList(0, ParcialEstadisticas.MUESTRA_ERRORES), total.getMuestraErrores());
+        assertEquals(largo, total.getMasLentos().get(0).getNombreTest());
+
+        Path combinado = dir.resolve("combinado");
+        Files.createDirectories(combinado);
+        GeneradorReporte.generar(DatosReporte.para(total.estadisticas(), total.getMuestraErrores(), combinado)
+                .erroresPorMotivo(total.getErroresPorMotivo()).armar(), List.of("log", "json"), null);
+        List<String> log = Files.readAllLines(combinado.resolve("errores.log"));
+        assertEquals(ParcialEstadisticas.MUESTRA_ERRORES + 1, log.size());
+        assertTrue(log.get(log.size() - 1).contains("400 errores más"), log.get(log.size() - 1));
+        assertTrue(Files.readString(combinado.resolve("resumen.json")).contains("\"total\":500"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.martin.facturacion.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizadorCsvTest {
+
+    /** Entrega los bytes de a pedazos al azar para cortar registros en cualquier punto. */
+    private static InputStream enPedazos(String texto, long semilla) {
+        Random r = new Random(semilla);
+        return new FilterInputStream(new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1 + r.nextInt(7)));
+            }
+        };
+    }
+
+    private static List<List<String>> registros(InputStream in) throws IOException {
+        TokenizadorCsv t = new TokenizadorCsv(in);
+        List<List<String>> registros = new ArrayList<>();
+        while (t.siguiente()) {
+            List<String> campos = new ArrayList<>();
+            for (int c = 0; c < t.campos(); c++) {
+                campos.add(t.textoEstricto(t.inicio(c), t.fin(c)));
+            }
+            registros.add(campos);
+        }
+        return registros;
+    }
+
+    @Test
+    public void separaCamposConYSinComillas() throws Exception {
+        String csv = "1,simple,PASSED,0.5\r\n"
+                + "2,\"con, coma\",FAILED,1\n"
+                + "3,\"dice \"\"hola\"\"\",SKIPPED,2\r"
+                + "4,\"dos\nlíneas\",PASSED,3\n"
+                + "5,,\"\",4";
+
+        List<List<String>> esperado = List.of(
+                List.of("1", "simple", "PASSED", "0.5"),
+                List.of("2", "con, coma", "FAILED", "1"),
+                List.of("3", "dice \"hola\"", "SKIPPED", "2"),
+                List.of("4", "dos\nlíneas", "PASSED", "3"),
+                List.of("5", "", "", "4"));
+
+        assertEquals(esperado, registros(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        for (long semilla = 0; semilla < 20; semilla++) {
+            assertEquals(esperado, registros(enPedazos(csv, semilla)), "semilla " + semilla);
+        }
+    }
+
+    @Test
+    public void numeraLineasFisicas() throws Exception {
+        TokenizadorCsv t = new TokenizadorCsv(enPedazos("a,\"x\r\ny\"\r\nb,c\n\nd", 3));
+        List<Long> lineas = new ArrayList<>();
+        while (t.siguiente()) {
+            lineas.add(t.numeroLinea());
+        }
+        assertEquals(List.of(1L, 3L, 4L, 5L), lineas);
+    }
+
+    @Test
+    public void comillaSinCerrarSoloArruinaSuLinea() throws Exception {
+        TokenizadorCsv t = new TokenizadorCsv(enPedazos("1,\"abierta,PASSED,1\n2,b,FAILED,2\n", 5));
+
+        assertTrue(t.siguiente());
+        assertTrue(t.isMalFormado());
+        assertEquals("1,\"abierta,PASSED,1", t.linea());
+
+        assertTrue(t.siguiente());
+        assertFalse(t.isMalFormado());
+        assertEquals(2, t.numeroLinea());
+        assertEquals("b", t.textoEstricto(t.inicio(1), t.fin(1)));
+        assertFalse(t.siguiente());
+    }
+
+    @Test
+    public void comillasEnMedioDeUnCampoSonTexto() throws Exception {
+        assertEquals(List.of(List.of("12\" pulgadas", "x")),
+                registros(new ByteArrayInputStream("12\" pulgadas,x".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void ubicaElPrimerByteNoAsciiEnCualquierPosicion() throws Exception {
+        byte[] b = "abcdefghijklmnopqrstuvwxyz0123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(b.length, TokenizadorCsv.primerNoAscii(b, 0, b.length));
+        for (int desde = 0; desde < 9; desde++) {
+            for (int i = desde; i < b.length; i++) {
+                byte[] c = b.clone();
+                c[i] = (byte) 0xC3;
+                c[Math.min(i + 3, c.length - 1)] = (byte) 0xA9;
+                assertEquals(i, TokenizadorCsv.primerNoAscii(c, desde, c.length), "desde " + desde);
+                assertEquals(Math.min(i, c.length - 2), TokenizadorCsv.primerNoAscii(c, desde, c.length - 2));
+            }
+        }
+
+        // Solo se decodifica desde el primer byte no ASCII, sin perder el prefijo
+        String texto = "prefijo-largo-ñandú-€";
+        TokenizadorCsv t = new TokenizadorCsv(new ByteArrayInputStream(
+                ("x," + texto).getBytes(StandardCharsets.UTF_8)));
+        assertTrue(t.siguiente());
+        assertEquals(texto, t.textoEstricto(t.inicio(1), t.fin(1)));
+
+        TokenizadorCsv invalido = new TokenizadorCsv(new ByteArrayInputStream(
+                "ascii-antes-\u00f1".getBytes(StandardCharsets.ISO_8859_1)));
+        assertTrue(invalido.siguiente());
+        assertThrows(CharacterCodingException.class, () -> invalido.textoEstricto(invalido.inicio(0),
+                invalido.fin(0)));
+    }
+
+    @Test
+    public void admiteSoloCodificacionesCompatiblesConAscii() {
+        assertTrue(TokenizadorCsv.admite(StandardCharsets.UTF_8));
+        assertTrue(TokenizadorCsv.admite(StandardCharsets.ISO_8859_1));
+        assertTrue(TokenizadorCsv.admite(Charset.forName("windows-1252")));
+        assertFalse(TokenizadorCsv.admite(StandardCharsets.UTF_16));
+        assertFalse(TokenizadorCsv.admite(StandardCharsets.UTF_16LE));
+    }
+}
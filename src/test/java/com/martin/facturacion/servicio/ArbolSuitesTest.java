@@ -0,0 +1,88 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.EstadoPrueba;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArbolSuitesTest {
+
+    @Test
+    public void agrupaPorPrefijosSinGuardarElTest() {
+        ArbolSuites arbol = new ArbolSuites("-", 2, false);
+        arbol.agregar("AUTH-LOGIN-001", EstadoPrueba.PASSED, 1.0);
+        arbol.agregar("AUTH-LOGIN-002", EstadoPrueba.FAILED, 3.0);
+        arbol.agregar("AUTH-LOGOUT-001", EstadoPrueba.PASSED, 0.5);
+        arbol.agregar("AUTH-002", EstadoPrueba.SKIPPED, 0);
+        arbol.agregar("PAGOS-TARJETA-VISA-001", EstadoPrueba.PASSED, 2.0);
+        arbol.agregar("SUELTO", EstadoPrueba.FAILED, 4.0);
+
+        ArbolSuites.Suite raiz = arbol.getRaiz();
+        assertEquals(6, raiz.getTotal());
+        assertEquals(1, raiz.getSinSubgrupo());
+        assertEquals(4.0, raiz.getTiempoMaximo());
+        // Raíz, AUTH, AUTH-LOGIN, AUTH-LOGOUT, PAGOS, PAGOS-TARJETA
+        assertEquals(6, arbol.getNodos());
+
+        List<ArbolSuites.Suite> suites = raiz.getHijos();
+        assertEquals(List.of("AUTH", "PAGOS"), suites.stream().map(ArbolSuites.Suite::getNombre).toList());
+
+        ArbolSuites.Suite auth = raiz.getHijo("AUTH");
+        assertEquals(4, auth.getTotal());
+        assertEquals(1, auth.getSinSubgrupo());
+        assertEquals(2, auth.getConteo(EstadoPrueba.PASSED));
+
+        ArbolSuites.Suite login = auth.getHijo("LOGIN");
+        assertEquals("AUTH-LOGIN", login.getRuta());
+        assertEquals(2, login.getNivel());
+        assertEquals(2, login.getTotal());
+        assertEquals(2.0, login.getTiempoPromedio());
+        assertEquals(3.0, login.getTiempoMaximo());
+        assertSame(auth, login.getPadre());
+        assertTrue(login.getHijos().isEmpty());
+
+        assertEquals("PAGOS-TARJETA", raiz.getHijo("PAGOS").getHijo("TARJETA").getRuta());
+    }
+
+    @Test
+    public void combinarDaLoMismoQueAgregarTodoEnUno() {
+        ArbolSuites todo = new ArbolSuites("-_", 3, false);
+        ArbolSuites a = todo.vacio();
+        ArbolSuites b = todo.vacio();
+        EstadoPrueba[] estados = EstadoPrueba.values();
+        for (int i = 0; i < 5_000; i++) {
+            String id = "S" + (i % 7) + (i % 2 == 0 ? "-" : "_") + "M" + (i % 13) + "-C" + (i % 3) + "-" + i;
+            EstadoPrueba e = estados[i % estados.length];
+            todo.agregar(id, e, i % 10);
+            (i < 1_234 ? a : b).agregar(id, e, i % 10);
+        }
+        a.combinar(b);
+
+        assertEquals(todo.getNodos(), a.getNodos());
+        assertIguales(todo.getRaiz(), a.getRaiz());
+    }
+
+    private static void assertIguales(ArbolSuites.Suite esperada, ArbolSuites.Suite real) {
+        assertEquals(esperada.getRuta(), real.getRuta());
+        assertEquals(esperada.getTotal(), real.getTotal(), esperada.getRuta());
+        for (EstadoPrueba e : EstadoPrueba.values()) {
+            assertEquals(esperada.getConteo(e), real.getConteo(e), esperada.getRuta());
+        }
+        assertEquals(esperada.getTiempoTotal(), real.getTiempoTotal(), 1e-6);
+        assertEquals(esperada.getTiempoMaximo(), real.getTiempoMaximo());
+        List<ArbolSuites.Suite> hijos = esperada.getHijos();
+        assertEquals(hijos.size(), real.getHijos().size(), esperada.getRuta());
+        for (int i = 0; i < hijos.size(); i++) {
+            assertIguales(hijos.get(i), real.getHijos().get(i));
+        }
+    }
+
+    @Test
+    public void rechazaSeparadoresNoAscii() {
+        assertThrows(IllegalArgumentException.class, () -> new ArbolSuites("·", 2, false));
+        assertThrows(IllegalArgumentException.class, () -> new ArbolSuites("-", 0, false));
+    }
+}
@@ -0,0 +1,124 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CasosFueraDeHeapTest {
+
+    @Test
+    public void devuelveLosMismosCasosEnVariosBloques() {
+        EstadoPrueba[] estados = EstadoPrueba.values();
+        List<CasoPrueba> esperados = new ArrayList<>();
+        // Más de un bloque de registros, y textos que no entran en un solo bloque de texto
+        int n = CasosFueraDeHeap.REGISTROS_POR_BLOQUE + 1000;
+        for (int i = 0; i < n; i++) {
+            String nombre = i % 5000 == 0 ? "Ñandú ".repeat(20_000) + i : "Caso " + i;
+            esperados.add(new CasoPrueba("T" + i, nombre, estados[i % estados.length], i * 0.001));
+        }
+
+        try (CasosFueraDeHeap casos = new CasosFueraDeHeap(new MemoriaDirecta())) {
+            esperados.forEach(casos::add);
+
+            assertEquals(n, casos.size());
+            int i = 0;
+            for (CasoPrueba c : casos) {
+                CasoPrueba e = esperados.get(i);
+                assertEquals(e.getIdTest(), c.getIdTest());
+                assertEquals(e.getNombreTest(), c.getNombreTest());
+                assertEquals(e.getEstado(), c.getEstado());
+                assertEquals(e.getTiempoEjecucion(), c.getTiempoEjecucion());
+                assertEquals(e.getEstado(), casos.getEstado(i));
+                assertEquals(e.getTiempoEjecucion(), casos.getTiempo(i));
+                i++;
+            }
+            assertTrue(casos.getBytesReservados() > (long) n * CasosFueraDeHeap.BYTES_REGISTRO);
+            assertThrows(IndexOutOfBoundsException.class, () -> casos.get(n));
+        }
+    }
+
+    @Test
+    public void pasaADiscoLoQueNoEntraEnElPresupuesto() {
+        // Entran el primer bloque de registros y el de textos; el resto va al archivo
+        long bloqueRegistros = (long) CasosFueraDeHeap.REGISTROS_POR_BLOQUE * CasosFueraDeHeap.BYTES_REGISTRO;
+        PresupuestoMemoria presupuesto = new PresupuestoMemoria(bloqueRegistros + CasosFueraDeHeap.BYTES_BLOQUE_TEXTO);
+        int n = 3 * CasosFueraDeHeap.REGISTROS_POR_BLOQUE;
+
+        try (CasosFueraDeHeap casos = new CasosFueraDeHeap(presupuesto)) {
+            for (int i = 0; i < n; i++) {
+                casos.add(new CasoPrueba("SUITE-" + i, "Caso número " + i, EstadoPrueba.values()[i % 3], i / 8.0));
+            }
+
+            assertEquals(presupuesto.getLimite(), presupuesto.getUsado());
+            // Dos bloques de registros y el segundo de textos
+            assertEquals(2 * bloqueRegistros + CasosFueraDeHeap.BYTES_BLOQUE_TEXTO, presupuesto.getDerramado());
+            for (int i = 0; i < n; i += 997) {
+                CasoPrueba c = casos.get(i);
+                assertEquals("SUITE-" + i, c.getIdTest());
+                assertEquals("Caso número " + i, c.getNombreTest());
+                assertEquals(i / 8.0, c.getTiempoEjecucion());
+            }
+        }
+    }
+
+    @Test
+    public void elPresupuestoNoDaAUnaEtapaMasDeSuParte() {
+        PresupuestoMemoria presupuesto = new PresupuestoMemoria(1000);
+        assertEquals(100, presupuesto.asignar("lectura", 100));
+        assertEquals(1000 / PresupuestoMemoria.FRACCION_MAXIMA_ETAPA, presupuesto.asignar("orden", 5000));
+        assertFalse(presupuesto.reservar("casos", 700));
+        assertTrue(presupuesto.reservar("casos", 600));
+        assertEquals(50, presupuesto.asignar("baseline", 100));
+        presupuesto.derramar("casos", 700);
+
+        assertEquals(List.of("lectura", "orden", "casos", "baseline"),
+                presupuesto.getConsumos().stream().map(PresupuestoMemoria.Consumo::getNombre).toList());
+        assertEquals(600, presupuesto.getConsumos().get(2).getReservado());
+        assertEquals(700, presupuesto.getDerramado());
+        assertThrows(IllegalArgumentException.class, () -> new PresupuestoMemoria(0));
+    }
+
+    @Test
+    public void sirveParaLosIndicesDelMenu() {
+        try (CasosFueraDeHeap casos = new CasosFueraDeHeap()) {
+            casos.add(new CasoPrueba("B2", "Dos", EstadoPrueba.FAILED, 2.0));
+            casos.add(new CasoPrueba("A1", "Uno", EstadoPrueba.PASSED, 1.0));
+            casos.add(new CasoPrueba("A3", "Tres", EstadoPrueba.FAILED, 3.0));
+
+            IndiceCasos indice = new IndiceCasos(casos);
+
+            assertEquals(List.of("B2", "A3"),
+                    indice.porEstado(EstadoPrueba.FAILED).stream().map(CasoPrueba::getIdTest).toList());
+            assertEquals(List.of("A1", "A3"),
+                    indice.porPrefijoId("A").stream().map(CasoPrueba::getIdTest).toList());
+        }
+    }
+
+    @Test
+    public void buscaPorPrefijoIgualQueEnElHeap() {
+        List<CasoPrueba> enHeap = new ArrayList<>();
+        Random rnd = new Random(7);
+        String[] prefijos = { "A", "AB", "Ñu-", "ÑU", "" };
+        for (int i = 0; i < 3000; i++) {
+            enHeap.add(new CasoPrueba(prefijos[rnd.nextInt(prefijos.length)] + rnd.nextInt(50), "n",
+                    EstadoPrueba.PASSED, i));
+        }
+        try (CasosFueraDeHeap casos = new CasosFueraDeHeap()) {
+            enHeap.forEach(casos::add);
+
+            IndiceCasos fuera = new IndiceCasos(casos);
+            IndiceCasos heap = new IndiceCasos(enHeap);
+
+            for (String p : List.of("", "A", "AB", "AB1", "Ñ", "Ñu-4", "ÑU", "Z", "AB49", "AB490")) {
+                assertEquals(heap.porPrefijoId(p).stream().map(CasoPrueba::getTiempoEjecucion).toList(),
+                        fuera.porPrefijoId(p).stream().map(CasoPrueba::getTiempoEjecucion).toList(), p);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.martin.facturacion.servicio;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConteoIdsTest {
+
+    private static long hash(String id) {
+        byte[] b = id.getBytes(StandardCharsets.UTF_8);
+        return ConteoIds.hash(b, 0, b.length);
+    }
+
+    @Test
+    public void estimaIdsDistintosConErrorChico() {
+        HyperLogLog todos = new HyperLogLog();
+        HyperLogLog pares = new HyperLogLog();
+        HyperLogLog impares = new HyperLogLog();
+        for (int i = 0; i < 300_000; i++) {
+            long h = hash("TC" + (i % 200_000));
+            todos.agregar(h);
+            (i % 2 == 0 ? pares : impares).agregar(h);
+        }
+
+        assertEquals(200_000, todos.estimar(), 200_000 * 0.03);
+        pares.combinar(impares);
+        assertEquals(todos.estimar(), pares.estimar());
+
+        HyperLogLog pocos = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            pocos.agregar(hash("T" + (i % 10)));
+        }
+        assertEquals(10, pocos.estimar());
+    }
+
+    @Test
+    public void elFiltroNoTieneFalsosNegativosYPocosPositivos() {
+        int n = 100_000;
+        FiltroBloom filtro = new FiltroBloom(n);
+        int falsos = 0;
+        for (int i = 0; i < n; i++) {
+            if (filtro.agregar(hash("A" + i))) {
+                falsos++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            assertTrue(filtro.agregar(hash("A" + i)));
+        }
+
+        // Lo esperado ronda la cincuentena; el conteo real debe estar cerca
+        double esperados = filtro.falsosEsperados(n);
+        assertTrue(esperados > 10 && esperados < 200, "esperados " + esperados);
+        assertEquals(esperados, falsos, 5 * Math.sqrt(esperados) + 5);
+        assertEquals(n, filtro.estimarElementos(), n * 0.05);
+    }
+
+    @Test
+    public void combinaPartesContandoLasDuplicadasEntreEllas() {
+        ConteoIds completo = new ConteoIds(100_000);
+        ConteoIds a = new ConteoIds(100_000);
+        ConteoIds b = new ConteoIds(100_000);
+        // 50000 ids en cada parte, 10000 de ellos en las dos, y 100 repetidos dentro de a
+        for (int i = 0; i < 50_100; i++) {
+            long h = hash("T" + (i % 50_000));
+            a.agregar(h, h);
+            completo.agregar(h, h);
+        }
+        for (int i = 40_000; i < 90_000; i++) {
+            long h = hash("T" + i);
+            b.agregar(h, h);
+            completo.agregar(h, h);
+        }
+
+        a.combinar(b);
+
+        assertEquals(100_100, a.getFilas());
+        assertEquals(completo.getIdsDistintos(), a.getIdsDistintos());
+        assertEquals(10_100, completo.getDuplicadas(), 20);
+        assertEquals(10_100, a.getDuplicadas(), 10_100 * 0.05);
+        assertThrows(IllegalArgumentException.class, () -> a.combinar(new ConteoIds(1000)));
+    }
+
+    @Test
+    public void noPasaDeLaMemoriaAsignada() {
+        long archivo = 1L << 30;
+        long completa = ConteoIds.memoriaParaArchivo(archivo);
+        assertEquals(completa, ConteoIds.paraArchivo(archivo).getBytes());
+        assertEquals(completa, ConteoIds.paraArchivo(archivo, completa).getBytes());
+
+        ConteoIds chico = ConteoIds.paraArchivo(archivo, 1 << 20);
+        assertTrue(chico.getBytes() <= 1 << 20);
+        assertTrue(chico.getBytes() > 1 << 19);
+        for (long i = 0; i < 200_000; i++) {
+            long h = ConteoIds.hash(Long.toString(i).getBytes(), 0, Long.toString(i).length());
+            chico.agregar(h, h);
+        }
+        // Con el filtro más chico que las filas crecen los falsos positivos esperados
+        assertTrue(chico.getFalsosEsperados() > 0);
+    }
+}
@@ -118,4 +118,45 @@ public class EstadisticasPruebasTest {
         assertTrue(stats.getMasLento().isPresent());
         assertEquals("30", stats.getMasLento().get().getIdTest());
     }
+
+    /** 🔵 El acumulador produce las mismas estadísticas que la lista completa */
+    @Test
+    public void acumuladorCoincideConLista() {
+        List<CasoPrueba> lista = Arrays.asList(
+                new CasoPrueba("1", "t1", EstadoPrueba.PASSED, 4.0),
+                new CasoPrueba("2", "t2", EstadoPrueba.FAILED, 4.0),
+                new CasoPrueba("3", "t3", EstadoPrueba.PASSED, 1.0));
+
+        AcumuladorEstadisticas acumulador = new AcumuladorEstadisticas();
+        lista.forEach(acumulador::agregar);
+        EstadisticasPruebas stats = acumulador.resultado();
+        EstadisticasPruebas esperado = new EstadisticasPruebas(lista);
+
+        assertEquals(esperado.getTotal(), stats.getTotal());
+        assertEquals(esperado.getConteos(), stats.getConteos());
+        assertEquals(esperado.getPorcentajes(), stats.getPorcentajes());
+        assertEquals(esperado.getTiempoPromedio(), stats.getTiempoPromedio(), 1e-9);
+        assertEquals(9.0, stats.tiempoTotal(), 1e-9);
+        // ante empate se conserva el primero
+        assertEquals("1", stats.getMasLento().get().getIdTest());
+        assertNull(stats.getConteos().get(EstadoPrueba.SKIPPED));
+        assertEquals(List.of("1", "2", "3"),
+                stats.getMasLentos().stream().map(CasoPrueba::getIdTest).toList());
+    }
+
+    /** 🔵 El histograma aproxima los percentiles con error relativo acotado */
+    @Test
+    public void histogramaAproximaPercentiles() {
+        List<CasoPrueba> lista = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            lista.add(new CasoPrueba("T" + i, "t" + i, EstadoPrueba.PASSED, i / 100.0));
+        }
+
+        HistogramaTiempos h = new EstadisticasPruebas(lista).getHistograma();
+
+        assertEquals(1000, h.getTotal());
+        assertEquals(5.0, h.percentil(50), 5.0 * 0.13);
+        assertEquals(9.5, h.percentil(95), 9.5 * 0.13);
+        assertEquals(0.0, new HistogramaTiempos().percentil(50));
+    }
 }
@@ -0,0 +1,77 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndiceCasosTest {
+
+    private final List<CasoPrueba> casos = Arrays.asList(
+            new CasoPrueba("AUTH-002", "login2", EstadoPrueba.FAILED, 7.0),
+            new CasoPrueba("PAY-001", "pago", EstadoPrueba.FAILED, 2.0),
+            new CasoPrueba("AUTH-001", "login1", EstadoPrueba.PASSED, 9.0),
+            new CasoPrueba("AUTH-010", "logout", EstadoPrueba.FAILED, 5.0),
+            new CasoPrueba("HOME-001", "home", EstadoPrueba.SKIPPED, 0.0));
+
+    private static List<String> ids(List<CasoPrueba> lista) {
+        return lista.stream().map(CasoPrueba::getIdTest).toList();
+    }
+
+    @Test
+    public void filtraPorEstadoYTiempoDelMasLentoAlMasRapido() {
+        IndiceCasos indice = new IndiceCasos(casos);
+
+        List<CasoPrueba> r = indice.porTiempo(EstadoPrueba.FAILED, 5.0, Double.POSITIVE_INFINITY);
+
+        assertEquals(List.of("AUTH-002", "AUTH-010"), ids(r));
+    }
+
+    @Test
+    public void rangoDeTiempoSinEstado() {
+        IndiceCasos indice = new IndiceCasos(casos);
+
+        assertEquals(List.of("AUTH-010", "PAY-001"), ids(indice.porTiempo(null, 2.0, 5.0)));
+        assertTrue(indice.porTiempo(null, 100, 200).isEmpty());
+    }
+
+    @Test
+    public void buscaPorPrefijoOrdenadoPorId() {
+        IndiceCasos indice = new IndiceCasos(casos);
+
+        assertEquals(List.of("AUTH-001", "AUTH-002", "AUTH-010"), ids(indice.porPrefijoId("AUTH-")));
+        assertEquals(List.of("AUTH-001", "AUTH-002"), ids(indice.porPrefijoId("AUTH-00")));
+        assertTrue(indice.porPrefijoId("ZZZ").isEmpty());
+    }
+
+    @Test
+    public void porEstadoRespetaElOrdenDelArchivo() {
+        IndiceCasos indice = new IndiceCasos(casos);
+
+        assertEquals(List.of("AUTH-002", "PAY-001", "AUTH-010"), ids(indice.porEstado(EstadoPrueba.FAILED)));
+    }
+
+    @Test
+    public void ordenaCorrectamenteListasGrandes() {
+        List<CasoPrueba> muchos = new ArrayList<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            muchos.add(new CasoPrueba("T" + rnd.nextInt(100000), "n", EstadoPrueba.PASSED, rnd.nextInt(1000) / 10.0));
+        }
+        IndiceCasos indice = new IndiceCasos(muchos);
+
+        List<CasoPrueba> todos = indice.porTiempo(null, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        assertEquals(5000, todos.size());
+        for (int i = 1; i < todos.size(); i++) {
+            assertTrue(todos.get(i - 1).getTiempoEjecucion() >= todos.get(i).getTiempoEjecucion());
+        }
+
+        List<CasoPrueba> porId = indice.porPrefijoId("");
+        for (int i = 1; i < porId.size(); i++) {
+            assertTrue(porId.get(i - 1).getIdTest().compareTo(porId.get(i).getIdTest()) <= 0);
+        }
+    }
+}
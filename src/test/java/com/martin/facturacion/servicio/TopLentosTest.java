@@ -0,0 +1,58 @@
+package com.martin.facturacion.servicio;
+
+import com.martin.facturacion.modelo.CasoPrueba;
+import com.martin.facturacion.modelo.EstadoPrueba;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopLentosTest {
+
+    private static CasoPrueba caso(String id, double tiempo) {
+        return new CasoPrueba(id, "t" + id, EstadoPrueba.PASSED, tiempo);
+    }
+
+    @Test
+    public void conservaLosKMayoresOrdenados() {
+        TopLentos top = new TopLentos(2);
+        top.ofrecer(caso("1", 3.0), 0);
+        top.ofrecer(caso("2", 9.0), 1);
+        top.ofrecer(caso("3", 1.0), 2);
+        top.ofrecer(caso("4", 7.0), 3);
+
+        List<CasoPrueba> lista = top.lista();
+
+        assertEquals(2, lista.size());
+        assertEquals("2", lista.get(0).getIdTest());
+        assertEquals("4", lista.get(1).getIdTest());
+        assertEquals(7.0, top.umbral());
+    }
+
+    @Test
+    public void anteEmpateGanaElPrimero() {
+        TopLentos top = new TopLentos(1);
+        top.ofrecer(caso("b", 5.0), 1);
+        top.ofrecer(caso("a", 5.0), 0);
+        top.ofrecer(caso("c", 5.0), 2);
+
+        assertEquals("a", top.lista().get(0).getIdTest());
+    }
+
+    @Test
+    public void combinarEsIgualQueProcesarTodo() {
+        TopLentos izquierda = new TopLentos(3);
+        TopLentos derecha = new TopLentos(3);
+        TopLentos todo = new TopLentos(3);
+
+        for (int i = 0; i < 20; i++) {
+            CasoPrueba c = caso(String.valueOf(i), (i * 7) % 11);
+            (i < 10 ? izquierda : derecha).ofrecer(c, i);
+            todo.ofrecer(c, i);
+        }
+        derecha.combinar(izquierda);
+
+        assertEquals(todo.lista(), derecha.lista());
+    }
+}
@@ -0,0 +1,100 @@
+package com.martin.facturacion.servidor;
+
+import org.junit.jupiter.api.*;
+
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServidorAnalisisTest {
+
+    private static final String CSV = "id,nombre,estado,tiempo\n"
+            + "1,Login,PASSED,1.5\n"
+            + "2,Factura,FAILED,3.0\n"
+            + "3,Pago,ROTO,1.0\n";
+
+    private static ServidorAnalisis servidor;
+    private static HttpClient cliente;
+    private static String base;
+
+    @BeforeAll
+    public static void iniciar() throws Exception {
+        servidor = new ServidorAnalisis(0, 2);
+        servidor.iniciar();
+        cliente = HttpClient.newHttpClient();
+        base = "http://localhost:" + servidor.getPuerto();
+    }
+
+    @AfterAll
+    public static void detener() {
+        servidor.detener();
+    }
+
+    @Test
+    public void analizaCsvEnviadoEnElCuerpo() throws Exception {
+        HttpResponse<String> r = cliente.send(HttpRequest.newBuilder(URI.create(base + "/analizar?ignorarCabecera=true"))
+                .POST(HttpRequest.BodyPublishers.ofString(CSV)).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, r.statusCode());
+        assertTrue(r.body().contains("\"total\":2"), r.body());
+        assertTrue(r.body().contains("\"estado inválido\":1"), r.body());
+    }
+
+    @Test
+    public void analizaArchivoLocal() throws Exception {
+        Path csv = Files.createTempFile("servidor", ".csv");
+        Files.writeString(csv, CSV);
+        String ruta = URLEncoder.encode(csv.toString(), StandardCharsets.UTF_8);
+
+        HttpResponse<String> r = cliente.send(
+                HttpRequest.newBuilder(URI.create(base + "/analizar?ignorarCabecera=true&ruta=" + ruta)).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, r.statusCode());
+        assertTrue(r.body().contains("\"total\":2"), r.body());
+    }
+
+    @Test
+    public void archivoInexistenteDevuelve404() throws Exception {
+        HttpResponse<String> r = cliente.send(
+                HttpRequest.newBuilder(URI.create(base + "/analizar?ruta=/no/existe.csv")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, r.statusCode());
+        assertTrue(r.body().startsWith("{\"error\":"), r.body());
+    }
+
+    @Test
+    public void escapeInvalidoDevuelve400() throws Exception {
+        // HttpClient no deja armar la URI, así que la petición va a mano; el
+        // HttpServer del JDK puede rechazarla antes de llegar al handler
+        try (Socket s = new Socket("localhost", servidor.getPuerto())) {
+            s.getOutputStream().write("GET /analizar?ruta=%zz HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            String respuesta = new String(s.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+            assertTrue(respuesta.startsWith("HTTP/1.1 400"), respuesta);
+        }
+    }
+
+    @Test
+    public void rutaConCuerpoDevuelve400() throws Exception {
+        Path csv = Files.createTempFile("servidor", ".csv");
+        Files.writeString(csv, CSV);
+        String ruta = URLEncoder.encode(csv.toString(), StandardCharsets.UTF_8);
+
+        HttpResponse<String> r = cliente.send(HttpRequest.newBuilder(URI.create(base + "/analizar?ruta=" + ruta))
+                .POST(HttpRequest.BodyPublishers.ofString(CSV)).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, r.statusCode());
+        assertTrue(r.body().contains("ruta"), r.body());
+    }
+}